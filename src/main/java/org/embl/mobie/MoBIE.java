@@ -51,6 +51,7 @@ import org.embl.mobie.lib.image.Image;
 import org.embl.mobie.lib.io.DataFormats;
 import org.embl.mobie.lib.io.StorageLocation;
 import org.embl.mobie.lib.serialize.*;
+import org.embl.mobie.lib.source.RealTransformedSource;
 import org.embl.mobie.lib.table.TableDataFormat;
 import org.embl.mobie.lib.table.saw.TableOpener;
 import org.embl.mobie.lib.transform.GridType;
@@ -118,6 +119,9 @@ public class MoBIE
 	public MoBIE( String projectUri, MoBIESettings settings ) throws IOException
 	{
 		this.settings = settings;
+		configureThreads();
+		configureRendering();
+		configureCaches();
 		this.projectLocation = projectUri;
 
 		initImageJAndMoBIE();
@@ -198,6 +202,26 @@ public class MoBIE
 		IJ.log("Added views from: " + uri );
 	}
 
+	private void configureThreads()
+	{
+		ThreadHelper.configure(
+				settings.values.getNumIoThreads(),
+				settings.values.getNumThreads(),
+				settings.values.getNumTileFetchThreads(),
+				settings.values.getNumMeshThreads() );
+	}
+
+	private void configureRendering()
+	{
+		RealTransformedSource.setDefaultBakeTolerance( settings.values.getBakeRealTransformsTolerance() );
+	}
+
+	private void configureCaches()
+	{
+		if ( settings.values.getCacheImages() != null )
+			ImageCache.setEnabled( settings.values.getCacheImages() );
+	}
+
 	public static MoBIE getInstance()
 	{
 		return moBIE;
@@ -208,6 +232,9 @@ public class MoBIE
 		initImageJAndMoBIE();
 
 		this.settings = settings;
+		configureThreads();
+		configureRendering();
+		configureCaches();
 		this.projectLocation = hcsDataLocation;
 
 		IJ.log("\n# MoBIE" );
@@ -223,6 +250,9 @@ public class MoBIE
 		IJ.log("\n# MoBIE" );
 
 		this.settings = settings;
+		configureThreads();
+		configureRendering();
+		configureCaches();
 
 		initProject( "" );
 		new GridImagesAndLabelsDataSetter( imagePaths, labelPaths, labelTablePaths, root, grid )
@@ -239,6 +269,9 @@ public class MoBIE
 		IJ.log("Opening data from table: " + tablePath );
 
 		this.settings = settings;
+		configureThreads();
+		configureRendering();
+		configureCaches();
 
 		// TODO: if the gridType is None we may want to rather use SourcesFromPathsCreator( )
 		//   where we prefetch the paths from the table based on the image type
@@ -519,6 +552,8 @@ public class MoBIE
 			IJ.log( "Closing I/O threads..." );
 			ThreadHelper.resetIOThreads();
 			viewManager.close();
+			IJ.log( "Clearing image cache..." );
+			ImageCache.clear();
 			IJ.log( "MoBIE closed." );
 			if ( settings.values.isOpenedFromCLI() )
 				System.exit( 0 );
@@ -701,6 +736,17 @@ public class MoBIE
 
 	private void initDataSource( DataSource dataSource, String log )
 	{
+		if ( dataSource instanceof ImageDataSource || dataSource instanceof SpotDataSource )
+		{
+			// reuse the image if a previous view has shown it
+			final List< Image< ? > > cachedImages = ImageCache.acquire( ImageCache.getKey( dataSource ) );
+			if ( cachedImages != null )
+			{
+				DataStore.putImages( cachedImages );
+				return;
+			}
+		}
+
 		if ( dataSource instanceof ImageDataSource )
 		{
 			final Image< ? > image = createImage( dataSource );
@@ -714,11 +760,13 @@ public class MoBIE
 				);
 				AnnotatedLabelImage< ? > annotatedLabelImage = creator.create();
 				DataStore.addImage( annotatedLabelImage );
+				ImageCache.put( ImageCache.getKey( dataSource ), Collections.singletonList( annotatedLabelImage ) );
 			}
 			else
 			{
 				// intensity image
 				DataStore.addImage( image );
+				ImageCache.put( ImageCache.getKey( dataSource ), Collections.singletonList( image ) );
 			}
 		}
 		else if ( dataSource instanceof SpotDataSource )
@@ -732,6 +780,7 @@ public class MoBIE
 					tableFormat );
 			AnnotatedLabelImage< ? > spotImage = creator.createSpotImage();
 			DataStore.addImage( spotImage );
+			ImageCache.put( ImageCache.getKey( dataSource ), Collections.singletonList( spotImage ) );
 		}
 		else if ( dataSource instanceof RegionTableSource )
 		{
@@ -134,6 +134,57 @@ public class MoBIESettings
 		return this;
 	}
 
+	public MoBIESettings numIoThreads( Integer numIoThreads )
+	{
+		this.values.numIoThreads = numIoThreads;
+		return this;
+	}
+
+	public MoBIESettings numThreads( Integer numThreads )
+	{
+		this.values.numThreads = numThreads;
+		return this;
+	}
+
+	public MoBIESettings numTileFetchThreads( Integer numTileFetchThreads )
+	{
+		this.values.numTileFetchThreads = numTileFetchThreads;
+		return this;
+	}
+
+	public MoBIESettings numMeshThreads( Integer numMeshThreads )
+	{
+		this.values.numMeshThreads = numMeshThreads;
+		return this;
+	}
+
+	/**
+	 * Renders nonlinearly transformed images through a displacement grid,
+	 * instead of evaluating the transformation for every voxel.
+	 *
+	 * @param tolerance
+	 * 			the maximal deviation of the grid from the transformation,
+	 * 			in voxels; null to evaluate the transformation directly
+	 */
+	public MoBIESettings bakeRealTransforms( Double tolerance )
+	{
+		this.values.bakeRealTransformsTolerance = tolerance;
+		return this;
+	}
+
+	/**
+	 * Keeps the images of previously shown views, such that showing
+	 * a view again does not need to open its images again.
+	 *
+	 * @param cacheImages
+	 * 			whether to keep the images; null to keep the current setting
+	 */
+	public MoBIESettings cacheImages( Boolean cacheImages )
+	{
+		this.values.cacheImages = cacheImages;
+		return this;
+	}
+
 	public static class Values
 	{
 		private String[] s3AccessAndSecretKey;
@@ -152,6 +203,18 @@ public class MoBIESettings
 
 		private BdvViewingMode bdvViewingMode = BdvViewingMode.ThreeDimensional;
 
+		// null: keep the current size of the respective thread pool
+		private Integer numIoThreads = null;
+		private Integer numThreads = null;
+		private Integer numTileFetchThreads = null;
+		private Integer numMeshThreads = null;
+
+		// null: evaluate real transformations for every rendered voxel
+		private Double bakeRealTransformsTolerance = null;
+
+		// null: keep the current setting of the image cache
+		private Boolean cacheImages = null;
+
 		public String getDataRoot()
 		{
 			return dataRoot;
@@ -226,5 +289,35 @@ public class MoBIESettings
 		{
 			return bdvViewingMode;
 		}
+
+		public Integer getNumIoThreads()
+		{
+			return numIoThreads;
+		}
+
+		public Integer getNumThreads()
+		{
+			return numThreads;
+		}
+
+		public Integer getNumTileFetchThreads()
+		{
+			return numTileFetchThreads;
+		}
+
+		public Integer getNumMeshThreads()
+		{
+			return numMeshThreads;
+		}
+
+		public Double getBakeRealTransformsTolerance()
+		{
+			return bakeRealTransformsTolerance;
+		}
+
+		public Boolean getCacheImages()
+		{
+			return cacheImages;
+		}
 	}
 }
@@ -69,6 +69,9 @@ public class FilesCmd implements Callable< Void > {
 	@Option(names = { RC, REMOVE_CALIBRATION }, required = false, description = "flag to remove spatial calibration from all images; this can be useful if only some images have a spatial calibration metadata and thus overlaying several images would fail")
 	public SpatialCalibration spatialCalibration = SpatialCalibration.FromImage;
 
+	@CommandLine.Mixin
+	public ThreadOptions threadOptions = new ThreadOptions();
+
 	@Override
 	public Void call() throws Exception {
 
@@ -76,6 +79,8 @@ public class FilesCmd implements Callable< Void > {
 
 		settings.openedFromCLI( true );
 
+		threadOptions.setThreads( settings );
+
 		spatialCalibration.setVoxelDimensions( settings, tables != null ? tables[ 0 ] : null );
 
 		List< String > imageList = images != null ?
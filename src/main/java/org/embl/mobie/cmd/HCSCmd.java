@@ -53,6 +53,9 @@ public class HCSCmd implements Callable< Void > {
 	@Option(names = {"--remove-spatial-calibration"}, required = false, description = "removes spatial calibration from all images; this is useful if only some images have a spatial calibration and thus the overlay would fail.")
 	public Boolean removeSpatialCalibration = false;
 
+	@CommandLine.Mixin
+	public ThreadOptions threadOptions = new ThreadOptions();
+
 	@Override
 	public Void call() throws Exception {
 
@@ -60,6 +63,8 @@ public class HCSCmd implements Callable< Void > {
 
 		settings.openedFromCLI( true );
 
+		threadOptions.setThreads( settings );
+
 		settings.setVoxelDimensions( null ); // FIXME
 
 		new MoBIE( hcs, settings, wellMargin, siteMargin, null );
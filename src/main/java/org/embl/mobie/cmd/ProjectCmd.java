@@ -47,11 +47,16 @@ public class ProjectCmd implements Callable< Void > {
 	@Option(names = {"-v", "--view"}, required = false, description = "view within the above MoBIE project, e.g., \"Figure 2C: Muscle segmentation\"")
 	public String view = null;
 
+	@CommandLine.Mixin
+	public ThreadOptions threadOptions = new ThreadOptions();
+
 	@Override
 	public Void call() throws Exception {
 
 		final MoBIESettings settings = new MoBIESettings().openedFromCLI( true );
 
+		threadOptions.setThreads( settings );
+
 		if ( view != null ) settings.view( view );
 
 		new MoBIE( project, settings );
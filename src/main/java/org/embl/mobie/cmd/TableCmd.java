@@ -69,6 +69,9 @@ public class TableCmd implements Callable< Void > {
 	@Option(names = {RC, REMOVE_CALIBRATION}, required = false, description = "removes spatial calibration from all images; this is useful if only some images have a spatial calibration and thus the overlay would fail.")
 	public SpatialCalibration spatialCalibration = SpatialCalibration.FromImage;
 
+	@CommandLine.Mixin
+	public ThreadOptions threadOptions = new ThreadOptions();
+
 	@Override
 	public Void call() throws Exception {
 
@@ -76,6 +79,8 @@ public class TableCmd implements Callable< Void > {
 
 		settings.openedFromCLI( true );
 
+		threadOptions.setThreads( settings );
+
 		settings.setVoxelDimensions( null ); // FIXME
 
 		List< String > imageList = images != null ?
@@ -0,0 +1,59 @@
+/*-
+ * #%L
+ * Fiji viewer for MoBIE projects
+ * %%
+ * Copyright (C) 2018 - 2024 EMBL
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.embl.mobie.cmd;
+
+import org.embl.mobie.MoBIESettings;
+import picocli.CommandLine.Option;
+
+/**
+ * Thread pool sizes that can be added to any of the commands
+ * as a {@code @Mixin}; options that are not given keep the defaults.
+ */
+public class ThreadOptions
+{
+	@Option(names = {"--io-threads"}, required = false, description = "number of threads for opening and loading image data (default = number of cores - 1)")
+	public Integer numIoThreads = null;
+
+	@Option(names = {"--compute-threads"}, required = false, description = "number of threads for computations (default = number of cores - 1)")
+	public Integer numThreads = null;
+
+	@Option(names = {"--tile-threads"}, required = false, description = "number of threads for fetching the tiles of stitched images (default = number of I/O threads)")
+	public Integer numTileFetchThreads = null;
+
+	@Option(names = {"--mesh-threads"}, required = false, description = "number of threads for computing 3D meshes of segments (default = number of cores - 1)")
+	public Integer numMeshThreads = null;
+
+	public void setThreads( MoBIESettings settings )
+	{
+		settings.numIoThreads( numIoThreads )
+				.numThreads( numThreads )
+				.numTileFetchThreads( numTileFetchThreads )
+				.numMeshThreads( numMeshThreads );
+	}
+}
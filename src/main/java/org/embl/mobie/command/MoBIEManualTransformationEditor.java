@@ -47,6 +47,9 @@ import net.imglib2.realtransform.AffineTransform3D;
 import org.scijava.listeners.Listeners;
 import org.scijava.ui.behaviour.util.InputActionBindings;
 import org.scijava.ui.behaviour.util.RunnableAction;
+import org.embl.mobie.lib.data.DataStore;
+import org.embl.mobie.lib.data.ImageCache;
+import org.embl.mobie.lib.image.Image;
 
 import bdv.viewer.AbstractViewerPanel;
 import bdv.viewer.SourceAndConverter;
@@ -192,7 +195,12 @@ public class MoBIEManualTransformationEditor implements TransformListener< Affin
                 if ( source.getSpimSource() instanceof TransformedSource )
                 {
                     if ( transformableSources.contains( source ) )
+                    {
                         sourcesToModify.add( ( TransformedSource< ? > ) source.getSpimSource() );
+                        // the image is transformed in place
+                        final Image< ? > image = DataStore.sourceToImage().get( source );
+                        if ( image != null ) ImageCache.invalidate( image );
+                    }
                     else
                         sourcesToFix.add( ( TransformedSource< ? > ) source.getSpimSource() );
                 }
@@ -0,0 +1,97 @@
+/*-
+ * #%L
+ * Fiji viewer for MoBIE projects
+ * %%
+ * Copyright (C) 2018 - 2024 EMBL
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.embl.mobie.command.configure;
+
+import ij.IJ;
+import org.embl.mobie.command.CommandConstants;
+import org.embl.mobie.lib.data.ImageCache;
+import org.embl.mobie.lib.hcs.PlateIndex;
+import org.embl.mobie.lib.hcs.SitePyramidCache;
+import org.embl.mobie.lib.io.DiskCache;
+import org.embl.mobie.lib.table.saw.TableSchema;
+import org.embl.mobie.lib.volume.MeshCache;
+import org.scijava.command.Command;
+import org.scijava.plugin.Parameter;
+import org.scijava.plugin.Plugin;
+
+@Plugin(type = Command.class, menuPath = CommandConstants.MOBIE_PLUGIN_ROOT + "Configure>Configure Caches..." )
+public class ConfigureCachesCommand implements Command
+{
+	static { net.imagej.patcher.LegacyInjector.preinit(); }
+
+	@Parameter ( label = "Cache Images of Previous Views", persist = false )
+	public Boolean cacheImages = ImageCache.isEnabled();
+
+	@Parameter ( label = "Cache Meshes", persist = false )
+	public Boolean cacheMeshes = MeshCache.diskCache().isEnabled();
+
+	@Parameter ( label = "Cache Table Column Types", persist = false )
+	public Boolean cacheTableSchemas = TableSchema.diskCache().isEnabled();
+
+	@Parameter ( label = "Cache HCS Plate Indices", persist = false )
+	public Boolean cachePlateIndices = PlateIndex.diskCache().isEnabled();
+
+	@Parameter ( label = "Cache HCS Site Resolution Levels", persist = false )
+	public Boolean cacheSitePyramids = SitePyramidCache.diskCache().isEnabled();
+
+	@Parameter ( label = "Compute HCS Site Resolution Levels",
+			description = "Computes the resolution levels of single resolution HCS sites that are opened,\n" +
+					"such that they open faster next time. This reads each site at full resolution.",
+			persist = false )
+	public Boolean buildSitePyramids = SitePyramidCache.isBuildEnabled();
+
+	@Parameter ( label = "Clear Caches",
+			description = "Deletes the cached data from the disk." )
+	public Boolean clear = false;
+
+	@Override
+	public void run()
+	{
+		ImageCache.setEnabled( cacheImages );
+		if ( clear )
+			ImageCache.clear();
+
+		configure( MeshCache.diskCache(), cacheMeshes );
+		configure( TableSchema.diskCache(), cacheTableSchemas );
+		configure( PlateIndex.diskCache(), cachePlateIndices );
+		configure( SitePyramidCache.diskCache(), cacheSitePyramids );
+		SitePyramidCache.setBuildEnabled( buildSitePyramids );
+	}
+
+	private void configure( DiskCache diskCache, boolean enabled )
+	{
+		diskCache.setEnabled( enabled );
+
+		if ( clear )
+		{
+			IJ.log( "Clearing the " + diskCache.getName() + " cache (" + diskCache.getNumBytes() / 1_000_000 + " MB) in " + diskCache.getDirectory() );
+			diskCache.clear();
+		}
+	}
+}
@@ -34,6 +34,7 @@ import bdv.viewer.SourceAndConverter;
 import ij.IJ;
 import net.imglib2.realtransform.AffineTransform3D;
 import org.embl.mobie.lib.data.DataStore;
+import org.embl.mobie.lib.data.ImageCache;
 import org.embl.mobie.MoBIE;
 import org.embl.mobie.lib.data.ProjectType;
 import org.embl.mobie.command.widget.SelectableImages;
@@ -241,6 +242,10 @@ public abstract class AbstractTransformationCommand extends DynamicCommand imple
                 .map( sac -> ( TransformedSource< ? > ) sac.getSpimSource() )
                 .collect( Collectors.toSet() );
 
+        // the sources are transformed in place, at least while previewing,
+        // thus the images can not be reused as they were created
+        movingImages.forEach( ImageCache::invalidate );
+
         movingSourcesToInitialTransform = new HashMap<>();
         for ( TransformedSource< ? > movingSource : movingSources )
         {
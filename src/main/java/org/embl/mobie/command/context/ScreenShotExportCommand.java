@@ -0,0 +1,75 @@
+/*-
+ * #%L
+ * Fiji viewer for MoBIE projects
+ * %%
+ * Copyright (C) 2018 - 2024 EMBL
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.embl.mobie.command.context;
+
+import ij.IJ;
+import org.embl.mobie.MoBIE;
+import org.embl.mobie.command.CommandConstants;
+import org.embl.mobie.lib.bdv.ScreenShotExporter;
+import org.embl.mobie.lib.bdv.ScreenShotMaker;
+import org.scijava.plugin.Parameter;
+import org.scijava.plugin.Plugin;
+import sc.fiji.bdvpg.scijava.command.BdvPlaygroundActionCommand;
+
+import java.io.File;
+import java.util.Arrays;
+
+// write the screenshot block-wise to disk, for screenshots that do not fit into memory
+@Plugin(type = BdvPlaygroundActionCommand.class, menuPath = CommandConstants.CONTEXT_MENU_ITEMS_ROOT + "Export Screenshot Stack")
+public class ScreenShotExportCommand extends ScreenShotStackMakerCommand
+{
+    static
+    {
+        net.imagej.patcher.LegacyInjector.preinit();
+    }
+
+    @Parameter( label = "Output OME-Zarr",
+            description = "The RGB rendering is written next to it, with \"" + ScreenShotExporter.RGB_SUFFIX + "\" appended to the name.",
+            style = "save" )
+    public File outputFile;
+
+    @Override
+    public void run()
+    {
+        if ( MoBIE.getInstance().getSettings().values.isOpenedFromCLI() )
+            MoBIE.imageJ.ui().showUI();
+
+        ScreenShotExporter exporter = new ScreenShotExporter( bdvHandle, pixelUnit );
+        exporter.run( outputFile.getAbsolutePath(), targetSamplingInXY, targetSamplingInZ, numSlices );
+    }
+
+    // callback
+    @Override
+    protected void showNumPixels()
+    {
+        // the export is written block-wise, thus there is no memory limit
+        final long[] sizeInPixels = ScreenShotMaker.getCaptureImageSizeInPixels( bdvHandle, targetSamplingInXY, numSlices );
+        IJ.log( CAPTURE_SIZE_PIXELS + Arrays.toString( sizeInPixels ) );
+    }
+}
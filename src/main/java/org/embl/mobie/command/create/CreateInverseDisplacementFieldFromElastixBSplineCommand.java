@@ -22,6 +22,7 @@ import java.io.File;
 import java.time.Instant;
 import java.util.Arrays;
 import java.util.Random;
+import java.util.concurrent.CancellationException;
 
 @Plugin(type = Command.class, menuPath = CommandConstants.MOBIE_PLUGIN_ROOT + "Create>Create Inverse Displacement Field From Elastix BSpline..." )
 public class CreateInverseDisplacementFieldFromElastixBSplineCommand implements Command
@@ -91,27 +92,49 @@ public class CreateInverseDisplacementFieldFromElastixBSplineCommand implements
 					.toArray();
 
 			final long start = System.currentTimeMillis();
-			IJ.log( "Sampling inverse displacement field..." );
+			IJ.log( "Sampling inverse displacement field (press Esc to cancel)..." );
+			IJ.resetEscape();
 			final int[] milestones = new int[] { 0, 20, 40, 60, 80, 100 };
 			final int[] nextMilestoneIndex = new int[] { 0 };
 			IJ.log( "Sampling progress: 0%" );
-			final InverseDisplacementFieldTransformCreator.SampledInverseDisplacement sampled =
-					new InverseDisplacementFieldTransformCreator(
-							forward,
-							min,
-							max,
-							samplingSpacing,
-							optimizerMaxStep,
-							optimizerTolerance,
-							optimizerMaxIterations
-					).sampleInverseDisplacement( percent -> {
+			final InverseDisplacementFieldTransformCreator.SampledInverseDisplacement sampled;
+			try
+			{
+				sampled = new InverseDisplacementFieldTransformCreator(
+						forward,
+						min,
+						max,
+						samplingSpacing,
+						optimizerMaxStep,
+						optimizerTolerance,
+						optimizerMaxIterations
+				).sampleInverseDisplacement( new InverseDisplacementFieldTransformCreator.ProgressListener()
+				{
+					@Override
+					public void onProgress( int percent )
+					{
+						IJ.showProgress( percent, 100 );
 						while ( nextMilestoneIndex[ 0 ] < milestones.length && percent >= milestones[ nextMilestoneIndex[ 0 ] ] )
 						{
 							final int milestone = milestones[ nextMilestoneIndex[ 0 ]++ ];
 							if ( milestone != 0 )
 								IJ.log( "Sampling progress: " + milestone + "%" );
 						}
-					} );
+					}
+
+					@Override
+					public boolean isCancelled()
+					{
+						return IJ.escapePressed();
+					}
+				} );
+			}
+			catch ( CancellationException e )
+			{
+				IJ.showProgress( 1.0 );
+				IJ.log( "Sampling of the inverse displacement field has been cancelled; nothing was saved." );
+				return;
+			}
 
 			final DisplacementFieldTransform inverse = new DisplacementFieldTransform(
 					sampled.interleavedField,
@@ -28,11 +28,12 @@
  */
 package org.embl.mobie.lib.annotation;
 
+import gnu.trove.map.hash.TIntObjectHashMap;
 import org.embl.mobie.lib.table.AnnData;
 
-import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 public class DefaultAnnotationAdapter< A extends Annotation > implements AnnotationAdapter< A >
@@ -40,7 +41,11 @@ public class DefaultAnnotationAdapter< A extends Annotation > implements Annotat
 	private final AtomicBoolean throwError = new AtomicBoolean( true );
 	private final AnnData< A > annData;
 	private final String source;
-	private Map< String, A > stlToAnnotation; // source, timepoint, label
+
+	// source => timepoint => label => annotation
+	// The index is only written in init() and afterwards read
+	// concurrently by the render threads, without locking.
+	private volatile Map< String, TIntObjectHashMap< LabelToAnnotation< A > > > index;
 
 	public DefaultAnnotationAdapter( AnnData< A > annData )
 	{
@@ -64,8 +69,11 @@ public class DefaultAnnotationAdapter< A extends Annotation > implements Annotat
 	// This is for mapping voxels within an
 	// {@code AnnotatedLabelSource}
 	// to the corresponding annotation.
+	//
+	// This is called for every rendered voxel, thus it
+	// must neither allocate nor lock.
 	@Override
-	public synchronized A getAnnotation( String source, final int timePoint, final int label, final boolean reportMissingAnnotation )
+	public A getAnnotation( String source, final int timePoint, final int label, final boolean reportMissingAnnotation )
 	{
 		if ( label == 0 )
 		{
@@ -81,8 +89,7 @@ public class DefaultAnnotationAdapter< A extends Annotation > implements Annotat
 			source = this.source;
 		}
 
-		final String stl = createKey( source, timePoint, label );
-		final A annotation = stlToAnnotation.get( stl );
+		final A annotation = lookup( source, timePoint, label );
 
 		if ( annotation == null && reportMissingAnnotation )
 		{
@@ -99,20 +106,118 @@ public class DefaultAnnotationAdapter< A extends Annotation > implements Annotat
 		return annotation;
 	}
 
+	private A lookup( String source, int timePoint, int label )
+	{
+		final TIntObjectHashMap< LabelToAnnotation< A > > timePointToLabels = index.get( source );
+		if ( timePointToLabels == null ) return null;
+
+		final LabelToAnnotation< A > labelToAnnotation = timePointToLabels.get( timePoint );
+		if ( labelToAnnotation == null ) return null;
+
+		return labelToAnnotation.get( label );
+	}
+
 	@Override
 	public void init()
 	{
-		stlToAnnotation = new ConcurrentHashMap<>();
-		final Iterator< A > iterator = annData.getTable().annotations().iterator();
-		while( iterator.hasNext() )
+		// group the annotations by source and timepoint
+		final Map< String, TIntObjectHashMap< ArrayList< A > > > grouped = new HashMap<>();
+		for ( A annotation : annData.getTable().annotations() )
 		{
-			A annotation = iterator.next();
-			stlToAnnotation.put( createKey( annotation.source(), annotation.timePoint(), annotation.label() ), annotation );
+			TIntObjectHashMap< ArrayList< A > > timePointToAnnotations = grouped.get( annotation.source() );
+			if ( timePointToAnnotations == null )
+			{
+				timePointToAnnotations = new TIntObjectHashMap<>();
+				grouped.put( annotation.source(), timePointToAnnotations );
+			}
+
+			ArrayList< A > annotations = timePointToAnnotations.get( annotation.timePoint() );
+			if ( annotations == null )
+			{
+				annotations = new ArrayList<>();
+				timePointToAnnotations.put( annotation.timePoint(), annotations );
+			}
+
+			annotations.add( annotation );
 		}
+
+		// build one label index per source and timepoint
+		final Map< String, TIntObjectHashMap< LabelToAnnotation< A > > > index = new HashMap<>();
+		for ( Map.Entry< String, TIntObjectHashMap< ArrayList< A > > > entry : grouped.entrySet() )
+		{
+			final TIntObjectHashMap< LabelToAnnotation< A > > timePointToLabels = new TIntObjectHashMap<>();
+			entry.getValue().forEachEntry( ( timePoint, annotations ) ->
+			{
+				timePointToLabels.put( timePoint, LabelToAnnotation.create( annotations ) );
+				return true;
+			} );
+			index.put( entry.getKey(), timePointToLabels );
+		}
+
+		this.index = index;
 	}
 
-	private String createKey( String source, int timePoint, int label )
+	/**
+	 * Maps the integer labels of one source and timepoint to their annotations.
+	 *
+	 * If the labels are compact, a dense array (offset by the minimal label)
+	 * is used, otherwise a primitive hash map.
+	 */
+	static class LabelToAnnotation< A extends Annotation >
 	{
-		return source + ";" + timePoint + ";" + label;
+		// allow up to this many empty array slots per annotation
+		// before falling back to a hash map
+		private static final int MAX_SPARSITY = 4;
+
+		private final int minLabel;
+		private final Object[] dense;
+		private final TIntObjectHashMap< A > sparse;
+
+		private LabelToAnnotation( int minLabel, Object[] dense, TIntObjectHashMap< A > sparse )
+		{
+			this.minLabel = minLabel;
+			this.dense = dense;
+			this.sparse = sparse;
+		}
+
+		static < A extends Annotation > LabelToAnnotation< A > create( ArrayList< A > annotations )
+		{
+			int minLabel = Integer.MAX_VALUE;
+			int maxLabel = Integer.MIN_VALUE;
+			for ( A annotation : annotations )
+			{
+				minLabel = Math.min( minLabel, annotation.label() );
+				maxLabel = Math.max( maxLabel, annotation.label() );
+			}
+
+			final long range = ( long ) maxLabel - minLabel + 1;
+			if ( range <= ( long ) MAX_SPARSITY * annotations.size() && range < Integer.MAX_VALUE - 8 )
+			{
+				final Object[] dense = new Object[ ( int ) range ];
+				for ( A annotation : annotations )
+					dense[ annotation.label() - minLabel ] = annotation;
+				return new LabelToAnnotation<>( minLabel, dense, null );
+			}
+			else
+			{
+				final TIntObjectHashMap< A > sparse = new TIntObjectHashMap<>( annotations.size() );
+				for ( A annotation : annotations )
+					sparse.put( annotation.label(), annotation );
+				return new LabelToAnnotation<>( minLabel, null, sparse );
+			}
+		}
+
+		@SuppressWarnings( "unchecked" )
+		A get( int label )
+		{
+			if ( dense != null )
+			{
+				final long i = ( long ) label - minLabel;
+				if ( i < 0 || i >= dense.length ) return null;
+				return ( A ) dense[ ( int ) i ];
+			}
+
+			return sparse.get( label );
+		}
 	}
 }
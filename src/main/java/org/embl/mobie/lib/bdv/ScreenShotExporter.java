@@ -0,0 +1,507 @@
+/*-
+ * #%L
+ * Fiji viewer for MoBIE projects
+ * %%
+ * Copyright (C) 2018 - 2024 EMBL
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.embl.mobie.lib.bdv;
+
+import bdv.util.BdvHandle;
+import bdv.viewer.Interpolation;
+import bdv.viewer.SourceAndConverter;
+import ij.IJ;
+import net.imglib2.Cursor;
+import net.imglib2.Interval;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.algorithm.util.Grids;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.realtransform.AffineTransform3D;
+import net.imglib2.type.Type;
+import net.imglib2.type.logic.BitType;
+import net.imglib2.type.numeric.ARGBType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedIntType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.util.Intervals;
+import net.imglib2.view.Views;
+import org.embl.mobie.lib.bdv.blend.MoBIEAccumulateProjectorARGB;
+import org.embl.mobie.lib.data.DataStore;
+import org.embl.mobie.lib.image.RegionAnnotationImage;
+import org.embl.mobie.lib.source.AnnotationType;
+import org.embl.mobie.lib.util.MoBIEHelper;
+import org.embl.mobie.lib.util.ThreadHelper;
+import org.janelia.saalfeldlab.n5.ByteArrayDataBlock;
+import org.janelia.saalfeldlab.n5.DataBlock;
+import org.janelia.saalfeldlab.n5.DataType;
+import org.janelia.saalfeldlab.n5.DatasetAttributes;
+import org.janelia.saalfeldlab.n5.FloatArrayDataBlock;
+import org.janelia.saalfeldlab.n5.GzipCompression;
+import org.janelia.saalfeldlab.n5.IntArrayDataBlock;
+import org.janelia.saalfeldlab.n5.N5Writer;
+import org.janelia.saalfeldlab.n5.ShortArrayDataBlock;
+import org.janelia.saalfeldlab.n5.zarr.N5ZarrWriter;
+import sc.fiji.bdvpg.bdv.BdvHandleHelper;
+import sc.fiji.bdvpg.services.SourceAndConverterServices;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static sc.fiji.bdvpg.bdv.BdvHandleHelper.getViewerVoxelSpacing;
+
+/**
+ * Renders the current view, like {@link ScreenShotStackMaker}, but block by
+ * block, writing each block directly to disk instead of collecting the
+ * whole screenshot in memory. Thus, the size of the screenshot is only
+ * limited by the disk space.
+ *
+ * Two OME-Zarr images are written:
+ * the raw values of the images, one channel per image, and
+ * the RGB rendering of all images, as three 8-bit channels.
+ *
+ * The blocks are rendered in parallel; at any time, only the blocks
+ * that are currently rendered are kept in memory.
+ * The export can be cancelled with {@link #cancel()} or by pressing Esc.
+ */
+public class ScreenShotExporter
+{
+    static { net.imagej.patcher.LegacyInjector.preinit(); }
+
+    public static final String RGB_SUFFIX = "-rgb";
+    private static final String OME_ZARR = ".ome.zarr";
+    private static final String DATASET = "s0";
+
+    private final BdvHandle bdvHandle;
+    private final String voxelUnit;
+    private volatile boolean isCancelled;
+
+    public ScreenShotExporter( BdvHandle bdvHandle, String voxelUnit )
+    {
+        this.bdvHandle = bdvHandle;
+        this.voxelUnit = voxelUnit;
+    }
+
+    public void cancel()
+    {
+        isCancelled = true;
+    }
+
+    public boolean isCancelled()
+    {
+        return isCancelled || IJ.escapePressed();
+    }
+
+    public boolean run( String outputPath, double targetSamplingInXY, double targetSamplingInZ, int numSlices )
+    {
+        List< SourceAndConverter< ? > > sacs = MoBIEHelper.getVisibleImageSacs( bdvHandle );
+        return run( sacs, outputPath, targetSamplingInXY, targetSamplingInZ, numSlices );
+    }
+
+    /**
+     * @param outputPath
+     *          the path of the OME-Zarr with the raw values; the RGB rendering
+     *          is written next to it, with {@link #RGB_SUFFIX} appended to the name
+     * @return false if the export has been cancelled
+     */
+    public boolean run(
+            List< SourceAndConverter< ? > > sacs,
+            String outputPath,
+            double targetSamplingInXY,
+            double targetSamplingInZ,
+            int numSlices )
+    {
+        if ( sacs.isEmpty() )
+        {
+            IJ.log( "No screen shot exported, as there were no images." );
+            return true;
+        }
+
+        isCancelled = false;
+        IJ.resetEscape();
+
+        final int timePoint = bdvHandle.getViewerPanel().state().getCurrentTimepoint();
+        final AffineTransform3D targetToGlobalTransform = getTargetToGlobalTransform( targetSamplingInXY, targetSamplingInZ );
+        final Interpolation interpolation = bdvHandle.getViewerPanel().state().getInterpolation();
+
+        final long[] captureSizeXY = ScreenShotStackMaker.getCaptureImageSizeInPixelsXY( bdvHandle, targetSamplingInXY );
+        final long[] dimensions = { captureSizeXY[ 0 ], captureSizeXY[ 1 ], numSlices };
+        final int[] blockSize = numSlices == 1 ? new int[]{ 512, 512, 1 } : new int[]{ 256, 256, Math.min( 16, numSlices ) };
+        final List< Interval > blocks = Grids.collectAllContainedIntervals( dimensions, blockSize );
+
+        // the raw values are only exported for images with data,
+        // all images contribute to the RGB rendering
+        final List< SourceAndConverter< ? > > dataSacs = sacs.stream()
+                .filter( sac -> !( DataStore.sourceToImage().get( sac ) instanceof RegionAnnotationImage ) )
+                .collect( Collectors.toList() );
+        // the types of the sources rather than of the underlying label images,
+        // as the sampler writes the labels of the annotations
+        final DataType dataType = getDataType( dataSacs.stream()
+                .map( sac -> ( Type< ? > ) sac.getSpimSource().getType() )
+                .collect( Collectors.toList() ) );
+
+        final List< ScreenShotSampler > samplers = sacs.stream()
+                .map( sac -> new ScreenShotSampler( sac, timePoint, targetSamplingInXY, targetToGlobalTransform, interpolation ) )
+                .collect( Collectors.toList() );
+        final boolean[] alphaBlending = MoBIEAccumulateProjectorARGB.getAlphaBlending( sacs );
+        final boolean[] andBlending = MoBIEAccumulateProjectorARGB.getAndBlending( sacs );
+        final int[] order = MoBIEAccumulateProjectorARGB.getOrder( sacs );
+
+        final String basePath = outputPath.replaceAll( "(" + OME_ZARR + "|\\.zarr)$", "" );
+        final double[] scale = { targetSamplingInXY, targetSamplingInXY, targetSamplingInZ };
+        final N5Writer rawWriter = dataSacs.isEmpty() ? null : createOMEZarr( basePath + OME_ZARR, dimensions, blockSize, dataSacs.size(), dataType, scale, getChannels( dataSacs ) );
+        final N5Writer rgbWriter = createOMEZarr( basePath + RGB_SUFFIX + OME_ZARR, dimensions, blockSize, 3, DataType.UINT8, scale, getRGBChannels() );
+        final DatasetAttributes rawAttributes = rawWriter == null ? null : getDatasetAttributes( rawWriter );
+        final DatasetAttributes rgbAttributes = getDatasetAttributes( rgbWriter );
+
+        final AtomicInteger numBlocksDone = new AtomicInteger();
+        final String progress = "Exporting " + dimensions[ 0 ] + " x " + dimensions[ 1 ] + " x " + dimensions[ 2 ] + " pixels to " + basePath + OME_ZARR + ": ";
+        IJ.log( progress + "0%" );
+
+        final ArrayList< Future< ? > > futures = ThreadHelper.getFutures();
+        for ( Interval block : blocks )
+        {
+            futures.add( ThreadHelper.executorService.submit( () ->
+            {
+                if ( isCancelled() ) return;
+
+                exportBlock( block, blockSize, samplers, sacs, dataSacs, dataType, alphaBlending, andBlending, order, rawWriter, rawAttributes, rgbWriter, rgbAttributes );
+
+                final int numDone = numBlocksDone.incrementAndGet();
+                IJ.showProgress( numDone, blocks.size() );
+                IJ.log( "\\Update:" + progress + ( 100 * numDone / blocks.size() ) + "%" );
+            } ) );
+        }
+
+        waitUntilFinishedOrCancelled( futures );
+
+        if ( isCancelled() )
+        {
+            IJ.log( "Export cancelled; the OME-Zarr images are incomplete." );
+            return false;
+        }
+
+        IJ.log( "Exported screenshot: " + ( rawWriter == null ? "" : basePath + OME_ZARR + ", " ) + basePath + RGB_SUFFIX + OME_ZARR );
+        return true;
+    }
+
+    private AffineTransform3D getTargetToGlobalTransform( double targetSamplingInXY, double targetSamplingInZ )
+    {
+        // target canvas to viewer canvas...
+        final AffineTransform3D targetToGlobalTransform = new AffineTransform3D();
+        final double viewerVoxelSpacing = getViewerVoxelSpacing( bdvHandle );
+        final double targetXYToViewer = targetSamplingInXY / viewerVoxelSpacing;
+        final double targetZToViewer = targetSamplingInZ / viewerVoxelSpacing;
+        targetToGlobalTransform.scale( targetXYToViewer, targetXYToViewer, targetZToViewer );
+        // ...viewer canvas to global
+        targetToGlobalTransform.preConcatenate( bdvHandle.getViewerPanel().state().getViewerTransform().inverse() );
+        return targetToGlobalTransform;
+    }
+
+    private void exportBlock(
+            Interval block,
+            int[] blockSize,
+            List< ScreenShotSampler > samplers,
+            List< SourceAndConverter< ? > > sacs,
+            List< SourceAndConverter< ? > > dataSacs,
+            DataType dataType,
+            boolean[] alphaBlending,
+            boolean[] andBlending,
+            int[] order,
+            N5Writer rawWriter,
+            DatasetAttributes rawAttributes,
+            N5Writer rgbWriter,
+            DatasetAttributes rgbAttributes )
+    {
+        final long[] min = Intervals.minAsLongArray( block );
+        final long[] dimensions = Intervals.dimensionsAsLongArray( block );
+        final int[] size = Intervals.dimensionsAsIntArray( block );
+        final int numPixels = ( int ) Intervals.numElements( block );
+        final long[] gridPosition = new long[ 4 ];
+        for ( int d = 0; d < 3; d++ )
+            gridPosition[ d ] = min[ d ] / blockSize[ d ];
+        final int[] channelBlockSize = { size[ 0 ], size[ 1 ], size[ 2 ], 1 };
+
+        final List< RandomAccessibleInterval< ARGBType > > argbs = new ArrayList<>();
+        for ( int i = 0; i < sacs.size(); i++ )
+        {
+            if ( isCancelled() ) return;
+
+            final SourceAndConverter< ? > sac = sacs.get( i );
+            final int channel = dataSacs.indexOf( sac );
+
+            final Object data = channel < 0 ? null : createArray( dataType, numPixels );
+            final RandomAccessibleInterval< ? extends RealType< ? > > real = channel < 0 ? null : Views.translate( wrap( data, dimensions ), min );
+            final RandomAccessibleInterval< BitType > mask = Views.translate( ArrayImgs.bits( dimensions ), min );
+            final RandomAccessibleInterval< ARGBType > argb = Views.translate( ArrayImgs.argbs( dimensions ), min );
+            samplers.get( i ).sample( block, real, mask, argb, numSampled -> {} );
+            argbs.add( argb );
+
+            if ( channel >= 0 )
+            {
+                gridPosition[ 3 ] = channel;
+                writeBlock( rawWriter, rawAttributes, createDataBlock( dataType, channelBlockSize, gridPosition.clone(), data ) );
+            }
+        }
+
+        // blend the colors of all images, as in the viewer
+        final byte[][] rgb = new byte[ 3 ][ numPixels ];
+        final Cursor< ARGBType >[] cursors = new Cursor[ argbs.size() ];
+        for ( int i = 0; i < argbs.size(); i++ )
+            cursors[ i ] = Views.flatIterable( argbs.get( i ) ).cursor();
+        for ( int p = 0; p < numPixels; p++ )
+        {
+            for ( Cursor< ARGBType > cursor : cursors )
+                cursor.fwd();
+            final int argbIndex = MoBIEAccumulateProjectorARGB.getArgbIndex( cursors, alphaBlending, andBlending, order );
+            rgb[ 0 ][ p ] = ( byte ) ARGBType.red( argbIndex );
+            rgb[ 1 ][ p ] = ( byte ) ARGBType.green( argbIndex );
+            rgb[ 2 ][ p ] = ( byte ) ARGBType.blue( argbIndex );
+        }
+
+        for ( int c = 0; c < 3; c++ )
+        {
+            gridPosition[ 3 ] = c;
+            writeBlock( rgbWriter, rgbAttributes, new ByteArrayDataBlock( channelBlockSize, gridPosition.clone(), rgb[ c ] ) );
+        }
+    }
+
+    private void waitUntilFinishedOrCancelled( List< Future< ? > > futures )
+    {
+        for ( Future< ? > future : futures )
+        {
+            try
+            {
+                while ( true )
+                {
+                    try
+                    {
+                        future.get( 500, TimeUnit.MILLISECONDS );
+                        break;
+                    }
+                    catch ( TimeoutException e )
+                    {
+                        if ( isCancelled() )
+                        {
+                            isCancelled = true;
+                            futures.forEach( f -> f.cancel( false ) );
+                        }
+                    }
+                }
+            }
+            catch ( CancellationException e )
+            {
+                // cancelled by the user
+            }
+            catch ( InterruptedException | ExecutionException e )
+            {
+                futures.forEach( f -> f.cancel( false ) );
+                throw new RuntimeException( e );
+            }
+        }
+    }
+
+    private static DataType getDataType( List< Type< ? > > types )
+    {
+        if ( types.stream().allMatch( t -> t instanceof UnsignedByteType ) )
+            return DataType.UINT8;
+        else if ( types.stream().allMatch( t -> ( t instanceof UnsignedShortType ) || ( t instanceof UnsignedByteType ) ) )
+            return DataType.UINT16;
+        else if ( types.stream().allMatch( t -> ( t instanceof AnnotationType ) || ( t instanceof UnsignedIntType ) || ( t instanceof UnsignedShortType ) || ( t instanceof UnsignedByteType ) ) )
+            return DataType.UINT32; // labels
+        else
+            return DataType.FLOAT32;
+    }
+
+    private static Object createArray( DataType dataType, int numPixels )
+    {
+        switch ( dataType )
+        {
+            case UINT8: return new byte[ numPixels ];
+            case UINT16: return new short[ numPixels ];
+            case UINT32: return new int[ numPixels ];
+            default: return new float[ numPixels ];
+        }
+    }
+
+    private static RandomAccessibleInterval< ? extends RealType< ? > > wrap( Object data, long[] dimensions )
+    {
+        if ( data instanceof byte[] )
+            return ArrayImgs.unsignedBytes( ( byte[] ) data, dimensions );
+        else if ( data instanceof short[] )
+            return ArrayImgs.unsignedShorts( ( short[] ) data, dimensions );
+        else if ( data instanceof int[] )
+            return ArrayImgs.unsignedInts( ( int[] ) data, dimensions );
+        else
+            return ArrayImgs.floats( ( float[] ) data, dimensions );
+    }
+
+    private static DataBlock< ? > createDataBlock( DataType dataType, int[] size, long[] gridPosition, Object data )
+    {
+        switch ( dataType )
+        {
+            case UINT8: return new ByteArrayDataBlock( size, gridPosition, ( byte[] ) data );
+            case UINT16: return new ShortArrayDataBlock( size, gridPosition, ( short[] ) data );
+            case UINT32: return new IntArrayDataBlock( size, gridPosition, ( int[] ) data );
+            default: return new FloatArrayDataBlock( size, gridPosition, ( float[] ) data );
+        }
+    }
+
+    private static DatasetAttributes getDatasetAttributes( N5Writer writer )
+    {
+        try
+        {
+            return writer.getDatasetAttributes( DATASET );
+        }
+        catch ( Exception e )
+        {
+            throw new RuntimeException( e );
+        }
+    }
+
+    private static void writeBlock( N5Writer writer, DatasetAttributes attributes, DataBlock< ? > dataBlock )
+    {
+        try
+        {
+            writer.writeBlock( DATASET, attributes, dataBlock );
+        }
+        catch ( Exception e )
+        {
+            throw new RuntimeException( e );
+        }
+    }
+
+    /**
+     * Creates an OME-Zarr (v0.4) image with a single resolution level,
+     * with the axes c, z, y, x.
+     */
+    private N5Writer createOMEZarr(
+            String path,
+            long[] dimensions,
+            int[] blockSize,
+            int numChannels,
+            DataType dataType,
+            double[] scale,
+            List< Map< String, Object > > channels )
+    {
+        try
+        {
+            final N5Writer writer = new N5ZarrWriter( path );
+
+            // N5 orders the dimensions x, y, z, c, which is c, z, y, x in Zarr
+            writer.createDataset(
+                    DATASET,
+                    new long[]{ dimensions[ 0 ], dimensions[ 1 ], dimensions[ 2 ], numChannels },
+                    new int[]{ blockSize[ 0 ], blockSize[ 1 ], blockSize[ 2 ], 1 },
+                    dataType,
+                    new GzipCompression() );
+
+            final List< Map< String, Object > > axes = new ArrayList<>();
+            axes.add( axis( "c", "channel", null ) );
+            axes.add( axis( "z", "space", voxelUnit ) );
+            axes.add( axis( "y", "space", voxelUnit ) );
+            axes.add( axis( "x", "space", voxelUnit ) );
+
+            final Map< String, Object > transformation = new LinkedHashMap<>();
+            transformation.put( "type", "scale" );
+            transformation.put( "scale", new double[]{ 1.0, scale[ 2 ], scale[ 1 ], scale[ 0 ] } );
+
+            final Map< String, Object > dataset = new LinkedHashMap<>();
+            dataset.put( "path", DATASET );
+            dataset.put( "coordinateTransformations", Collections.singletonList( transformation ) );
+
+            final Map< String, Object > multiscale = new LinkedHashMap<>();
+            multiscale.put( "version", "0.4" );
+            multiscale.put( "axes", axes );
+            multiscale.put( "datasets", Collections.singletonList( dataset ) );
+
+            final Map< String, Object > omero = new LinkedHashMap<>();
+            omero.put( "channels", channels );
+
+            writer.setAttribute( "", "multiscales", Collections.singletonList( multiscale ) );
+            writer.setAttribute( "", "omero", omero );
+
+            return writer;
+        }
+        catch ( Exception e )
+        {
+            throw new RuntimeException( "Could not create " + path, e );
+        }
+    }
+
+    private static Map< String, Object > axis( String name, String type, String unit )
+    {
+        final Map< String, Object > axis = new LinkedHashMap<>();
+        axis.put( "name", name );
+        axis.put( "type", type );
+        if ( unit != null ) axis.put( "unit", unit );
+        return axis;
+    }
+
+    private static List< Map< String, Object > > getChannels( List< SourceAndConverter< ? > > sacs )
+    {
+        final List< Map< String, Object > > channels = new ArrayList<>();
+        for ( SourceAndConverter< ? > sac : sacs )
+        {
+            final double[] displayRange = BdvHandleHelper.getDisplayRange( SourceAndConverterServices.getSourceAndConverterService().getConverterSetup( sac ) );
+            channels.add( channel( sac.getSpimSource().getName(), "FFFFFF", displayRange[ 0 ], displayRange[ 1 ] ) );
+        }
+        return channels;
+    }
+
+    private static List< Map< String, Object > > getRGBChannels()
+    {
+        final List< Map< String, Object > > channels = new ArrayList<>();
+        channels.add( channel( "red", "FF0000", 0, 255 ) );
+        channels.add( channel( "green", "00FF00", 0, 255 ) );
+        channels.add( channel( "blue", "0000FF", 0, 255 ) );
+        return channels;
+    }
+
+    private static Map< String, Object > channel( String label, String color, double start, double end )
+    {
+        final Map< String, Object > window = new LinkedHashMap<>();
+        window.put( "start", start );
+        window.put( "end", end );
+        window.put( "min", start );
+        window.put( "max", end );
+
+        final Map< String, Object > channel = new LinkedHashMap<>();
+        channel.put( "label", label );
+        channel.put( "color", color );
+        channel.put( "active", true );
+        channel.put( "window", window );
+        return channel;
+    }
+}
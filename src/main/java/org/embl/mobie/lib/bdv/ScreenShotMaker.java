@@ -43,7 +43,6 @@ import ij.plugin.filter.ThresholdToSelection;
 import ij.process.LUT;
 import net.imglib2.*;
 import net.imglib2.Cursor;
-import net.imglib2.roi.geom.real.WritableBox;
 import net.imglib2.type.Type;
 import net.imglib2.type.logic.BitType;
 import net.imglib2.type.numeric.integer.UnsignedByteType;
@@ -53,20 +52,15 @@ import org.embl.mobie.lib.image.RegionAnnotationImage;
 import org.embl.mobie.lib.util.Corners;
 import org.embl.mobie.lib.util.MoBIEHelper;
 import org.embl.mobie.lib.util.ThreadHelper;
-import org.embl.mobie.lib.annotation.Annotation;
 import org.embl.mobie.lib.bdv.blend.MoBIEAccumulateProjectorARGB;
 import net.imglib2.algorithm.util.Grids;
-import net.imglib2.converter.Converter;
 import net.imglib2.img.array.ArrayImgs;
 import net.imglib2.img.display.imagej.ImageJFunctions;
 import net.imglib2.realtransform.AffineTransform3D;
 import net.imglib2.type.numeric.ARGBType;
 import net.imglib2.type.numeric.RealType;
-import net.imglib2.view.IntervalView;
 import net.imglib2.view.Views;
 import org.embl.mobie.lib.source.label.AnnotatedLabelSource;
-import org.embl.mobie.lib.source.AnnotationType;
-import org.embl.mobie.lib.source.SourceHelper;
 import sc.fiji.bdvpg.bdv.BdvHandleHelper;
 import sc.fiji.bdvpg.services.SourceAndConverterServices;
 
@@ -75,7 +69,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.Future;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 import static sc.fiji.bdvpg.bdv.BdvHandleHelper.getLevel;
@@ -201,20 +195,15 @@ public class ScreenShotMaker
             final RandomAccessibleInterval< ARGBType > argbRAI
                     = ArrayImgs.argbs( screenshotDimensions[ 0 ], screenshotDimensions[ 1 ]  );
 
-            Source< ? > source = sac.getSpimSource();
-            final Converter< ?, ? > converter = sac.getConverter();
             double[] displayRange = BdvHandleHelper.getDisplayRange( SourceAndConverterServices.getSourceAndConverterService().getConverterSetup( sac ) );
-            final int level = getLevel( source, targetVoxelSpacing );
-            final AffineTransform3D sourceTransform = BdvHandleHelper.getSourceTransform( source, timePoint, level );
-
-            // global to source
-            AffineTransform3D targetCanvasToSourceTransform = canvasToGlobalTransform.copy();
-            AffineTransform3D globalToSource = sourceTransform.inverse();
-            targetCanvasToSourceTransform.preConcatenate( globalToSource );
-
-            boolean interpolate = ! ( source.getType() instanceof AnnotationType );
-
-            final AtomicInteger pixelCount = new AtomicInteger();
+            final ScreenShotSampler sampler = new ScreenShotSampler(
+                    sac,
+                    timePoint,
+                    targetVoxelSpacing,
+                    canvasToGlobalTransform,
+                    bdvHandle.getViewerPanel().state().getInterpolation() );
+
+            final AtomicLong pixelCount = new AtomicLong();
             final AtomicDouble fractionDone = new AtomicDouble( 0.2 );
             ArrayList< Future< ? > > futures = ThreadHelper.getFutures();
 
@@ -226,56 +215,10 @@ public class ScreenShotMaker
                 (
                     ThreadHelper.ioExecutorService.submit( () ->
                     {
-                        RealRandomAccess< ? extends Type< ? > > sourceAccess = getRealRandomAccess( ( Source< Type< ? > > ) source, timePoint, level, interpolate );
-                        WritableBox sourceMask = SourceHelper.estimateDataMask( source, timePoint, level, true );
-                        //RandomAccessibleInterval< ? > sourceInterval = source.getSource( currentTimepoint, level );
-
-                        // to collect raw data
-                        final IntervalView< ? extends RealType< ? >  > realCrop = Views.interval( realRAI, interval );
-                        final Cursor< ? extends RealType< ? >  > targetCursor = Views.iterable( realCrop ).localizingCursor();
-                        final RandomAccess< ? extends RealType< ? >  > targetAccess = realCrop.randomAccess();
-
-                        // to collect masks
-                        final RandomAccess< BitType > maskAccess = Views.interval( maskRAI, interval ).randomAccess();
-
-                        // to collect colored data
-                        final RandomAccess< ARGBType > argbAccess = Views.interval( argbRAI, interval ).randomAccess();
-
-                        final double[] canvasPosition = new double[ 3 ];
-                        final double[] sourceRealPosition = new double[ 3 ];
-
-                        final ARGBType argbType = new ARGBType();
-
-                        // iterate through the target image in pixel units
-                        while ( targetCursor.hasNext() )
+                        sampler.sample( interval, dataSacs.contains( sac ) ? realRAI : null, maskRAI, argbRAI, numSampled ->
                         {
-                            // set the positions
-                            targetCursor.fwd();
-                            targetCursor.localize( canvasPosition );
-                            targetAccess.setPosition( targetCursor );
-                            maskAccess.setPosition( targetCursor );
-                            argbAccess.setPosition( targetCursor );
-                            targetCanvasToSourceTransform.apply( canvasPosition, sourceRealPosition );
-                            sourceAccess.setPosition( sourceRealPosition );
-
-                            // set the pixel and mask values depending on whether the
-                            // pixel is within the source data
-                            if ( sourceMask.test( new RealPoint( sourceRealPosition ) ) )
-                            {
-                                maskAccess.get().set( true );
-                                setArgbPixelValue( converter, sourceAccess, argbAccess, argbType );
-
-                                if ( dataSacs.contains( sac ) )
-                                    setPixelValue( sourceAccess, targetAccess );
-                            }
-                            else
-                            {
-                                maskAccess.get().set( false );
-                            }
-
                             // log progress
-                            pixelCount.incrementAndGet();
-                            final double currentFractionDone = 1.0 * pixelCount.get() / numPixels;
+                            final double currentFractionDone = 1.0 * pixelCount.addAndGet( numSampled ) / numPixels;
                             if ( currentFractionDone >= fractionDone.get() )
                             {
                                 synchronized ( fractionDone )
@@ -290,7 +233,7 @@ public class ScreenShotMaker
                                     }
                                 }
                             }
-                        }
+                        } );
                     } )
                 );
             }
@@ -337,61 +280,6 @@ public class ScreenShotMaker
         return canvasToGlobalTransform;
     }
 
-    private void setArgbPixelValue( Converter converter, RealRandomAccess< ? > access, RandomAccess< ARGBType > argbCaptureAccess, ARGBType argbType )
-    {
-        final Object pixelValue = access.get();
-
-        if ( pixelValue instanceof ARGBType )
-            argbType.set( ( ARGBType ) pixelValue );
-        else
-            converter.convert( pixelValue, argbType );
-
-        argbCaptureAccess.get().set( argbType.get() );
-    }
-
-    private void setPixelValue(
-            RealRandomAccess< ? extends Type< ? > > sourceAccess,
-            RandomAccess< ? extends RealType< ? > > targetAccess )
-    {
-        final Type< ? > type = sourceAccess.get();
-        if ( type instanceof RealType )
-        {
-            double realDouble = ( ( RealType ) type ).getRealDouble();
-            targetAccess.get().setReal( realDouble );
-        }
-        else if ( type instanceof AnnotationType )
-        {
-            try
-            {
-                final Annotation annotation = ( Annotation ) ( ( AnnotationType< ? > ) type ).getAnnotation();
-                if ( annotation != null )
-                    targetAccess.get().setReal( annotation.label() );
-            }
-            catch ( Exception e )
-            {
-                throw new RuntimeException( e );
-            }
-        }
-        else
-        {
-            throw new UnsupportedOperationException( "Cannot render " + type.getClass() );
-        }
-    }
-
-    private RealRandomAccess< ? extends Type< ? > > getRealRandomAccess( Source< Type< ? > > source, int t, int level, boolean interpolate )
-    {
-        if ( interpolate )
-        {
-            Interpolation interpolation = bdvHandle.getViewerPanel().state().getInterpolation();
-            return source.getInterpolatedSource( t, level, interpolation ).realRandomAccess();
-        }
-        else
-        {
-            // e.g., for label masks we do not want to interpolate
-            return source.getInterpolatedSource( t, level, Interpolation.NEARESTNEIGHBOR ).realRandomAccess();
-        }
-    }
-
     private ImagePlus createRGBImagePlus(
             String physicalUnit,
             ArrayList< RandomAccessibleInterval< ARGBType > > argbSources,
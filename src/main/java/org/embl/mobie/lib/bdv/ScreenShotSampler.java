@@ -0,0 +1,204 @@
+/*-
+ * #%L
+ * Fiji viewer for MoBIE projects
+ * %%
+ * Copyright (C) 2018 - 2024 EMBL
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.embl.mobie.lib.bdv;
+
+import bdv.viewer.Interpolation;
+import bdv.viewer.Source;
+import bdv.viewer.SourceAndConverter;
+import net.imglib2.Cursor;
+import net.imglib2.Interval;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessible;
+import net.imglib2.RealPoint;
+import net.imglib2.RealRandomAccess;
+import net.imglib2.converter.Converter;
+import net.imglib2.realtransform.AffineTransform3D;
+import net.imglib2.roi.geom.real.WritableBox;
+import net.imglib2.type.Type;
+import net.imglib2.type.logic.BitType;
+import net.imglib2.type.numeric.ARGBType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.view.Views;
+import org.embl.mobie.lib.annotation.Annotation;
+import org.embl.mobie.lib.source.AnnotationType;
+import org.embl.mobie.lib.source.SourceHelper;
+import sc.fiji.bdvpg.bdv.BdvHandleHelper;
+
+import javax.annotation.Nullable;
+import java.util.function.LongConsumer;
+
+import static sc.fiji.bdvpg.bdv.BdvHandleHelper.getLevel;
+
+/**
+ * Samples one source for a screenshot: for each target pixel the raw value,
+ * whether it is within the data of the source, and the color as converted
+ * for display.
+ *
+ * Thread safe, such that the blocks of a screenshot can be sampled in parallel.
+ */
+class ScreenShotSampler
+{
+    private static final int PROGRESS_INTERVAL = 1024;
+
+    private final Source< ? > source;
+    private final Converter< ?, ? > converter;
+    private final int timePoint;
+    private final int level;
+    private final AffineTransform3D targetToSourceTransform;
+    private final Interpolation interpolation;
+
+    ScreenShotSampler(
+            SourceAndConverter< ? > sac,
+            int timePoint,
+            double targetSamplingInXY,
+            AffineTransform3D targetToGlobalTransform,
+            Interpolation viewerInterpolation )
+    {
+        this.source = sac.getSpimSource();
+        this.converter = sac.getConverter();
+        this.timePoint = timePoint;
+        this.level = getLevel( source, targetSamplingInXY );
+        final AffineTransform3D sourceTransform = BdvHandleHelper.getSourceTransform( source, timePoint, level );
+
+        // target to global to source
+        targetToSourceTransform = targetToGlobalTransform.copy();
+        targetToSourceTransform.preConcatenate( sourceTransform.inverse() );
+
+        // e.g., for label masks we do not want to interpolate
+        interpolation = source.getType() instanceof AnnotationType ? Interpolation.NEARESTNEIGHBOR : viewerInterpolation;
+    }
+
+    /**
+     * @param interval the target pixels to sample
+     * @param realTarget for the raw values, or null if they are not needed
+     * @param maskTarget set to true for pixels within the source data
+     * @param argbTarget for the colors
+     * @param progress is notified about the number of pixels that have been sampled
+     */
+    void sample(
+            Interval interval,
+            @Nullable RandomAccessible< ? extends RealType< ? > > realTarget,
+            RandomAccessible< BitType > maskTarget,
+            RandomAccessible< ARGBType > argbTarget,
+            LongConsumer progress )
+    {
+        final RealRandomAccess< ? extends Type< ? > > sourceAccess = ( ( Source< ? extends Type< ? > > ) source ).getInterpolatedSource( timePoint, level, interpolation ).realRandomAccess();
+        final WritableBox sourceMask = SourceHelper.estimateDataMask( source, timePoint, level, true );
+
+        final Cursor< ARGBType > targetCursor = Views.interval( argbTarget, interval ).localizingCursor();
+        final RandomAccess< ? extends RealType< ? > > realAccess = realTarget == null ? null : realTarget.randomAccess( interval );
+        final RandomAccess< BitType > maskAccess = maskTarget.randomAccess( interval );
+
+        final double[] targetPosition = new double[ 3 ];
+        final double[] sourcePosition = new double[ 3 ];
+        final RealPoint sourcePoint = new RealPoint( 3 );
+        final ARGBType argbType = new ARGBType();
+
+        long numPixels = 0;
+
+        // iterate through the target image in pixel units
+        while ( targetCursor.hasNext() )
+        {
+            // set the positions
+            targetCursor.fwd();
+            maskAccess.setPosition( targetCursor );
+            targetCursor.localize( targetPosition );
+            targetToSourceTransform.apply( targetPosition, sourcePosition );
+            sourceAccess.setPosition( sourcePosition );
+            sourcePoint.setPosition( sourcePosition );
+
+            // set the pixel and mask values depending on whether the
+            // pixel is within the source data
+            if ( sourceMask.test( sourcePoint ) )
+            {
+                maskAccess.get().set( true );
+                setArgbPixelValue( converter, sourceAccess, targetCursor.get(), argbType );
+
+                if ( realAccess != null )
+                {
+                    realAccess.setPosition( targetCursor );
+                    setPixelValue( sourceAccess, realAccess );
+                }
+            }
+            else
+            {
+                maskAccess.get().set( false );
+            }
+
+            if ( ++numPixels == PROGRESS_INTERVAL )
+            {
+                progress.accept( numPixels );
+                numPixels = 0;
+            }
+        }
+
+        progress.accept( numPixels );
+    }
+
+    private static void setArgbPixelValue( Converter converter, RealRandomAccess< ? > access, ARGBType target, ARGBType argbType )
+    {
+        final Object pixelValue = access.get();
+
+        if ( pixelValue instanceof ARGBType )
+            argbType.set( ( ARGBType ) pixelValue );
+        else
+            converter.convert( pixelValue, argbType );
+
+        target.set( argbType.get() );
+    }
+
+    private static void setPixelValue(
+            RealRandomAccess< ? extends Type< ? > > sourceAccess,
+            RandomAccess< ? extends RealType< ? > > targetAccess )
+    {
+        final Type< ? > type = sourceAccess.get();
+        if ( type instanceof RealType )
+        {
+            double realDouble = ( ( RealType ) type ).getRealDouble();
+            targetAccess.get().setReal( realDouble );
+        }
+        else if ( type instanceof AnnotationType )
+        {
+            try
+            {
+                final Annotation annotation = ( Annotation ) ( ( AnnotationType< ? > ) type ).getAnnotation();
+                if ( annotation != null )
+                    targetAccess.get().setReal( annotation.label() );
+            }
+            catch ( Exception e )
+            {
+                throw new RuntimeException( e );
+            }
+        }
+        else
+        {
+            throw new UnsupportedOperationException( "Cannot render " + type.getClass() );
+        }
+    }
+}
@@ -29,8 +29,6 @@
 package org.embl.mobie.lib.bdv;
 
 import bdv.util.BdvHandle;
-import bdv.viewer.Interpolation;
-import bdv.viewer.Source;
 import bdv.viewer.SourceAndConverter;
 import edu.mines.jtk.util.AtomicDouble;
 import ij.CompositeImage;
@@ -41,11 +39,9 @@ import ij.measure.Calibration;
 import net.imglib2.*;
 import net.imglib2.Cursor;
 import net.imglib2.algorithm.util.Grids;
-import net.imglib2.converter.Converter;
 import net.imglib2.img.array.ArrayImgs;
 import net.imglib2.img.display.imagej.ImageJFunctions;
 import net.imglib2.realtransform.AffineTransform3D;
-import net.imglib2.roi.geom.real.WritableBox;
 import net.imglib2.type.Type;
 import net.imglib2.type.logic.BitType;
 import net.imglib2.type.numeric.ARGBType;
@@ -53,15 +49,11 @@ import net.imglib2.type.numeric.RealType;
 import net.imglib2.type.numeric.integer.UnsignedByteType;
 import net.imglib2.type.numeric.integer.UnsignedShortType;
 import net.imglib2.util.Util;
-import net.imglib2.view.IntervalView;
 import net.imglib2.view.Views;
-import org.embl.mobie.lib.annotation.Annotation;
 import org.embl.mobie.lib.bdv.blend.MoBIEAccumulateProjectorARGB;
 import org.embl.mobie.lib.data.DataStore;
 import org.embl.mobie.lib.image.AnnotatedLabelImage;
 import org.embl.mobie.lib.image.Image;
-import org.embl.mobie.lib.source.AnnotationType;
-import org.embl.mobie.lib.source.SourceHelper;
 import org.embl.mobie.lib.util.Corners;
 import org.embl.mobie.lib.util.MoBIEHelper;
 import org.embl.mobie.lib.util.ThreadHelper;
@@ -71,7 +63,7 @@ import sc.fiji.bdvpg.services.SourceAndConverterServices;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Future;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static sc.fiji.bdvpg.bdv.BdvHandleHelper.getLevel;
 import static sc.fiji.bdvpg.bdv.BdvHandleHelper.getViewerVoxelSpacing;
@@ -208,20 +200,15 @@ public class ScreenShotStackMaker
             final RandomAccessibleInterval< ARGBType > argbRAI
                     = ArrayImgs.argbs( screenshotDimensions  );
 
-            Source< ? > source = sac.getSpimSource();
-            final Converter< ?, ? > converter = sac.getConverter();
             double[] displayRange = BdvHandleHelper.getDisplayRange( SourceAndConverterServices.getSourceAndConverterService().getConverterSetup( sac ) );
-            final int level = getLevel( source, targetSamplingInXY );
-            final AffineTransform3D sourceTransform = BdvHandleHelper.getSourceTransform( source, timePoint, level );
-
-            // global to source
-            AffineTransform3D targetToSourceTransform = targetToGlobalTransform.copy();
-            AffineTransform3D globalToSource = sourceTransform.inverse();
-            targetToSourceTransform.preConcatenate( globalToSource );
-
-            boolean interpolate = ! ( source.getType() instanceof AnnotationType );
-
-            final AtomicInteger pixelCount = new AtomicInteger();
+            final ScreenShotSampler sampler = new ScreenShotSampler(
+                    sac,
+                    timePoint,
+                    targetSamplingInXY,
+                    targetToGlobalTransform,
+                    bdvHandle.getViewerPanel().state().getInterpolation() );
+
+            final AtomicLong pixelCount = new AtomicLong();
             final AtomicDouble fractionDone = new AtomicDouble( 0.2 );
             ArrayList< Future< ? > > futures = ThreadHelper.getFutures();
 
@@ -233,57 +220,10 @@ public class ScreenShotStackMaker
                 (
                     ThreadHelper.ioExecutorService.submit( () ->
                     {
-                        RealRandomAccess< ? extends Type< ? > > sourceAccess = getRealRandomAccess( ( Source< Type< ? > > ) source, timePoint, level, interpolate );
-                        WritableBox sourceMask = SourceHelper.estimateDataMask( source, timePoint, level, true );
-                        //RandomAccessibleInterval< ? > sourceInterval = source.getSource( currentTimepoint, level );
-
-                        // to collect raw data
-                        final IntervalView< ? extends RealType< ? >  > realCrop = Views.interval( realRAI, interval );
-                        final Cursor< ? extends RealType< ? >  > targetCursor = Views.iterable( realCrop ).localizingCursor();
-                        final RandomAccess< ? extends RealType< ? >  > targetAccess = realCrop.randomAccess();
-
-                        // to collect masks
-                        final RandomAccess< BitType > maskAccess = Views.interval( maskRAI, interval ).randomAccess();
-
-                        // to collect colored data
-                        final RandomAccess< ARGBType > argbAccess = Views.interval( argbRAI, interval ).randomAccess();
-
-                        final double[] targetPosition = new double[ 3 ];
-                        final double[] sourcePosition = new double[ 3 ];
-
-                        final ARGBType argbType = new ARGBType();
-
-                        // iterate through the target image in pixel units
-                        while ( targetCursor.hasNext() )
+                        sampler.sample( interval, realRAI, maskRAI, argbRAI, numSampled ->
                         {
-                            // set the positions
-                            targetCursor.fwd();
-                            targetAccess.setPosition( targetCursor );
-                            maskAccess.setPosition( targetCursor );
-                            argbAccess.setPosition( targetCursor );
-
-                            targetCursor.localize( targetPosition );
-                            targetToSourceTransform.apply( targetPosition, sourcePosition );
-                            sourceAccess.setPosition( sourcePosition );
-
-                            // set the pixel and mask values depending on whether the
-                            // pixel is within the source data
-                            if ( sourceMask.test( new RealPoint( sourcePosition ) ) )
-                            {
-                                maskAccess.get().set( true );
-                                setArgbPixelValue( converter, sourceAccess, argbAccess, argbType );
-
-                                if ( sacs.contains( sac ) )
-                                    setPixelValue( sourceAccess, targetAccess );
-                            }
-                            else
-                            {
-                                maskAccess.get().set( false );
-                            }
-
                             // log progress
-                            pixelCount.incrementAndGet();
-                            final double currentFractionDone = 1.0 * pixelCount.get() / numPixels;
+                            final double currentFractionDone = 1.0 * pixelCount.addAndGet( numSampled ) / numPixels;
                             if ( currentFractionDone >= fractionDone.get() )
                             {
                                 synchronized ( fractionDone )
@@ -298,7 +238,7 @@ public class ScreenShotStackMaker
                                     }
                                 }
                             }
-                        }
+                        } );
                     } )
                 );
             }
@@ -353,61 +293,6 @@ public class ScreenShotStackMaker
         return targetToGlobalTransform;
     }
 
-    private void setArgbPixelValue( Converter converter, RealRandomAccess< ? > access, RandomAccess< ARGBType > argbCaptureAccess, ARGBType argbType )
-    {
-        final Object pixelValue = access.get();
-
-        if ( pixelValue instanceof ARGBType )
-            argbType.set( ( ARGBType ) pixelValue );
-        else
-            converter.convert( pixelValue, argbType );
-
-        argbCaptureAccess.get().set( argbType.get() );
-    }
-
-    private void setPixelValue(
-            RealRandomAccess< ? extends Type< ? > > sourceAccess,
-            RandomAccess< ? extends RealType< ? > > targetAccess )
-    {
-        final Type< ? > type = sourceAccess.get();
-        if ( type instanceof RealType )
-        {
-            double realDouble = ( ( RealType ) type ).getRealDouble();
-            targetAccess.get().setReal( realDouble );
-        }
-        else if ( type instanceof AnnotationType )
-        {
-            try
-            {
-                final Annotation annotation = ( Annotation ) ( ( AnnotationType< ? > ) type ).getAnnotation();
-                if ( annotation != null )
-                    targetAccess.get().setReal( annotation.label() );
-            }
-            catch ( Exception e )
-            {
-                throw new RuntimeException( e );
-            }
-        }
-        else
-        {
-            throw new UnsupportedOperationException( "Cannot render " + type.getClass() );
-        }
-    }
-
-    private RealRandomAccess< ? extends Type< ? > > getRealRandomAccess( Source< Type< ? > > source, int t, int level, boolean interpolate )
-    {
-        if ( interpolate )
-        {
-            Interpolation interpolation = bdvHandle.getViewerPanel().state().getInterpolation();
-            return source.getInterpolatedSource( t, level, interpolation ).realRandomAccess();
-        }
-        else
-        {
-            // e.g., for label masks we do not want to interpolate
-            return source.getInterpolatedSource( t, level, Interpolation.NEARESTNEIGHBOR ).realRandomAccess();
-        }
-    }
-
     private ImagePlus createRGBImagePlus(
             ArrayList< RandomAccessibleInterval< ARGBType > > argbSources,
             List< SourceAndConverter< ? > > sacs, Calibration calibration )
@@ -0,0 +1,358 @@
+/*-
+ * #%L
+ * Fiji viewer for MoBIE projects
+ * %%
+ * Copyright (C) 2018 - 2024 EMBL
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.embl.mobie.lib.bdv.overlay;
+
+import bdv.util.BdvFunctions;
+import bdv.util.BdvOptions;
+import bdv.util.BdvOverlay;
+import bdv.util.BdvOverlaySource;
+import bdv.viewer.TransformListener;
+import bdv.viewer.ViewerPanel;
+import net.imglib2.FinalInterval;
+import net.imglib2.FinalRealInterval;
+import net.imglib2.RealInterval;
+import net.imglib2.realtransform.AffineTransform3D;
+import org.embl.mobie.lib.annotation.Annotation;
+import org.embl.mobie.lib.bdv.view.SliceViewer;
+import org.embl.mobie.lib.image.Image;
+import org.embl.mobie.lib.image.ImageListener;
+import org.embl.mobie.lib.table.AnnotationListener;
+import org.embl.mobie.lib.util.ThreadHelper;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shows a text, e.g. the value of a column, next to each annotation
+ * within the viewer.
+ *
+ * The overlay items are laid out off the Swing thread whenever the
+ * viewer transform changes. Only the annotations within the viewer
+ * are considered, using a spatial index. Labels that would overlap
+ * with labels that have already been placed are skipped, and at most
+ * {@link #getMaxNumLabels()} labels are shown.
+ *
+ * @param <A> the type of the annotations
+ */
+public abstract class AbstractAnnotationTextOverlay< A extends Annotation >
+		extends BdvOverlay implements AnnotationOverlay, TransformListener< AffineTransform3D >, AnnotationListener< A >, ImageListener
+{
+	private static volatile int maxNumLabels = 1000;
+
+	protected final SliceViewer sliceViewer;
+	protected final List< A > annotations;
+	protected final String annotationColumn;
+	private BdvOverlaySource< ? > overlaySource;
+	private final AtomicLong layoutRequest = new AtomicLong();
+	private volatile List< OverlayItem > overlayItems = Collections.emptyList();
+	private volatile boolean indexOutdated = true;
+
+	// only accessed within layout()
+	private List< A > indexedAnnotations;
+	private AnnotationGridIndex index;
+	private Graphics2D layoutGraphics;
+
+	protected AbstractAnnotationTextOverlay(
+			SliceViewer sliceViewer,
+			List< A > annotations,
+			String annotationColumn )
+	{
+		this.sliceViewer = sliceViewer;
+		this.annotations = annotations;
+		this.annotationColumn = annotationColumn;
+	}
+
+	/**
+	 * Shows the overlay; to be called at the end of the
+	 * constructor of the subclasses, once they are initialised.
+	 */
+	protected void show()
+	{
+		this.overlaySource = BdvFunctions.showOverlay(
+				this,
+				"annotationOverlay",
+				BdvOptions.options().addTo( sliceViewer.getBdvHandle() ) );
+
+		final ViewerPanel viewerPanel = sliceViewer.getBdvHandle().getViewerPanel();
+		viewerPanel.transformListeners().add( this );
+		Image.listeners.add( this );
+		requestLayout( viewerPanel.state().getViewerTransform() );
+
+		// The below seems needed probably due a bug:
+		// https://imagesc.zulipchat.com/#narrow/stream/327326-BigDataViewer/topic/BdvOverlay.20and.20Timepoints
+		// https://github.com/mobie/mobie-viewer-fiji/issues/976
+		sliceViewer.updateTimepointSlider();
+	}
+
+	public static int getMaxNumLabels()
+	{
+		return maxNumLabels;
+	}
+
+	public static void setMaxNumLabels( int maxNumLabels )
+	{
+		AbstractAnnotationTextOverlay.maxNumLabels = maxNumLabels;
+	}
+
+	@Override
+	public void close()
+	{
+		// discard pending layouts
+		layoutRequest.incrementAndGet();
+		sliceViewer.getBdvHandle().getViewerPanel().transformListeners().remove( this );
+		Image.listeners.remove( this );
+		overlaySource.removeFromBdv();
+		try
+		{
+			sliceViewer.updateTimepointSlider();
+			sliceViewer.getBdvHandle().getViewerPanel().requestRepaint();
+		}
+		catch ( Exception e )
+		{
+			// do nothing
+		}
+	}
+
+	@Override
+	public void setVisible( boolean visible )
+	{
+		overlaySource.setActive( visible );
+	}
+
+	@Override
+	public void transformChanged( AffineTransform3D transform )
+	{
+		requestLayout( transform.copy() );
+	}
+
+	@Override
+	public void annotationsAdded( Collection< A > annotations )
+	{
+		invalidateIndex();
+	}
+
+	@Override
+	public void columnsAdded( Collection< String > columns )
+	{
+		// the positions of the annotations do not change
+	}
+
+	/**
+	 * Called when any image has been transformed, which may
+	 * move the annotations.
+	 */
+	@Override
+	public void imageChanged()
+	{
+		invalidateIndex();
+	}
+
+	private void invalidateIndex()
+	{
+		indexOutdated = true;
+		requestLayout( sliceViewer.getBdvHandle().getViewerPanel().state().getViewerTransform() );
+	}
+
+	@Override
+	protected void draw( Graphics2D g )
+	{
+		for ( OverlayItem overlayItem : overlayItems )
+			drawItem( g, overlayItem );
+	}
+
+	/**
+	 * The bounding box of an annotation in the global coordinate system,
+	 * for the spatial index.
+	 */
+	protected abstract void getBounds( A annotation, double[] min, double[] max );
+
+	/**
+	 * The distance along the viewer's z-axis, in viewer coordinates,
+	 * up to which annotations are considered to be in the viewer.
+	 */
+	protected abstract double getDepth();
+
+	/**
+	 * Computes where the label of the annotation is anchored on screen.
+	 * This is cheap compared to creating the overlay item and allows
+	 * to skip annotations whose anchor is already covered by another label.
+	 *
+	 * @return false if the annotation should not be labelled
+	 */
+	protected abstract boolean getAnchor( A annotation, AffineTransform3D viewerTransform, double[] viewerPosition );
+
+	/**
+	 * @param g for measuring the text; not the one of the viewer
+	 */
+	protected abstract OverlayItem createItem( A annotation, AffineTransform3D viewerTransform, Graphics2D g );
+
+	protected abstract void drawItem( Graphics2D g, OverlayItem overlayItem );
+
+	private void requestLayout( AffineTransform3D viewerTransform )
+	{
+		if ( annotationColumn == null || annotations == null || annotations.isEmpty() )
+			return;
+
+		final long request = layoutRequest.incrementAndGet();
+		final Component display = sliceViewer.getBdvHandle().getViewerPanel().getDisplay();
+		final int width = display.getWidth();
+		final int height = display.getHeight();
+
+		ThreadHelper.overlayExecutorService.submit( () ->
+		{
+			final List< OverlayItem > items = layout( viewerTransform, width, height, request );
+			if ( items == null ) return; // outdated
+			overlayItems = items;
+			display.repaint();
+		} );
+	}
+
+	/**
+	 * @return the overlay items, or null if a newer layout has been requested
+	 */
+	private synchronized List< OverlayItem > layout( AffineTransform3D viewerTransform, int width, int height, long request )
+	{
+		if ( request != layoutRequest.get() )
+			return null;
+
+		if ( layoutGraphics == null )
+			layoutGraphics = new BufferedImage( 1, 1, BufferedImage.TYPE_INT_ARGB ).createGraphics();
+
+		if ( indexOutdated )
+		{
+			// reset before taking the snapshot, such that
+			// changes during indexing trigger another indexing
+			indexOutdated = false;
+			final List< A > snapshot = snapshot();
+			index = new AnnotationGridIndex( snapshot.size(), ( i, min, max ) -> getBounds( snapshot.get( i ), min, max ) );
+			indexedAnnotations = snapshot;
+		}
+
+		final double depth = getDepth();
+		final RealInterval viewerBox = viewerTransform.inverse().estimateBounds(
+				new FinalRealInterval( new double[]{ 0, 0, -depth }, new double[]{ width, height, depth } ) );
+		final BitSet candidates = index.query( viewerBox );
+
+		final Occupancy occupancy = new Occupancy( width, height );
+		final ArrayList< OverlayItem > items = new ArrayList<>();
+		final int maxNumLabels = AbstractAnnotationTextOverlay.maxNumLabels;
+		final double[] viewerPosition = new double[ 3 ];
+		int numVisited = 0;
+		for ( int i = candidates.nextSetBit( 0 ); i >= 0 && items.size() < maxNumLabels; i = candidates.nextSetBit( i + 1 ) )
+		{
+			if ( ++numVisited % 10000 == 0 && request != layoutRequest.get() )
+				return null;
+
+			final A annotation = indexedAnnotations.get( i );
+			if ( ! getAnchor( annotation, viewerTransform, viewerPosition ) )
+				continue;
+
+			if ( viewerPosition[ 0 ] < 0 || viewerPosition[ 1 ] < 0 || viewerPosition[ 0 ] > width || viewerPosition[ 1 ] > height )
+				continue;
+
+			if ( occupancy.isOccupied( viewerPosition[ 0 ], viewerPosition[ 1 ] ) )
+				continue;
+
+			final OverlayItem item = createItem( annotation, viewerTransform, layoutGraphics );
+			if ( occupancy.occupy( item.interval ) )
+				items.add( item );
+		}
+
+		return items;
+	}
+
+	/**
+	 * Copies the annotations, as they may be added to concurrently.
+	 * Entries that are not yet visible to this thread are skipped;
+	 * the subsequent call to {@link #annotationsAdded} indexes them.
+	 */
+	private List< A > snapshot()
+	{
+		final ArrayList< A > snapshot = new ArrayList<>( annotations );
+		snapshot.removeIf( annotation -> annotation == null );
+		return snapshot;
+	}
+
+	/**
+	 * Marks the screen areas that are covered by labels,
+	 * in cells of a few pixels.
+	 */
+	private static class Occupancy
+	{
+		private static final int CELL_SIZE = 8;
+
+		private final int numColumns;
+		private final int numRows;
+		private final boolean[] occupied;
+
+		Occupancy( int width, int height )
+		{
+			numColumns = Math.max( 1, width / CELL_SIZE + 1 );
+			numRows = Math.max( 1, height / CELL_SIZE + 1 );
+			occupied = new boolean[ numColumns * numRows ];
+		}
+
+		boolean isOccupied( double x, double y )
+		{
+			final int column = ( int ) x / CELL_SIZE;
+			final int row = ( int ) y / CELL_SIZE;
+			if ( column < 0 || row < 0 || column >= numColumns || row >= numRows )
+				return false;
+			return occupied[ row * numColumns + column ];
+		}
+
+		/**
+		 * @return false if the interval overlaps with an occupied area
+		 */
+		boolean occupy( FinalInterval interval )
+		{
+			final int minColumn = ( int ) Math.max( 0, Math.floorDiv( interval.min( 0 ), CELL_SIZE ) );
+			final int maxColumn = ( int ) Math.min( numColumns - 1, Math.floorDiv( interval.max( 0 ), CELL_SIZE ) );
+			final int minRow = ( int ) Math.max( 0, Math.floorDiv( interval.min( 1 ), CELL_SIZE ) );
+			final int maxRow = ( int ) Math.min( numRows - 1, Math.floorDiv( interval.max( 1 ), CELL_SIZE ) );
+
+			for ( int row = minRow; row <= maxRow; row++ )
+				for ( int column = minColumn; column <= maxColumn; column++ )
+					if ( occupied[ row * numColumns + column ] )
+						return false;
+
+			for ( int row = minRow; row <= maxRow; row++ )
+				for ( int column = minColumn; column <= maxColumn; column++ )
+					occupied[ row * numColumns + column ] = true;
+
+			return true;
+		}
+	}
+}
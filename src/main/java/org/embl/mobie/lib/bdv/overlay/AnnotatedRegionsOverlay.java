@@ -28,33 +28,20 @@
  */
 package org.embl.mobie.lib.bdv.overlay;
 
-import IceInternal.Ex;
-import bdv.util.*;
-import bdv.viewer.TransformListener;
 import net.imglib2.FinalRealInterval;
 import net.imglib2.realtransform.AffineTransform3D;
 import net.imglib2.roi.RealMaskRealInterval;
-import net.imglib2.util.Intervals;
 import org.embl.mobie.lib.annotation.AnnotatedRegion;
 import org.embl.mobie.lib.bdv.view.SliceViewer;
-import sc.fiji.bdvpg.bdv.BdvHandleHelper;
 
 import java.awt.*;
 import java.util.ArrayList;
 
-public class AnnotatedRegionsOverlay< AR extends AnnotatedRegion >
-		extends BdvOverlay implements AnnotationOverlay, TransformListener< AffineTransform3D >
+public class AnnotatedRegionsOverlay< AR extends AnnotatedRegion > extends AbstractAnnotationTextOverlay< AR >
 {
-	private final SliceViewer sliceViewer;
-	private final ArrayList< AR > annotations;
-	private final String annotationColumn;
-	private BdvOverlaySource< AnnotatedRegionsOverlay > overlaySource;
 	public static final int MAX_FONT_SIZE = 20;
-	private static Font font;
-	private AffineTransform3D viewerTransform;
-    private final int fontSize;
-    private ArrayList< OverlayItem > overlayItems = new ArrayList<>();
-	private long start;
+	private final Font font;
+	private final int fontSize;
 
 	public AnnotatedRegionsOverlay(
 			SliceViewer sliceViewer,
@@ -63,9 +50,7 @@ public class AnnotatedRegionsOverlay< AR extends AnnotatedRegion >
 			int fontSize // -1 for auto
 	)
 	{
-		this.sliceViewer = sliceViewer;
-		this.annotations = annotations;
-		this.annotationColumn = annotationColumn;
+		super( sliceViewer, annotations, annotationColumn );
 		this.fontSize = fontSize;
 
 		if ( fontSize > 0 )
@@ -77,94 +62,51 @@ public class AnnotatedRegionsOverlay< AR extends AnnotatedRegion >
 			font = new Font( "Monospaced", Font.PLAIN, MAX_FONT_SIZE );
 		}
 
-		this.overlaySource = BdvFunctions.showOverlay(
-				this,
-				"annotationOverlay",
-				BdvOptions.options().addTo( sliceViewer.getBdvHandle() ) );
-
-		this.viewerTransform = sliceViewer.getBdvHandle().getViewerPanel().state().getViewerTransform();
-
-        sliceViewer.getBdvHandle().getViewerPanel().transformListeners().add( this );
-
-		// The below seems needed probably due a bug:
-		// https://imagesc.zulipchat.com/#narrow/stream/327326-BigDataViewer/topic/BdvOverlay.20and.20Timepoints
-		// https://github.com/mobie/mobie-viewer-fiji/issues/976
-		sliceViewer.updateTimepointSlider();
+		show();
 	}
 
 	@Override
-	public void close()
+	protected void getBounds( AR annotation, double[] min, double[] max )
 	{
-		overlaySource.removeFromBdv();
-		try
-		{
-			sliceViewer.updateTimepointSlider();
-			sliceViewer.getBdvHandle().getViewerPanel().requestRepaint();
-		}
-		catch ( Exception e )
+		final RealMaskRealInterval mask = annotation.getMask();
+		for ( int d = 0; d < 3; d++ )
 		{
-			// do nothing
+			min[ d ] = d < mask.numDimensions() ? mask.realMin( d ) : Double.NEGATIVE_INFINITY;
+			max[ d ] = d < mask.numDimensions() ? mask.realMax( d ) : Double.POSITIVE_INFINITY;
 		}
 	}
 
 	@Override
-	public void setVisible( boolean visible )
+	protected double getDepth()
 	{
-		overlaySource.setActive( visible );
+		return 0; // the regions intersecting the current plane
 	}
 
 	@Override
-	protected synchronized void draw( Graphics2D g )
+	protected boolean getAnchor( AR annotation, AffineTransform3D viewerTransform, double[] viewerPosition )
 	{
-		if ( annotationColumn == null || annotations == null || annotations.isEmpty() )
-			return;
-
-		if ( viewerTransform != null )
-		{
-			start = System.currentTimeMillis();
-			updateOverlayItems( g );
-			viewerTransform = null;
-//			System.out.println( "updated " + annotations.size() + " annotations in [ms] " + ( System.currentTimeMillis() - start ) );
-		}
-
-		start = System.currentTimeMillis();
-		for ( OverlayItem overlayItem : overlayItems )
-		{
-			OverlayHelper.drawTextWithBackground( g, overlayItem, false );
-		}
-//		System.out.println( "drawn " + overlayItems.size() +  " overlay items in [ms] " + ( System.currentTimeMillis() - start ) );
+		final FinalRealInterval bounds = viewerTransform.estimateBounds( annotation.getMask() );
+		viewerPosition[ 0 ] = ( bounds.realMin( 0 ) + bounds.realMax( 0 ) ) / 2.0;
+		viewerPosition[ 1 ] = ( bounds.realMin( 1 ) + bounds.realMax( 1 ) ) / 2.0;
+		viewerPosition[ 2 ] = ( bounds.realMin( 2 ) + bounds.realMax( 2 ) ) / 2.0;
+		return true;
 	}
 
-	private void updateOverlayItems( Graphics2D g )
+	@Override
+	protected OverlayItem createItem( AR annotation, AffineTransform3D viewerTransform, Graphics2D g )
 	{
-		overlayItems.clear();
-
-		BdvHandle bdvHandle = sliceViewer.getBdvHandle();
-		FinalRealInterval viewerInterval = BdvHandleHelper.getViewerGlobalBoundingInterval( bdvHandle );
-
-		for ( AR annotatedRegion : annotations )
-		{
-			if ( ! Intervals.isEmpty( Intervals.intersect( viewerInterval, annotatedRegion.getMask() ) ) )
-			{
-				final RealMaskRealInterval mask = annotatedRegion.getMask();
-				FinalRealInterval bounds = viewerTransform.estimateBounds( mask );
-
-				OverlayItem newItem = OverlayHelper.itemFromBounds(
-						g,
-						bounds,
-						annotatedRegion.getValue( annotationColumn ).toString(),
-						font,
-						fontSize
-				);
-
-				overlayItems.add( newItem );
-			}
-		}
+		return OverlayHelper.itemFromBounds(
+				g,
+				viewerTransform.estimateBounds( annotation.getMask() ),
+				annotation.getValue( annotationColumn ).toString(),
+				font,
+				fontSize
+		);
 	}
 
 	@Override
-	public void transformChanged( AffineTransform3D transform )
+	protected void drawItem( Graphics2D g, OverlayItem overlayItem )
 	{
-		this.viewerTransform = transform;
+		OverlayHelper.drawTextWithBackground( g, overlayItem, false );
 	}
 }
@@ -0,0 +1,189 @@
+/*-
+ * #%L
+ * Fiji viewer for MoBIE projects
+ * %%
+ * Copyright (C) 2018 - 2024 EMBL
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.embl.mobie.lib.bdv.overlay;
+
+import net.imglib2.RealInterval;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.function.IntConsumer;
+
+/**
+ * A uniform 3D grid over the bounding boxes of annotations, for finding
+ * the annotations within the viewer without iterating over all of them.
+ *
+ * Annotations whose bounding box spans several cells are registered in
+ * all of them. Queries return the annotations of all cells that intersect
+ * the query interval, thus possibly a few more than actually intersect it.
+ *
+ * Not thread safe.
+ */
+class AnnotationGridIndex
+{
+	interface Bounds
+	{
+		/**
+		 * Writes the bounding box of an annotation; unbounded
+		 * dimensions may be infinite.
+		 */
+		void get( int annotationIndex, double[] min, double[] max );
+	}
+
+	private static final int MAX_NUM_CELLS_PER_DIMENSION = 1024;
+
+	private final double[] gridMin = new double[ 3 ];
+	private final double[] cellSize = new double[ 3 ];
+	private final int[] numCells = new int[ 3 ];
+	private final int[] cellStarts; // the annotations of cell c are cellAnnotations[ cellStarts[ c ] ] ... cellAnnotations[ cellStarts[ c + 1 ] - 1 ]
+	private final int[] cellAnnotations;
+	private final BitSet result;
+
+	AnnotationGridIndex( int numAnnotations, Bounds bounds )
+	{
+		final double[] min = new double[ 3 ];
+		final double[] max = new double[ 3 ];
+
+		// determine the extent of the grid
+		final double[] gridMax = new double[ 3 ];
+		Arrays.fill( gridMin, Double.MAX_VALUE );
+		Arrays.fill( gridMax, -Double.MAX_VALUE );
+		for ( int i = 0; i < numAnnotations; i++ )
+		{
+			bounds.get( i, min, max );
+			for ( int d = 0; d < 3; d++ )
+			{
+				if ( Double.isFinite( min[ d ] ) ) gridMin[ d ] = Math.min( gridMin[ d ], min[ d ] );
+				if ( Double.isFinite( max[ d ] ) ) gridMax[ d ] = Math.max( gridMax[ d ], max[ d ] );
+			}
+		}
+
+		// choose (roughly) cubic cells, about one per annotation
+		double volume = 1.0;
+		int numExtendedDimensions = 0;
+		for ( int d = 0; d < 3; d++ )
+		{
+			if ( gridMin[ d ] > gridMax[ d ] ) gridMin[ d ] = gridMax[ d ] = 0; // only infinite bounds
+			final double extent = gridMax[ d ] - gridMin[ d ];
+			if ( extent <= 0 ) continue;
+			volume *= extent;
+			numExtendedDimensions++;
+		}
+		final double size = numExtendedDimensions == 0 ? 1.0 : Math.pow( volume / Math.max( 1, numAnnotations ), 1.0 / numExtendedDimensions );
+		int totalNumCells = 1;
+		for ( int d = 0; d < 3; d++ )
+		{
+			final double extent = gridMax[ d ] - gridMin[ d ];
+			numCells[ d ] = extent <= 0 ? 1 : ( int ) Math.max( 1, Math.min( MAX_NUM_CELLS_PER_DIMENSION, Math.ceil( extent / size ) ) );
+			cellSize[ d ] = extent <= 0 ? 1.0 : extent / numCells[ d ];
+			totalNumCells *= numCells[ d ];
+		}
+
+		// register the annotations in the cells, with a counting sort
+		final int[] cellMin = new int[ 3 ];
+		final int[] cellMax = new int[ 3 ];
+		cellStarts = new int[ totalNumCells + 1 ];
+		for ( int i = 0; i < numAnnotations; i++ )
+		{
+			bounds.get( i, min, max );
+			cells( min, max, cellMin, cellMax );
+			forEachCell( cellMin, cellMax, c -> cellStarts[ c + 1 ]++ );
+		}
+		for ( int c = 0; c < totalNumCells; c++ )
+			cellStarts[ c + 1 ] += cellStarts[ c ];
+
+		cellAnnotations = new int[ cellStarts[ totalNumCells ] ];
+		final int[] cellFill = Arrays.copyOf( cellStarts, totalNumCells );
+		for ( int i = 0; i < numAnnotations; i++ )
+		{
+			final int annotationIndex = i;
+			bounds.get( i, min, max );
+			cells( min, max, cellMin, cellMax );
+			forEachCell( cellMin, cellMax, c -> cellAnnotations[ cellFill[ c ]++ ] = annotationIndex );
+		}
+
+		result = new BitSet( numAnnotations );
+	}
+
+	/**
+	 * The returned set is reused by the next query.
+	 *
+	 * @param interval the query interval, in the global coordinate system
+	 * @return the indices of the annotations that may intersect the interval
+	 */
+	BitSet query( RealInterval interval )
+	{
+		result.clear();
+
+		final double[] min = new double[ 3 ];
+		final double[] max = new double[ 3 ];
+		for ( int d = 0; d < 3; d++ )
+		{
+			min[ d ] = d < interval.numDimensions() ? interval.realMin( d ) : Double.NEGATIVE_INFINITY;
+			max[ d ] = d < interval.numDimensions() ? interval.realMax( d ) : Double.POSITIVE_INFINITY;
+		}
+
+		final int[] cellMin = new int[ 3 ];
+		final int[] cellMax = new int[ 3 ];
+		if ( ! cells( min, max, cellMin, cellMax ) )
+			return result;
+
+		forEachCell( cellMin, cellMax, c ->
+		{
+			for ( int i = cellStarts[ c ]; i < cellStarts[ c + 1 ]; i++ )
+				result.set( cellAnnotations[ i ] );
+		} );
+
+		return result;
+	}
+
+	/**
+	 * @return false if the box is outside the grid
+	 */
+	private boolean cells( double[] min, double[] max, int[] cellMin, int[] cellMax )
+	{
+		boolean isInside = true;
+		for ( int d = 0; d < 3; d++ )
+		{
+			final double lower = ( min[ d ] - gridMin[ d ] ) / cellSize[ d ];
+			final double upper = ( max[ d ] - gridMin[ d ] ) / cellSize[ d ];
+			if ( upper < 0 || lower > numCells[ d ] ) isInside = false;
+			cellMin[ d ] = ( int ) Math.max( 0, Math.min( numCells[ d ] - 1, Math.floor( lower ) ) );
+			cellMax[ d ] = ( int ) Math.max( 0, Math.min( numCells[ d ] - 1, Math.floor( upper ) ) );
+		}
+		return isInside;
+	}
+
+	private void forEachCell( int[] cellMin, int[] cellMax, IntConsumer consumer )
+	{
+		for ( int z = cellMin[ 2 ]; z <= cellMax[ 2 ]; z++ )
+			for ( int y = cellMin[ 1 ]; y <= cellMax[ 1 ]; y++ )
+				for ( int x = cellMin[ 0 ]; x <= cellMax[ 0 ]; x++ )
+					consumer.accept( ( z * numCells[ 1 ] + y ) * numCells[ 0 ] + x );
+	}
+}
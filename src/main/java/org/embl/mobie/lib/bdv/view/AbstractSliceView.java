@@ -35,6 +35,7 @@ import bdv.viewer.SourceAndConverter;
 import ij.IJ;
 import org.embl.mobie.MoBIE;
 import org.embl.mobie.lib.data.DataStore;
+import org.embl.mobie.lib.data.ImageCache;
 import org.embl.mobie.lib.image.RegionAnnotationImage;
 import org.embl.mobie.lib.serialize.display.AbstractDisplay;
 import org.embl.mobie.lib.util.ThreadHelper;
@@ -82,6 +83,7 @@ public abstract class AbstractSliceView implements SliceView
 			// TODO https://github.com/bigdataviewer/bigdataviewer-playground/issues/259#issuecomment-1279705489
 			moBIE.closeSourceAndConverter( sourceAndConverter, closeImgLoader );
 		}
+		ImageCache.release( display.images() );
 		display.images().clear();
 
 		sliceViewer.updateTimepointSlider();
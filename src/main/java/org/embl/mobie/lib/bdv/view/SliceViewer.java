@@ -32,6 +32,7 @@ import bdv.util.BdvHandle;
 import bdv.viewer.SourceAndConverter;
 import ij.IJ;
 import org.embl.mobie.lib.data.DataStore;
+import org.embl.mobie.lib.data.ImageCache;
 import org.embl.mobie.command.context.*;
 import org.embl.mobie.command.context.CurrentLocationLoggerCommand;
 import org.embl.mobie.MoBIE;
@@ -45,10 +46,12 @@ import org.embl.mobie.lib.bdv.overlay.PixelValueOverlay;
 import org.embl.mobie.lib.color.OpacityHelper;
 import org.embl.mobie.lib.image.Image;
 import org.embl.mobie.lib.image.RegionAnnotationImage;
+import org.embl.mobie.lib.image.StitchedImage;
 import org.embl.mobie.lib.serialize.View;
 import org.embl.mobie.lib.serialize.display.AbstractDisplay;
 import org.embl.mobie.lib.source.SourceHelper;
 import org.embl.mobie.lib.util.MoBIEHelper;
+import org.embl.mobie.lib.util.ThreadHelper;
 import org.embl.mobie.ui.WindowArrangementHelper;
 import org.scijava.ui.behaviour.ClickBehaviour;
 import org.scijava.ui.behaviour.io.InputTriggerConfig;
@@ -72,6 +75,7 @@ public class SliceViewer
 	public static final String SAVE_CURRENT_SETTINGS_AS_VIEW = "Save Current View";
 	public static final String DELETE_VIEW = "Delete View";
 	public static final String TOGGLE_PIXEL_VALUE_OVERLAY = "Toggle Pixel Values Under Mouse [ Shift V ]";
+	public static final String LOG_CACHE_STATISTICS = "Log Cache Statistics";
 	public static final String FRAME_TITLE = "MoBIE BigDataViewer";
 	private static final int PIXEL_VALUE_OVERLAY_UPDATE_INTERVAL_MS = 120;
 	public static boolean tileRenderOverlay = false;
@@ -108,6 +112,10 @@ public class SliceViewer
 
 		installContextMenuAndKeyboardShortCuts();
 
+		// stitched images open the tiles in the centre of the window first
+		bdvHandle.getViewerPanel().transformListeners().add( transform ->
+				StitchedImage.setViewerCenter( MoBIEHelper.getWindowCentreInCalibratedUnits( bdvHandle ) ) );
+
 		WindowArrangementHelper.rightAlignWindow( moBIE.getUserInterface().getWindow(), SwingUtilities.getWindowAncestor( bdvHandle.getViewerPanel() ), true, true );
 	}
 
@@ -156,11 +164,18 @@ public class SliceViewer
 			pixelValueOverlay.setActive( !pixelValueOverlay.isActive() );
 		} );
 
+		sacService.registerAction( LOG_CACHE_STATISTICS, sourceAndConverters -> {
+			IJ.log( DataStore.getImageDataCache().getStatistics() );
+			IJ.log( "image cache: " + ImageCache.size() + " entries, " + ImageCache.getNumUnusedBytes() / 1_000_000 + " MB of unused images" );
+			ThreadHelper.logMetrics();
+		} );
+
 		final ArrayList< String > actions = new ArrayList< String >();
 		actions.add( SourceAndConverterService.getCommandName( LogImagesInfoCommand.class ) );
 		actions.add( SourceAndConverterService.getCommandName( CurrentLocationLoggerCommand.class ) );
 		actions.add( SourceAndConverterService.getCommandName( ScreenShotMakerCommand.class ) );
 		actions.add( SourceAndConverterService.getCommandName( ScreenShotStackMakerCommand.class ) );
+		actions.add( SourceAndConverterService.getCommandName( ScreenShotExportCommand.class ) );
 		actions.add( SourceAndConverterService.getCommandName( ShowRawImagesCommand.class ) );
 		actions.add( SourceAndConverterService.getCommandName( BoxSelectionCommand.class ) );
 		actions.add( SourceAndConverterService.getCommandName( MaskImagesCommand.class ) );
@@ -174,6 +189,7 @@ public class SliceViewer
 		actions.add( SAVE_CURRENT_SETTINGS_AS_VIEW );
 		actions.add( DELETE_VIEW );
 		actions.add( TOGGLE_PIXEL_VALUE_OVERLAY );
+		actions.add( LOG_CACHE_STATISTICS );
 
 		if ( projectCommands != null )
 		{
@@ -32,11 +32,15 @@ import net.imglib2.converter.Converter;
 import net.imglib2.type.numeric.ARGBType;
 import org.embl.mobie.lib.color.lut.LUTs;
 import org.embl.mobie.lib.color.opacity.OpacityAdjuster;
+import org.embl.mobie.lib.util.ModificationCounter;
 
 public abstract class AbstractAnnotationARGBConverter< T, A > implements Converter< A, ARGBType >, OpacityAdjuster, MobieColoringModelWrapper
 {
 	private final MoBIEColoringModel< T > coloringModel;
 	private double opacity = 1.0;
+	private final AnnotationColorCache< T > colorCache = new AnnotationColorCache<>();
+	private volatile long validatedNumPublished = -1;
+	private long coloringModificationCount = -1;
 
 	public AbstractAnnotationARGBConverter( MoBIEColoringModel< T > coloringModel )
 	{
@@ -58,16 +62,57 @@ public abstract class AbstractAnnotationARGBConverter< T, A > implements Convert
 			return;
 		}
 
+		// as long as no model has been modified, this is
+		// the only check, instead of asking all the models
+		final long numPublished = ModificationCounter.getNumPublished();
+		if ( numPublished != validatedNumPublished )
+			validate( numPublished );
+
+		final int generation = colorCache.generation( input );
+		final int argb = colorCache.get( input, generation );
+		if ( argb != AnnotationColorCache.NOT_CACHED )
+		{
+			color.set( argb );
+			return;
+		}
+
 		// This includes selection model opacity
 		coloringModel.convert( input, color );
 
 		// This adds a general opacity
 		adjustOpacity( color, opacity );
+
+		// if the coloring changed meanwhile, the color is
+		// stored for an outdated generation and thus ignored
+		colorCache.put( input, color.get(), generation );
+	}
+
+	private synchronized void validate( long numPublished )
+	{
+		if ( numPublished == validatedNumPublished )
+			return;
+
+		final long coloringModificationCount = coloringModel.getModificationCount();
+		if ( coloringModificationCount != this.coloringModificationCount )
+		{
+			// the coloring or the selection have changed
+			colorCache.invalidate();
+			this.coloringModificationCount = coloringModificationCount;
+		}
+		else
+		{
+			// the colors may also depend on annotation values,
+			// e.g. if those are edited in the table
+			colorCache.invalidateModifiedValues();
+		}
+
+		validatedNumPublished = numPublished;
 	}
 
 	public void setOpacity( double opacity )
 	{
 		this.opacity = opacity;
+		colorCache.invalidate();
 	}
 
 	public double getOpacity()
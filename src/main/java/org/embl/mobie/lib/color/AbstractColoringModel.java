@@ -29,6 +29,7 @@
 package org.embl.mobie.lib.color;
 
 import org.embl.mobie.lib.select.Listeners;
+import org.embl.mobie.lib.util.ModificationCounter;
 
 import javax.swing.*;
 
@@ -37,14 +38,25 @@ public abstract class AbstractColoringModel< T > implements ColoringModel< T >
 	protected final Listeners.SynchronizedList< ColoringListener > listeners
 			= new Listeners.SynchronizedList< ColoringListener >(  );
 
+	private volatile long modificationCount = ModificationCounter.next();
+
 	@Override
 	public Listeners< ColoringListener > listeners()
 	{
 		return listeners;
 	}
 
+	@Override
+	public long getModificationCount()
+	{
+		return modificationCount;
+	}
+
 	protected void notifyColoringListeners()
 	{
+		modificationCount = ModificationCounter.next();
+		ModificationCounter.publish();
+
 		for ( ColoringListener listener : listeners.list )
 		{
 			SwingUtilities.invokeLater( () -> listener.coloringChanged() );
@@ -38,6 +38,10 @@ public class AdditiveColoringModel< T > extends AbstractColoringModel< T >
 {
 	private final ArrayList< Entry< T > > entries;
 
+	// a copy of the entries, which is iterated by index
+	// while rendering, to neither lock nor allocate
+	private volatile Entry< T >[] entryArray = newEntryArray( 0 );
+
 	@SafeVarargs
 	public AdditiveColoringModel( ColoringModel< T >... coloringModels )
 	{
@@ -83,6 +87,8 @@ public class AdditiveColoringModel< T > extends AbstractColoringModel< T >
 		}
 
 		entries.add( new Entry<>( name, coloringModel, enabled ) );
+		final Entry< T >[] entryArray = newEntryArray( entries.size() );
+		this.entryArray = entries.toArray( entryArray );
 		coloringModel.listeners().add( () -> notifyColoringListeners() );
 		notifyColoringListeners();
 	}
@@ -125,8 +131,10 @@ public class AdditiveColoringModel< T > extends AbstractColoringModel< T >
 		int b = 0;
 		int a = 0;
 
-		for ( Entry< T > entry : entries )
+		final Entry< T >[] entryArray = this.entryArray;
+		for ( int i = 0; i < entryArray.length; i++ )
 		{
+			final Entry< T > entry = entryArray[ i ];
 			if ( ! entry.isEnabled() )
 				continue;
 
@@ -147,6 +155,22 @@ public class AdditiveColoringModel< T > extends AbstractColoringModel< T >
 		color.set( ARGBType.rgba( r, g, b, a ) );
 	}
 
+	@Override
+	public long getModificationCount()
+	{
+		long modificationCount = super.getModificationCount();
+		final Entry< T >[] entryArray = this.entryArray;
+		for ( int i = 0; i < entryArray.length; i++ )
+			modificationCount = Math.max( modificationCount, entryArray[ i ].getColoringModel().getModificationCount() );
+		return modificationCount;
+	}
+
+	@SuppressWarnings( "unchecked" )
+	private static < T > Entry< T >[] newEntryArray( int length )
+	{
+		return ( Entry< T >[] ) new Entry[ length ];
+	}
+
 	private int addClamped( int current, int value )
 	{
 		final int sum = current + value;
@@ -157,7 +181,7 @@ public class AdditiveColoringModel< T > extends AbstractColoringModel< T >
 	{
 		private final String name;
 		private final ColoringModel< T > coloringModel;
-		private boolean enabled;
+		private volatile boolean enabled;
 
 		public Entry( String name, ColoringModel< T > coloringModel )
 		{
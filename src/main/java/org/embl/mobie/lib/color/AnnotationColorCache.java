@@ -0,0 +1,182 @@
+/*-
+ * #%L
+ * Fiji viewer for MoBIE projects
+ * %%
+ * Copyright (C) 2018 - 2024 EMBL
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.embl.mobie.lib.color;
+
+import org.embl.mobie.lib.table.AnnotationRows;
+import org.embl.mobie.lib.table.RowAnnotation;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Caches the final ARGB color of each annotation, such that rendering
+ * an annotated voxel only needs an array read instead of evaluating
+ * the coloring model, the selection model and the opacity.
+ *
+ * For annotations that are rows of a table the colors are stored in one
+ * long array per table, indexed by the row of the annotation.
+ * Other annotations are cached in a map.
+ *
+ * Each entry is tagged with the generation of its table, or of the map,
+ * in which its color has been computed. Invalidating the colors only starts
+ * a new generation, such that entries of older generations are ignored,
+ * even if they are stored after the invalidation, and the arrays can be reused.
+ *
+ * Writing to the arrays is not synchronized: concurrent threads
+ * of the same generation would always write the same color.
+ */
+class AnnotationColorCache< T >
+{
+	// Transparent, thus it does not matter if an actual color happens
+	// to have this value; it would just not be cached.
+	static final int NOT_CACHED = 0x00123456;
+
+	private static class Colors
+	{
+		final AnnotationRows rows;
+		final long[] entries;
+
+		// starts at 1, such that the zeros of new arrays are not valid entries
+		volatile int generation = 1;
+		long valuesModificationCount;
+
+		Colors( AnnotationRows rows )
+		{
+			this.rows = rows;
+			this.entries = new long[ rows.numRows() ];
+			this.valuesModificationCount = rows.getValuesModificationCount();
+		}
+	}
+
+	private final Map< AnnotationRows, Colors > rowsToColors = new ConcurrentHashMap<>();
+	private final Map< T, Long > annotationToColor = new ConcurrentHashMap<>();
+	private volatile Colors recentColors;
+	private volatile int generation = 1;
+
+	/**
+	 * Invalidates all colors, e.g. because the coloring changed.
+	 */
+	synchronized void invalidate()
+	{
+		generation++;
+		for ( Colors colors : rowsToColors.values() )
+		{
+			colors.valuesModificationCount = colors.rows.getValuesModificationCount();
+			colors.generation++;
+		}
+		annotationToColor.clear();
+	}
+
+	/**
+	 * Invalidates the colors of the tables whose values changed.
+	 *
+	 * As it is not known from which tables the annotations of the map read
+	 * their values, e.g. if they are transformed copies of table rows,
+	 * those are invalidated whenever this is called.
+	 */
+	synchronized void invalidateModifiedValues()
+	{
+		for ( Colors colors : rowsToColors.values() )
+		{
+			final long valuesModificationCount = colors.rows.getValuesModificationCount();
+			if ( valuesModificationCount != colors.valuesModificationCount )
+			{
+				colors.valuesModificationCount = valuesModificationCount;
+				colors.generation++;
+			}
+		}
+
+		generation++;
+		annotationToColor.clear();
+	}
+
+	/**
+	 * Colors must only be put with the generation
+	 * that has been current before computing them.
+	 */
+	int generation( T annotation )
+	{
+		if ( annotation instanceof RowAnnotation )
+			return colors( ( ( RowAnnotation ) annotation ).model() ).generation;
+		else
+			return generation;
+	}
+
+	int get( T annotation, int generation )
+	{
+		final long entry;
+		if ( annotation instanceof RowAnnotation )
+		{
+			final RowAnnotation rowAnnotation = ( RowAnnotation ) annotation;
+			final long[] entries = colors( rowAnnotation.model() ).entries;
+			final int rowIndex = rowAnnotation.rowIndex();
+			if ( rowIndex >= entries.length )
+				return NOT_CACHED;
+			entry = entries[ rowIndex ];
+		}
+		else
+		{
+			final Long value = annotationToColor.get( annotation );
+			if ( value == null )
+				return NOT_CACHED;
+			entry = value;
+		}
+
+		return ( int ) ( entry >>> 32 ) == generation ? ( int ) entry : NOT_CACHED;
+	}
+
+	void put( T annotation, int argb, int generation )
+	{
+		final long entry = ( ( long ) generation << 32 ) | ( argb & 0xFFFFFFFFL );
+		if ( annotation instanceof RowAnnotation )
+		{
+			final RowAnnotation rowAnnotation = ( RowAnnotation ) annotation;
+			final long[] entries = colors( rowAnnotation.model() ).entries;
+			final int rowIndex = rowAnnotation.rowIndex();
+			if ( rowIndex < entries.length )
+				entries[ rowIndex ] = entry;
+		}
+		else if ( generation == this.generation )
+		{
+			annotationToColor.put( annotation, entry );
+		}
+	}
+
+	private Colors colors( AnnotationRows rows )
+	{
+		// most voxels of one rendering belong to the same table
+		final Colors recentColors = this.recentColors;
+		if ( recentColors != null && recentColors.rows == rows )
+			return recentColors;
+
+		final Colors colors = rowsToColors.computeIfAbsent( rows, Colors::new );
+		this.recentColors = colors;
+		return colors;
+	}
+}
@@ -41,4 +41,13 @@ public interface ColoringModel< T > extends Converter< T, ARGBType >
 	 * @return the list of listeners
 	 */
 	Listeners< ColoringListener > listeners();
+
+	/**
+	 * Get a number that changes whenever the coloring changes.
+	 * In contrast to the listeners, which are notified asynchronously,
+	 * this changes immediately and thus can be used to invalidate cached colors.
+	 *
+	 * @return the modification count
+	 */
+	long getModificationCount();
 }
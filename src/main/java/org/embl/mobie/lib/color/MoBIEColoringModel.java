@@ -72,6 +72,18 @@ public class MoBIEColoringModel< T > extends AbstractColoringModel< T >
 		}
 	}
 
+	@Override
+	public long getModificationCount()
+	{
+		// the colors depend on the wrapped coloring model and the selection;
+		// as the modification stamps increase globally, the max changes
+		// whenever any of them changes
+		long modificationCount = Math.max( super.getModificationCount(), coloringModel.getModificationCount() );
+		if ( selectionModel != null )
+			modificationCount = Math.max( modificationCount, selectionModel.getModificationCount() );
+		return modificationCount;
+	}
+
 	private void applySelectionOpacity( ARGBType color, double opacity )
 	{
 		final int value = color.get();
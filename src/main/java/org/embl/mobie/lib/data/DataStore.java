@@ -46,10 +46,9 @@ import org.embl.mobie.lib.hcs.VirtualStackWithFlexibleLoader;
 import org.embl.mobie.lib.image.Image;
 import org.embl.mobie.lib.serialize.DataSource;
 
+import javax.annotation.Nullable;
 import java.util.*;
-import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutionException;
 import java.util.stream.Collectors;
 
 public abstract class DataStore
@@ -64,8 +63,7 @@ public abstract class DataStore
 
 	private static BiMap< SourceAndConverter< ? >, Image< ? > > sourceToImage = HashBiMap.create();
 
-	// TODO: replace by some soft ref cache? How to free the memory?
-	private static Map< Object, CompletableFuture< ImageData< ? > > > imageDataCache = new ConcurrentHashMap<>();
+	private static final ImageDataCache imageDataCache = new ImageDataCache( 256, 1024 );
 
 	public static BiMap< SourceAndConverter< ? >, Image< ? > > sourceToImage()
 	{
@@ -79,40 +77,51 @@ public abstract class DataStore
 				.collect( Collectors.toList() ) );
 	}
 
+	public static ImageDataCache getImageDataCache()
+	{
+		return imageDataCache;
+	}
+
 	public static ImageData< ? > fetchImageData(
 			String path,
 			ImageDataFormat imageDataFormat,
 			SharedQueue sharedQueue )
 	{
-		try
-		{
-			return imageDataCache
-					.computeIfAbsent( path,
-							p -> CompletableFuture.supplyAsync( ()
-							-> openImageData( (String) p, imageDataFormat, sharedQueue ) ) )
-					.get();
-		}
-		catch ( InterruptedException | ExecutionException e )
-		{
-			throw new RuntimeException( e );
-		}
-    }
+		return fetchImageData( path, imageDataFormat, sharedQueue, null );
+	}
+
+	/**
+	 * @param user
+	 * 			the object that uses the image data; the image data
+	 * 			is not closed as long as the user exists
+	 */
+	public static ImageData< ? > fetchImageData(
+			String path,
+			ImageDataFormat imageDataFormat,
+			SharedQueue sharedQueue,
+			@Nullable Object user )
+	{
+		return imageDataCache.get( path, user, () -> openImageData( path, imageDataFormat, sharedQueue ) );
+	}
 
 	public static ImageData< ? > fetchImageData( Site site, SharedQueue sharedQueue )
 	{
-		try
-		{
-			return imageDataCache
-					.computeIfAbsent(site,
-							s -> CompletableFuture.supplyAsync(()
-									-> addImageData( (Site) s, sharedQueue )))
-					.get();
-		}
-		catch ( InterruptedException | ExecutionException e )
-		{
-			throw new RuntimeException( e );
-		}
-    }
+		return fetchImageData( site, sharedQueue, null );
+	}
+
+	public static ImageData< ? > fetchImageData( Site site, SharedQueue sharedQueue, @Nullable Object user )
+	{
+		return imageDataCache.get( site, user, () -> addImageData( site, sharedQueue ) );
+	}
+
+	/**
+	 * @param key
+	 * 			the path or the site of the image data
+	 */
+	public static void releaseImageData( Object key, Object user )
+	{
+		imageDataCache.removeUser( key, user );
+	}
 
 	private static ImageData< ? > openImageData( String path, ImageDataFormat imageDataFormat, SharedQueue sharedQueue )
 	{
@@ -128,7 +137,7 @@ public abstract class DataStore
 
 	public static void clearSpimDataCache( )
 	{
-		imageDataCache = new ConcurrentHashMap<>();
+		imageDataCache.clear();
 	}
 
 	public static void addRawData( DataSource dataSource )
@@ -197,7 +206,8 @@ public abstract class DataStore
 
 	public static void clearImages()
 	{
-		// TODO: Caching: https://github.com/mobie/mobie-viewer-fiji/issues/813
+		// the images stay available in the ImageCache
+		// for views that are shown later
 		images.clear();
 	}
 
@@ -0,0 +1,366 @@
+/*-
+ * #%L
+ * Fiji viewer for MoBIE projects
+ * %%
+ * Copyright (C) 2018 - 2024 EMBL
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.embl.mobie.lib.data;
+
+import bdv.viewer.Source;
+import ij.IJ;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.util.Intervals;
+import org.embl.mobie.lib.image.AnnotationImage;
+import org.embl.mobie.lib.image.Image;
+import org.embl.mobie.lib.serialize.DataSource;
+import org.embl.mobie.lib.table.AnnotationTableModel;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Keeps the images of previously shown views, such that
+ * showing a view again reuses the images, including their
+ * source pairs, cached voxels and loaded tables.
+ *
+ * The images are keyed by how they have been created, i.e. by the identity
+ * of their data source, or by the identity of the transformation and the keys
+ * of the transformed images. Images that are changed in place lose their key,
+ * because they cannot be recreated like that anymore.
+ *
+ * The images are counted as used by the displays that show them, see
+ * {@link #retain} and {@link #release}; the images from which used images
+ * have been transformed are used as well. Unused images are evicted, least
+ * recently used first, if their estimated memory exceeds {@link #setMaxNumBytes}.
+ */
+public abstract class ImageCache
+{
+	// as the voxels are cached in blocks, as they are viewed,
+	// this many voxels per resolution level are assumed to be cached
+	private static final long MAX_NUM_CACHED_VOXELS_PER_LEVEL = 4096L * 4096L;
+
+	private static boolean enabled = true;
+	private static long maxNumBytes = Runtime.getRuntime().maxMemory() / 4;
+
+	private static final LinkedHashMap< Key, Entry > keyToEntry = new LinkedHashMap<>( 16, 0.75f, true ); // access order
+	private static final Map< Image< ? >, Key > imageToKey = new IdentityHashMap<>();
+
+	/**
+	 * Compares the data source or transformation by identity, such that
+	 * equally named data sources of different projects or datasets,
+	 * or transformations that are equal but not the same, do not share images.
+	 */
+	public static final class Key
+	{
+		private final Object origin;
+		private final List< Key > imageKeys;
+
+		private Key( Object origin, List< Key > imageKeys )
+		{
+			this.origin = origin;
+			this.imageKeys = imageKeys;
+		}
+
+		@Override
+		public boolean equals( Object o )
+		{
+			if ( this == o ) return true;
+			if ( ! ( o instanceof Key ) ) return false;
+			final Key key = ( Key ) o;
+			return origin == key.origin && imageKeys.equals( key.imageKeys );
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return 31 * System.identityHashCode( origin ) + imageKeys.hashCode();
+		}
+
+		@Override
+		public String toString()
+		{
+			return origin.getClass().getSimpleName() + "@" + Integer.toHexString( System.identityHashCode( origin ) )
+					+ ( imageKeys.isEmpty() ? "" : imageKeys.toString() );
+		}
+	}
+
+	private static class Entry
+	{
+		final List< Image< ? > > images;
+		int numUses = 0;
+		long numBytes = -1; // estimated once the entry is unused, -1: not yet estimated
+
+		Entry( List< Image< ? > > images )
+		{
+			this.images = images;
+		}
+	}
+
+	public static synchronized void setEnabled( boolean enabled )
+	{
+		ImageCache.enabled = enabled;
+		if ( ! enabled ) clear();
+	}
+
+	public static boolean isEnabled()
+	{
+		return enabled;
+	}
+
+	/**
+	 * @param maxNumBytes
+	 * 			the estimated memory that the unused images may occupy
+	 */
+	public static synchronized void setMaxNumBytes( long maxNumBytes )
+	{
+		ImageCache.maxNumBytes = maxNumBytes;
+		evict();
+	}
+
+	public static synchronized long getMaxNumBytes()
+	{
+		return maxNumBytes;
+	}
+
+	public static Key getKey( DataSource dataSource )
+	{
+		return new Key( Objects.requireNonNull( dataSource ), Collections.emptyList() );
+	}
+
+	/**
+	 * @return the key of the images that result from transforming the given images,
+	 * 		   or null, if one of the given images is not cached
+	 */
+	public static synchronized Key getKey( Object transformation, List< ? extends Image< ? > > images )
+	{
+		final List< Key > imageKeys = new ArrayList<>();
+		for ( Image< ? > image : images )
+		{
+			final Key imageKey = imageToKey.get( image );
+			if ( imageKey == null ) return null;
+			imageKeys.add( imageKey );
+		}
+
+		return new Key( Objects.requireNonNull( transformation ), imageKeys );
+	}
+
+	/**
+	 * @return the cached images, or null, if there are no images for this key
+	 */
+	public static synchronized List< Image< ? > > acquire( Key key )
+	{
+		if ( ! enabled || key == null ) return null;
+
+		final Entry entry = keyToEntry.get( key );
+		if ( entry == null ) return null;
+
+		return entry.images;
+	}
+
+	/**
+	 * Adds images that are about to be shown.
+	 */
+	public static synchronized void put( Key key, Collection< ? extends Image< ? > > images )
+	{
+		if ( ! enabled || key == null ) return;
+
+		final Entry entry = new Entry( Collections.unmodifiableList( new ArrayList<>( images ) ) );
+		final Entry previous = keyToEntry.put( key, entry );
+		if ( previous != null )
+			previous.images.forEach( imageToKey::remove );
+		for ( Image< ? > image : entry.images )
+			imageToKey.put( image, key );
+	}
+
+	/**
+	 * Removes the entry of an image that is about to be changed in place.
+	 */
+	public static synchronized void invalidate( Image< ? > image )
+	{
+		final Key key = imageToKey.remove( image );
+		if ( key == null ) return;
+
+		final Entry entry = keyToEntry.remove( key );
+		if ( entry != null )
+			entry.images.forEach( imageToKey::remove );
+	}
+
+	/**
+	 * Counts the images as used by one more display.
+	 * Images that are not cached are ignored.
+	 */
+	public static synchronized void retain( Collection< ? extends Image< ? > > images )
+	{
+		for ( Image< ? > image : images )
+		{
+			final Entry entry = getEntry( image );
+			if ( entry != null )
+				entry.numUses++;
+		}
+	}
+
+	/**
+	 * Counts the images as used by one display less, once the display
+	 * that {@link #retain}ed them is removed, and evicts unused images
+	 * as needed.
+	 */
+	public static synchronized void release( Collection< ? extends Image< ? > > images )
+	{
+		for ( Image< ? > image : images )
+		{
+			final Entry entry = getEntry( image );
+			if ( entry == null || entry.numUses == 0 ) continue;
+
+			if ( --entry.numUses == 0 )
+				entry.numBytes = estimateNumBytes( entry.images );
+		}
+
+		evict();
+	}
+
+	public static synchronized void clear()
+	{
+		keyToEntry.clear();
+		imageToKey.clear();
+	}
+
+	public static synchronized int size()
+	{
+		return keyToEntry.size();
+	}
+
+	/**
+	 * @return the estimated memory of the unused images
+	 */
+	public static synchronized long getNumUnusedBytes()
+	{
+		final Set< Key > usedKeys = getUsedKeys();
+		long numBytes = 0;
+		for ( Map.Entry< Key, Entry > keyAndEntry : keyToEntry.entrySet() )
+		{
+			if ( usedKeys.contains( keyAndEntry.getKey() ) ) continue;
+
+			final Entry entry = keyAndEntry.getValue();
+			if ( entry.numBytes < 0 )
+				entry.numBytes = estimateNumBytes( entry.images );
+			numBytes += entry.numBytes;
+		}
+		return numBytes;
+	}
+
+	private static Entry getEntry( Image< ? > image )
+	{
+		final Key key = imageToKey.get( image );
+		return key == null ? null : keyToEntry.get( key );
+	}
+
+	/**
+	 * @return the keys of the used entries and, recursively,
+	 * 		   the keys of the images that they have been created from
+	 */
+	private static Set< Key > getUsedKeys()
+	{
+		final Set< Key > usedKeys = new HashSet<>();
+		final ArrayDeque< Key > keys = new ArrayDeque<>();
+		keyToEntry.forEach( ( key, entry ) -> {
+			if ( entry.numUses > 0 ) keys.add( key );
+		} );
+
+		while ( ! keys.isEmpty() )
+		{
+			final Key key = keys.poll();
+			if ( usedKeys.add( key ) )
+				keys.addAll( key.imageKeys );
+		}
+
+		return usedKeys;
+	}
+
+	private static void evict()
+	{
+		final Set< Key > usedKeys = getUsedKeys();
+		long numUnusedBytes = getNumUnusedBytes();
+		int numEvicted = 0;
+
+		final Iterator< Map.Entry< Key, Entry > > iterator = keyToEntry.entrySet().iterator(); // least recently used first
+		while ( iterator.hasNext() && numUnusedBytes > maxNumBytes )
+		{
+			final Map.Entry< Key, Entry > keyAndEntry = iterator.next();
+			if ( usedKeys.contains( keyAndEntry.getKey() ) ) continue;
+
+			final Entry entry = keyAndEntry.getValue();
+			iterator.remove();
+			entry.images.forEach( imageToKey::remove );
+			numUnusedBytes -= entry.numBytes;
+			numEvicted++;
+		}
+
+		if ( numEvicted > 0 )
+			IJ.log( "Released " + numEvicted + " cached image(s) of previous views." );
+	}
+
+	/**
+	 * Estimates the memory of the cached voxels, assuming that at most
+	 * {@code MAX_NUM_CACHED_VOXELS_PER_LEVEL} voxels per resolution level
+	 * have been loaded, and of the loaded annotation tables.
+	 */
+	private static long estimateNumBytes( List< Image< ? > > images )
+	{
+		long numBytes = 0;
+		for ( Image< ? > image : images )
+		{
+			try
+			{
+				final Source< ? > source = image.getSourcePair().getSource();
+				final Object type = source.getType();
+				final long bytesPerVoxel = type instanceof RealType ? Math.max( 1, ( ( RealType< ? > ) type ).getBitsPerPixel() / 8 ) : 4;
+				if ( source.isPresent( 0 ) )
+					for ( int level = 0; level < source.getNumMipmapLevels(); level++ )
+						numBytes += bytesPerVoxel * Math.min( MAX_NUM_CACHED_VOXELS_PER_LEVEL, Intervals.numElements( source.getSource( 0, level ) ) );
+
+				if ( image instanceof AnnotationImage )
+				{
+					final AnnotationTableModel< ? > table = ( ( AnnotationImage< ? > ) image ).getAnnData().getTable();
+					numBytes += 8L * table.numAnnotations() * table.columnNames().size();
+				}
+			}
+			catch ( RuntimeException e )
+			{
+				// e.g. the image could not be opened; it then hardly occupies any memory
+			}
+		}
+		return numBytes;
+	}
+}
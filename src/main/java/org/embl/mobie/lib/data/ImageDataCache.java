@@ -0,0 +1,289 @@
+/*-
+ * #%L
+ * Fiji viewer for MoBIE projects
+ * %%
+ * Copyright (C) 2018 - 2024 EMBL
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.embl.mobie.lib.data;
+
+import ij.IJ;
+import org.embl.mobie.io.imagedata.ImageData;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Caches opened {@code ImageData}, such that, e.g., all channels of
+ * a multi-channel file share one reader.
+ *
+ * The cache is bounded by the number of entries and by their weight,
+ * which is the number of datasets of the image data; the least recently
+ * used entries are evicted first. As the sources of an evicted image data
+ * may still be shown, evicted image data is only closed (if it is
+ * {@code AutoCloseable}) once all images that have fetched it are gone.
+ */
+public class ImageDataCache
+{
+	private int maxNumEntries;
+	private long maxWeight;
+
+	private final LinkedHashMap< Object, Entry > keyToEntry = new LinkedHashMap<>( 16, 0.75f, true ); // access order
+	private final List< Entry > evicted = new ArrayList<>(); // waiting to be closed
+	private final List< BiConsumer< Object, ImageData< ? > > > evictionListeners = new CopyOnWriteArrayList<>();
+	private long weight;
+
+	private final AtomicLong numHits = new AtomicLong();
+	private final AtomicLong numMisses = new AtomicLong();
+	private final AtomicLong numEvictions = new AtomicLong();
+	private final AtomicLong numClosed = new AtomicLong();
+
+	private static class Entry
+	{
+		final Object key;
+		final CompletableFuture< ImageData< ? > > future;
+		final Set< Object > users = Collections.newSetFromMap( new WeakHashMap<>() );
+		long weight = 0; // not known until the image data is opened
+
+		Entry( Object key, CompletableFuture< ImageData< ? > > future )
+		{
+			this.key = key;
+			this.future = future;
+		}
+	}
+
+	public ImageDataCache( int maxNumEntries, long maxWeight )
+	{
+		this.maxNumEntries = maxNumEntries;
+		this.maxWeight = maxWeight;
+	}
+
+	/**
+	 * @param key
+	 * 			identifies the image data, e.g. its URI
+	 * @param user
+	 * 			the object that uses the image data, typically an image;
+	 * 			as long as it exists the image data is not closed
+	 * @param opener
+	 * 			opens the image data if it is not cached
+	 */
+	public ImageData< ? > get( Object key, @Nullable Object user, Supplier< ImageData< ? > > opener )
+	{
+		final Entry entry;
+		synchronized ( this )
+		{
+			Entry cached = keyToEntry.get( key );
+			if ( cached == null )
+			{
+				numMisses.incrementAndGet();
+				cached = new Entry( key, CompletableFuture.supplyAsync( opener ) );
+				keyToEntry.put( key, cached );
+			}
+			else
+			{
+				numHits.incrementAndGet();
+			}
+
+			if ( user != null )
+				cached.users.add( user );
+
+			entry = cached;
+		}
+
+		final ImageData< ? > imageData;
+		try
+		{
+			imageData = entry.future.get();
+		}
+		catch ( InterruptedException | ExecutionException e )
+		{
+			synchronized ( this )
+			{
+				// do not cache the failure, such that opening can be tried again
+				keyToEntry.remove( key, entry );
+			}
+			throw new RuntimeException( e );
+		}
+
+		synchronized ( this )
+		{
+			if ( entry.weight == 0 && keyToEntry.get( key ) == entry )
+			{
+				entry.weight = Math.max( 1, imageData.getNumDatasets() );
+				weight += entry.weight;
+			}
+
+			evict();
+		}
+
+		return imageData;
+	}
+
+	public synchronized void setMaxNumEntries( int maxNumEntries )
+	{
+		this.maxNumEntries = maxNumEntries;
+		evict();
+	}
+
+	public synchronized void setMaxWeight( long maxWeight )
+	{
+		this.maxWeight = maxWeight;
+		evict();
+	}
+
+	/**
+	 * @param listener
+	 * 			is notified with the key and the image data of each evicted entry
+	 */
+	public void addEvictionListener( BiConsumer< Object, ImageData< ? > > listener )
+	{
+		evictionListeners.add( listener );
+	}
+
+	/**
+	 * To be called if the user does not use the image data anymore,
+	 * such that it can be closed once it is evicted, even though
+	 * the user still exists.
+	 */
+	public synchronized void removeUser( Object key, Object user )
+	{
+		// not via get(), which would mark the entry as recently used
+		for ( Entry entry : keyToEntry.values() )
+			if ( entry.key.equals( key ) )
+				entry.users.remove( user );
+
+		for ( Entry entry : evicted )
+			if ( entry.key.equals( key ) )
+				entry.users.remove( user );
+
+		closeUnused();
+	}
+
+	public synchronized void clear()
+	{
+		final Iterator< Entry > iterator = keyToEntry.values().iterator();
+		while ( iterator.hasNext() )
+		{
+			final Entry entry = iterator.next();
+			iterator.remove();
+			retire( entry );
+		}
+		closeUnused();
+	}
+
+	public synchronized int size()
+	{
+		return keyToEntry.size();
+	}
+
+	public synchronized long getWeight()
+	{
+		return weight;
+	}
+
+	public String getStatistics()
+	{
+		final long hits = numHits.get();
+		final long misses = numMisses.get();
+		final long requests = Math.max( 1, hits + misses );
+		synchronized ( this )
+		{
+			return String.format( "image data cache: %d/%d entries, weight %d/%d, %d hits (%.0f%%), %d misses, %d evicted, %d closed, %d waiting to be closed",
+					keyToEntry.size(), maxNumEntries, weight, maxWeight,
+					hits, 100.0 * hits / requests, misses, numEvictions.get(), numClosed.get(), evicted.size() );
+		}
+	}
+
+	private void evict()
+	{
+		final Iterator< Entry > iterator = keyToEntry.values().iterator(); // least recently used first
+		while ( iterator.hasNext() && ( keyToEntry.size() > maxNumEntries || weight > maxWeight ) )
+		{
+			final Entry entry = iterator.next();
+			if ( ! entry.future.isDone() )
+				continue; // still being opened
+
+			iterator.remove();
+			numEvictions.incrementAndGet();
+			retire( entry );
+		}
+
+		closeUnused();
+	}
+
+	private void retire( Entry entry )
+	{
+		weight -= entry.weight;
+
+		if ( ! entry.future.isDone() || entry.future.isCompletedExceptionally() )
+			return;
+
+		final ImageData< ? > imageData = entry.future.join();
+		for ( BiConsumer< Object, ImageData< ? > > listener : evictionListeners )
+			listener.accept( entry.key, imageData );
+
+		evicted.add( entry );
+	}
+
+	/**
+	 * Closes evicted image data that no image uses anymore.
+	 */
+	private void closeUnused()
+	{
+		final Iterator< Entry > iterator = evicted.iterator();
+		while ( iterator.hasNext() )
+		{
+			final Entry entry = iterator.next();
+			if ( ! entry.users.isEmpty() )
+				continue;
+
+			iterator.remove();
+			final ImageData< ? > imageData = entry.future.join();
+			if ( imageData instanceof AutoCloseable )
+			{
+				try
+				{
+					( ( AutoCloseable ) imageData ).close();
+					numClosed.incrementAndGet();
+				}
+				catch ( Exception e )
+				{
+					IJ.log( "[WARNING] Could not close " + entry.key + ": " + e.getMessage() );
+				}
+			}
+		}
+	}
+}
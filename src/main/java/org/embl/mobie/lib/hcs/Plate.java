@@ -55,6 +55,8 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
@@ -79,7 +81,6 @@ public class Plate
 	private boolean siteIDsAreOneBased = true;
 	private boolean is2d = true;
 	private int numSlices;
-	private boolean fetchSpatialMetadata = true;
 
 	public Plate( String hcsDirectory, @Nullable VoxelDimensions voxelDimensions ) throws IOException
 	{
@@ -92,6 +93,8 @@ public class Plate
 		IJ.log( "Looking for image files..." );
 		long start = System.currentTimeMillis();
 		List< String > imagePaths;
+		final String validation;
+		final PlateIndex index;
 
 		if ( hcsDirectory.endsWith( ".zarr" ) )
 		{
@@ -109,12 +112,24 @@ public class Plate
 
 			imagePaths = OMEZarrHCSHelper.imagePathsFromMetadata( hcsDirectory );
 			Collections.sort( imagePaths );
-			String referenceImagePath = imagePaths.get( 0 );
-			ImageData< ? > imageData = ImageDataOpener.open( referenceImagePath, imageDataFormat, ThreadHelper.sharedQueue );
-			int numChannels = imageData.getNumDatasets();
-			List< String > channelNames = IntStream.range( 0, numChannels )
-					.mapToObj( imageData::getName )
-					.collect( Collectors.toList() );
+			validation = PlateIndex.getListingHash( imagePaths );
+			index = PlateIndex.load( hcsDirectory, validation );
+			final List< String > channelNames;
+			if ( index != null )
+			{
+				channelNames = index.getChannels().stream()
+						.map( channel -> channel.name )
+						.collect( Collectors.toList() );
+			}
+			else
+			{
+				String referenceImagePath = imagePaths.get( 0 );
+				ImageData< ? > imageData = ImageDataOpener.open( referenceImagePath, imageDataFormat, ThreadHelper.sharedQueue );
+				int numChannels = imageData.getNumDatasets();
+				channelNames = IntStream.range( 0, numChannels )
+						.mapToObj( imageData::getName )
+						.collect( Collectors.toList() );
+			}
 			hcsPattern.setChannelNames( channelNames );
 		}
 		else
@@ -123,53 +138,237 @@ public class Plate
 			{
 				imageDataFormat = ImageDataFormat.BioFormatsS3;
 				imagePaths = S3Utils.getS3FilePaths( hcsDirectory );
+				validation = PlateIndex.getListingHash( imagePaths );
+				index = PlateIndex.load( hcsDirectory, validation );
 				ThreadHelper.setNumIoThreads( Math.max( 16, ThreadHelper.getNumIoThreads() ) );
 			}
 			else
 			{
-				imagePaths = Files.walk( Paths.get( hcsDirectory ), 3 )
-						.map( Path::toString )
-						.collect( Collectors.toList() );
+				validation = PlateIndex.getModificationStamp( hcsDirectory );
+				index = PlateIndex.load( hcsDirectory, validation );
+				imagePaths = index != null
+						? index.getImagePaths() // skip walking the plate directory
+						: Files.walk( Paths.get( hcsDirectory ), 3 )
+								.map( Path::toString )
+								.collect( Collectors.toList() );
 				imageDataFormat = ImageDataFormat.BioFormats;
 			}
 
-			hcsPattern = determineHCSPattern( hcsDirectory, imagePaths );
-			imagePaths = imagePaths.stream()
-					.filter( path -> hcsPattern.setMatcher( path ) ) // skip files like .DS_Store a.s.o.
-					.collect( Collectors.toList() );
+			if ( index != null )
+			{
+				IJ.log( "Using the plate index in " + PlateIndex.diskCache().getDirectory() );
+				hcsPattern = index.getHcsPattern();
+				imageDataFormat = index.getImageDataFormat();
+				imagePaths = index.getImagePaths();
 
-			if ( hcsPattern.equals( HCSPattern.Operetta ) )
+				if ( hcsPattern.equals( HCSPattern.Operetta ) )
+					operettaMetadata = new OperettaMetadata( new File( hcsDirectory, "Index.xml" ) );
+			}
+			else
 			{
-				// only keep paths that are also in the XML
-				//final File xml = new File( hcsDirectory, "Index.idx.xml" );
-				final File xml = new File( hcsDirectory, "Index.xml" );
-				operettaMetadata = new OperettaMetadata( xml );
+				hcsPattern = determineHCSPattern( hcsDirectory, imagePaths );
 				imagePaths = imagePaths.stream()
-						.filter( path -> operettaMetadata.contains( path ) ) // skip files like .DS_Store a.s.o.
+						.filter( path -> hcsPattern.setMatcher( path ) ) // skip files like .DS_Store a.s.o.
 						.collect( Collectors.toList() );
-			}
-			else if ( hcsPattern.equals( HCSPattern.YokogawaCQ1 )
-					|| hcsPattern.equals( HCSPattern.MolecularDevices )
-					|| hcsPattern.equals( HCSPattern.InCarta )
-					|| hcsPattern.equals( HCSPattern.Araceli ) )
-			{
-				imageDataFormat = ImageDataFormat.Tiff;
+
+				if ( hcsPattern.equals( HCSPattern.Operetta ) )
+				{
+					// only keep paths that are also in the XML
+					//final File xml = new File( hcsDirectory, "Index.idx.xml" );
+					final File xml = new File( hcsDirectory, "Index.xml" );
+					operettaMetadata = new OperettaMetadata( xml );
+					imagePaths = imagePaths.stream()
+							.filter( path -> operettaMetadata.contains( path ) ) // skip files like .DS_Store a.s.o.
+							.collect( Collectors.toList() );
+				}
+				else if ( hcsPattern.equals( HCSPattern.YokogawaCQ1 )
+						|| hcsPattern.equals( HCSPattern.MolecularDevices )
+						|| hcsPattern.equals( HCSPattern.InCarta )
+						|| hcsPattern.equals( HCSPattern.Araceli ) )
+				{
+					imageDataFormat = ImageDataFormat.Tiff;
+				}
 			}
 		}
 		IJ.log( "Found " + imagePaths.size() + " image file(s) in " + ( System.currentTimeMillis() - start ) + " ms." );
 		IJ.log( "HCS pattern: " + getHcsPattern() );
 		IJ.log( "Image data format: " + imageDataFormat );
 
-		buildPlateMap( imagePaths );
+		if ( index != null )
+		{
+			buildPlateMap( imagePaths, index );
+		}
+		else
+		{
+			final PlateIndex newIndex = new PlateIndex( hcsDirectory, validation );
+			newIndex.setHcsPattern( hcsPattern );
+			newIndex.setImageDataFormat( imageDataFormat );
+			newIndex.setImagePaths( imagePaths );
+			fetchChannelMetadata( imagePaths, newIndex );
+			buildPlateMap( imagePaths, newIndex );
+			newIndex.save();
+		}
+	}
+
+	/**
+	 * Fetches the metadata of each channel from the first image of the channel;
+	 * as this involves opening the image and computing its value range,
+	 * the channels are processed in parallel.
+	 */
+	private void fetchChannelMetadata( List< String > imagePaths, PlateIndex index )
+	{
+		IJ.log("Parsing metadata...");
+
+		// the first image of each channel
+		//
+		final Map< String, String > channelToImagePath = new LinkedHashMap<>();
+		final Map< String, Integer > channelToIndex = new HashMap<>();
+		for ( String imagePath : imagePaths )
+		{
+			hcsPattern.setMatcher( imagePath );
+
+			// some formats contain multiple channels in one file
+			List< String > channelNames = hcsPattern.getChannels();
+			for ( String channelName : channelNames )
+			{
+				if ( channelToImagePath.putIfAbsent( channelName, imagePath ) == null )
+					channelToIndex.put( channelName, channelNames.indexOf( channelName ) );
+			}
+		}
+
+		final Map< String, Future< PlateIndex.ChannelMetadata > > futures = new LinkedHashMap<>();
+		for ( String channelName : channelToImagePath.keySet() )
+		{
+			final String imagePath = channelToImagePath.get( channelName );
+			final int channelIndex = channelToIndex.get( channelName );
+			futures.put( channelName, ThreadHelper.ioExecutorService.submit(
+					() -> fetchMetadata( channelName, channelIndex, imagePath ) ) );
+		}
+
+		for ( String channelName : futures.keySet() )
+		{
+			try
+			{
+				index.addChannel( futures.get( channelName ).get() );
+			}
+			catch ( InterruptedException | ExecutionException e )
+			{
+				throw new RuntimeException( "Could not fetch the metadata of channel " + channelName, e );
+			}
+		}
+		index.setNumSlices( numSlices );
+
+		// the spatial metadata should be the same for all files and channels
+		//
+		final String imagePath = channelToImagePath.values().iterator().next();
+		if ( operettaMetadata != null )
+		{
+			index.setVoxelDimensions( operettaMetadata.getVoxelDimensions( imagePath ) );
+			index.setSiteDimensions( operettaMetadata.getSiteDimensions( imagePath ) );
+		}
+		else // from image file
+		{
+			final int channelIndex = channelToIndex.values().iterator().next();
+			ImageData< ? > imageData = ImageDataOpener.open( imagePath, imageDataFormat, ThreadHelper.sharedQueue );
+			Source< ? > source = imageData.getSourcePair( channelIndex ).getA();
+
+			VoxelDimensions voxelDimensions = source.getVoxelDimensions();
+
+			if ( voxelDimensions == null )
+			{
+				/*
+				If the z-positions are distributed over multiple files
+				typically the z-calibration metadata in the individual files is wrong.
+				We thus just put something sensible here such that browsing in BDV along the
+				z-axis is convenient
+				 */
+				voxelDimensions = new FinalVoxelDimensions(
+						voxelDimensions.unit(),
+						voxelDimensions.dimension( 0 ),
+						voxelDimensions.dimension( 1 ),
+						10 * voxelDimensions.dimension( 1 )
+				);
+			}
+
+			long width = source.getSource( 0, 0 ).dimension( 0 );
+			long height = source.getSource( 0, 0 ).dimension( 1 );
+			index.setVoxelDimensions( voxelDimensions );
+			index.setSiteDimensions( new int[]{ ( int ) width, ( int ) height } );
+		}
 	}
 
-	private void buildPlateMap( List< String > imagePaths )
+	private PlateIndex.ChannelMetadata fetchMetadata( String channelName, int channelIndex, String imagePath )
+	{
+		if ( operettaMetadata != null ) // Do we still want to support the operetta stuff at all?
+		{
+			// TODO: There does not always seem to be enough metadata for the
+			//   contrast limits, thus opening one image may be worth it
+			//   then convert to imagePlus and run once ntrast on it
+			return new PlateIndex.ChannelMetadata(
+					channelName,
+					channelIndex,
+					operettaMetadata.getColor( imagePath ),
+					operettaMetadata.getContrastLimits( imagePath ) );
+		}
+
+		// Open for metadata only
+		ImageData< ? > imageData = ImageDataOpener.open( imagePath, imageDataFormat, ThreadHelper.sharedQueue );
+
+		IJ.log( "Fetching metadata for \"" + channelName + "\" from " + imagePath );
+		Source< ? > source = imageData.getSourcePair( channelIndex ).getA();
+		int numMipmapLevels = source.getNumMipmapLevels();
+		int numZSlices = ( int ) source.getSource( 0, 0 ).dimension( 2 );
+		synchronized ( this )
+		{
+			if ( numZSlices > numSlices ) numSlices = numZSlices;
+		}
+		RandomAccessibleInterval< ? > rai = source.getSource( 0, numMipmapLevels - 1 );
+		double[] minMax = computeMinMax( ( RandomAccessibleInterval ) rai );
+		IJ.log( "Value range of \"" + channelName + "\": " + Arrays.toString( minMax ) );
+		IJ.log( "Pixel dimensions: " + Arrays.toString( source.getSource( 0, 0 ).dimensionsAsLongArray() ) );
+		IJ.log( "Resolutions: " + source.getNumMipmapLevels() );
+
+		// This currently does not do any auto-contrast, but just returns the datatype's range
+//		double[] contrastLimits = {
+//				imageData.getMetadata( datasetIndex ).minIntensity(),
+//				imageData.getMetadata( datasetIndex ).maxIntensity()
+//		};
+		return new PlateIndex.ChannelMetadata(
+				channelName,
+				channelIndex,
+				ColorHelper.getString( imageData.getMetadata( channelIndex ).getColor() ),
+				minMax );
+	}
+	private void buildPlateMap( List< String > imagePaths, PlateIndex index )
 	{
 		channelWellSites = new HashMap<>();
 		tPositions = new HashSet<>();
 		zPositions = new HashSet<>();
 
-		IJ.log("Parsing metadata...");
+		// channels
+		//
+		final Map< String, Channel > nameToChannel = new HashMap<>();
+		for ( PlateIndex.ChannelMetadata metadata : index.getChannels() )
+		{
+			final Channel channel = new Channel( metadata.name, metadata.index );
+			channel.setColor( metadata.color );
+			channel.setContrastLimits( metadata.contrastLimits );
+			nameToChannel.put( metadata.name, channel );
+		}
+
+		// spatial metadata
+		//
+		numSlices = Math.max( numSlices, index.getNumSlices() );
+		voxelDimensions = index.getVoxelDimensions();
+		siteDimensions = index.getSiteDimensions();
+		siteRealDimensions = new double[]{
+				siteDimensions[ 0 ] * voxelDimensions.dimension( 0 ),
+				siteDimensions[ 1 ] * voxelDimensions.dimension( 1 ) };
+
+		// wells and sites are looked up by name, because there can be very many files
+		//
+		final Map< Channel, Map< String, Well > > channelToWells = new HashMap<>();
+		final Map< Well, Map< String, Site > > wellToSites = new HashMap<>();
 
 		for ( String imagePath : imagePaths )
 		{
@@ -180,110 +379,22 @@ public class Plate
 
 			for ( String channelName : channelNames )
 			{
-				Channel channel = getChannel( channelWellSites, channelName );
-
-				if ( channel == null )
+				Channel channel = nameToChannel.get( channelName );
+				if ( ! channelWellSites.containsKey( channel ) )
 				{
-					// configure channel properties
-					//
-					channel = new Channel( channelName, channelNames.indexOf( channelName ) );
 					channelWellSites.put( channel, new HashMap<>() );
-
-					// Open for metadata only
-					ImageData< ? > imageData = ImageDataOpener.open( imagePath, imageDataFormat, ThreadHelper.sharedQueue );
-
-					// set channel metadata
-					//
-					if ( operettaMetadata != null ) // Do we still want to support the operetta stuff at all?
-					{
-						final String color = operettaMetadata.getColor( imagePath );
-						channel.setColor( color );
-
-						// TODO: There does not always seem to be enough metadata for the
-						//   contrast limits, thus opening one image may be worth it
-						//   then convert to imagePlus and run once ntrast on it
-						final double[] contrastLimits = operettaMetadata.getContrastLimits( imagePath );
-						channel.setContrastLimits( contrastLimits );
-					}
-					else // from image file
-					{
-						int datasetIndex = channel.getIndex();
-
-						IJ.log( "Fetching metadata for \"" + channelName + "\" from " + imagePath );
-						Source< ? > source = imageData.getSourcePair( datasetIndex ).getA();
-						int numMipmapLevels = source.getNumMipmapLevels();
-						int numZSlices = ( int ) source.getSource( 0, 0 ).dimension( 2 );
-						if ( numZSlices > numSlices ) numSlices = numZSlices;
-						RandomAccessibleInterval< ? > rai = source.getSource( 0, numMipmapLevels - 1 );
-						double[] minMax = computeMinMax( ( RandomAccessibleInterval ) rai );
-						IJ.log( "Value range: " + Arrays.toString( minMax ) );
-						IJ.log( "Pixel dimensions: " + Arrays.toString( source.getSource( 0, 0 ).dimensionsAsLongArray() ) );
-						IJ.log( "Resolutions: " + source.getNumMipmapLevels() );
-
-						channel.setColor( ColorHelper.getString( imageData.getMetadata( datasetIndex ).getColor() ) );
-						// This currently does not do any auto-contrast, but just returns the datatype's range
-//						double[] contrastLimits = {
-//								imageData.getMetadata( datasetIndex ).minIntensity(),
-//								imageData.getMetadata( datasetIndex ).maxIntensity()
-//						};
-						channel.setContrastLimits( minMax );
-					}
-
-					if ( fetchSpatialMetadata )
-					{
-						fetchSpatialMetadata= false; // should be the same for all files and channels
-
-						if ( operettaMetadata != null )
-						{
-							voxelDimensions = operettaMetadata.getVoxelDimensions( imagePath );
-							siteDimensions = operettaMetadata.getSiteDimensions( imagePath );
-						}
-						else // from image file
-						{
-							Source< ? > source = imageData.getSourcePair( channel.getIndex() ).getA();
-
-							voxelDimensions = source.getVoxelDimensions();
-
-							if ( voxelDimensions == null )
-							{
-								/*
-								If the z-positions are distributed over multiple files
-								typically the z-calibration metadata in the individual files is wrong.
-								We thus just put something sensible here such that browsing in BDV along the
-								z-axis is convenient
-								 */
-								voxelDimensions = new FinalVoxelDimensions(
-										voxelDimensions.unit(),
-										voxelDimensions.dimension( 0 ),
-										voxelDimensions.dimension( 1 ),
-										10 * voxelDimensions.dimension( 1 )
-								);
-							}
-
-							long width = source.getSource( 0, 0 ).dimension( 0 );
-							long height = source.getSource( 0, 0 ).dimension( 1 );
-							siteDimensions = new int[]{ ( int ) width, ( int ) height };
-						}
-
-						// compute derived spatial metadata
-						//
-						siteRealDimensions = new double[]{
-								siteDimensions[ 0 ] * voxelDimensions.dimension( 0 ),
-								siteDimensions[ 1 ] * voxelDimensions.dimension( 1 ) };
-
-						siteRealDimensions = new double[]{
-								siteDimensions[ 0 ] * voxelDimensions.dimension( 0 ),
-								siteDimensions[ 1 ] * voxelDimensions.dimension( 1 ) };
-					}
+					channelToWells.put( channel, new HashMap<>() );
 				}
 
 				// well
 				//
 				String wellGroup = hcsPattern.getWellGroup();
-				Well well = getWell( channelWellSites, channel, wellGroup );
+				Well well = channelToWells.get( channel ).get( wellGroup );
 				if ( well == null )
 				{
 					well = new Well( wellGroup );
+					channelToWells.get( channel ).put( wellGroup, well );
+					wellToSites.put( well, new HashMap<>() );
 					channelWellSites.get( channel ).put( well, new HashSet<>() );
 					final int numWells = channelWellSites.get( channel ).size();
 					if ( numWells > wellsPerPlate )
@@ -293,7 +404,7 @@ public class Plate
 				// site
 				//
 				final String siteGroup = hcsPattern.getSiteGroup();
-				Site site = getSite( channelWellSites, channel, well, siteGroup );
+				Site site = wellToSites.get( well ).get( siteGroup );
 				if ( site == null )
 				{
 					if ( imageDataFormat.equals( ImageDataFormat.SpimData ) )
@@ -314,6 +425,7 @@ public class Plate
 					}
 					site.setDimensions( siteDimensions );
 					site.setVoxelDimensions( voxelDimensions );
+					wellToSites.get( well ).put( siteGroup, site );
 					channelWellSites.get( channel ).get( well ).add( site );
 					if ( Integer.parseInt( site.getId() ) == 0 )
 						siteIDsAreOneBased = false; // zero based
@@ -349,44 +461,6 @@ public class Plate
 			is2d = false;
 	}
 
-
-	private Channel getChannel( HashMap< Channel, Map< Well, Set< Site > > > channelWellSites, String channelName )
-	{
-		try
-		{
-			return channelWellSites.keySet().stream().filter( c -> c.getName().equals( channelName ) ).findFirst().get();
-		}
-		catch ( NoSuchElementException e )
-		{
-			return null;
-		}
-
-	}
-
-	private Well getWell( HashMap< Channel, Map< Well, Set< Site > > > channelWellSites, Channel channel, String wellName )
-	{
-		try
-		{
-			return channelWellSites.get( channel ).keySet().stream().filter( w -> w.getName().equals( wellName ) ).findFirst().get();
-		}
-		catch ( NoSuchElementException e )
-		{
-			return null;
-		}
-	}
-
-	private Site getSite( HashMap< Channel, Map< Well, Set< Site > > > channelWellSites, Channel channel, Well well, String siteName )
-	{
-		try
-		{
-			return channelWellSites.get( channel ).get( well ).stream().filter( s -> s.getId().equals( siteName ) ).findFirst().get();
-		}
-		catch ( NoSuchElementException e )
-		{
-			return null;
-		}
-	}
-
 	private HCSPattern determineHCSPattern( String hcsDirectory, List< String > paths )
 	{
 		for ( String path : paths )
@@ -0,0 +1,245 @@
+/*-
+ * #%L
+ * Fiji viewer for MoBIE projects
+ * %%
+ * Copyright (C) 2018 - 2024 EMBL
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.embl.mobie.lib.hcs;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import mpicbg.spim.data.sequence.FinalVoxelDimensions;
+import mpicbg.spim.data.sequence.VoxelDimensions;
+import org.embl.mobie.io.ImageDataFormat;
+import org.embl.mobie.lib.io.DiskCache;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Persists what has been found out about an HCS plate, such that
+ * reopening the plate neither needs to match all file paths against
+ * the {@link HCSPattern} nor to open images for the channel metadata.
+ *
+ * The index is only used if its validation string equals the one of the
+ * plate at the time of opening, e.g. the modification times of the plate
+ * directories or a hash of the file listing.
+ */
+public class PlateIndex
+{
+	private static final int VERSION = 1;
+	private static final Gson GSON = new GsonBuilder().create();
+
+	private static final DiskCache diskCache = new DiskCache( "plates", ".json", 100_000_000L );
+
+	// serialised fields
+	private int version = VERSION;
+	private String hcsDirectory;
+	private String validation;
+	private String hcsPattern;
+	private String imageDataFormat;
+	private List< String > imagePaths;
+	private List< ChannelMetadata > channels = new ArrayList<>();
+	private int numSlices;
+	private String voxelUnit;
+	private double[] voxelSize;
+	private int[] siteDimensions;
+
+	public static class ChannelMetadata
+	{
+		public String name;
+		public int index;
+		public String color;
+		public double[] contrastLimits;
+
+		public ChannelMetadata( String name, int index, String color, double[] contrastLimits )
+		{
+			this.name = name;
+			this.index = index;
+			this.color = color;
+			this.contrastLimits = contrastLimits;
+		}
+	}
+
+	public PlateIndex( String hcsDirectory, String validation )
+	{
+		this.hcsDirectory = hcsDirectory;
+		this.validation = validation;
+	}
+
+	public static DiskCache diskCache()
+	{
+		return diskCache;
+	}
+
+	/**
+	 * @return the index of the plate, or null if there is none
+	 * 		   or if it has been written for a different state of the plate
+	 */
+	public static PlateIndex load( String hcsDirectory, String validation )
+	{
+		final File file = diskCache.get( hcsDirectory );
+		if ( file == null ) return null;
+
+		try ( Reader reader = Files.newBufferedReader( file.toPath(), StandardCharsets.UTF_8 ) )
+		{
+			final PlateIndex index = GSON.fromJson( reader, PlateIndex.class );
+			if ( index == null
+					|| index.version != VERSION
+					|| ! hcsDirectory.equals( index.hcsDirectory )
+					|| ! validation.equals( index.validation ) )
+				return null;
+
+			return index;
+		}
+		catch ( Exception e )
+		{
+			// e.g. a truncated file; the plate will be indexed again
+			return null;
+		}
+	}
+
+	public void save()
+	{
+		diskCache.put( hcsDirectory, out ->
+		{
+			final Writer writer = new OutputStreamWriter( out, StandardCharsets.UTF_8 );
+			GSON.toJson( this, writer );
+			writer.flush();
+		} );
+	}
+
+	/**
+	 * The modification times of the plate directory and of its sub-directories.
+	 *
+	 * Adding or removing an image file changes the modification time of the
+	 * directory that contains it. To avoid listing the (potentially many)
+	 * image files, only the plate directory itself is listed; thus, changes
+	 * deeper than the direct sub-directories are not detected.
+	 */
+	public static String getModificationStamp( String hcsDirectory ) throws IOException
+	{
+		final String stamp = DiskCache.getModificationStamp( hcsDirectory );
+		if ( stamp == null )
+			throw new NoSuchFileException( hcsDirectory );
+
+		return stamp;
+	}
+
+	/**
+	 * For plates whose file listing is cheap compared to opening the images,
+	 * such as plates in an object store, the listing itself validates the index.
+	 */
+	public static String getListingHash( List< String > paths )
+	{
+		return DiskCache.hash( String.join( "\n", paths ) );
+	}
+
+	public HCSPattern getHcsPattern()
+	{
+		return HCSPattern.valueOf( hcsPattern );
+	}
+
+	public void setHcsPattern( HCSPattern hcsPattern )
+	{
+		this.hcsPattern = hcsPattern.name();
+	}
+
+	public ImageDataFormat getImageDataFormat()
+	{
+		return ImageDataFormat.valueOf( imageDataFormat );
+	}
+
+	public void setImageDataFormat( ImageDataFormat imageDataFormat )
+	{
+		this.imageDataFormat = imageDataFormat.name();
+	}
+
+	public List< String > getImagePaths()
+	{
+		return imagePaths;
+	}
+
+	public void setImagePaths( List< String > imagePaths )
+	{
+		this.imagePaths = imagePaths;
+	}
+
+	public List< ChannelMetadata > getChannels()
+	{
+		return channels;
+	}
+
+	public void addChannel( ChannelMetadata channel )
+	{
+		channels.add( channel );
+	}
+
+	public ChannelMetadata getChannel( String name )
+	{
+		return channels.stream().filter( c -> c.name.equals( name ) ).findFirst().orElse( null );
+	}
+
+	public int getNumSlices()
+	{
+		return numSlices;
+	}
+
+	public void setNumSlices( int numSlices )
+	{
+		this.numSlices = numSlices;
+	}
+
+	public VoxelDimensions getVoxelDimensions()
+	{
+		return new FinalVoxelDimensions( voxelUnit, voxelSize );
+	}
+
+	public void setVoxelDimensions( VoxelDimensions voxelDimensions )
+	{
+		voxelUnit = voxelDimensions.unit();
+		voxelSize = new double[ voxelDimensions.numDimensions() ];
+		for ( int d = 0; d < voxelSize.length; d++ )
+			voxelSize[ d ] = voxelDimensions.dimension( d );
+	}
+
+	public int[] getSiteDimensions()
+	{
+		return siteDimensions;
+	}
+
+	public void setSiteDimensions( int[] siteDimensions )
+	{
+		this.siteDimensions = siteDimensions;
+	}
+}
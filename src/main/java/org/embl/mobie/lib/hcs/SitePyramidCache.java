@@ -0,0 +1,454 @@
+/*-
+ * #%L
+ * Fiji viewer for MoBIE projects
+ * %%
+ * Copyright (C) 2018 - 2024 EMBL
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.embl.mobie.lib.hcs;
+
+import bdv.util.volatiles.VolatileViews;
+import bdv.viewer.Source;
+import ij.IJ;
+import net.imglib2.Cursor;
+import net.imglib2.FinalInterval;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.Volatile;
+import net.imglib2.cache.img.CachedCellImg;
+import net.imglib2.cache.img.CellLoader;
+import net.imglib2.cache.img.ReadOnlyCachedCellImgFactory;
+import net.imglib2.cache.img.ReadOnlyCachedCellImgOptions;
+import net.imglib2.cache.img.SingleCellArrayImg;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.Pair;
+import net.imglib2.util.ValuePair;
+import net.imglib2.view.Views;
+import org.embl.mobie.io.toml.TPosition;
+import org.embl.mobie.io.toml.ZPosition;
+import org.embl.mobie.lib.io.DiskCache;
+import org.embl.mobie.lib.source.AppendedMipmapsSource;
+import org.embl.mobie.lib.source.MipmapLevels;
+import org.embl.mobie.lib.util.ThreadHelper;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Adds downsampled resolution levels to the images of HCS sites
+ * that are stored as single resolution files, such that, e.g.,
+ * a zoomed out plate does not need to decode all the files at
+ * full resolution.
+ *
+ * Unless disabled with {@link #setBuildEnabled}, the levels are computed on
+ * the I/O threads, from the full resolution image, the first time that a site
+ * is opened, and stored in one file per site. Once the file exists, opening
+ * the site again yields an image with all levels. The levels are read lazily,
+ * plane by plane. Sites that are not stored locally are not cached, because
+ * changes to their files could not be detected.
+ *
+ * The files are limited to {@link #MAX_NUM_BYTES} in total; least recently
+ * used files are deleted, except for those of the images that are still
+ * reading from them.
+ */
+public class SitePyramidCache
+{
+	private static final int MAGIC = 0x50595244; // "PYRD"
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 5 * Integer.BYTES + 2 * Long.BYTES;
+	private static final long MAX_COARSEST_LEVEL_SIZE = 64;
+	private static final int MAX_NUM_LEVELS = 10;
+
+	private static final int UINT8 = 0;
+	private static final int UINT16 = 1;
+	private static final int FLOAT32 = 2;
+
+	public static final long MAX_NUM_BYTES = 10_000_000_000L;
+
+	private static final DiskCache diskCache = new DiskCache( "pyramids", ".pyramid", MAX_NUM_BYTES );
+
+	private static volatile boolean buildEnabled = true;
+
+	// the sites whose levels are currently being computed
+	private static final Set< String > building = ConcurrentHashMap.newKeySet();
+
+	public static DiskCache diskCache()
+	{
+		return diskCache;
+	}
+
+	/**
+	 * @param buildEnabled
+	 * 			whether to compute the levels of sites for which they are not yet cached;
+	 * 			this reads each site once at full resolution, which is what
+	 * 			displaying a site without levels does anyway
+	 */
+	public static void setBuildEnabled( boolean buildEnabled )
+	{
+		SitePyramidCache.buildEnabled = buildEnabled;
+	}
+
+	public static boolean isBuildEnabled()
+	{
+		return buildEnabled;
+	}
+
+	/**
+	 * @return the source and the volatile source with the cached resolution levels added,
+	 * 		   or the given sources, if the levels are not (yet) cached; in the latter case
+	 * 		   they are computed in the background, if enabled, such that they are there next time.
+	 */
+	public static < T extends NativeType< T > & RealType< T > > Pair< Source< T >, Source< ? extends Volatile< T > > > addMipmaps(
+			Site site,
+			int setupId,
+			Source< T > source,
+			Source< ? extends Volatile< T > > volatileSource )
+	{
+		final ValuePair< Source< T >, Source< ? extends Volatile< T > > > sources = new ValuePair<>( source, volatileSource );
+
+		if ( ! diskCache.isEnabled() || source.getNumMipmapLevels() > 1 )
+			return sources;
+
+		final int dataType = getDataType( source.getType() );
+		if ( dataType < 0 )
+			return sources; // e.g. RGB
+
+		final RandomAccessibleInterval< T > rai = source.getSource( 0, 0 );
+		final MipmapLevels mipmapLevels = new MipmapLevels( new FinalInterval( rai.dimension( 0 ), rai.dimension( 1 ), 1 ), MAX_COARSEST_LEVEL_SIZE, MAX_NUM_LEVELS );
+		if ( mipmapLevels.numLevels() == 1 )
+			return sources; // small enough
+
+		final String key = getKey( site, setupId );
+		if ( key == null )
+			return sources; // e.g. remote
+
+		final File file = diskCache.get( key );
+		final int numTimepoints = getNumTimepoints( source );
+		final Layout layout = new Layout( mipmapLevels, dataType, numTimepoints, ( int ) rai.dimension( 2 ) );
+
+		if ( file == null || ! layout.matches( file ) )
+		{
+			if ( buildEnabled && building.add( key ) )
+				ThreadHelper.ioExecutorService.submit( () -> {
+					try
+					{
+						write( source, layout, key );
+					}
+					finally
+					{
+						building.remove( key );
+					}
+				} );
+
+			return sources;
+		}
+
+		final List< List< RandomAccessibleInterval< T > > > levels = new ArrayList<>();
+		final List< List< RandomAccessibleInterval< Volatile< T > > > > volatileLevels = new ArrayList<>();
+		for ( int t = 0; t < numTimepoints; t++ )
+		{
+			levels.add( new ArrayList<>() );
+			volatileLevels.add( new ArrayList<>() );
+			for ( int level = 1; level < mipmapLevels.numLevels(); level++ )
+			{
+				final long[] dimensions = mipmapLevels.dimensions( level );
+				final CachedCellImg< T, ? > img = new ReadOnlyCachedCellImgFactory().create(
+						new long[]{ dimensions[ 0 ], dimensions[ 1 ], layout.numSlices },
+						source.getType().createVariable(),
+						new PlaneLoader<>( file, layout, t, level ),
+						ReadOnlyCachedCellImgOptions.options().cellDimensions( ( int ) dimensions[ 0 ], ( int ) dimensions[ 1 ], 1 ) );
+				levels.get( t ).add( img );
+				volatileLevels.get( t ).add( ( RandomAccessibleInterval ) VolatileViews.wrapAsVolatile( img, ThreadHelper.sharedQueue ) );
+			}
+		}
+
+		final AppendedMipmapsSource< T > mipmapSource = new AppendedMipmapsSource<>( source, levels, mipmapLevels.transforms() );
+		final AppendedMipmapsSource< Volatile< T > > volatileMipmapSource = new AppendedMipmapsSource<>( ( Source ) volatileSource, volatileLevels, mipmapLevels.transforms() );
+
+		return new ValuePair<>( mipmapSource, volatileMipmapSource );
+	}
+
+	/**
+	 * The file contains, after the header, for each time point and slice,
+	 * the planes of all levels coarser than level 0.
+	 */
+	static class Layout
+	{
+		final MipmapLevels mipmapLevels;
+		final int dataType;
+		final int numTimepoints;
+		final int numSlices;
+		final int bytesPerElement;
+		final long[] levelOffsets; // in elements, within the planes of one slice
+		final long numElementsPerSlice;
+
+		Layout( MipmapLevels mipmapLevels, int dataType, int numTimepoints, int numSlices )
+		{
+			this.mipmapLevels = mipmapLevels;
+			this.dataType = dataType;
+			this.numTimepoints = numTimepoints;
+			this.numSlices = numSlices;
+			this.bytesPerElement = dataType == UINT8 ? 1 : dataType == UINT16 ? 2 : 4;
+
+			levelOffsets = new long[ mipmapLevels.numLevels() ];
+			long numElements = 0;
+			for ( int level = 1; level < mipmapLevels.numLevels(); level++ )
+			{
+				levelOffsets[ level ] = numElements;
+				numElements += numElements( level );
+			}
+			numElementsPerSlice = numElements;
+		}
+
+		long numElements( int level )
+		{
+			final long[] dimensions = mipmapLevels.dimensions( level );
+			return dimensions[ 0 ] * dimensions[ 1 ];
+		}
+
+		long offset( int t, int z, int level )
+		{
+			return HEADER_SIZE + ( ( ( long ) t * numSlices + z ) * numElementsPerSlice + levelOffsets[ level ] ) * bytesPerElement;
+		}
+
+		void writeHeader( DataOutputStream out ) throws IOException
+		{
+			out.writeInt( MAGIC );
+			out.writeInt( VERSION );
+			out.writeInt( dataType );
+			out.writeInt( numTimepoints );
+			out.writeInt( numSlices );
+			out.writeLong( mipmapLevels.dimensions( 0 )[ 0 ] );
+			out.writeLong( mipmapLevels.dimensions( 0 )[ 1 ] );
+		}
+
+		/**
+		 * @return true, if the file is complete and has been written for an image like this one
+		 */
+		boolean matches( File file )
+		{
+			if ( ! file.exists() || file.length() != offset( numTimepoints, 0, 0 ) )
+				return false;
+
+			try ( DataInputStream in = new DataInputStream( Files.newInputStream( file.toPath() ) ) )
+			{
+				return in.readInt() == MAGIC
+						&& in.readInt() == VERSION
+						&& in.readInt() == dataType
+						&& in.readInt() == numTimepoints
+						&& in.readInt() == numSlices
+						&& in.readLong() == mipmapLevels.dimensions( 0 )[ 0 ]
+						&& in.readLong() == mipmapLevels.dimensions( 0 )[ 1 ];
+			}
+			catch ( IOException e )
+			{
+				return false;
+			}
+		}
+	}
+
+	static class PlaneLoader< T extends NativeType< T > > implements CellLoader< T >
+	{
+		private final File file;
+		private final Layout layout;
+		private final int t;
+		private final int level;
+
+		PlaneLoader( File file, Layout layout, int t, int level )
+		{
+			this.file = file;
+			this.layout = layout;
+			this.t = t;
+			this.level = level;
+			diskCache.pin( this, file );
+		}
+
+		@Override
+		public void load( SingleCellArrayImg< T, ? > cell ) throws IOException
+		{
+			final int z = ( int ) cell.min( 2 );
+			final byte[] bytes = new byte[ ( int ) ( layout.numElements( level ) * layout.bytesPerElement ) ];
+			try ( RandomAccessFile in = new RandomAccessFile( file, "r" ) )
+			{
+				in.seek( layout.offset( t, z, level ) );
+				in.readFully( bytes );
+			}
+
+			final Object storage = ( ( ArrayDataAccess< ? > ) cell.getStorageArray() ).getCurrentStorageArray();
+			final ByteBuffer buffer = ByteBuffer.wrap( bytes );
+			switch ( layout.dataType )
+			{
+				case UINT8:
+					System.arraycopy( bytes, 0, storage, 0, bytes.length );
+					break;
+				case UINT16:
+					buffer.asShortBuffer().get( ( short[] ) storage );
+					break;
+				default:
+					buffer.asFloatBuffer().get( ( float[] ) storage );
+			}
+		}
+	}
+
+	private static < T extends RealType< T > > void write( Source< T > source, Layout layout, String key )
+	{
+		final long start = System.currentTimeMillis();
+		final MipmapLevels mipmapLevels = layout.mipmapLevels;
+
+		try
+		{
+			final boolean written = diskCache.put( key, outputStream ->
+			{
+				final DataOutputStream out = new DataOutputStream( outputStream );
+				layout.writeHeader( out );
+
+				for ( int t = 0; t < layout.numTimepoints; t++ )
+				{
+					final RandomAccessibleInterval< T > rai = source.getSource( t, 0 );
+					for ( int z = 0; z < layout.numSlices; z++ )
+					{
+						final RandomAccessibleInterval< T > slice = Views.hyperSlice( rai, 2, rai.min( 2 ) + z );
+
+						double[] plane = new double[ ( int ) ( slice.dimension( 0 ) * slice.dimension( 1 ) ) ];
+						final Cursor< T > cursor = Views.flatIterable( slice ).cursor();
+						for ( int i = 0; i < plane.length; i++ )
+							plane[ i ] = cursor.next().getRealDouble();
+
+						for ( int level = 1; level < mipmapLevels.numLevels(); level++ )
+						{
+							plane = downsample( plane, mipmapLevels.dimensions( level - 1 ), mipmapLevels.dimensions( level ) );
+							for ( double value : plane )
+								writeValue( out, layout.dataType, value );
+						}
+					}
+				}
+				out.flush();
+			} );
+
+			if ( written )
+				IJ.log( "Computed " + ( mipmapLevels.numLevels() - 1 ) + " resolution levels of " + source.getName() + " in " + ( System.currentTimeMillis() - start ) + " ms." );
+		}
+		catch ( Exception e )
+		{
+			IJ.log( "[WARNING] Could not compute the resolution levels of " + source.getName() + ": " + e.getMessage() );
+		}
+	}
+
+	/**
+	 * Averages the voxels of the finer plane that are covered by each voxel of the coarser plane.
+	 */
+	private static double[] downsample( double[] plane, long[] dimensions, long[] downsampledDimensions )
+	{
+		final int width = ( int ) dimensions[ 0 ];
+		final int height = ( int ) dimensions[ 1 ];
+		final int downsampledWidth = ( int ) downsampledDimensions[ 0 ];
+		final int downsampledHeight = ( int ) downsampledDimensions[ 1 ];
+		final int fx = width > 1 ? 2 : 1;
+		final int fy = height > 1 ? 2 : 1;
+
+		final double[] downsampled = new double[ downsampledWidth * downsampledHeight ];
+		for ( int y = 0; y < downsampledHeight; y++ )
+			for ( int x = 0; x < downsampledWidth; x++ )
+			{
+				double sum = 0;
+				int count = 0;
+				for ( int yy = y * fy; yy < Math.min( height, ( y + 1 ) * fy ); yy++ )
+					for ( int xx = x * fx; xx < Math.min( width, ( x + 1 ) * fx ); xx++ )
+					{
+						sum += plane[ xx + yy * width ];
+						count++;
+					}
+				downsampled[ x + y * downsampledWidth ] = sum / count;
+			}
+
+		return downsampled;
+	}
+
+	private static void writeValue( DataOutputStream out, int dataType, double value ) throws IOException
+	{
+		switch ( dataType )
+		{
+			case UINT8:
+				out.writeByte( ( int ) Math.round( value ) );
+				break;
+			case UINT16:
+				out.writeShort( ( int ) Math.round( value ) );
+				break;
+			default:
+				out.writeFloat( ( float ) value );
+		}
+	}
+
+	private static int getDataType( Object type )
+	{
+		if ( type instanceof UnsignedByteType ) return UINT8;
+		if ( type instanceof UnsignedShortType ) return UINT16;
+		if ( type instanceof FloatType ) return FLOAT32;
+		return -1;
+	}
+
+	private static int getNumTimepoints( Source< ? > source )
+	{
+		int numTimepoints = 0;
+		while ( source.isPresent( numTimepoints ) )
+			numTimepoints++;
+		return numTimepoints;
+	}
+
+	/**
+	 * The files of the site, their sizes and modification times,
+	 * such that a changed file yields a different key.
+	 *
+	 * @return the key, or null if a file of the site is not stored locally
+	 */
+	static String getKey( Site site, int setupId )
+	{
+		final StringBuilder key = new StringBuilder();
+		key.append( setupId );
+		for ( Map.Entry< TPosition, Map< ZPosition, String > > tPaths : site.getPaths().entrySet() )
+			for ( String path : tPaths.getValue().values() )
+			{
+				final String stamp = DiskCache.getModificationStamp( path );
+				if ( stamp == null )
+					return null;
+
+				key.append( ";" ).append( path ).append( ":" ).append( stamp );
+			}
+		return key.toString();
+	}
+}
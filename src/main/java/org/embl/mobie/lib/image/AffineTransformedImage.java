@@ -47,6 +47,7 @@ public class AffineTransformedImage< T > implements Image< T >, TransformedImage
 
 	private RealMaskRealInterval mask;
 	private DefaultSourcePair< T > sourcePair;
+	private TransformedSource< T > transformedSource;
 
 	public AffineTransformedImage(
 			Image< T > image,
@@ -79,7 +80,7 @@ public class AffineTransformedImage< T > implements Image< T >, TransformedImage
 		//       This is happening here anyway...
 		SourcePair< T > defaultSourcePair = MoBIEHelper.wrapTransformSourceAroundSourcePair( image.getSourcePair() );
 
-		final TransformedSource< T > transformedSource = new TransformedSource<>( defaultSourcePair.getSource(), name );
+		transformedSource = new TransformedSource<>( defaultSourcePair.getSource(), name );
 		transformedSource.setFixedTransform( affineTransform3D );
 
 		if ( defaultSourcePair.getVolatileSource() == null )
@@ -100,9 +101,13 @@ public class AffineTransformedImage< T > implements Image< T >, TransformedImage
 	}
 
 	@Override
-	public void transform( AffineTransform3D affineTransform3D )
+	public synchronized void transform( AffineTransform3D affineTransform3D )
 	{
 		this.affineTransform3D.preConcatenate( affineTransform3D );
+
+		// update the existing source pair, rather than creating a new one
+		if ( transformedSource != null )
+			transformedSource.setFixedTransform( this.affineTransform3D );
 	}
 
 	@Override
@@ -48,7 +48,7 @@ public class CroppedImage< T > implements Image< T >
 	private final double[] max;
 	private final boolean centerAtOrigin;
 	private Image< T > image;
-	private DefaultSourcePair sourcePair;
+	private volatile DefaultSourcePair sourcePair;
 	private RealMaskRealInterval mask;
 
 	public CroppedImage( Image< T > image, String croppedImageName, double[] min, double[] max, boolean centerAtOrigin )
@@ -143,7 +143,9 @@ public class CroppedImage< T > implements Image< T >
 	@Override
 	public SourcePair< T > getSourcePair()
 	{
-		createSourcePair();
+		if ( sourcePair == null )
+			createSourcePair();
+
 		return sourcePair;
 	}
 
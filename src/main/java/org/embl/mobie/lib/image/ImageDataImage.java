@@ -37,10 +37,13 @@ import net.imglib2.realtransform.AffineTransform3D;
 import net.imglib2.roi.RealMaskRealInterval;
 import net.imglib2.type.NativeType;
 import net.imglib2.type.numeric.NumericType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.util.Pair;
 import org.embl.mobie.io.ImageDataFormat;
 import org.embl.mobie.lib.data.DataStore;
 import org.embl.mobie.io.imagedata.ImageData;
 import org.embl.mobie.lib.hcs.Site;
+import org.embl.mobie.lib.hcs.SitePyramidCache;
 import org.embl.mobie.lib.source.SourceHelper;
 
 import javax.annotation.Nullable;
@@ -53,7 +56,8 @@ public class ImageDataImage< T extends NumericType< T > & NativeType< T > > impl
 	private ImageDataFormat imageDataFormat;
 	private String uri;
 	private int setupId = 0;
-	private SourcePair< T > sourcePair;
+	private volatile SourcePair< T > sourcePair;
+	private boolean released;
 	private String name;
 	private Site site;
 	private SharedQueue sharedQueue;
@@ -109,8 +113,37 @@ public class ImageDataImage< T extends NumericType< T > & NativeType< T > > impl
 	@Override
 	public SourcePair< T > getSourcePair()
 	{
-		if( sourcePair == null ) open();
-		return sourcePair;
+		SourcePair< T > sourcePair = this.sourcePair;
+		if ( sourcePair != null ) return sourcePair;
+
+		synchronized ( this )
+		{
+			if ( this.sourcePair == null ) open();
+			return this.sourcePair;
+		}
+	}
+
+	/**
+	 * Drops the sources, such that the image data can be closed,
+	 * once it is evicted from the {@code ImageDataCache}.
+	 * The sources are opened again when they are needed;
+	 * sources that are still in use remain valid until then.
+	 *
+	 * Images that have been created from in-memory image data
+	 * are not released, because they could not be opened again.
+	 */
+	public synchronized void release()
+	{
+		if ( sourcePair == null || ( uri == null && site == null ) )
+			return;
+
+		// keep the transformations that have been applied meanwhile
+		transformedSource.getFixedTransform( currentTransform );
+		transformedSource = null;
+		sourcePair = null;
+		released = true;
+
+		DataStore.releaseImageData( site != null ? site : uri, this );
 	}
 
 	@Override
@@ -120,7 +153,7 @@ public class ImageDataImage< T extends NumericType< T > & NativeType< T > > impl
 	}
 
 	@Override
-	public void transform( AffineTransform3D affineTransform3D )
+	public synchronized void transform( AffineTransform3D affineTransform3D )
 	{
 		if ( mask != null )
 		{
@@ -173,23 +206,36 @@ public class ImageDataImage< T extends NumericType< T > & NativeType< T > > impl
 
 	private void createSourcePair( ImageData< T > imageData, int setupId, String name )
 	{
-		final Source< T > source = imageData.getSourcePair( setupId ).getA();
+		Source< T > source = imageData.getSourcePair( setupId ).getA();
 		Source< ? extends Volatile< T > > volatileSource = imageData.getSourcePair( setupId ).getB();
 
 		if ( voxelDimensions != null  )
 		{
-			source.getSourceTransform( 0, 0, currentTransform );
-			// remove current spatial calibration
-			currentTransform = currentTransform.inverse();
-			// add new spatial calibration
-			currentTransform.scale(
-					voxelDimensions.dimension( 0 ),
-					voxelDimensions.dimension( 1 ),
-					voxelDimensions.dimension( 2 ) );
+			// after a release, the current transform already contains the calibration
+			if ( ! released )
+			{
+				source.getSourceTransform( 0, 0, currentTransform );
+				// remove current spatial calibration
+				currentTransform = currentTransform.inverse();
+				// add new spatial calibration
+				currentTransform.scale(
+						voxelDimensions.dimension( 0 ),
+						voxelDimensions.dimension( 1 ),
+						voxelDimensions.dimension( 2 ) );
+			}
 			SourceHelper.setVoxelDimensions( source, voxelDimensions );
 			SourceHelper.setVoxelDimensions( volatileSource, voxelDimensions );
 		}
 
+		if ( site != null && source.getType() instanceof RealType )
+		{
+			// sites are typically stored as single resolution files
+			final Pair< Source< T >, Source< ? extends Volatile< T > > > sources =
+					SitePyramidCache.addMipmaps( site, setupId, ( Source ) source, ( Source ) volatileSource );
+			source = sources.getA();
+			volatileSource = sources.getB();
+		}
+
 		transformedSource = new TransformedSource<>( source, name );
 		transformedSource.setFixedTransform( currentTransform );
 
@@ -200,10 +246,10 @@ public class ImageDataImage< T extends NumericType< T > & NativeType< T > > impl
 	{
 		if ( site != null )
 		{
-			return ( ImageData< T > ) DataStore.fetchImageData( site, sharedQueue );
+			return ( ImageData< T > ) DataStore.fetchImageData( site, sharedQueue, this );
 		}
 
-		return ( ImageData< T > ) DataStore.fetchImageData( uri, imageDataFormat, sharedQueue );
+		return ( ImageData< T > ) DataStore.fetchImageData( uri, imageDataFormat, sharedQueue, this );
 	}
 
 	public String getUri()
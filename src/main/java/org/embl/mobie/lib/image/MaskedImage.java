@@ -41,7 +41,7 @@ public class MaskedImage< T extends Type< T > > implements Image< T >
 {
 	private final String name;
 	private final Image< T > wrappedImage;
-	private DefaultSourcePair< T > sourcePair;
+	private volatile DefaultSourcePair< T > sourcePair;
 	private RealMaskRealInterval mask;
 
 	public MaskedImage( Image< T > wrappedImage, String name, RealMaskRealInterval mask )
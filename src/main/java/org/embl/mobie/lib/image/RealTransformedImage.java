@@ -46,6 +46,8 @@ public class RealTransformedImage< T > implements Image< T >, TransformedImage
 	private RealMaskRealInterval mask;
 	private final AffineTransform3D affineTransform3D = new AffineTransform3D();
 	private Transformation transformation;
+	private TransformedSource< T > transformedSource;
+	private SourcePair< T > sourcePair;
 
 	public RealTransformedImage( Image< T > image, String name, RealTransform realTransform, Transformation transformation )
 	{
@@ -58,22 +60,30 @@ public class RealTransformedImage< T > implements Image< T >, TransformedImage
 	@Override
 	public synchronized SourcePair< T > getSourcePair()
 	{
-		final SourcePair< T > sourcePair = image.getSourcePair();
+		if ( sourcePair == null )
+			createSourcePair();
 
-		final Source< T > source = sourcePair.getSource();
-		final Source< ? extends Volatile< T > > volatileSource = sourcePair.getVolatileSource();
+		return sourcePair;
+	}
+
+	private void createSourcePair()
+	{
+		final SourcePair< T > wrappedSourcePair = image.getSourcePair();
+
+		final Source< T > source = wrappedSourcePair.getSource();
+		final Source< ? extends Volatile< T > > volatileSource = wrappedSourcePair.getVolatileSource();
 
 		final RealTransformedSource< T > realTransformedSource = new RealTransformedSource<>( source, realTransform, name );
 		final RealTransformedSource< ? extends Volatile< T > > realTransformedVolatileSource =
-				volatileSource == null ? null : new RealTransformedSource<>( volatileSource, realTransform, name );
+				volatileSource == null ? null : new RealTransformedSource<>( volatileSource, realTransformedSource );
 
 		// Wrap into a transformed source such that they have a shared affine transform
-		final TransformedSource< T > transformedSource = new TransformedSource<>( realTransformedSource, name );
+		transformedSource = new TransformedSource<>( realTransformedSource, name );
 		final TransformedSource< ? extends Volatile< T > > volatileTransformedSource =
 				realTransformedVolatileSource == null ? null : new TransformedSource<>( realTransformedVolatileSource, transformedSource );
 		transformedSource.setFixedTransform( affineTransform3D );
 
-		return new DefaultSourcePair<>( transformedSource, volatileTransformedSource );
+		this.sourcePair = new DefaultSourcePair<>( transformedSource, volatileTransformedSource );
 	}
 
 	@Override
@@ -83,9 +93,21 @@ public class RealTransformedImage< T > implements Image< T >, TransformedImage
 	}
 
 	@Override
-	public void transform( AffineTransform3D affineTransform3D )
+	public synchronized void transform( AffineTransform3D affineTransform3D )
 	{
+		if ( mask != null )
+		{
+			// The mask contains potential previous transforms already,
+			// thus we add the new transform on top.
+			mask = mask.transform( affineTransform3D.inverse() );
+		}
+
 		this.affineTransform3D.preConcatenate( affineTransform3D );
+
+		// the source pair (and its estimated bounds) stays valid,
+		// only the shared affine transform changes
+		if ( transformedSource != null )
+			transformedSource.setFixedTransform( this.affineTransform3D );
 	}
 
 	@Override
@@ -29,23 +29,40 @@
 package org.embl.mobie.lib.image;
 
 import bdv.viewer.Source;
+import bdv.util.volatiles.VolatileViews;
 import mpicbg.spim.data.sequence.FinalVoxelDimensions;
+import net.imglib2.Cursor;
 import net.imglib2.Interval;
+import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.RealLocalizable;
+import net.imglib2.RealPoint;
+import net.imglib2.RealRandomAccessible;
+import net.imglib2.cache.img.CachedCellImg;
+import net.imglib2.cache.img.CellLoader;
+import net.imglib2.cache.img.ReadOnlyCachedCellImgFactory;
+import net.imglib2.cache.img.ReadOnlyCachedCellImgOptions;
+import net.imglib2.cache.img.SingleCellArrayImg;
+import net.imglib2.converter.Converters;
 import net.imglib2.position.FunctionRealRandomAccessible;
 import net.imglib2.realtransform.AffineTransform3D;
 import net.imglib2.roi.RealMaskRealInterval;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.type.volatiles.VolatileIntType;
 import net.imglib2.util.Intervals;
+import net.imglib2.view.Views;
 import org.embl.mobie.lib.data.DataStore;
 import org.embl.mobie.lib.annotation.AnnotatedRegion;
 import org.embl.mobie.lib.select.SelectionModel;
 import org.embl.mobie.lib.serialize.display.RegionDisplay;
 import org.embl.mobie.lib.source.AnnotationType;
-import org.embl.mobie.lib.source.RealRandomAccessibleIntervalTimelapseSource;
+import org.embl.mobie.lib.source.MipmapLevels;
+import org.embl.mobie.lib.source.RealRandomAccessibleMipmapSource;
+import org.embl.mobie.lib.source.label.VolatileAnnotationType;
 import org.embl.mobie.lib.table.AnnData;
 import org.embl.mobie.lib.table.AnnotationTableModel;
 import org.embl.mobie.lib.table.saw.TableSawAnnotatedRegion;
 import org.embl.mobie.lib.util.MoBIEHelper;
+import org.embl.mobie.lib.util.ThreadHelper;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.*;
@@ -53,7 +70,7 @@ import java.util.function.BiConsumer;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
-public class RegionAnnotationImage< AR extends AnnotatedRegion > implements AnnotationImage< AR >
+public class RegionAnnotationImage< AR extends AnnotatedRegion > implements AnnotationImage< AR >, ImageListener
 {
 	private final String name;
     private final Set< Integer > timepoints;
@@ -61,10 +78,82 @@ public class RegionAnnotationImage< AR extends AnnotatedRegion > implements Anno
 	private final SelectionModel< ? > selectionModel;
 	private Source< AnnotationType< AR > > source;
 	private SourcePair< AnnotationType< AR > > sourcePair;
-	private RealMaskRealInterval mask;
+	private volatile RealMaskRealInterval mask;
 	private boolean debug = false;
-	private List< AR > annotations;
 	private boolean overlap;
+	private volatile Geometry geometry;
+
+	// The lower resolution levels are rasterized into cached cell images,
+	// such that the regions do not need to be looked up on the render threads.
+	// They store the index of the region (+1, 0 being the background).
+	private static final int[] CELL_DIMENSIONS = new int[]{ 64, 64, 16 };
+	private static final long MAX_COARSEST_LEVEL_SIZE = 256;
+	private static final int MAX_NUM_LEVELS = 16;
+
+	/**
+	 * The index and the rasterized levels of the regions,
+	 * which are rebuilt if the regions change, e.g. because
+	 * their images have been transformed.
+	 */
+	private class Geometry
+	{
+		final List< AR > annotations;
+		final RegionIndex< AR > regionIndex;
+		final MipmapLevels mipmapLevels;
+		final RealRandomAccessibleMipmapSource.Levels< AnnotationType< AR > > levels;
+		final RealRandomAccessibleMipmapSource.Levels< VolatileAnnotationType< AR > > volatileLevels;
+
+		Geometry()
+		{
+			annotations = new ArrayList<>( annData.getTable().annotations() );
+			if ( overlap )
+			{
+				// Later annotations should be drawn on top of earlier ones.
+				// This is in order to conform with the alpha blending.
+				Collections.reverse( annotations );
+			}
+			regionIndex = new RegionIndex<>( annotations );
+
+			// The region masks are defined in real space,
+			// thus level 0 is computed on demand, and the voxel
+			// size of the lower resolution levels is arbitrary.
+			final Interval interval = Intervals.smallestContainingInterval( getMask() );
+			mipmapLevels = new MipmapLevels( interval, MAX_COARSEST_LEVEL_SIZE, MAX_NUM_LEVELS );
+			final List< RandomAccessibleInterval< AnnotationType< AR > > > levels = new ArrayList<>();
+			final List< RandomAccessibleInterval< VolatileAnnotationType< AR > > > volatileLevels = new ArrayList<>();
+			for ( int level = 1; level < mipmapLevels.numLevels(); level++ )
+			{
+				final CachedCellImg< IntType, ? > indices = new ReadOnlyCachedCellImgFactory().create(
+						mipmapLevels.dimensions( level ),
+						new IntType(),
+						new RegionRasterizer( this, level ),
+						ReadOnlyCachedCellImgOptions.options().cellDimensions( mipmapLevels.cellDimensions( level, CELL_DIMENSIONS ) ) );
+
+				levels.add( Converters.convert(
+						( RandomAccessibleInterval< IntType > ) indices,
+						( input, output ) -> output.setAnnotation( toAnnotation( input.get() ) ),
+						new AnnotationType< AR >() ) );
+
+				final RandomAccessibleInterval< VolatileIntType > volatileIndices = VolatileViews.wrapAsVolatile( indices, ThreadHelper.sharedQueue );
+				volatileLevels.add( Converters.convert(
+						volatileIndices,
+						( input, output ) -> {
+							output.setValid( input.isValid() );
+							if ( input.isValid() )
+								output.get().setAnnotation( toAnnotation( input.get().get() ) );
+						},
+						new VolatileAnnotationType< AR >() ) );
+			}
+
+			this.levels = new RealRandomAccessibleMipmapSource.Levels<>( interval, levels, mipmapLevels.transforms(), new AnnotationType<>() );
+			this.volatileLevels = new RealRandomAccessibleMipmapSource.Levels<>( interval, volatileLevels, mipmapLevels.transforms(), new VolatileAnnotationType<>() );
+		}
+
+		private AR toAnnotation( int index )
+		{
+			return index == 0 ? null : annotations.get( index - 1 );
+		}
+	}
 
 	/**
 	 * Builds a label image to visualise all {@code AnnotatedRegion} in the
@@ -127,54 +216,68 @@ public class RegionAnnotationImage< AR extends AnnotatedRegion > implements Anno
 		private class LocationToRegion implements BiConsumer< RealLocalizable, AnnotationType< AR > >
 		{
 			// Note that this is only really used if there is no overlap.
-			private AR recentAnnotation; // the annotation that was at the recent location
-
-			public LocationToRegion()
-			{
-				this.recentAnnotation = annotations.get( 0 );
-			}
+			private int recentIndex = -1; // the index of the annotation that was at the recent location
+			private Geometry recentGeometry;
 
 			@Override
 			public void accept( RealLocalizable location, AnnotationType< AR > value )
 			{
-				if ( ! overlap )
+				final Geometry geometry = geometry();
+				if ( geometry != recentGeometry )
 				{
-					// It is likely that the next location
-					// is within the same mask; thus we test that one first
-					// to safe some computations.
-					if ( recentAnnotation.getMask().test( location ) )
-					{
-						value.setAnnotation( recentAnnotation );
-						return;
-					}
+					recentGeometry = geometry;
+					recentIndex = -1;
 				}
+				final RegionIndex< AR > regionIndex = geometry.regionIndex;
 
-				for ( AR annotation : annotations )
+				// If there is no overlap, it is likely that the next location
+				// is within the same mask; thus we test that one first
+				// to safe some computations.
+				final int index = regionIndex.find( location, overlap ? -1 : recentIndex );
+				if ( index == -1 )
 				{
-					if ( ! overlap )
-					{
-						if ( annotation == recentAnnotation )
-							continue; // that one has been checked already above
-
-						if ( annotation.getMask().test( location ) )
-						{
-							recentAnnotation = annotation;
-							value.setAnnotation( recentAnnotation );
-							return;
-						}
-					}
-					else
-					{
-						if ( annotation.getMask().test( location ) )
-						{
-							value.setAnnotation( annotation );
-							return;
-						}
-					}
+					// The location is not within any mask => it is background
+					value.setAnnotation( null );
+					return;
 				}
 
-				// The location is not within any mask => it is background
-				value.setAnnotation( null );
+				recentIndex = index;
+				value.setAnnotation( regionIndex.get( index ) );
+			}
+		}
+	}
+
+	/**
+	 * Looks up the region at the center of each voxel of a cell
+	 * of a lower resolution level.
+	 */
+	class RegionRasterizer implements CellLoader< IntType >
+	{
+		private final Geometry geometry;
+		private final int level;
+
+		public RegionRasterizer( Geometry geometry, int level )
+		{
+			this.geometry = geometry;
+			this.level = level;
+		}
+
+		@Override
+		public void load( SingleCellArrayImg< IntType, ? > cell )
+		{
+			final RealPoint position = new RealPoint( 3 );
+			final Cursor< IntType > cursor = Views.flatIterable( cell ).localizingCursor();
+			int recentIndex = -1;
+			while ( cursor.hasNext() )
+			{
+				final IntType value = cursor.next();
+				for ( int d = 0; d < 3; d++ )
+					position.setPosition( geometry.mipmapLevels.position( level, d, cursor.getLongPosition( d ) ), d );
+
+				final int index = geometry.regionIndex.find( position, overlap ? -1 : recentIndex );
+				if ( index != -1 )
+					recentIndex = index;
+				value.set( index + 1 );
 			}
 		}
 	}
@@ -184,15 +287,10 @@ public class RegionAnnotationImage< AR extends AnnotatedRegion > implements Anno
 	{
 		if ( sourcePair == null )
 		{
-			final Interval interval = Intervals.smallestContainingInterval( getMask() );
+			// the regions are rebuilt if any of their images changes
+			listeners().add( this );
 
-			annotations = annData.getTable().annotations();
-			if ( overlap )
-			{
-				// Later annotations should be drawn on top of earlier ones.
-				// This is in order to conform with the alpha blending.
-				Collections.reverse( annotations );
-			}
+			final AR firstAnnotation = geometry().annotations.get( 0 );
 
 			// TODO: one could add a time point parameter to LocationToAnnotatedRegionSupplier
 			// and then make a Map< Timepoint, regions > and modify RealRandomAccessibleIntervalTimelapseSource to consume this map
@@ -200,34 +298,75 @@ public class RegionAnnotationImage< AR extends AnnotatedRegion > implements Anno
 					new FunctionRealRandomAccessible(
 							3,
 							new LocationToAnnotatedRegionSupplier(),
-							() -> new AnnotationType<>( annotations.get( 0 ) ) );
+							() -> new AnnotationType<>( firstAnnotation ) );
 
 			// TODO: This Source should have the same voxel unit
 			//   as the other sources, but that would mean touching one of the
 			//   annotated images which could be expensive.
 			// TODO: We currently also don't have a good way of determining the number of timepoints (without touching the image)
 			//   see also comment above
-			source = new RealRandomAccessibleIntervalTimelapseSource<>(
+			final FinalVoxelDimensions voxelDimensions = new FinalVoxelDimensions( "", 1, 1, 1 );
+			source = new RealRandomAccessibleMipmapSource<>(
 					regions,
-					interval,
-					new AnnotationType<>( annotations.get( 0 ) ),
-					new AffineTransform3D(),
+					() -> geometry().levels,
+					new AnnotationType<>( firstAnnotation ),
+					name,
+					voxelDimensions,
+					timepoints );
+
+			// level 0 is computed on demand, thus it is always valid
+			final RealRandomAccessible< VolatileAnnotationType< AR > > volatileRegions = Converters.convert(
+					( RealRandomAccessible< AnnotationType< AR > > ) regions,
+					( input, output ) -> {
+						output.get().set( input );
+						output.setValid( true );
+					},
+					new VolatileAnnotationType< AR >() );
+
+			final Source< VolatileAnnotationType< AR > > volatileSource = new RealRandomAccessibleMipmapSource<>(
+					volatileRegions,
+					() -> geometry().volatileLevels,
+					new VolatileAnnotationType<>(),
 					name,
-					true,
-					timepoints,
-					new FinalVoxelDimensions( "", 1, 1, 1 ) );
-
-			// There is no volatile implementation (yet), because the
-			// {@code Source} should be fast enough,
-			// and probably a volatile version would need an {@code CachedCellImg},
-			// which would require deciding on a specific spatial sampling,
-			// which is not nice because a {@code Region} is defined in real space.
-			sourcePair = new DefaultSourcePair<>( source, null );
+					voxelDimensions,
+					timepoints );
+
+			sourcePair = new DefaultSourcePair( source, volatileSource );
 		}
 
 		return sourcePair;
 	}
 
+	private Geometry geometry()
+	{
+		final Geometry geometry = this.geometry;
+		if ( geometry != null )
+			return geometry;
+
+		synchronized ( this )
+		{
+			if ( this.geometry == null )
+				this.geometry = new Geometry();
+			return this.geometry;
+		}
+	}
+
+	@Override
+	public void imageChanged()
+	{
+		// The regions also listen to their images and reset their masks;
+		// as the listeners are notified in any order, this is done here, too,
+		// such that the geometry is not rebuilt from the previous masks.
+		final Geometry geometry = this.geometry;
+		if ( geometry != null )
+			for ( AR annotation : geometry.annotations )
+				if ( annotation instanceof ImageListener )
+					( ( ImageListener ) annotation ).imageChanged();
+
+		mask = null;
+		this.geometry = null;
+	}
+
 	public String getName()
 	{
 		return name;
@@ -236,6 +375,7 @@ public class RegionAnnotationImage< AR extends AnnotatedRegion > implements Anno
 	@Override
 	public void transform( AffineTransform3D affineTransform3D )
 	{
+		final List< AR > annotations = geometry().annotations;
 		if ( annotations.get( 0 ) instanceof TableSawAnnotatedRegion )
 		{
 			// transform all images in all regions
@@ -259,6 +399,7 @@ public class RegionAnnotationImage< AR extends AnnotatedRegion > implements Anno
 	@NotNull
 	public List< Image< ? > > getSelectedImages()
 	{
+		final List< AR > annotations = geometry().annotations;
 		if ( annotations.get( 0 ) instanceof TableSawAnnotatedRegion )
 		{
 			Set< TableSawAnnotatedRegion > annotatedImagesSet = ( Set< TableSawAnnotatedRegion > ) selectionModel.getSelected();
@@ -280,11 +421,13 @@ public class RegionAnnotationImage< AR extends AnnotatedRegion > implements Anno
 	@Override
 	public RealMaskRealInterval getMask( )
 	{
+		RealMaskRealInterval mask = this.mask;
 		if ( mask == null )
 		{
 			AnnotationTableModel< AR > table = annData.getTable();
 			ArrayList< AR > maskedCollection = table.annotations();
 			mask = MoBIEHelper.unionBox( maskedCollection );
+			this.mask = mask;
 		}
 
 		return mask;
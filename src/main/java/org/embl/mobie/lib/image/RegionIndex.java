@@ -0,0 +1,191 @@
+/*-
+ * #%L
+ * Fiji viewer for MoBIE projects
+ * %%
+ * Copyright (C) 2018 - 2024 EMBL
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.embl.mobie.lib.image;
+
+import net.imglib2.RealLocalizable;
+import net.imglib2.roi.RealMaskRealInterval;
+import org.embl.mobie.lib.annotation.AnnotatedRegion;
+
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * A uniform grid in the xy-plane that, for each grid cell, lists the
+ * regions whose mask bounds overlap with the cell.
+ *
+ * Within each cell the regions keep the order of the given list,
+ * such that, for overlapping regions, the first region in the list
+ * that contains a location is found.
+ */
+class RegionIndex< AR extends AnnotatedRegion >
+{
+	private static final int MAX_GRID_SIZE = 1024;
+	private static final int[] NO_REGIONS = new int[ 0 ];
+
+	private final List< AR > regions;
+	private final double[] min = new double[ 2 ];
+	private final double[] cellSize = new double[ 2 ];
+	private final int[] gridSize = new int[ 2 ];
+	private final int[][] cells;
+
+	RegionIndex( List< AR > regions )
+	{
+		this.regions = regions;
+
+		final int numRegions = regions.size();
+		final double[][] regionMins = new double[ numRegions ][ 2 ];
+		final double[][] regionMaxs = new double[ numRegions ][ 2 ];
+		final double[] max = new double[ 2 ];
+		final double[] sumOfSizes = new double[ 2 ];
+		int numFinite = 0;
+		for ( int d = 0; d < 2; d++ )
+		{
+			min[ d ] = Double.MAX_VALUE;
+			max[ d ] = -Double.MAX_VALUE;
+		}
+
+		for ( int i = 0; i < numRegions; i++ )
+		{
+			final RealMaskRealInterval mask = regions.get( i ).getMask();
+			boolean isFinite = true;
+			for ( int d = 0; d < 2; d++ )
+			{
+				regionMins[ i ][ d ] = mask.realMin( d );
+				regionMaxs[ i ][ d ] = mask.realMax( d );
+				isFinite &= Double.isFinite( regionMins[ i ][ d ] ) && Double.isFinite( regionMaxs[ i ][ d ] );
+			}
+
+			if ( ! isFinite )
+				continue; // such a region is added to all cells that it overlaps with below
+
+			numFinite++;
+			for ( int d = 0; d < 2; d++ )
+			{
+				min[ d ] = Math.min( min[ d ], regionMins[ i ][ d ] );
+				max[ d ] = Math.max( max[ d ], regionMaxs[ i ][ d ] );
+				sumOfSizes[ d ] += regionMaxs[ i ][ d ] - regionMins[ i ][ d ];
+			}
+		}
+
+		for ( int d = 0; d < 2; d++ )
+		{
+			if ( numFinite == 0 )
+			{
+				min[ d ] = 0;
+				max[ d ] = 0;
+			}
+
+			// a cell is about as large as the average region,
+			// such that a region is listed in a few cells only
+			final double extent = max[ d ] - min[ d ];
+			final double meanSize = numFinite == 0 ? 0 : sumOfSizes[ d ] / numFinite;
+			cellSize[ d ] = Math.max( meanSize, extent / MAX_GRID_SIZE );
+			if ( cellSize[ d ] > 0 )
+			{
+				gridSize[ d ] = ( int ) Math.max( 1, Math.min( MAX_GRID_SIZE, Math.ceil( extent / cellSize[ d ] ) ) );
+			}
+			else
+			{
+				cellSize[ d ] = 1;
+				gridSize[ d ] = 1;
+			}
+		}
+
+		// count, allocate and fill the cells,
+		// adding the regions in the order of the list
+		final int numCells = gridSize[ 0 ] * gridSize[ 1 ];
+		final int[] counts = new int[ numCells ];
+		for ( int i = 0; i < numRegions; i++ )
+			forEachCell( regionMins[ i ], regionMaxs[ i ], cell -> counts[ cell ]++ );
+
+		cells = new int[ numCells ][];
+		for ( int cell = 0; cell < numCells; cell++ )
+			cells[ cell ] = counts[ cell ] == 0 ? NO_REGIONS : new int[ counts[ cell ] ];
+
+		final int[] fill = new int[ numCells ];
+		for ( int i = 0; i < numRegions; i++ )
+		{
+			final int regionIndex = i;
+			forEachCell( regionMins[ i ], regionMaxs[ i ], cell -> cells[ cell ][ fill[ cell ]++ ] = regionIndex );
+		}
+	}
+
+	AR get( int index )
+	{
+		return regions.get( index );
+	}
+
+	/**
+	 * @param location
+	 * 			the location to look up
+	 * @param hint
+	 * 			the index of a region to test first, e.g. the one that
+	 * 			was found at a nearby location, or -1;
+	 * 			this must only be used if the regions do not overlap
+	 * @return the index of the (first) region whose mask contains the
+	 * 		   location, or -1 if the location is background
+	 */
+	int find( RealLocalizable location, int hint )
+	{
+		if ( hint >= 0 && regions.get( hint ).getMask().test( location ) )
+			return hint;
+
+		final int x = ( int ) Math.floor( ( location.getDoublePosition( 0 ) - min[ 0 ] ) / cellSize[ 0 ] );
+		final int y = ( int ) Math.floor( ( location.getDoublePosition( 1 ) - min[ 1 ] ) / cellSize[ 1 ] );
+
+		// the grid cells at the border extend to the regions' bounds
+		final int[] candidates = cells[ clamp( x, 0 ) + gridSize[ 0 ] * clamp( y, 1 ) ];
+		for ( int candidate : candidates )
+		{
+			if ( candidate == hint )
+				continue; // that one has been checked already above
+
+			if ( regions.get( candidate ).getMask().test( location ) )
+				return candidate;
+		}
+
+		return -1;
+	}
+
+	private void forEachCell( double[] regionMin, double[] regionMax, IntConsumer consumer )
+	{
+		final int minX = clamp( ( int ) Math.floor( ( regionMin[ 0 ] - min[ 0 ] ) / cellSize[ 0 ] ), 0 );
+		final int maxX = clamp( ( int ) Math.floor( ( regionMax[ 0 ] - min[ 0 ] ) / cellSize[ 0 ] ), 0 );
+		final int minY = clamp( ( int ) Math.floor( ( regionMin[ 1 ] - min[ 1 ] ) / cellSize[ 1 ] ), 1 );
+		final int maxY = clamp( ( int ) Math.floor( ( regionMax[ 1 ] - min[ 1 ] ) / cellSize[ 1 ] ), 1 );
+		for ( int y = minY; y <= maxY; y++ )
+			for ( int x = minX; x <= maxX; x++ )
+				consumer.accept( x + gridSize[ 0 ] * y );
+	}
+
+	private int clamp( int gridPosition, int d )
+	{
+		return Math.max( 0, Math.min( gridSize[ d ] - 1, gridPosition ) );
+	}
+}
@@ -29,30 +29,44 @@
 package org.embl.mobie.lib.image;
 
 import bdv.tools.transformation.TransformedSource;
+import bdv.util.volatiles.VolatileViews;
 import bdv.viewer.Source;
 import ij.IJ;
 import mpicbg.spim.data.sequence.FinalVoxelDimensions;
 import net.imglib2.*;
+import net.imglib2.cache.img.CachedCellImg;
+import net.imglib2.cache.img.CellLoader;
+import net.imglib2.cache.img.ReadOnlyCachedCellImgFactory;
+import net.imglib2.cache.img.ReadOnlyCachedCellImgOptions;
+import net.imglib2.cache.img.SingleCellArrayImg;
+import net.imglib2.converter.Converter;
+import net.imglib2.converter.Converters;
 import net.imglib2.neighborsearch.RadiusNeighborSearchOnKDTree;
 import net.imglib2.position.FunctionRealRandomAccessible;
 import net.imglib2.realtransform.AffineTransform3D;
 import net.imglib2.realtransform.RealViews;
 import net.imglib2.roi.RealMaskRealInterval;
 import net.imglib2.roi.geom.GeomMasks;
+import net.imglib2.type.NativeType;
 import net.imglib2.type.Type;
 import net.imglib2.type.numeric.IntegerType;
 import net.imglib2.type.numeric.integer.UnsignedLongType;
 import net.imglib2.type.numeric.integer.UnsignedShortType;
 import net.imglib2.util.Intervals;
 import net.imglib2.util.LinAlgHelpers;
+import net.imglib2.view.Views;
 import org.embl.mobie.lib.annotation.AnnotatedSpot;
-import org.embl.mobie.lib.source.RealRandomAccessibleIntervalTimelapseSource;
+import org.embl.mobie.lib.source.MipmapLevels;
+import org.embl.mobie.lib.source.MoBIEVolatileTypeMatcher;
+import org.embl.mobie.lib.source.RealRandomAccessibleMipmapSource;
 import org.embl.mobie.lib.table.DefaultAnnData;
+import org.embl.mobie.lib.util.ThreadHelper;
 import org.jetbrains.annotations.NotNull;
 
 import javax.annotation.Nullable;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.function.BiConsumer;
 import java.util.function.Supplier;
 
@@ -71,6 +85,20 @@ public class SpotLabelImage< AS extends AnnotatedSpot, T extends IntegerType< T
 	private Source< T > source;
 	private TransformedSource< T > transformedSource;
 	private DefaultSourcePair sourcePair;
+	private Source< ? extends Volatile< T > > volatileSource;
+
+	// Zoomed out, searching the kdTree for every rendered pixel is too slow,
+	// thus the lower resolution levels are rasterized into cached cell images.
+	// Those are replaced if the spot radius changes.
+	private static final int[] CELL_DIMENSIONS = new int[]{ 64, 64, 16 };
+	private static final long MAX_COARSEST_LEVEL_SIZE = 256;
+	private static final int MAX_NUM_LEVELS = 16;
+	private Type type;
+	private MipmapLevels mipmapLevels;
+	private Interval levelZeroInterval;
+	private volatile RealRandomAccessibleMipmapSource.Levels rasterizedLevels;
+	private volatile RealRandomAccessibleMipmapSource.Levels volatileRasterizedLevels;
+	private Type volatileType;
 
 	public SpotLabelImage(
 			String name,
@@ -97,17 +125,19 @@ public class SpotLabelImage< AS extends AnnotatedSpot, T extends IntegerType< T
 
 	public void setSpotRadius( Double spotRadius )
 	{
-		if ( spotRadius != null )
+		if ( spotRadius != null && ! spotRadius.equals( this.spotRadius ) )
 		{
 			this.spotRadius = spotRadius;
+			createRasterizedLevels();
 		}
 	}
 
 	public void setSpotRadiusZ( Double spotRadiusZ )
 	{
-		if ( spotRadiusZ != null )
+		if ( spotRadiusZ != null && ! spotRadiusZ.equals( this.spotRadiusZ ) )
 		{
 			this.spotRadiusZ = spotRadiusZ;
+			createRasterizedLevels();
 		}
 	}
 
@@ -146,7 +176,7 @@ public class SpotLabelImage< AS extends AnnotatedSpot, T extends IntegerType< T
 		if ( maxLabel == -1 )
 			throw new RuntimeException("Could not determine the maximum label of the spots " + name );
 
-		Type type = selectApropriateType( maxLabel );
+		type = selectApropriateType( maxLabel );
 		RealRandomAccessible< IntegerType > rra =
 				new FunctionRealRandomAccessible(
 						kdTree.numDimensions(),
@@ -180,22 +210,194 @@ public class SpotLabelImage< AS extends AnnotatedSpot, T extends IntegerType< T
 		//       voxel grid data; to improve this we would need to upscale the
 		//       spot coordinates and then accommodate for this
 		//       in the source's affineTransform
-		AffineTransform3D sourceTransform = new AffineTransform3D();
+		// the levels are computed once, only their rasters
+		// are replaced if the spot radius changes
+		volatileType = ( Type ) MoBIEVolatileTypeMatcher.getVolatileTypeForType( type );
+		levelZeroInterval = containingZeroMinIntegerInterval;
+		mipmapLevels = new MipmapLevels( containingZeroMinIntegerInterval, MAX_COARSEST_LEVEL_SIZE, MAX_NUM_LEVELS );
+		createRasterizedLevels();
 
-		source = new RealRandomAccessibleIntervalTimelapseSource(
+		final FinalVoxelDimensions voxelDimensions = new FinalVoxelDimensions( unit, 1, 1, 1 );
+
+		source = new RealRandomAccessibleMipmapSource(
 				rra,
-				containingZeroMinIntegerInterval,
+				( Supplier ) () -> rasterizedLevels,
 				type,
-				sourceTransform,
 				name,
-				true,
-				null,
-				new FinalVoxelDimensions( unit, 1, 1, 1 ) );
+				voxelDimensions );
+
+		// level 0 is computed on demand, thus it is always valid
+		final Converter< Type, Volatile > toVolatile = ( input, output ) -> {
+			( ( Type ) output.get() ).set( input );
+			output.setValid( true );
+		};
+		final RealRandomAccessible< Volatile > volatileRRA = Converters.convert( ( RealRandomAccessible ) rra, toVolatile, ( Volatile ) volatileType );
+
+		volatileSource = new RealRandomAccessibleMipmapSource(
+				volatileRRA,
+				( Supplier ) () -> volatileRasterizedLevels,
+				volatileType,
+				name,
+				voxelDimensions );
 
 		IJ.log("...done in [ms] " + ( System.currentTimeMillis() - start ) );
 
 	}
 
+	private synchronized void createRasterizedLevels()
+	{
+		if ( mipmapLevels == null )
+			return; // not yet configured
+
+		final ArrayList< RandomAccessibleInterval< T > > levels = new ArrayList<>();
+		final ArrayList< RandomAccessibleInterval< Volatile< T > > > volatileLevels = new ArrayList<>();
+		for ( int level = 1; level < mipmapLevels.numLevels(); level++ )
+		{
+			final long[] dimensions = mipmapLevels.dimensions( level );
+			final int[] cellDimensions = mipmapLevels.cellDimensions( level, CELL_DIMENSIONS );
+
+			final CachedCellImg cachedCellImg = new ReadOnlyCachedCellImgFactory().create(
+					dimensions,
+					( NativeType ) type,
+					new SpotRasterizer( level ),
+					ReadOnlyCachedCellImgOptions.options().cellDimensions( cellDimensions ) );
+
+			levels.add( cachedCellImg );
+			volatileLevels.add( VolatileViews.wrapAsVolatile( cachedCellImg, ThreadHelper.sharedQueue ) );
+		}
+
+		rasterizedLevels = new RealRandomAccessibleMipmapSource.Levels( levelZeroInterval, levels, mipmapLevels.transforms(), type );
+		volatileRasterizedLevels = new RealRandomAccessibleMipmapSource.Levels( levelZeroInterval, volatileLevels, mipmapLevels.transforms(), volatileType );
+	}
+
+	/**
+	 * Paints all spots that overlap with a cell of a lower resolution level.
+	 *
+	 * As for level 0, a voxel gets the label of the closest spot
+	 * whose (ellipsoidal) extent contains the voxel center.
+	 * Spots that are too small to contain any voxel center are still
+	 * painted into the voxel that contains them, such that spots do not
+	 * vanish when zooming out.
+	 */
+	class SpotRasterizer implements CellLoader
+	{
+		private final int level;
+		private final long[] factors;
+
+		public SpotRasterizer( int level )
+		{
+			this.level = level;
+			this.factors = mipmapLevels.factors( level );
+		}
+
+		@Override
+		public void load( SingleCellArrayImg cell )
+		{
+			final int numDimensions = cell.numDimensions();
+			final long[] min = cell.minAsLongArray();
+			final long[] max = cell.maxAsLongArray();
+			final int[] size = new int[ numDimensions ];
+			for ( int d = 0; d < numDimensions; d++ )
+				size[ d ] = ( int ) ( max[ d ] - min[ d ] + 1 );
+
+			final double[] radii = new double[]{ spotRadius, spotRadius, spotRadiusZ == null ? spotRadius : spotRadiusZ };
+			final double maxRadius = Math.max( radii[ 0 ], radii[ 2 ] );
+
+			// find the spots in the cell, searching from the cell center
+			final int treeDimensions = kdTree.numDimensions();
+			final double[] center = new double[ treeDimensions ];
+			double halfDiagonalSquared = 0;
+			for ( int d = 0; d < numDimensions; d++ )
+			{
+				final double lo = mipmapLevels.position( level, d, min[ d ] ) - factors[ d ] / 2.0;
+				final double hi = mipmapLevels.position( level, d, max[ d ] ) + factors[ d ] / 2.0;
+				if ( d < treeDimensions )
+					center[ d ] = ( lo + hi ) / 2.0 + imageBoundsMin[ d ];
+				halfDiagonalSquared += Math.pow( ( hi - lo ) / 2.0, 2 );
+			}
+			final RadiusNeighborSearchOnKDTree< AS > search = new RadiusNeighborSearchOnKDTree<>( kdTree );
+			search.search( new RealPoint( center ), Math.sqrt( halfDiagonalSquared ) + maxRadius, false );
+
+			final int numElements = size[ 0 ] * size[ 1 ] * size[ 2 ];
+			final long[] labels = new long[ numElements ];
+			final double[] distances = new double[ numElements ];
+			Arrays.fill( distances, Double.MAX_VALUE );
+
+			final double[] position = new double[ 3 ];
+			final long[] from = new long[ 3 ];
+			final long[] to = new long[ 3 ];
+			final int numNeighbors = search.numNeighbors();
+			for ( int i = 0; i < numNeighbors; i++ )
+			{
+				final RealLocalizable spotPosition = search.getPosition( i );
+				final int label = search.getSampler( i ).get().label();
+
+				// position in the zero-min coordinates of level 0
+				for ( int d = 0; d < 3; d++ )
+				{
+					position[ d ] = d < treeDimensions ? spotPosition.getDoublePosition( d ) - imageBoundsMin[ d ] : 0;
+					final double offset = mipmapLevels.position( level, d, 0 );
+					from[ d ] = Math.max( min[ d ], ( long ) Math.ceil( ( position[ d ] - radii[ d ] - offset ) / factors[ d ] ) );
+					to[ d ] = Math.min( max[ d ], ( long ) Math.floor( ( position[ d ] + radii[ d ] - offset ) / factors[ d ] ) );
+				}
+
+				boolean painted = false;
+				for ( long z = from[ 2 ]; z <= to[ 2 ]; z++ )
+					for ( long y = from[ 1 ]; y <= to[ 1 ]; y++ )
+						for ( long x = from[ 0 ]; x <= to[ 0 ]; x++ )
+						{
+							final double distance = normalisedDistance( position, radii, x, y, z );
+							if ( distance > 1 )
+								continue;
+
+							painted = true;
+							final int index = index( x, y, z, min, size );
+							if ( distance < distances[ index ] )
+							{
+								distances[ index ] = distance;
+								labels[ index ] = label;
+							}
+						}
+
+				if ( painted )
+					continue;
+
+				// the spot is smaller than a voxel at this resolution level
+				final long x = mipmapLevels.index( level, 0, position[ 0 ] );
+				final long y = mipmapLevels.index( level, 1, position[ 1 ] );
+				final long z = mipmapLevels.index( level, 2, position[ 2 ] );
+				if ( x < min[ 0 ] || x > max[ 0 ] || y < min[ 1 ] || y > max[ 1 ] || z < min[ 2 ] || z > max[ 2 ] )
+					continue;
+
+				final int index = index( x, y, z, min, size );
+				final double distance = normalisedDistance( position, radii, x, y, z );
+				if ( distance < distances[ index ] )
+				{
+					distances[ index ] = distance;
+					labels[ index ] = label;
+				}
+			}
+
+			final Cursor< IntegerType > cursor = Views.flatIterable( ( RandomAccessibleInterval< IntegerType > ) cell ).cursor();
+			int index = 0;
+			while ( cursor.hasNext() )
+				cursor.next().setInteger( labels[ index++ ] );
+		}
+
+		private double normalisedDistance( double[] position, double[] radii, long x, long y, long z )
+		{
+			final double dx = ( mipmapLevels.position( level, 0, x ) - position[ 0 ] ) / radii[ 0 ];
+			final double dy = ( mipmapLevels.position( level, 1, y ) - position[ 1 ] ) / radii[ 1 ];
+			final double dz = ( mipmapLevels.position( level, 2, z ) - position[ 2 ] ) / radii[ 2 ];
+			return Math.sqrt( dx * dx + dy * dy + dz * dz );
+		}
+
+		private int index( long x, long y, long z, long[] min, int[] size )
+		{
+			return ( int ) ( ( x - min[ 0 ] ) + size[ 0 ] * ( ( y - min[ 1 ] ) + size[ 1 ] * ( z - min[ 2 ] ) ) );
+		}
+	}
+
 	private void setImageBounds()
 	{
 		imageBoundsMin = new double[ 3 ];
@@ -338,7 +540,9 @@ public class SpotLabelImage< AS extends AnnotatedSpot, T extends IntegerType< T
 		{
 			transformedSource = new TransformedSource( source );
 			transformedSource.setFixedTransform( affineTransform3D );
-			sourcePair = new DefaultSourcePair( transformedSource, null );
+			// the volatile source shares the transform of the non-volatile one
+			final TransformedSource transformedVolatileSource = new TransformedSource( volatileSource, transformedSource );
+			sourcePair = new DefaultSourcePair( transformedSource, transformedVolatileSource );
 		}
 
 		return sourcePair;
@@ -36,9 +36,11 @@ import bdv.util.Affine3DHelpers;
 import bdv.util.DefaultInterpolators;
 import bdv.viewer.Interpolation;
 import bdv.viewer.Source;
+import ij.IJ;
 import mpicbg.spim.data.sequence.VoxelDimensions;
 import net.imglib2.FinalInterval;
 import net.imglib2.Localizable;
+import net.imglib2.RandomAccess;
 import net.imglib2.RandomAccessible;
 import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.RealInterval;
@@ -65,16 +67,27 @@ import org.embl.mobie.lib.io.Status;
 import org.embl.mobie.lib.source.MoBIEVolatileTypeMatcher;
 import org.embl.mobie.lib.source.SourceHelper;
 
+import gnu.trove.map.hash.TIntLongHashMap;
+import gnu.trove.map.hash.TIntObjectHashMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
+
 import javax.annotation.Nullable;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Optional;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.function.BiConsumer;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
@@ -82,6 +95,11 @@ import java.util.stream.Collectors;
 public class StitchedImage< T extends Type< T >, V extends Volatile< T > & Type< V > > implements Image< T >
 {
 	public static final String SEP = ",";
+	private static final long REQUEST_AGAIN_MILLIS = 500;
+	private static volatile long maxNumOpenTileVoxels = 512L * 1024 * 1024;
+	// the global position at the centre of the viewer window;
+	// tiles closer to it are opened first
+	private static volatile double[] viewerCenter;
 	private final T type;
 	private final String name;
 	private List< ? extends Image< T > > images;
@@ -504,7 +522,7 @@ public class StitchedImage< T extends Type< T >, V extends Volatile< T > & Type<
 				final FunctionRandomAccessible< V > stitchedTimepointAtLevel =
 						new FunctionRandomAccessible(
 								3,
-								new VolatileValueFromTilesFetcherSupplier( tileStore, t, level, background ).get(),
+								new VolatileValueFromTilesFetcherSupplier( tileStore, t, level, background ),
 									() -> volatileType.createVariable() );
 				final IntervalView< V > rai = Views.interval( stitchedTimepointAtLevel, getInterval( level ) );
 				stitched.get( t ).add( rai );
@@ -567,6 +585,12 @@ public class StitchedImage< T extends Type< T >, V extends Volatile< T > & Type<
 		 */
 		class VolatileValueFromTilesFetcher implements BiConsumer< Localizable, V >
 		{
+			// One fetcher is used by one random access, thus by one thread.
+			// Therefore, it can hold on to the random accesses into the tiles.
+			private final TileAccesses< V > tileAccesses = new TileAccesses<>();
+			// when this fetcher has last requested a tile, to not request it for every voxel
+			private final TIntLongHashMap tileToRequestMillis = new TIntLongHashMap();
+
 			@Override
 			public void accept( Localizable location, V volatileValue )
 			{
@@ -576,92 +600,74 @@ public class StitchedImage< T extends Type< T >, V extends Volatile< T > & Type<
 				// siteDimension[d] + 2 * margin[d]
 				final int xTileIndex = x / tileDimension[ 0 ];
 				final int yTileIndex = y / tileDimension[ 1 ];
+				final int tileIndex = tileStore.getTileIndex( xTileIndex, yTileIndex );
 
-				if ( ! tileStore.contains( t, level, xTileIndex, yTileIndex ) )
+				if ( tileIndex < 0 )
 				{
-					volatileValue.set( background.copy() );
+					volatileValue.set( background );
 					volatileValue.setValid( true );
 					return;
 				}
 
-				final Status status = tileStore.getStatus( t, level, xTileIndex, yTileIndex );
+				RandomAccess< V > access = tileAccesses.get( tileIndex );
 
-				if ( status.equals( Status.Closed ) )
+				if ( access == null )
 				{
-					ThreadHelper.stitchedImageExecutorService.submit( new TileOpener( t, level, xTileIndex, yTileIndex ) );
+					final RandomAccessible< V > randomAccessible = tileStore.getStatus( t, level, tileIndex ).equals( Status.Open )
+							? tileStore.getVolatileRandomAccessible( t, level, tileIndex )
+							: null; // the tile is closed, being opened, or has just been evicted
+
+					if ( randomAccessible == null )
+					{
+						// request again after a while, in case the request has been dropped
+						// or the tile has been closed after it was opened
+						final long now = System.currentTimeMillis();
+						if ( now - tileToRequestMillis.get( tileIndex ) > REQUEST_AGAIN_MILLIS )
+						{
+							tileToRequestMillis.put( tileIndex, now );
+							tileStore.request( t, level, xTileIndex, yTileIndex );
+						}
+
+						volatileValue.setValid( false );
+						return;
+					}
 
-					volatileValue.setValid( false );
+					tileStore.touch( t, level, tileIndex );
+					access = tileAccesses.put( tileIndex, randomAccessible.randomAccess() );
 				}
-				else if ( status.equals( Status.Opening ) )
+
+				// TODO: The margin logic should be here!
+				//   then we would not need to translate the individual RAIs
+				//   this could improve performance and may help with the
+				//   jumping between resolution layers.
+				//   lower resolutions are closer to 0,0
+				//   higher resolutions are further
+				//   => jump to bottom right
+				x = x - xTileIndex * tileDimension[ 0 ];
+				y = y - yTileIndex * tileDimension[ 1 ];
+				// subtract here also the margin
+				final int z = location.getIntPosition( 2 );
+
+				try
 				{
-					volatileValue.setValid( false );
+					volatileValue.set( access.setPositionAndGet( x, y, z ) );
 				}
-				else if ( status.equals( Status.Open ) )
+				catch ( Exception e )
 				{
-					// TODO: The margin logic should be here!
-					//   then we would not need to translate the individual RAIs
-					//   this could improve performance and may help with the
-					//   jumping between resolution layers.
-					//   lower resolutions are closer to 0,0
-					//   higher resolutions are further
-					//   => jump to bottom right
-					x = x - xTileIndex * tileDimension[ 0 ];
-					y = y - yTileIndex * tileDimension[ 1 ];
-					// subtract here also the margin
-					final int z = location.getIntPosition( 2 );
-
-					try
-					{
-						// TODO (ask @tpietzsch)
-						//   Instead of calling getAt(... )
-						//   I tried holding on to the random accesses
-						//   but got some buggy behaviour.
-						//   I removed this to keep it simpler.
-						//   This logic could be added back, if needed.
-						//   For this it would be good to know if that actually does
-						//   yield a performance improvement
-						final V volatileType = tileStore.getVolatileRandomAccessible( t, level, xTileIndex, yTileIndex ).getAt( x, y, z );
-						volatileValue.set( volatileType );
-					}
-					catch ( Exception e )
-					{
-						// https://github.com/ome/ngff/issues/221
-						//
-						throw new RuntimeException( e );
-					}
+					// https://github.com/ome/ngff/issues/221
+					//
+					throw new RuntimeException( e );
 				}
 			}
 		}
-
-		class TileOpener implements Runnable
-		{
-			private final int t;
-			private final int level;
-			private final int xTileIndex;
-			private final int yTileIndex;
-
-			public TileOpener( int t, int level, int xTileIndex, int yTileIndex )
-			{
-				//System.out.println( name + " t" + t + "  l" + level + " x" + xTileIndex + " y" + yTileIndex + " i" + valueSupplierIndex.incrementAndGet() );
-
-				this.t = t;
-				this.level = level;
-				this.xTileIndex = xTileIndex;
-				this.yTileIndex = yTileIndex;
-			}
-
-			@Override
-			public void run()
-			{
-				tileStore.open( t, level, xTileIndex, yTileIndex );
-			}
-		}
 	}
 
 	protected Map< Integer, List< RandomAccessibleInterval< T > > > stitchTiles( TileStore tileStore )
 	{
 		final Map< Integer, List< RandomAccessibleInterval< T > > > stitched = new HashMap<>();
 
+		final T background = type.createVariable();
+
 		for ( int t = 0; t < numTimepoints; t++ )
 		{
 			stitched.put( t, new ArrayList<>() );
@@ -671,32 +677,43 @@ public class StitchedImage< T extends Type< T >, V extends Volatile< T > & Type<
 				final int[] tileDimension = tileDimensions[ l ];
 				final int level = l;
 				final int timepoint = t;
-				BiConsumer< Localizable, T > biConsumer = ( location, value ) ->
+				// one consumer per random access, see VolatileValueFromTilesFetcher
+				final Supplier< BiConsumer< Localizable, T > > biConsumerSupplier = () ->
 				{
-					int x = location.getIntPosition( 0 );
-					int y = location.getIntPosition( 1 );
-					final int xTileIndex = x / tileDimension[ 0 ];
-					final int yTileIndex = y / tileDimension[ 1 ];
-					x = x - xTileIndex * tileDimension[ 0 ];
-					y = y - yTileIndex * tileDimension[ 1 ];
-
-					if ( ! tileStore.contains( timepoint, level, xTileIndex, yTileIndex ) )
+					final TileAccesses< T > tileAccesses = new TileAccesses<>();
+					return ( location, value ) ->
 					{
-						value.set( type.createVariable() ); // background
-						return;
-					}
-
-					// this is less efficient as the corresponding volatile
-					// implementation, but right now this mainly needed
-					// to fetch very few pixel values upon segment selections
-					//
-					//
-					tileStore.open( timepoint, level, xTileIndex, yTileIndex );
-					final T type = tileStore.getRandomAccessible( timepoint, level, xTileIndex, yTileIndex ).randomAccess().setPositionAndGet( x, y, location.getIntPosition( 2 ) );
-					value.set( type );
-				} ;
-
-				final FunctionRandomAccessible< T > randomAccessible = new FunctionRandomAccessible( 3, biConsumer, () -> type.createVariable() );
+						int x = location.getIntPosition( 0 );
+						int y = location.getIntPosition( 1 );
+						final int xTileIndex = x / tileDimension[ 0 ];
+						final int yTileIndex = y / tileDimension[ 1 ];
+						x = x - xTileIndex * tileDimension[ 0 ];
+						y = y - yTileIndex * tileDimension[ 1 ];
+						final int tileIndex = tileStore.getTileIndex( xTileIndex, yTileIndex );
+
+						if ( tileIndex < 0 )
+						{
+							value.set( background ); // background
+							return;
+						}
+
+						RandomAccess< T > access = tileAccesses.get( tileIndex );
+						if ( access == null )
+						{
+							// this is less efficient as the corresponding volatile
+							// implementation, but right now this mainly needed
+							// to fetch very few pixel values upon segment selections
+							//
+							//
+							final RandomAccessible< T > randomAccessible = tileStore.openAndGetRandomAccessible( timepoint, level, tileIndex );
+							access = tileAccesses.put( tileIndex, randomAccessible.randomAccess() );
+						}
+
+						value.set( access.setPositionAndGet( x, y, location.getIntPosition( 2 ) ) );
+					};
+				};
+
+				final FunctionRandomAccessible< T > randomAccessible = new FunctionRandomAccessible( 3, biConsumerSupplier, () -> type.createVariable() );
 				final IntervalView< T > rai = Views.interval( randomAccessible, getInterval( level ) );
 				stitched.get( t ).add( rai );
 			}
@@ -917,80 +934,430 @@ public class StitchedImage< T extends Type< T >, V extends Volatile< T > & Type<
 		this.mask = mask;
 	}
 
+	/**
+	 * The random accesses into the tiles that one thread is using,
+	 * keeping the most recent one at hand, because subsequent
+	 * locations are typically within the same tile.
+	 */
+	static class TileAccesses< T >
+	{
+		private static final int MAX_NUM_ACCESSES = 256;
+
+		private final TIntObjectHashMap< RandomAccess< T > > tileIndexToAccess = new TIntObjectHashMap<>();
+		private int recentTileIndex = -1;
+		private RandomAccess< T > recentAccess;
+
+		public RandomAccess< T > get( int tileIndex )
+		{
+			if ( tileIndex == recentTileIndex )
+				return recentAccess;
+
+			final RandomAccess< T > access = tileIndexToAccess.get( tileIndex );
+			if ( access != null )
+			{
+				recentTileIndex = tileIndex;
+				recentAccess = access;
+			}
+			return access;
+		}
+
+		public RandomAccess< T > put( int tileIndex, RandomAccess< T > access )
+		{
+			// the accesses are cheap to recreate,
+			// thus we just start over if there are too many
+			if ( tileIndexToAccess.size() >= MAX_NUM_ACCESSES )
+				tileIndexToAccess.clear();
+
+			tileIndexToAccess.put( tileIndex, access );
+			recentTileIndex = tileIndex;
+			recentAccess = access;
+			return access;
+		}
+	}
+
+	/**
+	 * Sets the maximal number of voxels of the tiles that each stitched image
+	 * keeps open; if there are more, the least recently used tiles are closed.
+	 * The tile voxels are typically backed by the caches of the tile images,
+	 * thus this bounds the data that are kept reachable from the stitched images.
+	 */
+	public static void setMaxNumOpenTileVoxels( long maxNumOpenTileVoxels )
+	{
+		StitchedImage.maxNumOpenTileVoxels = maxNumOpenTileVoxels;
+	}
+
+	public static long getMaxNumOpenTileVoxels()
+	{
+		return maxNumOpenTileVoxels;
+	}
+
+	/**
+	 * Sets the global position at the centre of the viewer window,
+	 * e.g. whenever the viewer transform changes.
+	 *
+	 * @param globalPosition
+	 * 			the position, or null if there is no viewer
+	 */
+	public static void setViewerCenter( @Nullable double[] globalPosition )
+	{
+		viewerCenter = globalPosition;
+	}
+
+	/**
+	 * The pending requests for opening tiles, best first.
+	 *
+	 * Requests that are needed for rendering come before prefetch requests.
+	 * Within the same priority, tiles that are closer to the centre of the
+	 * viewer window come first and, at the same distance, newer requests,
+	 * because they are more likely to still be in view.
+	 */
+	static class TileRequests
+	{
+		private static final int MAX_NUM_REQUESTS = 4096;
+
+		static class TileRequest
+		{
+			final int t;
+			final int level;
+			final int tileIndex;
+			final long key;
+			final int priority;
+			final double distance;
+			final long sequence;
+
+			TileRequest( int t, int level, int tileIndex, long key, int priority, double distance, long sequence )
+			{
+				this.key = key;
+				this.t = t;
+				this.level = level;
+				this.tileIndex = tileIndex;
+				this.priority = priority;
+				this.distance = distance;
+				this.sequence = sequence;
+			}
+		}
+
+		private final TreeSet< TileRequest > queue = new TreeSet<>(
+				Comparator.< TileRequest >comparingInt( request -> request.priority )
+						.thenComparingDouble( request -> request.distance )
+						.thenComparing( request -> request.sequence, Comparator.reverseOrder() ) );
+		private final TLongObjectHashMap< TileRequest > keyToRequest = new TLongObjectHashMap<>();
+		private long sequence = 0;
+
+		/**
+		 * Adds the request or, if it is pending already, updates its
+		 * distance and, if higher, its priority.
+		 *
+		 * @return true, if the request was added or updated
+		 */
+		public synchronized boolean add( int t, int level, int tileIndex, long key, int priority, double distance )
+		{
+			final TileRequest existing = keyToRequest.get( key );
+			if ( existing != null )
+			{
+				if ( existing.priority < priority
+						|| existing.priority == priority && existing.distance == distance )
+					return false;
+				priority = Math.min( priority, existing.priority );
+				queue.remove( existing );
+			}
+
+			final TileRequest request = new TileRequest( t, level, tileIndex, key, priority, distance, sequence++ );
+			queue.add( request );
+			keyToRequest.put( key, request );
+
+			if ( queue.size() > MAX_NUM_REQUESTS )
+			{
+				// drop the least important request;
+				// if it is still needed, rendering will request it again
+				keyToRequest.remove( queue.pollLast().key );
+			}
+
+			return true;
+		}
+
+		public synchronized TileRequest poll()
+		{
+			final TileRequest request = queue.pollFirst();
+			if ( request != null )
+				keyToRequest.remove( request.key );
+			return request;
+		}
+	}
+
+	/**
+	 * Holds the tiles of all time points and resolution levels in dense
+	 * arrays that are indexed by {@code t * numMipmapLevels + level}
+	 * and by the tile index {@code xTileIndex + numColumns * yTileIndex}.
+	 *
+	 * Open tiles are closed again, least recently used first,
+	 * if their voxels exceed {@code maxNumOpenTileVoxels}. Once all time points
+	 * and levels of a tile are closed, its image releases its image data.
+	 *
+	 * The status and the random accessibles of a tile are only changed
+	 * while holding the lock of the tile, such that opening and closing
+	 * do not interleave.
+	 */
 	class TileStore
 	{
-		// TODO: does it make sense to use something like
-		// 	  https://github.com/google/guava/wiki/CachesExplained
-		//    here? I am not sure, because (probably) the RandomAccessible and Image
-		//    values are already backed by some SoftRef cache?!
-		protected Map< String, RandomAccessible< T > > timeLevelTileToRA;
-		protected Map< String, RandomAccessible< V > > timeLevelTileToVolatileRA;
-		protected Map< String, Image< T > > tileToImage;
-		protected Map< String, Status > timeLevelTileToStatus;
+		// tiles that have been used within this time are not closed
+		private static final long MIN_OPEN_MILLIS = 1000;
+
+		private final int numColumns;
+		private final int numRows;
+		private final Image< T >[] tileToImage;
+		private final RandomAccessible< T >[][] timeLevelTileToRA;
+		private final RandomAccessible< V >[][] timeLevelTileToVolatileRA;
+		// the status is published after the random accessibles,
+		// thus reading an Open status guarantees that those are visible
+		private final AtomicReferenceArray< Status >[] timeLevelTileToStatus;
+		private final AtomicLongArray[] timeLevelTileToLastAccess;
+		private final Object[] tileLocks;
+		// the tiles that are being opened, by timeLevel * numTiles + tileIndex
+		private final Map< Long, CompletableFuture< Void > > openings = new ConcurrentHashMap<>();
+		private final AtomicLong numOpenVoxels = new AtomicLong();
+		private final TileRequests requests = new TileRequests();
 
 		public TileStore( List< ? extends Image< T > > images, List< int[] > positions )
 		{
-			timeLevelTileToRA = new ConcurrentHashMap<>( );
-			timeLevelTileToVolatileRA = new ConcurrentHashMap<>();
-			timeLevelTileToStatus = new ConcurrentHashMap<>();
-			tileToImage = new ConcurrentHashMap<>();
+			numColumns = ( int ) maxPos[ 0 ] + 1;
+			numRows = ( int ) maxPos[ 1 ] + 1;
+			final int numTiles = numColumns * numRows;
+			final int numTimeLevels = numTimepoints * numMipmapLevels;
+
+			tileToImage = new Image[ numTiles ];
+			tileLocks = new Object[ numTiles ];
+			for ( int tileIndex = 0; tileIndex < numTiles; tileIndex++ )
+				tileLocks[ tileIndex ] = new Object();
+			timeLevelTileToRA = new RandomAccessible[ numTimeLevels ][ numTiles ];
+			timeLevelTileToVolatileRA = new RandomAccessible[ numTimeLevels ][ numTiles ];
+			timeLevelTileToStatus = new AtomicReferenceArray[ numTimeLevels ];
+			timeLevelTileToLastAccess = new AtomicLongArray[ numTimeLevels ];
 
 			for ( int gridIndex = 0; gridIndex < positions.size(); gridIndex++ )
 			{
 				final int[] position = positions.get( gridIndex );
-				tileToImage.put( getTileKey( position[ 0 ], position[ 1 ] ), images.get( gridIndex ) );
+				tileToImage[ getTileIndex( position[ 0 ], position[ 1 ] ) ] = images.get( gridIndex );
+			}
 
-				for ( int t = 0; t < numTimepoints; t++ )
-					for ( int level = 0; level < numMipmapLevels; level++ )
-						timeLevelTileToStatus.put( getKey( t, level, position[ 0 ], position[ 1 ] ), Status.Closed );
+			for ( int timeLevel = 0; timeLevel < numTimeLevels; timeLevel++ )
+			{
+				timeLevelTileToStatus[ timeLevel ] = new AtomicReferenceArray<>( numTiles );
+				timeLevelTileToLastAccess[ timeLevel ] = new AtomicLongArray( numTiles );
+				for ( int tileIndex = 0; tileIndex < numTiles; tileIndex++ )
+					if ( tileToImage[ tileIndex ] != null )
+						timeLevelTileToStatus[ timeLevel ].set( tileIndex, Status.Closed );
 			}
 		}
 
-		public RandomAccessible< T > getRandomAccessible( int t, int level, int xTileIndex, int yTileIndex )
+		/**
+		 * @return the index of the tile, or -1 if there is no tile at this grid position
+		 */
+		public int getTileIndex( int xTileIndex, int yTileIndex )
 		{
-			return timeLevelTileToRA.get( getKey( t, level, xTileIndex, yTileIndex ) );
+			if ( xTileIndex < 0 || xTileIndex >= numColumns || yTileIndex < 0 || yTileIndex >= numRows )
+				return -1;
+
+			final int tileIndex = xTileIndex + numColumns * yTileIndex;
+			return tileToImage[ tileIndex ] == null ? -1 : tileIndex;
 		}
 
-		public RandomAccessible< V > getVolatileRandomAccessible( int t, int level, int xTileIndex, int yTileIndex )
+		private int getTimeLevel( int t, int level )
 		{
-			return timeLevelTileToVolatileRA.get( getKey( t, level, xTileIndex, yTileIndex ) );
+			return t * numMipmapLevels + level;
 		}
 
-		private String getTileKey( int xTileIndex, int yTileIndex )
+		public RandomAccessible< T > getRandomAccessible( int t, int level, int tileIndex )
 		{
-			return xTileIndex + SEP + yTileIndex;
+			return timeLevelTileToRA[ getTimeLevel( t, level ) ][ tileIndex ];
 		}
 
-		private String getKey( int t, int level, int xTileIndex, int yTileIndex )
+		public RandomAccessible< V > getVolatileRandomAccessible( int t, int level, int tileIndex )
 		{
-			return t + SEP + level + SEP + xTileIndex + SEP + yTileIndex;
+			return timeLevelTileToVolatileRA[ getTimeLevel( t, level ) ][ tileIndex ];
 		}
 
-		public Status getStatus( int t, int level, int xTileIndex, int yTileIndex )
+		public Status getStatus( int t, int level, int tileIndex )
 		{
-			return timeLevelTileToStatus.get( getKey( t, level, xTileIndex, yTileIndex ) );
+			return timeLevelTileToStatus[ getTimeLevel( t, level ) ].get( tileIndex );
 		}
 
-		public boolean contains( int t, int level, int xTileIndex, int yTileIndex )
+		public void touch( int t, int level, int tileIndex )
 		{
-			return timeLevelTileToStatus.containsKey( getKey( t, level, xTileIndex, yTileIndex ) );
+			timeLevelTileToLastAccess[ getTimeLevel( t, level ) ].set( tileIndex, System.currentTimeMillis() );
 		}
 
-		public void open( int t, int level, int xTileIndex, int yTileIndex )
+		/**
+		 * Requests to open a tile that is needed for rendering, and
+		 * prefetches the tiles around it and the same tile at the
+		 * neighbouring resolution levels.
+		 */
+		public void request( int t, int level, int xTileIndex, int yTileIndex )
 		{
-			final String key = getKey( t, level, xTileIndex, yTileIndex );
+			boolean added = add( t, level, xTileIndex, yTileIndex, 0 );
+
+			for ( int dy = -1; dy <= 1; dy++ )
+				for ( int dx = -1; dx <= 1; dx++ )
+					if ( dx != 0 || dy != 0 )
+						added |= add( t, level, xTileIndex + dx, yTileIndex + dy, 1 );
 
-			synchronized ( timeLevelTileToStatus )
+			if ( level > 0 )
+				added |= add( t, level - 1, xTileIndex, yTileIndex, 2 );
+			if ( level < numMipmapLevels - 1 )
+				added |= add( t, level + 1, xTileIndex, yTileIndex, 2 );
+
+			if ( added )
 			{
-				if ( ! timeLevelTileToStatus.get( key ).equals( Status.Closed ) )
+				// Any drain task opens the best pending request; thus, if the
+				// executor discards a drain task, no request is lost.
+				ThreadHelper.stitchedImageExecutorService.submit( this::drain );
+			}
+		}
+
+		private boolean add( int t, int level, int xTileIndex, int yTileIndex, int priority )
+		{
+			final int tileIndex = getTileIndex( xTileIndex, yTileIndex );
+			if ( tileIndex < 0 ) return false;
+
+			final int timeLevel = getTimeLevel( t, level );
+			if ( ! timeLevelTileToStatus[ timeLevel ].get( tileIndex ).equals( Status.Closed ) )
+				return false;
+
+			return requests.add( t, level, tileIndex, getKey( timeLevel, tileIndex ), priority, getDistanceToViewerCenter( t, level, xTileIndex, yTileIndex ) );
+		}
+
+		/**
+		 * @return the squared distance in the xy-plane between the centre
+		 * 		   of the tile and the centre of the viewer window, in
+		 * 		   global units, or 0 if the viewer centre is not known
+		 */
+		private double getDistanceToViewerCenter( int t, int level, int xTileIndex, int yTileIndex )
+		{
+			final double[] center = viewerCenter;
+			if ( center == null ) return 0;
+
+			final AffineTransform3D transform = new AffineTransform3D();
+			transformedSource.getSourceTransform( t, level, transform );
+			final double[] tileCenter = {
+					( xTileIndex + 0.5 ) * tileDimensions[ level ][ 0 ],
+					( yTileIndex + 0.5 ) * tileDimensions[ level ][ 1 ],
+					0 };
+			transform.apply( tileCenter, tileCenter );
+
+			final double dx = tileCenter[ 0 ] - center[ 0 ];
+			final double dy = tileCenter[ 1 ] - center[ 1 ];
+			return dx * dx + dy * dy;
+		}
+
+		private long getKey( int timeLevel, int tileIndex )
+		{
+			return ( long ) timeLevel * tileToImage.length + tileIndex;
+		}
+
+		private void drain()
+		{
+			TileRequests.TileRequest request;
+			while ( ( request = requests.poll() ) != null )
+			{
+				try
+				{
+					open( request.t, request.level, request.tileIndex );
+				}
+				catch ( RuntimeException e )
+				{
+					IJ.log( "[WARNING] Could not open tile " + tileToImage[ request.tileIndex ].getName() + ": " + e.getMessage() );
+				}
+			}
+		}
+
+		/**
+		 * Opens the tile, if needed, and waits until it is open.
+		 *
+		 * @throws RuntimeException if the tile could not be opened
+		 */
+		public RandomAccessible< T > openAndGetRandomAccessible( int t, int level, int tileIndex )
+		{
+			final int timeLevel = getTimeLevel( t, level );
+			while ( true )
+			{
+				synchronized ( tileLocks[ tileIndex ] )
+				{
+					final RandomAccessible< T > randomAccessible = timeLevelTileToRA[ timeLevel ][ tileIndex ];
+					if ( randomAccessible != null )
+					{
+						touch( t, level, tileIndex );
+						return randomAccessible;
+					}
+				}
+
+				// throws if opening fails in this thread
+				open( t, level, tileIndex );
+
+				final CompletableFuture< Void > opening = openings.get( getKey( timeLevel, tileIndex ) );
+				if ( opening != null )
+				{
+					try
+					{
+						opening.join();
+					}
+					catch ( CompletionException e )
+					{
+						throw new RuntimeException( "Could not open tile " + tileToImage[ tileIndex ].getName(), e.getCause() );
+					}
+				}
+
+				// the tile is open now, unless it has been closed right away
+			}
+		}
+
+		/**
+		 * Opens the tile, unless it is open or being opened by another thread.
+		 *
+		 * @throws RuntimeException if the tile could not be opened;
+		 * 		   it is closed again, such that it can be requested again
+		 */
+		public void open( int t, int level, int tileIndex )
+		{
+			final int timeLevel = getTimeLevel( t, level );
+			final long openingKey = getKey( timeLevel, tileIndex );
+			final CompletableFuture< Void > opening = new CompletableFuture<>();
+
+			synchronized ( tileLocks[ tileIndex ] )
+			{
+				if ( ! timeLevelTileToStatus[ timeLevel ].compareAndSet( tileIndex, Status.Closed, Status.Opening ) )
 					return;
+				openings.put( openingKey, opening );
+			}
 
-				timeLevelTileToStatus.put( key, Status.Opening );
+			try
+			{
+				open( t, level, tileIndex, timeLevel );
+				opening.complete( null );
+			}
+			catch ( RuntimeException e )
+			{
+				synchronized ( tileLocks[ tileIndex ] )
+				{
+					timeLevelTileToStatus[ timeLevel ].set( tileIndex, Status.Closed );
+				}
+				opening.completeExceptionally( e );
+				throw e;
 			}
+			finally
+			{
+				openings.remove( openingKey, opening );
+			}
+
+			if ( numOpenVoxels.addAndGet( getNumTileVoxels( level ) ) > maxNumOpenTileVoxels )
+				closeLeastRecentlyUsedTiles();
+		}
 
+		private void open( int t, int level, int tileIndex, int timeLevel )
+		{
 			// open the image
 			//
-			final Image< T > image = tileToImage.get( getTileKey( xTileIndex, yTileIndex ) );
+			final Image< T > image = tileToImage[ tileIndex ];
+			final String key = t + SEP + level + SEP + ( tileIndex % numColumns ) + SEP + ( tileIndex / numColumns );
 
 			if ( debug )
 			{
@@ -1001,12 +1368,6 @@ public class StitchedImage< T extends Type< T >, V extends Volatile< T > & Type<
 			//
 			final RandomAccessibleInterval< T > rai = Views.zeroMin( image.getSourcePair().getSource().getSource( t, level ) );
 			final RandomAccessibleInterval< ? extends Volatile< T > > vRai = Views.zeroMin(  image.getSourcePair().getVolatileSource().getSource( t, level ) );
-			long[] referenceTileDimensions = referenceSource.getSource( t, level ).dimensionsAsLongArray();
-			long[] tileDimensions = rai.dimensionsAsLongArray();
-			if ( ! Arrays.equals( referenceTileDimensions, tileDimensions ) )
-			{
-				int a = 1;
-			}
 
 			// extend bounds to accommodate grid margin
 			//
@@ -1030,19 +1391,83 @@ public class StitchedImage< T extends Type< T >, V extends Volatile< T > & Type<
 			}
 			catch ( Exception e )
 			{
-				// TODO ask Tobias...
-				// otherwise, such Exceptions are not visible.
-				e.printStackTrace();
+				// the tile is shown as invalid (i.e. empty) voxels
+				IJ.log( "[WARNING] Could not load tile " + image.getName() + ": " + e.getMessage() );
 			}
 
-			timeLevelTileToRA.put( key, translateRa );
-			timeLevelTileToVolatileRA.put( key, translateVRa );
-			timeLevelTileToStatus.put( key, Status.Open );
+			synchronized ( tileLocks[ tileIndex ] )
+			{
+				timeLevelTileToRA[ timeLevel ][ tileIndex ] = translateRa;
+				timeLevelTileToVolatileRA[ timeLevel ][ tileIndex ] = translateVRa;
+				timeLevelTileToLastAccess[ timeLevel ].set( tileIndex, System.currentTimeMillis() );
+				timeLevelTileToStatus[ timeLevel ].set( tileIndex, Status.Open );
+			}
 
 			if ( debug )
 			{
 				System.out.println( "Opened tile image " + key + ": " + image.getName() );
 			}
 		}
+
+		private long getNumTileVoxels( int level )
+		{
+			return Arrays.stream( tileDimensions[ level ] ).asLongStream().reduce( 1, ( a, b ) -> a * b );
+		}
+
+		/**
+		 * Closes tiles until their voxels are well below the maximum,
+		 * such that this does not need to be done too often.
+		 */
+		private synchronized void closeLeastRecentlyUsedTiles()
+		{
+			if ( numOpenVoxels.get() <= maxNumOpenTileVoxels )
+				return;
+
+			final long now = System.currentTimeMillis();
+			final ArrayList< long[] > candidates = new ArrayList<>(); // { lastAccess, timeLevel, tileIndex }
+			for ( int timeLevel = 0; timeLevel < timeLevelTileToStatus.length; timeLevel++ )
+				for ( int tileIndex = 0; tileIndex < tileToImage.length; tileIndex++ )
+				{
+					if ( ! Status.Open.equals( timeLevelTileToStatus[ timeLevel ].get( tileIndex ) ) )
+						continue;
+
+					final long lastAccess = timeLevelTileToLastAccess[ timeLevel ].get( tileIndex );
+					if ( now - lastAccess > MIN_OPEN_MILLIS )
+						candidates.add( new long[]{ lastAccess, timeLevel, tileIndex } );
+				}
+
+			candidates.sort( Comparator.comparingLong( candidate -> candidate[ 0 ] ) );
+
+			final long target = ( long ) ( 0.75 * maxNumOpenTileVoxels );
+			for ( long[] candidate : candidates )
+			{
+				if ( numOpenVoxels.get() <= target )
+					break;
+
+				final int timeLevel = ( int ) candidate[ 1 ];
+				final int tileIndex = ( int ) candidate[ 2 ];
+				synchronized ( tileLocks[ tileIndex ] )
+				{
+					if ( ! timeLevelTileToStatus[ timeLevel ].compareAndSet( tileIndex, Status.Open, Status.Closed ) )
+						continue;
+
+					// random accesses that threads already hold on to remain valid
+					timeLevelTileToRA[ timeLevel ][ tileIndex ] = null;
+					timeLevelTileToVolatileRA[ timeLevel ][ tileIndex ] = null;
+					numOpenVoxels.addAndGet( - getNumTileVoxels( timeLevel % numMipmapLevels ) );
+
+					if ( isClosed( tileIndex ) && tileToImage[ tileIndex ] instanceof ImageDataImage )
+						( ( ImageDataImage< ? > ) tileToImage[ tileIndex ] ).release();
+				}
+			}
+		}
+
+		private boolean isClosed( int tileIndex )
+		{
+			for ( AtomicReferenceArray< Status > tileToStatus : timeLevelTileToStatus )
+				if ( ! Status.Closed.equals( tileToStatus.get( tileIndex ) ) )
+					return false;
+			return true;
+		}
 	}
 }
@@ -56,6 +56,7 @@ public class ThinPlateSplineTransformedImage< T > implements Image< T >, Transfo
 
 	private RealMaskRealInterval mask;
 	private DefaultSourcePair< T > sourcePair;
+	private TransformedSource< T > transformedSource;
 	private BigWarpTransform bigWarpThinPlateSplineTransform;
 
 	public ThinPlateSplineTransformedImage(
@@ -83,14 +84,23 @@ public class ThinPlateSplineTransformedImage< T > implements Image< T >, Transfo
 		return sourcePair;
 	}
 
+	private synchronized BigWarpTransform getBigWarpTransform()
+	{
+		if ( bigWarpThinPlateSplineTransform == null )
+		{
+			LandmarkTableModel ltm = new LandmarkTableModel( 3 );
+			JsonElement json = JsonParser.parseString( landmarksJson );
+			ltm.fromJson( json );
+			bigWarpThinPlateSplineTransform = new BigWarpTransform( ltm, BigWarpTransform.TPS );
+		}
+
+		return bigWarpThinPlateSplineTransform;
+	}
+
 	private void createSourcePair()
 	{
 		// Create the transformation
-		LandmarkTableModel ltm = new LandmarkTableModel( 3 );
-		JsonElement json = JsonParser.parseString( landmarksJson );
-		ltm.fromJson( json );
-		bigWarpThinPlateSplineTransform = new BigWarpTransform( ltm, BigWarpTransform.TPS );
-		InvertibleRealTransform thinPlateSplineTransform = bigWarpThinPlateSplineTransform.getTransformation();
+		InvertibleRealTransform thinPlateSplineTransform = getBigWarpTransform().getTransformation();
 		
 		// Apply the transformation
 		SourcePair< T > originalSourcePair = wrappedImage.getSourcePair();
@@ -104,7 +114,7 @@ public class ThinPlateSplineTransformedImage< T > implements Image< T >, Transfo
 		warpedVolatileSource.setIsTransformed( true );
 
 		// Wrap into a transformed source such that they have a shared affine transform
-		final TransformedSource< T > transformedSource = new TransformedSource<>( warpedSource, name );
+		transformedSource = new TransformedSource<>( warpedSource, name );
 		final TransformedSource< ? extends Volatile< T > > volatileTransformedSource = new TransformedSource<>( warpedVolatileSource, transformedSource );
 		transformedSource.setFixedTransform( affineTransform3D );
 
@@ -118,9 +128,13 @@ public class ThinPlateSplineTransformedImage< T > implements Image< T >, Transfo
 	}
 
 	@Override
-	public void transform( AffineTransform3D affineTransform3D )
+	public synchronized void transform( AffineTransform3D affineTransform3D )
 	{
 		this.affineTransform3D.preConcatenate( affineTransform3D );
+
+		// update the existing source pair, rather than creating a new one
+		if ( transformedSource != null )
+			transformedSource.setFixedTransform( this.affineTransform3D );
 	}
 
 	@Override
@@ -129,7 +143,7 @@ public class ThinPlateSplineTransformedImage< T > implements Image< T >, Transfo
 		if ( mask == null )
 		{
 			RealMaskRealInterval wrappedImageMask = wrappedImage.getMask();
-			wrappedImageMask = wrappedImageMask.transform( bigWarpThinPlateSplineTransform.affinePartOfTps() );
+			wrappedImageMask = wrappedImageMask.transform( getBigWarpTransform().affinePartOfTps() );
 			return wrappedImageMask.transform( affineTransform3D.inverse() );
 		}
 		else
@@ -0,0 +1,327 @@
+/*-
+ * #%L
+ * Fiji viewer for MoBIE projects
+ * %%
+ * Copyright (C) 2018 - 2024 EMBL
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.embl.mobie.lib.io;
+
+import ij.IJ;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * A directory of files, one per key, named by a hash of the key,
+ * in which MoBIE persists data between sessions, e.g. meshes
+ * or indices of HCS plates.
+ *
+ * Entries are written to a temporary file first, such that concurrent
+ * readers never see a partial entry. If the entries exceed the maximal
+ * number of bytes, the least recently used ones are deleted, except for
+ * those that are pinned, e.g. because they are still being read.
+ */
+public class DiskCache
+{
+	public static final File ROOT = new File( System.getProperty( "user.home" ), ".cache" + File.separator + "mobie" );
+
+	public interface EntryWriter
+	{
+		void write( OutputStream out ) throws IOException;
+	}
+
+	private final String name;
+	private final String extension;
+	private volatile boolean enabled = true;
+	private volatile File directory;
+	private volatile long maxNumBytes;
+
+	// -1: not yet determined
+	private long numBytes = -1;
+
+	// the pinned files, by the objects that read from them;
+	// an entry is unpinned once its reader is garbage collected
+	private final Map< Object, File > readerToPinnedFile = Collections.synchronizedMap( new WeakHashMap<>() );
+
+	/**
+	 * @param name
+	 * 			the name of the sub-directory of {@link #ROOT}
+	 * @param extension
+	 * 			the extension of the entry files, e.g. ".json"
+	 * @param maxNumBytes
+	 * 			the maximal size of all entries; not bounded if not positive
+	 */
+	public DiskCache( String name, String extension, long maxNumBytes )
+	{
+		this.name = name;
+		this.extension = extension;
+		this.directory = new File( ROOT, name );
+		this.maxNumBytes = maxNumBytes;
+	}
+
+	public String getName()
+	{
+		return name;
+	}
+
+	public void setEnabled( boolean enabled )
+	{
+		this.enabled = enabled;
+	}
+
+	public boolean isEnabled()
+	{
+		return enabled;
+	}
+
+	public synchronized void setDirectory( File directory )
+	{
+		this.directory = directory;
+		numBytes = -1;
+	}
+
+	public File getDirectory()
+	{
+		return directory;
+	}
+
+	public void setMaxNumBytes( long maxNumBytes )
+	{
+		this.maxNumBytes = maxNumBytes;
+		evictIfNeeded();
+	}
+
+	public long getMaxNumBytes()
+	{
+		return maxNumBytes;
+	}
+
+	/**
+	 * @return the file of the entry, which may not exist
+	 */
+	public File getFile( String key )
+	{
+		return new File( directory, hash( key ) + extension );
+	}
+
+	/**
+	 * Marks the entry as recently used.
+	 *
+	 * @return the file of the entry, or null if the cache
+	 * 		   is disabled or there is no such entry
+	 */
+	public File get( String key )
+	{
+		if ( ! enabled ) return null;
+
+		final File file = getFile( key );
+		if ( ! file.exists() ) return null;
+
+		file.setLastModified( System.currentTimeMillis() );
+		return file;
+	}
+
+	/**
+	 * Keeps the file from being evicted as long as the reader
+	 * is reachable.
+	 */
+	public void pin( Object reader, File file )
+	{
+		readerToPinnedFile.put( reader, file );
+	}
+
+	/**
+	 * @return true, if the entry has been written
+	 */
+	public boolean put( String key, EntryWriter writer )
+	{
+		if ( ! enabled ) return false;
+
+		final File directory = this.directory;
+		try
+		{
+			Files.createDirectories( directory.toPath() );
+
+			final Path file = getFile( key ).toPath();
+			final Path tmp = Files.createTempFile( directory.toPath(), file.getFileName().toString(), ".tmp" );
+			try ( OutputStream out = new BufferedOutputStream( Files.newOutputStream( tmp ) ) )
+			{
+				writer.write( out );
+			}
+			catch ( IOException | RuntimeException e )
+			{
+				Files.deleteIfExists( tmp );
+				throw e;
+			}
+
+			final long previousSize = Files.exists( file ) ? Files.size( file ) : 0;
+			try
+			{
+				Files.move( tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+			}
+			catch ( AtomicMoveNotSupportedException e )
+			{
+				Files.move( tmp, file, StandardCopyOption.REPLACE_EXISTING );
+			}
+
+			synchronized ( this )
+			{
+				if ( numBytes >= 0 )
+					numBytes += Files.size( file ) - previousSize;
+			}
+			evictIfNeeded();
+			return true;
+		}
+		catch ( IOException e )
+		{
+			IJ.log( "[WARNING] Could not write to the " + name + " cache in " + directory + ": " + e.getMessage() );
+			return false;
+		}
+	}
+
+	public synchronized void clear()
+	{
+		for ( File file : listFiles( true ) )
+			file.delete();
+		numBytes = 0;
+	}
+
+	public synchronized long getNumBytes()
+	{
+		if ( numBytes < 0 )
+			numBytes = Arrays.stream( listFiles( false ) ).mapToLong( File::length ).sum();
+		return numBytes;
+	}
+
+	/**
+	 * Deletes the least recently used entries,
+	 * until they fit into the maximal number of bytes.
+	 */
+	private synchronized void evictIfNeeded()
+	{
+		final long maxNumBytes = this.maxNumBytes;
+		if ( maxNumBytes <= 0 || getNumBytes() <= maxNumBytes )
+			return;
+
+		final Set< File > pinnedFiles;
+		synchronized ( readerToPinnedFile )
+		{
+			pinnedFiles = new HashSet<>( readerToPinnedFile.values() );
+		}
+
+		final File[] files = listFiles( false );
+		final long[] lastModified = new long[ files.length ];
+		final Integer[] order = new Integer[ files.length ];
+		for ( int i = 0; i < files.length; i++ )
+		{
+			lastModified[ i ] = files[ i ].lastModified();
+			order[ i ] = i;
+		}
+		Arrays.sort( order, Comparator.comparingLong( i -> lastModified[ i ] ) );
+
+		long numBytes = Arrays.stream( files ).mapToLong( File::length ).sum();
+		for ( int i = 0; i < order.length && numBytes > maxNumBytes; i++ )
+		{
+			final File file = files[ order[ i ] ];
+			if ( pinnedFiles.contains( file ) ) continue;
+			final long length = file.length();
+			if ( file.delete() )
+				numBytes -= length;
+		}
+		this.numBytes = numBytes;
+	}
+
+	private File[] listFiles( boolean includeTemporary )
+	{
+		final File[] files = directory.listFiles( ( dir, name ) ->
+				name.endsWith( extension ) || ( includeTemporary && name.endsWith( ".tmp" ) ) );
+		return files == null ? new File[ 0 ] : files;
+	}
+
+	/**
+	 * The size and modification time of a local file or, for a directory,
+	 * the modification times of the directory and of its direct sub-directories.
+	 * Changes deeper inside a directory, e.g. rewritten chunks of an OME-Zarr,
+	 * are thus only detected if they added or removed files at that depth.
+	 *
+	 * @return the stamp, or null if the location is remote or does not exist,
+	 * 		   in which case entries derived from it should not be cached
+	 */
+	public static String getModificationStamp( String location )
+	{
+		if ( location == null || location.contains( "://" ) && ! location.startsWith( "file:" ) )
+			return null;
+
+		final File file = location.startsWith( "file:" ) ? new File( URI.create( location ) ) : new File( location );
+		if ( ! file.exists() )
+			return null;
+
+		if ( file.isFile() )
+			return file.length() + ";" + file.lastModified();
+
+		final StringBuilder stamp = new StringBuilder().append( file.lastModified() );
+		final File[] subDirectories = file.listFiles( File::isDirectory );
+		if ( subDirectories != null )
+		{
+			Arrays.sort( subDirectories );
+			for ( File subDirectory : subDirectories )
+				stamp.append( ";" ).append( subDirectory.getName() ).append( "=" ).append( subDirectory.lastModified() );
+		}
+		return stamp.toString();
+	}
+
+	public static String hash( String key )
+	{
+		try
+		{
+			final byte[] digest = MessageDigest.getInstance( "SHA-1" ).digest( key.getBytes( StandardCharsets.UTF_8 ) );
+			final StringBuilder hex = new StringBuilder();
+			for ( byte b : digest )
+				hex.append( String.format( "%02x", b ) );
+			return hex.toString();
+		}
+		catch ( NoSuchAlgorithmException e )
+		{
+			throw new RuntimeException( e );
+		}
+	}
+}
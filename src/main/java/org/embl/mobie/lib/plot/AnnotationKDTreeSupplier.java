@@ -31,17 +31,14 @@ package org.embl.mobie.lib.plot;
 import org.embl.mobie.lib.annotation.Annotation;
 import net.imglib2.KDTree;
 import net.imglib2.RealPoint;
-import org.embl.mobie.lib.util.MoBIEHelper;
+import org.embl.mobie.lib.table.AnnotationTableModel;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.Map;
+import java.util.List;
 import java.util.function.Supplier;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 
 
 /**
@@ -55,105 +52,97 @@ public class AnnotationKDTreeSupplier< A extends Annotation > implements Supplie
 {
 	final private int numDimensions = 2; // for a 2-D scatter plot
 
-	private ArrayList< RealPoint > locations;
-	private ArrayList< A > annotations;
-	private Map< A, RealPoint > annotationToCoordinate;
+	private final AnnotationTableModel< A > tableModel;
+	private List< A > annotations;
+	private int[] rowToPoint; // created on first use, -1: not plotted
+	private double[] xs;
+	private double[] ys;
 	double[] min = new double[ numDimensions ];
 	double[] max = new double[ numDimensions ];
-	private HashMap< String, Double > stringToNumber;
 
-	public AnnotationKDTreeSupplier( Collection< A > inputData, String[] columns )
+	public AnnotationKDTreeSupplier( AnnotationTableModel< A > tableModel, Collection< A > inputData, String[] columns )
 	{
+		this.tableModel = tableModel;
 		Arrays.fill( min, Double.MAX_VALUE );
 		Arrays.fill( max, -Double.MAX_VALUE );
 
-		initialiseDataPoints( inputData, columns );
-
-		annotationToCoordinate = IntStream.range( 0, locations.size() ).boxed().collect( Collectors.toMap( i -> annotations.get( i ), i -> locations.get( i ) ) );
+		initialiseDataPoints( tableModel, inputData, columns );
 	}
 
 	/**
-	 * Create a KDTree, using copies of the tableRows and dataPoints,
-	 * because the KDTree modifies those lists internally,
-	 * which would lead to confusion and concurrency issues.
+	 * Create a KDTree, using a copy of the annotations,
+	 * such that the KDTree cannot modify the list of this class.
+	 * The locations are only created on the fly from the coordinates,
+	 * as the KDTree copies them into its own arrays.
 	 *
 	 * @return KDTree
 	 */
 	@Override
 	public KDTree< A > get()
 	{
-		final KDTree< A > kdTree = new KDTree<>( new ArrayList<>( annotations ), new ArrayList<>( locations ) );
-
-		return kdTree;
-	}
-
-	private void initialiseDataPoints( Collection< A > inputData, String[] columns )
-	{
-		stringToNumber = new HashMap<>(); // in case we need to plot categorical columns
-		locations = new ArrayList<>();
-		annotations = new ArrayList<>( );
-
-		Double[] coordinate = new Double[ numDimensions ];
-		boolean isValidDataPoint;
-
-		final Iterator< A > iterator = inputData.iterator();
-		while( iterator.hasNext() )
+		final List< RealPoint > locations = new AbstractList< RealPoint >()
 		{
-			final A annotation = iterator.next();
-
-			isValidDataPoint = true;
-
-			for ( int d = 0; d < numDimensions; d++ )
+			@Override
+			public RealPoint get( int index )
 			{
-				// TODO with the new table model we don't have to
-				//  do the conversion to Double via String anymore.
-
-				// TODO it would be convenient to be able to ask the annotation
-				//   whether a feature is numeric or categorical
-
-				Object value = annotation.getValue( columns[ d ] );
-				if ( value == null )
-				{
-					// This can happen when merging tables
-					// and not all rows have a match
-					isValidDataPoint = false;
-					break;
-				}
-
-				String cell = value.toString();
-				try
-				{
-					coordinate[ d ] = MoBIEHelper.parseDouble( cell );
-				}
-				catch ( Exception e )
-				{
-					if ( ! stringToNumber.containsKey( cell ) )
-					{
-						stringToNumber.put( cell, Double.valueOf( stringToNumber.size() ) );
-					}
-
-					coordinate[ d ] =  stringToNumber.get( cell );
-				}
-
-				if ( coordinate[ d ].isNaN() || coordinate[ d ].isInfinite() )
-				{
-					isValidDataPoint = false;
-					break;
-				}
-
-				if ( coordinate[ d ] < min[ d ] ) min[ d ] = coordinate[ d ];
-				if ( coordinate[ d ] > max[ d ] ) max[ d ] = coordinate[ d ];
+				return new RealPoint( xs[ index ], ys[ index ] );
 			}
 
-			if ( isValidDataPoint )
+			@Override
+			public int size()
 			{
-				this.locations.add( new RealPoint( coordinate[ 0 ], coordinate[ 1 ] ) );
-				this.annotations.add( annotation );
+				return xs.length;
 			}
+		};
+
+		return new KDTree<>( new ArrayList<>( annotations ), locations );
+	}
+
+	private void initialiseDataPoints( AnnotationTableModel< A > tableModel, Collection< A > inputData, String[] columns )
+	{
+		final List< A > candidates = inputData instanceof List ? ( List< A > ) inputData : new ArrayList<>( inputData );
+		final double[] x = tableModel.getColumnAsDoubles( columns[ 0 ], candidates );
+		final double[] y = tableModel.getColumnAsDoubles( columns[ 1 ], candidates );
+
+		// only keep the points where both coordinates are valid
+		final int numCandidates = candidates.size();
+		final boolean[] isValidDataPoint = new boolean[ numCandidates ];
+		int numValid = 0;
+		for ( int i = 0; i < numCandidates; i++ )
+		{
+			isValidDataPoint[ i ] = Double.isFinite( x[ i ] ) && Double.isFinite( y[ i ] );
+			if ( ! isValidDataPoint[ i ] ) continue;
+
+			numValid++;
+			if ( x[ i ] < min[ 0 ] ) min[ 0 ] = x[ i ];
+			if ( x[ i ] > max[ 0 ] ) max[ 0 ] = x[ i ];
+			if ( y[ i ] < min[ 1 ] ) min[ 1 ] = y[ i ];
+			if ( y[ i ] > max[ 1 ] ) max[ 1 ] = y[ i ];
 		}
 
-		if ( this.locations.size() == 0 )
+		if ( numValid == 0 )
 			throw new UnsupportedOperationException( "Cannot create scatter plot, because there is no valid data point." );
+
+		if ( numValid == numCandidates )
+		{
+			// copy the input list, which may change, e.g. when rows are added to the table
+			annotations = candidates == inputData ? new ArrayList<>( candidates ) : candidates;
+			xs = x;
+			ys = y;
+			return;
+		}
+
+		annotations = new ArrayList<>( numValid );
+		xs = new double[ numValid ];
+		ys = new double[ numValid ];
+		for ( int i = 0, j = 0; i < numCandidates; i++ )
+		{
+			if ( ! isValidDataPoint[ i ] ) continue;
+			annotations.add( candidates.get( i ) );
+			xs[ j ] = x[ i ];
+			ys[ j ] = y[ i ];
+			j++;
+		}
 	}
 
 	public double[] getMin()
@@ -166,8 +155,56 @@ public class AnnotationKDTreeSupplier< A extends Annotation > implements Supplie
 		return max;
 	}
 
-	public Map< A, RealPoint > getAnnotationToCoordinate()
+	public List< A > getAnnotations()
+	{
+		return annotations;
+	}
+
+	public double[] getXs()
+	{
+		return xs;
+	}
+
+	public double[] getYs()
 	{
-		return annotationToCoordinate;
+		return ys;
+	}
+
+	/**
+	 * @param annotation an annotation
+	 * @return the plot coordinates of the annotation, or null if it is not plotted
+	 */
+	public double[] getCoordinate( A annotation )
+	{
+		final int row = tableModel.rowIndexOf( annotation );
+		final int[] rowToPoint = getRowToPoint();
+		if ( row < 0 || row >= rowToPoint.length || rowToPoint[ row ] < 0 ) return null;
+
+		final int index = rowToPoint[ row ];
+		return new double[]{ xs[ index ], ys[ index ] };
+	}
+
+	private synchronized int[] getRowToPoint()
+	{
+		if ( rowToPoint == null )
+		{
+			final int[] rows = new int[ annotations.size() ];
+			int numRows = 0;
+			for ( int i = 0; i < rows.length; i++ )
+			{
+				rows[ i ] = tableModel.rowIndexOf( annotations.get( i ) );
+				numRows = Math.max( numRows, rows[ i ] + 1 );
+			}
+
+			final int[] rowToPoint = new int[ numRows ];
+			Arrays.fill( rowToPoint, -1 );
+			for ( int i = 0; i < rows.length; i++ )
+				if ( rows[ i ] >= 0 )
+					rowToPoint[ rows[ i ] ] = i;
+
+			this.rowToPoint = rowToPoint;
+		}
+
+		return rowToPoint;
 	}
 }
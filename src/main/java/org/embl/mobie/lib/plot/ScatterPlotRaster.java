@@ -0,0 +1,454 @@
+/*-
+ * #%L
+ * Fiji viewer for MoBIE projects
+ * %%
+ * Copyright (C) 2018 - 2024 EMBL
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.embl.mobie.lib.plot;
+
+import bdv.util.Affine3DHelpers;
+import bdv.util.BdvHandle;
+import net.imglib2.RealPoint;
+import net.imglib2.realtransform.AffineTransform3D;
+import net.imglib2.type.numeric.ARGBType;
+import org.embl.mobie.lib.color.ColoringModel;
+import org.embl.mobie.lib.color.lut.ARGBLut;
+import org.embl.mobie.lib.color.lut.ViridisARGBLut;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+/**
+ * Renders the points of a scatter plot by splatting them into cached,
+ * multi-resolution 2D rasters, instead of searching a KDTree for every
+ * rendered pixel.
+ *
+ * The finest raster bins the points into cells; coarser rasters are
+ * built on demand for the current zoom level, with the points dilated
+ * by the dot size. Each cell then either shows the color of the point
+ * closest to its centre or, if coloring by density, the number of points
+ * within the dot size.
+ *
+ * The rasters only depend on the point locations. The colors of the points
+ * are cached separately and recomputed lazily once the coloring or
+ * selection changes, as indicated by {@link ColoringModel#getModificationCount()}.
+ *
+ * @param <T> the type of the plotted points, e.g. an annotation
+ */
+public class ScatterPlotRaster< T > implements Supplier< BiConsumer< RealPoint, ARGBType > >
+{
+	private static final int MIN_RASTER_SIZE = 16;
+	private static final int MAX_RASTER_SIZE = 2048;
+	private static final int MAX_LEVEL = 30;
+	private static final int MAX_NUM_CACHED_RASTERS = 8;
+	private static final int EMPTY = -1;
+
+	private final List< T > annotations;
+	private final ColoringModel< T > coloringModel;
+	private final double dotSize;
+	private final double aspectRatio;
+	private final boolean colorByDensity;
+	private final int background;
+	private final Supplier< BdvHandle > bdvHandleSupplier;
+	private final ARGBLut densityLut = new ViridisARGBLut();
+
+	private final double[] xs;
+	private final double[] ys;
+	private final double minX;
+	private final double minY;
+
+	// finest raster, the points of cell i are
+	// cellPoints[ cellStarts[ i ] ] ... cellPoints[ cellStarts[ i + 1 ] - 1 ]
+	private final double cellWidth;
+	private final double cellHeight;
+	private final int width;
+	private final int height;
+	private final int[] cellStarts;
+	private final int[] cellPoints;
+
+	private final Map< Long, Raster > rasters = new LinkedHashMap< Long, Raster >( 16, 0.75f, true )
+	{
+		@Override
+		protected boolean removeEldestEntry( Map.Entry< Long, Raster > eldest )
+		{
+			return size() > MAX_NUM_CACHED_RASTERS;
+		}
+	};
+
+	// a color is written before its stamp, such that
+	// reading a current stamp guarantees to read its color
+	private final int[] colors;
+	private final AtomicIntegerArray colorStamps;
+	private volatile int colorStamp = 1; // zero marks points that were never colored
+	private long colorModificationCount;
+
+	public ScatterPlotRaster(
+			List< T > annotations,
+			double[] xs,
+			double[] ys,
+			double[] min,
+			double[] max,
+			ColoringModel< T > coloringModel,
+			double dotSize,
+			double aspectRatio,
+			boolean colorByDensity,
+			int background,
+			Supplier< BdvHandle > bdvHandleSupplier )
+	{
+		this.annotations = annotations;
+		this.coloringModel = coloringModel;
+		this.dotSize = dotSize;
+		this.aspectRatio = aspectRatio;
+		this.colorByDensity = colorByDensity;
+		this.background = background;
+		this.bdvHandleSupplier = bdvHandleSupplier;
+
+		this.xs = xs;
+		this.ys = ys;
+		final int numPoints = annotations.size();
+		minX = min[ 0 ];
+		minY = min[ 1 ];
+
+		// about four cells per point, with square cells on screen
+		final int size = ( int ) Math.max( MIN_RASTER_SIZE, Math.min( MAX_RASTER_SIZE, 2 * Math.sqrt( numPoints ) ) );
+		final double extent = Math.max( max[ 0 ] - min[ 0 ], ( max[ 1 ] - min[ 1 ] ) / aspectRatio );
+		cellWidth = extent > 0 ? extent / size : 1.0;
+		cellHeight = cellWidth * aspectRatio;
+		width = Math.max( 1, Math.min( MAX_RASTER_SIZE, ( int ) Math.ceil( ( max[ 0 ] - min[ 0 ] ) / cellWidth ) ) );
+		height = Math.max( 1, Math.min( MAX_RASTER_SIZE, ( int ) Math.ceil( ( max[ 1 ] - min[ 1 ] ) / cellHeight ) ) );
+
+		// bin the points with a counting sort, such that
+		// the points within each cell are sorted by their index
+		final int[] pointCells = new int[ numPoints ];
+		cellStarts = new int[ width * height + 1 ];
+		for ( int i = 0; i < numPoints; i++ )
+		{
+			pointCells[ i ] = cellIndex( xs[ i ], ys[ i ] );
+			cellStarts[ pointCells[ i ] + 1 ]++;
+		}
+		for ( int c = 0; c < width * height; c++ )
+			cellStarts[ c + 1 ] += cellStarts[ c ];
+		cellPoints = new int[ numPoints ];
+		final int[] cellFill = Arrays.copyOf( cellStarts, width * height );
+		for ( int i = 0; i < numPoints; i++ )
+			cellPoints[ cellFill[ pointCells[ i ] ]++ ] = i;
+
+		colors = new int[ numPoints ];
+		colorStamps = new AtomicIntegerArray( numPoints );
+		colorModificationCount = coloringModel.getModificationCount();
+	}
+
+	@Override
+	public BiConsumer< RealPoint, ARGBType > get()
+	{
+		return new LocationToColor();
+	}
+
+	/**
+	 * @return the squared distance of the point to the position,
+	 * 		   in units of the finest cells, i.e. as on screen
+	 */
+	private double distance( int point, double x, double y )
+	{
+		final double dx = ( xs[ point ] - x ) / cellWidth;
+		final double dy = ( ys[ point ] - y ) / cellHeight;
+		return dx * dx + dy * dy;
+	}
+
+	private int cellIndex( double x, double y )
+	{
+		final int cx = Math.max( 0, Math.min( width - 1, ( int ) ( ( x - minX ) / cellWidth ) ) );
+		final int cy = Math.max( 0, Math.min( height - 1, ( int ) ( ( y - minY ) / cellHeight ) ) );
+		return cy * width + cx;
+	}
+
+	private synchronized int currentColorStamp()
+	{
+		final long modificationCount = coloringModel.getModificationCount();
+		if ( modificationCount != colorModificationCount )
+		{
+			colorModificationCount = modificationCount;
+			colorStamp++;
+		}
+		return colorStamp;
+	}
+
+	private Raster getRaster( int level, int radius )
+	{
+		final long key = ( ( long ) level << 32 ) | radius;
+		synchronized ( rasters )
+		{
+			Raster raster = rasters.get( key );
+			if ( raster == null )
+			{
+				raster = new Raster( level, radius );
+				rasters.put( key, raster );
+			}
+			return raster;
+		}
+	}
+
+	/**
+	 * The points binned into cells of 2^level finest cells per dimension,
+	 * dilated by the radius, in cells, on every side.
+	 *
+	 * Each cell holds the point that is closest to its centre; the dilation
+	 * picks the closest point along x first and then, among those, along xy.
+	 */
+	private class Raster
+	{
+		final int level;
+		final int radius;
+		final int width;
+		final int height;
+		final int[] points; // the point closest to the centre, or EMPTY
+		final int[] counts; // the number of points, or null unless colorByDensity
+		final int maxCount;
+
+		Raster( int level, int radius )
+		{
+			this.level = level;
+			this.radius = radius;
+
+			final double scaledCellWidth = cellWidth * ( 1 << level );
+			final double scaledCellHeight = cellHeight * ( 1 << level );
+
+			// bin
+			final int binnedWidth = ( ( ScatterPlotRaster.this.width - 1 ) >> level ) + 1;
+			final int binnedHeight = ( ( ScatterPlotRaster.this.height - 1 ) >> level ) + 1;
+			final int[] binnedPoints = new int[ binnedWidth * binnedHeight ];
+			final int[] binnedCounts = colorByDensity ? new int[ binnedWidth * binnedHeight ] : null;
+			Arrays.fill( binnedPoints, EMPTY );
+			for ( int cy = 0; cy < ScatterPlotRaster.this.height; cy++ )
+			{
+				for ( int cx = 0; cx < ScatterPlotRaster.this.width; cx++ )
+				{
+					final int c = cy * ScatterPlotRaster.this.width + cx;
+					final int numPoints = cellStarts[ c + 1 ] - cellStarts[ c ];
+					if ( numPoints == 0 ) continue;
+					final int bx = cx >> level;
+					final int by = cy >> level;
+					final int b = by * binnedWidth + bx;
+					final double centerX = minX + ( bx + 0.5 ) * scaledCellWidth;
+					final double centerY = minY + ( by + 0.5 ) * scaledCellHeight;
+					for ( int i = cellStarts[ c ]; i < cellStarts[ c + 1 ]; i++ )
+						binnedPoints[ b ] = closer( cellPoints[ i ], binnedPoints[ b ], centerX, centerY );
+					if ( colorByDensity )
+						binnedCounts[ b ] += numPoints;
+				}
+			}
+
+			// dilate, separately along x and y
+			width = binnedWidth + 2 * radius;
+			height = binnedHeight + 2 * radius;
+			final int[] rowPoints = new int[ width * binnedHeight ];
+			final int[] rowCounts = colorByDensity ? new int[ width * binnedHeight ] : null;
+			IntStream.range( 0, binnedHeight ).parallel().forEach( y ->
+			{
+				for ( int x = 0; x < width; x++ )
+				{
+					final double centerX = minX + ( x - radius + 0.5 ) * scaledCellWidth;
+					int point = EMPTY;
+					int count = 0;
+					for ( int bx = Math.max( 0, x - 2 * radius ); bx <= Math.min( binnedWidth - 1, x ); bx++ )
+					{
+						final int candidate = binnedPoints[ y * binnedWidth + bx ];
+						if ( candidate != EMPTY && ( point == EMPTY || Math.abs( xs[ candidate ] - centerX ) < Math.abs( xs[ point ] - centerX ) ) )
+							point = candidate;
+						if ( colorByDensity ) count += binnedCounts[ y * binnedWidth + bx ];
+					}
+					rowPoints[ y * width + x ] = point;
+					if ( colorByDensity ) rowCounts[ y * width + x ] = count;
+				}
+			} );
+
+			points = new int[ width * height ];
+			counts = colorByDensity ? new int[ width * height ] : null;
+			IntStream.range( 0, height ).parallel().forEach( y ->
+			{
+				final double centerY = minY + ( y - radius + 0.5 ) * scaledCellHeight;
+				for ( int x = 0; x < width; x++ )
+				{
+					final double centerX = minX + ( x - radius + 0.5 ) * scaledCellWidth;
+					int point = EMPTY;
+					int count = 0;
+					for ( int by = Math.max( 0, y - 2 * radius ); by <= Math.min( binnedHeight - 1, y ); by++ )
+					{
+						point = closer( rowPoints[ by * width + x ], point, centerX, centerY );
+						if ( colorByDensity ) count += rowCounts[ by * width + x ];
+					}
+					points[ y * width + x ] = point;
+					if ( colorByDensity ) counts[ y * width + x ] = count;
+				}
+			} );
+
+			maxCount = colorByDensity ? Arrays.stream( counts ).max().orElse( 0 ) : 0;
+		}
+
+		/**
+		 * @return the one of the two points, which may be EMPTY,
+		 * 		   that is closer to the position
+		 */
+		private int closer( int point, int other, double x, double y )
+		{
+			if ( point == EMPTY ) return other;
+			if ( other == EMPTY ) return point;
+			return distance( point, x, y ) < distance( other, x, y ) ? point : other;
+		}
+
+		/**
+		 * @return the index into points and counts, or -1 if outside
+		 */
+		int index( double x, double y )
+		{
+			final double scale = 1 << level;
+			final int rx = ( int ) Math.floor( ( x - minX ) / ( cellWidth * scale ) ) + radius;
+			final int ry = ( int ) Math.floor( ( y - minY ) / ( cellHeight * scale ) ) + radius;
+			if ( rx < 0 || ry < 0 || rx >= width || ry >= height ) return -1;
+			return ry * width + rx;
+		}
+	}
+
+	class LocationToColor implements BiConsumer< RealPoint, ARGBType >
+	{
+		private final ARGBType pointColor = new ARGBType();
+		private final int stamp;
+		private final double searchDistanceX;
+		private final double searchDistanceY;
+		private final Raster raster;
+
+		public LocationToColor( )
+		{
+			stamp = currentColorStamp();
+
+			final AffineTransform3D viewerTransform = bdvHandleSupplier.get().getViewerPanel().state().getViewerTransform();
+			final double pixelSize = Affine3DHelpers.extractScale( viewerTransform.inverse(), 0 );
+			searchDistanceX = pixelSize * dotSize;
+			searchDistanceY = searchDistanceX * aspectRatio;
+
+			// when zoomed in beyond the finest raster, the points are
+			// searched within the nearby cells, except for the density,
+			// which is always taken from a raster
+			final int level = pixelSize < cellWidth ? 0 : ( int ) Math.min( MAX_LEVEL, Math.floor( Math.log( pixelSize / cellWidth ) / Math.log( 2 ) ) );
+			if ( pixelSize < cellWidth && ! colorByDensity )
+				raster = null;
+			else
+				raster = getRaster( level, radius( pixelSize, level ) );
+		}
+
+		private int radius( double pixelSize, int level )
+		{
+			return ( int ) Math.round( dotSize * pixelSize / ( cellWidth * ( 1 << level ) ) );
+		}
+
+		@Override
+		public void accept( RealPoint realPoint, ARGBType argbType )
+		{
+			final double x = realPoint.getDoublePosition( 0 );
+			final double y = realPoint.getDoublePosition( 1 );
+
+			if ( colorByDensity )
+			{
+				final int index = raster.index( x, y );
+				if ( index < 0 || raster.counts[ index ] == 0 )
+					argbType.set( background );
+				else
+					argbType.set( densityLut.getARGB( Math.log1p( raster.counts[ index ] ) / Math.log1p( raster.maxCount ) ) );
+				return;
+			}
+
+			final int point;
+			if ( raster == null )
+			{
+				point = searchPoint( x, y );
+			}
+			else
+			{
+				final int index = raster.index( x, y );
+				point = index < 0 ? EMPTY : raster.points[ index ];
+			}
+
+			argbType.set( point == EMPTY ? background : color( point ) );
+		}
+
+		private int searchPoint( double x, double y )
+		{
+			final int minCellX = Math.max( 0, ( int ) Math.floor( ( x - searchDistanceX - minX ) / cellWidth ) );
+			final int maxCellX = Math.min( width - 1, ( int ) Math.floor( ( x + searchDistanceX - minX ) / cellWidth ) );
+			final int minCellY = Math.max( 0, ( int ) Math.floor( ( y - searchDistanceY - minY ) / cellHeight ) );
+			final int maxCellY = Math.min( height - 1, ( int ) Math.floor( ( y + searchDistanceY - minY ) / cellHeight ) );
+
+			// the point closest to the location, as in the rasters
+			int point = EMPTY;
+			double minDistance = Double.MAX_VALUE;
+			for ( int cy = minCellY; cy <= maxCellY; cy++ )
+				for ( int cx = minCellX; cx <= maxCellX; cx++ )
+				{
+					final int c = cy * width + cx;
+					for ( int i = cellStarts[ c ]; i < cellStarts[ c + 1 ]; i++ )
+					{
+						final int p = cellPoints[ i ];
+						if ( Math.abs( xs[ p ] - x ) > searchDistanceX
+								|| Math.abs( ys[ p ] - y ) > searchDistanceY )
+							continue;
+
+						final double distance = distance( p, x, y );
+						if ( distance < minDistance )
+						{
+							minDistance = distance;
+							point = p;
+						}
+					}
+				}
+
+			return point;
+		}
+
+		private int color( int point )
+		{
+			if ( colorStamps.get( point ) == stamp )
+				return colors[ point ];
+
+			coloringModel.convert( annotations.get( point ), pointColor );
+
+			// FIXME ALPHA: this would not be needed anymore
+			// The coloring model uses the alpha value to adjust the brightness.
+			// Since the default renderer in BDV ignores
+			// this we multiply the rgb values accordingly
+			pointColor.mul( ARGBType.alpha( pointColor.get() ) / 255.0 );
+
+			final int color = pointColor.get();
+			colors[ point ] = color;
+			colorStamps.set( point, stamp );
+			return color;
+		}
+	}
+}
@@ -37,6 +37,7 @@ public class ScatterPlotSettings
 	public double aspectRatio = 0.0;
 	public double dotSize = 5.0;
 	public boolean showAllTimepoints = true;
+	public boolean colorByDensity = false;
 
 	public ScatterPlotSettings( String[] selectedColumns )
 	{
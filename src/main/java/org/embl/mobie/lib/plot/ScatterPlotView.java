@@ -72,7 +72,6 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
-import java.util.Map;
 import java.util.function.BiConsumer;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
@@ -100,7 +99,7 @@ public class ScatterPlotView< A extends Annotation > implements SelectionListene
 	private final SelectionModel< A > selectionModel;
 
 	private BdvHandle bdvHandle;
-	private Map< A, RealPoint > tableRowToRealPoint;
+	private AnnotationKDTreeSupplier< A > kdTreeSupplier;
 	private A recentFocus;
 	private Window window;
 	private NearestNeighborSearchOnKDTree< A > nearestNeighborSearchOnKDTree;
@@ -157,11 +156,10 @@ public class ScatterPlotView< A extends Annotation > implements SelectionListene
 			bdvStackSource.removeFromBdv();
 
 		Collection< A > annotations = getAnnotationsForCurrentTimePoint( );
-		AnnotationKDTreeSupplier< A > kdTreeSupplier = new AnnotationKDTreeSupplier<>( annotations, settings.selectedColumns );
+		kdTreeSupplier = new AnnotationKDTreeSupplier<>( tableModel, annotations, settings.selectedColumns );
 		KDTree< A > kdTree = kdTreeSupplier.get();
 		min = kdTreeSupplier.getMin();
 		max = kdTreeSupplier.getMax();
-		tableRowToRealPoint = kdTreeSupplier.getAnnotationToCoordinate();
 		nearestNeighborSearchOnKDTree = new NearestNeighborSearchOnKDTree<>( kdTree );
 		radiusNeighborSearchOnKDTree = new RadiusNeighborSearchOnKDTree<>( kdTree );
 
@@ -175,10 +173,21 @@ public class ScatterPlotView< A extends Annotation > implements SelectionListene
 			aspectRatio = settings.aspectRatio;
 		}
 
-//		final double[] radii = new double[ 2 ];
-//		radii[ 0 ] = settings.dotSize * ( max[ 0 ] - min[ 0 ] ) / 100.0;
-//		radii[ 1 ] = radii[ 0 ] * aspectRatio;
-		Supplier< BiConsumer< RealPoint, ARGBType > > locationToDotSupplier = new LocationToColorSupplier( kdTree, coloringModel, settings.dotSize, aspectRatio, ARGBType.rgba( 100,  100, 100, 255 ), bdvHandle );
+		// The KDTree is only used for picking points,
+		// the rendering uses a raster of the points.
+		Supplier< BiConsumer< RealPoint, ARGBType > > locationToDotSupplier =
+				new ScatterPlotRaster<>(
+						kdTreeSupplier.getAnnotations(),
+						kdTreeSupplier.getXs(),
+						kdTreeSupplier.getYs(),
+						min,
+						max,
+						coloringModel,
+						settings.dotSize,
+						aspectRatio,
+						settings.colorByDensity,
+						ARGBType.rgba( 100,  100, 100, 255 ),
+						() -> bdvHandle );
 
 		// TODO: create a source with multiple time points
 		FunctionRealRandomAccessible< ARGBType > rra = new FunctionRealRandomAccessible( 2, locationToDotSupplier, ARGBType::new );
@@ -439,8 +448,9 @@ public class ScatterPlotView< A extends Annotation > implements SelectionListene
 		else
 		{
 			recentFocus = selection;
-			double[] location = new double[ 3 ];
-			tableRowToRealPoint.get( selection ).localize( location );
+			final double[] coordinate = kdTreeSupplier.getCoordinate( selection );
+			if ( coordinate == null ) return;
+			double[] location = new double[]{ coordinate[ 0 ], coordinate[ 1 ], 0 };
 			ViewerTransformChanger.moveToPosition( bdvHandle, location, ViewerTransformChanger.animationDurationMillis );
 		}
 	}
@@ -28,22 +28,38 @@
  */
 package org.embl.mobie.lib.select;
 
+import org.embl.mobie.lib.util.ModificationCounter;
+import org.embl.mobie.lib.util.ThreadHelper;
+
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class MoBIESelectionModel< T > implements SelectionModel< T >
 {
 	private final Listeners.SynchronizedList< SelectionListener > listeners = new Listeners.SynchronizedList<>( );
-	private final Set< T > selected = new HashSet();
-	private T focusObject;
+
+	// {@code isSelected} is called by the render threads
+	// for every voxel, thus reading must not lock.
+	private final Set< T > selected = ConcurrentHashMap.newKeySet();
+
+	// at most one pending selectionChanged() notification per listener
+	private final Map< SelectionListener, AtomicBoolean > listenerToPending = new ConcurrentHashMap<>();
+	private boolean paused = false;
+	private boolean changedWhilePaused = false;
+	private volatile T focusObject;
+	private volatile long modificationCount = ModificationCounter.next();
 
 	public MoBIESelectionModel()
 	{
 	}
 
 	@Override
-	public synchronized boolean isSelected( T object )
+	public boolean isSelected( T object )
 	{
 		return selected.contains( object );
 	}
@@ -54,39 +70,69 @@ public class MoBIESelectionModel< T > implements SelectionModel< T >
 		setSelected( object, select, true );
 	}
 
-	private synchronized void setSelected( T object, boolean select, boolean notify )
+	private synchronized boolean setSelected( T object, boolean select, boolean notify )
 	{
 		if ( select )
-			add( object, notify );
+			return add( object, notify );
 		else
-			remove( object, notify );
+			return remove( object, notify );
 	}
 
-	private synchronized void remove( T object, boolean notify )
+	private synchronized boolean remove( T object, boolean notify )
 	{
-		if ( selected.contains( object ) )
+		if ( selected.remove( object ) )
 		{
-			selected.remove( object );
 			if ( notify )
 				notifySelectionListeners();
-			notifySelectionListeners();
+			return true;
 		}
+
+		return false;
 	}
 
-	private synchronized void add( T object, boolean notify )
+	private synchronized boolean add( T object, boolean notify )
 	{
-		if ( ! selected.contains( object ) )
+		if ( selected.add( object ) )
 		{
-			selected.add( object );
 			if ( notify )
 				notifySelectionListeners();
+			return true;
 		}
+
+		return false;
 	}
 
-	private void notifySelectionListeners()
+	private synchronized void notifySelectionListeners()
 	{
-		for ( SelectionListener listener : listeners.list )
-			new Thread( () -> listener.selectionChanged() ).start();
+		modificationCount = ModificationCounter.next();
+		ModificationCounter.publish();
+
+		if ( paused )
+		{
+			changedWhilePaused = true;
+			return;
+		}
+
+		final ArrayList< SelectionListener > listeners = this.listeners.listCopy();
+
+		// forget about removed listeners
+		listenerToPending.keySet().retainAll( listeners );
+
+		// Coalesce notifications: if a listener has not yet
+		// processed a previous notification, it will see the current
+		// selection anyway, thus there is no need to notify it again.
+		for ( SelectionListener listener : listeners )
+		{
+			final AtomicBoolean pending = listenerToPending.computeIfAbsent( listener, l -> new AtomicBoolean( false ) );
+			if ( pending.compareAndSet( false, true ) )
+			{
+				ThreadHelper.listenerExecutorService.submit( () ->
+				{
+					pending.set( false );
+					listener.selectionChanged();
+				} );
+			}
+		}
 	}
 
 	@Override
@@ -104,12 +150,13 @@ public class MoBIESelectionModel< T > implements SelectionModel< T >
 		focusObject = object;
 
 		for ( SelectionListener listener : listeners.list )
-			new Thread( () -> listener.focusEvent( object, initiator ) ).start();
+			ThreadHelper.listenerExecutorService.submit( () -> listener.focusEvent( object, initiator ) );
 	}
 
 	@Override
 	public boolean isFocused( T object )
 	{
+		final T focusObject = this.focusObject;
 		if ( focusObject != null && focusObject.equals( object ) )
 			return true;
 		else
@@ -119,12 +166,14 @@ public class MoBIESelectionModel< T > implements SelectionModel< T >
 	@Override
 	public synchronized boolean setSelected( Collection< T > objects, boolean select )
 	{
+		boolean changed = false;
 		for( T object : objects )
-			setSelected( object, select, false );
+			changed |= setSelected( object, select, false );
 
+		// notify once for the whole collection
 		notifySelectionListeners();
 
-		return true;
+		return changed;
 	}
 
 	@Override
@@ -141,7 +190,7 @@ public class MoBIESelectionModel< T > implements SelectionModel< T >
 	}
 
 	@Override
-	public synchronized Set< T > getSelected()
+	public Set< T > getSelected()
 	{
 		return new HashSet< T >( selected );
 	}
@@ -152,6 +201,12 @@ public class MoBIESelectionModel< T > implements SelectionModel< T >
 		return selected.isEmpty();
 	}
 
+	@Override
+	public long getModificationCount()
+	{
+		return modificationCount;
+	}
+
 	@Override
 	public Listeners< SelectionListener > listeners()
 	{
@@ -159,15 +214,19 @@ public class MoBIESelectionModel< T > implements SelectionModel< T >
 	}
 
 	@Override
-	public void resumeListeners()
+	public synchronized void resumeListeners()
 	{
-
+		paused = false;
+		if ( changedWhilePaused )
+		{
+			changedWhilePaused = false;
+			notifySelectionListeners();
+		}
 	}
 
 	@Override
-	public void pauseListeners()
+	public synchronized void pauseListeners()
 	{
-
+		paused = true;
 	}
-
 }
@@ -108,6 +108,15 @@ public interface SelectionModel< T >
 
 	public boolean isEmpty();
 
+	/**
+	 * Get a number that changes whenever the selection changes.
+	 * In contrast to the listeners, which are notified asynchronously,
+	 * this changes immediately and thus can be used to invalidate cached colors.
+	 *
+	 * @return the modification count
+	 */
+	public long getModificationCount();
+
 	/**
 	 * Get the list of select listeners. Add a {@link SelectionListener} to
 	 * this list, for being notified when the object/edge select changes.
@@ -0,0 +1,136 @@
+/*-
+ * #%L
+ * Fiji viewer for MoBIE projects
+ * %%
+ * Copyright (C) 2018 - 2024 EMBL
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.embl.mobie.lib.source;
+
+import bdv.util.DefaultInterpolators;
+import bdv.viewer.Interpolation;
+import bdv.viewer.Source;
+import mpicbg.spim.data.sequence.VoxelDimensions;
+import net.imglib2.RandomAccessible;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.RealRandomAccessible;
+import net.imglib2.realtransform.AffineTransform3D;
+import net.imglib2.type.Type;
+import net.imglib2.view.Views;
+
+import java.util.List;
+
+/**
+ * A source whose resolution level 0 is the one of another source
+ * and whose coarser levels are given as images, e.g. such that
+ * a single resolution source can be viewed as a pyramid.
+ */
+public class AppendedMipmapsSource< T extends Type< T > > implements Source< T >
+{
+	private final Source< T > source;
+	private final List< List< RandomAccessibleInterval< T > > > timepointToLevels;
+	private final AffineTransform3D[] mipmapTransforms;
+	private final DefaultInterpolators interpolators = new DefaultInterpolators<>();
+
+	/**
+	 * @param source
+	 * 			the source whose level 0 is used
+	 * @param timepointToLevels
+	 * 			for each time point, the levels coarser than level 0
+	 * @param mipmapTransforms
+	 * 			for all levels, including level 0, the transform
+	 * 			from the voxels of the level into the voxels of level 0
+	 */
+	public AppendedMipmapsSource(
+			Source< T > source,
+			List< List< RandomAccessibleInterval< T > > > timepointToLevels,
+			AffineTransform3D[] mipmapTransforms )
+	{
+		this.source = source;
+		this.timepointToLevels = timepointToLevels;
+		this.mipmapTransforms = mipmapTransforms;
+	}
+
+	@Override
+	public boolean isPresent( int t )
+	{
+		return source.isPresent( t );
+	}
+
+	@Override
+	public RandomAccessibleInterval< T > getSource( int t, int level )
+	{
+		if ( level == 0 )
+			return source.getSource( t, 0 );
+
+		return timepointToLevels.get( t ).get( level - 1 );
+	}
+
+	@Override
+	public RealRandomAccessible< T > getInterpolatedSource( int t, int level, Interpolation method )
+	{
+		if ( level == 0 )
+			return source.getInterpolatedSource( t, 0, method );
+
+		final RandomAccessible ra = Views.extendZero( ( RandomAccessibleInterval ) getSource( t, level ) );
+		return ( RealRandomAccessible< T > ) Views.interpolate( ra, interpolators.get( method ) );
+	}
+
+	@Override
+	public void getSourceTransform( int t, int level, AffineTransform3D transform )
+	{
+		source.getSourceTransform( t, 0, transform );
+		transform.concatenate( mipmapTransforms[ level ] );
+	}
+
+	@Override
+	public T getType()
+	{
+		return source.getType();
+	}
+
+	@Override
+	public String getName()
+	{
+		return source.getName();
+	}
+
+	@Override
+	public VoxelDimensions getVoxelDimensions()
+	{
+		return source.getVoxelDimensions();
+	}
+
+	@Override
+	public int getNumMipmapLevels()
+	{
+		return mipmapTransforms.length;
+	}
+
+	@Override
+	public boolean doBoundingBoxCulling()
+	{
+		return source.doBoundingBoxCulling();
+	}
+}
@@ -0,0 +1,165 @@
+/*-
+ * #%L
+ * Fiji viewer for MoBIE projects
+ * %%
+ * Copyright (C) 2018 - 2024 EMBL
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.embl.mobie.lib.source;
+
+import net.imglib2.Interval;
+import net.imglib2.realtransform.AffineTransform3D;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * The resolution levels of a power of two pyramid
+ * on top of a level 0 voxel grid.
+ *
+ * Each dimension is only downsampled as long as it extends over more
+ * than one voxel, such that, e.g., 2D data stays in its plane.
+ * The coarser levels are zero-min; their voxels are centered on the
+ * voxels of level 0 that they cover.
+ */
+public class MipmapLevels
+{
+	private final long[] levelZeroMin;
+	private final long[][] dimensions;
+	private final long[][] factors;
+	private final AffineTransform3D[] transforms;
+
+	/**
+	 * @param levelZeroInterval
+	 * 			the voxel grid of level 0
+	 * @param maxCoarsestLevelSize
+	 * 			levels are added until no dimension is larger than this
+	 * @param maxNumLevels
+	 * 			the maximal number of levels, including level 0
+	 */
+	public MipmapLevels( Interval levelZeroInterval, long maxCoarsestLevelSize, int maxNumLevels )
+	{
+		final int n = levelZeroInterval.numDimensions();
+		levelZeroMin = levelZeroInterval.minAsLongArray();
+		final long[] levelZeroDimensions = levelZeroInterval.dimensionsAsLongArray();
+
+		final ArrayList< long[] > dimensionsList = new ArrayList<>();
+		final ArrayList< long[] > factorsList = new ArrayList<>();
+		dimensionsList.add( levelZeroDimensions );
+		factorsList.add( ones( n ) );
+
+		while ( Arrays.stream( dimensionsList.get( dimensionsList.size() - 1 ) ).max().getAsLong() > maxCoarsestLevelSize
+				&& dimensionsList.size() < maxNumLevels )
+		{
+			final long[] previousDimensions = dimensionsList.get( dimensionsList.size() - 1 );
+			final long[] previousFactors = factorsList.get( factorsList.size() - 1 );
+			final long[] levelDimensions = new long[ n ];
+			final long[] levelFactors = new long[ n ];
+			for ( int d = 0; d < n; d++ )
+			{
+				levelFactors[ d ] = previousDimensions[ d ] > 1 ? 2 * previousFactors[ d ] : previousFactors[ d ];
+				levelDimensions[ d ] = Math.max( 1, ( long ) Math.ceil( 1.0 * levelZeroDimensions[ d ] / levelFactors[ d ] ) );
+			}
+			dimensionsList.add( levelDimensions );
+			factorsList.add( levelFactors );
+		}
+
+		dimensions = dimensionsList.toArray( new long[ 0 ][] );
+		factors = factorsList.toArray( new long[ 0 ][] );
+		transforms = new AffineTransform3D[ dimensions.length ];
+		for ( int level = 0; level < dimensions.length; level++ )
+		{
+			transforms[ level ] = new AffineTransform3D();
+			if ( level == 0 )
+				continue; // level 0 is not zero-min, thus needs no translation
+
+			for ( int d = 0; d < 3; d++ )
+			{
+				transforms[ level ].set( factors[ level ][ d ], d, d );
+				transforms[ level ].set( position( level, d, 0 ), d, 3 );
+			}
+		}
+	}
+
+	public int numLevels()
+	{
+		return dimensions.length;
+	}
+
+	public long[] dimensions( int level )
+	{
+		return dimensions[ level ];
+	}
+
+	public long[] factors( int level )
+	{
+		return factors[ level ];
+	}
+
+	/**
+	 * @return the cell dimensions for the given level, i.e. the
+	 * 		   {@code maxCellDimensions}, but not larger than the level itself
+	 */
+	public int[] cellDimensions( int level, int[] maxCellDimensions )
+	{
+		final int[] cellDimensions = new int[ maxCellDimensions.length ];
+		for ( int d = 0; d < maxCellDimensions.length; d++ )
+			cellDimensions[ d ] = ( int ) Math.min( maxCellDimensions[ d ], dimensions[ level ][ d ] );
+		return cellDimensions;
+	}
+
+	/**
+	 * @return the source transforms of all levels, including level 0
+	 */
+	public AffineTransform3D[] transforms()
+	{
+		return transforms;
+	}
+
+	/**
+	 * @return the position, in level 0 voxel coordinates,
+	 * 		   of the center of voxel {@code index} of the given level
+	 */
+	public double position( int level, int d, long index )
+	{
+		final long factor = factors[ level ][ d ];
+		return levelZeroMin[ d ] + index * factor + ( factor - 1 ) / 2.0;
+	}
+
+	/**
+	 * @return the voxel of the given level that contains the
+	 * 		   level 0 voxel coordinate {@code position}
+	 */
+	public long index( int level, int d, double position )
+	{
+		return ( long ) Math.floor( ( position - levelZeroMin[ d ] + 0.5 ) / factors[ level ][ d ] );
+	}
+
+	private static long[] ones( int n )
+	{
+		final long[] ones = new long[ n ];
+		Arrays.fill( ones, 1 );
+		return ones;
+	}
+}
@@ -0,0 +1,222 @@
+/*-
+ * #%L
+ * Fiji viewer for MoBIE projects
+ * %%
+ * Copyright (C) 2018 - 2024 EMBL
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.embl.mobie.lib.source;
+
+import static net.imglib2.view.fluent.RandomAccessibleIntervalView.Extension.value;
+import static net.imglib2.view.fluent.RandomAccessibleView.Interpolation.nearestNeighbor;
+
+import bdv.viewer.Interpolation;
+import bdv.viewer.Source;
+import mpicbg.spim.data.sequence.VoxelDimensions;
+import net.imglib2.Interval;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.RealRandomAccessible;
+import net.imglib2.realtransform.AffineTransform3D;
+import net.imglib2.type.Type;
+import net.imglib2.view.Views;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * A {@code Source} whose full resolution level is given by a
+ * {@code RealRandomAccessible}, e.g. a function that is exact at any
+ * zoom level, and whose coarser levels are given by (typically cached)
+ * {@code RandomAccessibleInterval}s.
+ *
+ * The {@link Levels} are supplied on demand, such that they can be
+ * replaced, e.g. if they need to be recomputed for a new geometry.
+ */
+public class RealRandomAccessibleMipmapSource< T extends Type< T > > implements Source< T >
+{
+	/**
+	 * The voxel grids of all levels, including level 0.
+	 */
+	public static class Levels< T extends Type< T > >
+	{
+		private final Interval fullResolutionInterval;
+		private final List< RandomAccessibleInterval< T > > coarserLevels;
+		private final List< RealRandomAccessible< T > > interpolatedCoarserLevels;
+		private final AffineTransform3D[] mipmapTransforms;
+
+		/**
+		 * @param fullResolutionInterval
+		 * 			the interval of level 0
+		 * @param coarserLevels
+		 * 			the levels 1 to n
+		 * @param mipmapTransforms
+		 * 			the source transforms of all levels, including level 0
+		 * @param type
+		 * 			the value outside the coarser levels is a variable of this type
+		 */
+		public Levels(
+				final Interval fullResolutionInterval,
+				final List< RandomAccessibleInterval< T > > coarserLevels,
+				final AffineTransform3D[] mipmapTransforms,
+				final T type )
+		{
+			this.fullResolutionInterval = fullResolutionInterval;
+			this.coarserLevels = coarserLevels;
+			this.mipmapTransforms = mipmapTransforms;
+
+			// the coarser levels are meant for label images, thus they are not interpolated
+			interpolatedCoarserLevels = new ArrayList<>();
+			for ( RandomAccessibleInterval< T > level : coarserLevels )
+				interpolatedCoarserLevels.add( level.view()
+						.extend( value( type.createVariable() ) )
+						.interpolate( nearestNeighbor() ) );
+		}
+
+		public int numLevels()
+		{
+			return mipmapTransforms.length;
+		}
+	}
+
+	private final RealRandomAccessible< T > fullResolution;
+	private final Supplier< Levels< T > > levels;
+	private final T type;
+	private final String name;
+	private final VoxelDimensions voxelDimensions;
+	private final Set< Integer > timePoints;
+
+	/**
+	 * @param fullResolution
+	 * 			level 0, in the voxel coordinates of level 0
+	 * @param levels
+	 * 			supplies the current voxel grids of all levels
+	 */
+	public RealRandomAccessibleMipmapSource(
+			final RealRandomAccessible< T > fullResolution,
+			final Supplier< Levels< T > > levels,
+			final T type,
+			final String name,
+			final VoxelDimensions voxelDimensions )
+	{
+		this( fullResolution, levels, type, name, voxelDimensions, null );
+	}
+
+	/**
+	 * @param timePoints
+	 * 			the time points at which the (same) data is present;
+	 * 			if {@code null}, the data is only present at time point 0
+	 */
+	public RealRandomAccessibleMipmapSource(
+			final RealRandomAccessible< T > fullResolution,
+			final Supplier< Levels< T > > levels,
+			final T type,
+			final String name,
+			final VoxelDimensions voxelDimensions,
+			final Set< Integer > timePoints )
+	{
+		this.fullResolution = fullResolution;
+		this.levels = levels;
+		this.type = type;
+		this.name = name;
+		this.voxelDimensions = voxelDimensions;
+		this.timePoints = timePoints;
+	}
+
+	@Override
+	public boolean isPresent( final int t )
+	{
+		if ( timePoints == null )
+			return t == 0;
+
+		return timePoints.contains( t );
+	}
+
+	@Override
+	public RandomAccessibleInterval< T > getSource( final int t, final int level )
+	{
+		final Levels< T > levels = this.levels.get();
+		final int existingLevel = existingLevel( levels, level );
+		if ( existingLevel == 0 )
+			return Views.interval( Views.raster( fullResolution ), levels.fullResolutionInterval );
+
+		return levels.coarserLevels.get( existingLevel - 1 );
+	}
+
+	@Override
+	public RealRandomAccessible< T > getInterpolatedSource( final int t, final int level, final Interpolation method )
+	{
+		final Levels< T > levels = this.levels.get();
+		final int existingLevel = existingLevel( levels, level );
+		if ( existingLevel == 0 )
+			return fullResolution;
+
+		return levels.interpolatedCoarserLevels.get( existingLevel - 1 );
+	}
+
+	@Override
+	public void getSourceTransform( final int t, final int level, final AffineTransform3D transform )
+	{
+		final Levels< T > levels = this.levels.get();
+		transform.set( levels.mipmapTransforms[ existingLevel( levels, level ) ] );
+	}
+
+	// the levels may have been replaced by fewer levels
+	// since their number has been queried
+	private static int existingLevel( Levels< ? > levels, int level )
+	{
+		return Math.min( level, levels.numLevels() - 1 );
+	}
+
+	@Override
+	public T getType()
+	{
+		return type;
+	}
+
+	@Override
+	public String getName()
+	{
+		return name;
+	}
+
+	@Override
+	public VoxelDimensions getVoxelDimensions()
+	{
+		return voxelDimensions;
+	}
+
+	@Override
+	public int getNumMipmapLevels()
+	{
+		return levels.get().numLevels();
+	}
+
+	@Override
+	public boolean doBoundingBoxCulling()
+	{
+		return true;
+	}
+}
@@ -32,20 +32,27 @@ import bdv.viewer.Interpolation;
 import bdv.viewer.Source;
 import bdv.viewer.render.DefaultMipmapOrdering;
 import bdv.viewer.render.MipmapOrdering;
+import bdv.util.Affine3DHelpers;
 import mpicbg.spim.data.sequence.VoxelDimensions;
 import net.imglib2.Interval;
 import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.RealInterval;
 import net.imglib2.RealRandomAccessible;
 import net.imglib2.realtransform.AffineTransform3D;
 import net.imglib2.realtransform.BoundingBoxEstimation;
+import net.imglib2.realtransform.DisplacementFieldTransform;
 import net.imglib2.realtransform.InvertibleRealTransform;
 import net.imglib2.realtransform.RealTransform;
 import net.imglib2.realtransform.RealTransformRealRandomAccessible;
 import net.imglib2.realtransform.RealTransformSequence;
 import net.imglib2.realtransform.inverse.WrappedIterativeInvertibleRealTransform;
+import net.imglib2.util.Intervals;
 import net.imglib2.view.Views;
+import org.embl.mobie.lib.transform.BakedRealTransform;
 
+import java.util.Arrays;
 import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
 
 
@@ -62,16 +69,72 @@ public class RealTransformedSource<T> implements Source<T>, MipmapOrdering, Sour
     private final BoundingBoxEstimation boundingBoxEstimation =
             new BoundingBoxEstimation( BoundingBoxEstimation.Method.FACES, 5 );
 
-    private final Map< Long, Interval > boundingIntervalCache = new ConcurrentHashMap<>();
+    private final Map< Long, Interval > boundingIntervalCache;
+
+    // the physical bounds of the transformed source, per geometry of the wrapped source;
+    // timepoints with the same geometry share the bounds
+    private final Map< String, RealInterval > physicalBoundsCache;
+
+    // null: the real transform is evaluated for every rendered voxel
+    private static volatile Double defaultBakeTolerance = null;
+
+    private final Double bakeTolerance;
+
+    // empty: the real transform is evaluated directly at this level
+    private final Map< Long, Optional< BakedRealTransform > > bakedTransformCache;
 
     public RealTransformedSource(
             final Source<T> source,
             final RealTransform realTransform,
             final String name) {
 
+        this( source, realTransform, name, defaultBakeTolerance );
+    }
+
+    /**
+     * @param bakeTolerance
+     *          if not null, the real transform is sampled onto a (lazily computed)
+     *          displacement grid per resolution level, which is then interpolated for
+     *          rendering; the grid spacing is chosen such that the interpolation
+     *          deviates less than the given tolerance, in voxels of the respective level,
+     *          from the real transform.
+     */
+    public RealTransformedSource(
+            final Source<T> source,
+            final RealTransform realTransform,
+            final String name,
+            final Double bakeTolerance ) {
+
         this.source = source;
         this.name = name;
         this.realTransform = realTransform;
+        // displacement fields are already cheap to evaluate
+        this.bakeTolerance = realTransform instanceof DisplacementFieldTransform ? null : bakeTolerance;
+        this.boundingIntervalCache = new ConcurrentHashMap<>();
+        this.physicalBoundsCache = new ConcurrentHashMap<>();
+        this.bakedTransformCache = new ConcurrentHashMap<>();
+        sourceMipmapOrdering =
+                source instanceof MipmapOrdering ?
+                        ( MipmapOrdering ) source : null;
+    }
+
+    /**
+     * Creates a source that applies the same real transform as the {@code sharedSource},
+     * sharing its estimated bounds and baked transforms.
+     * This is meant for the volatile version of a source, which has the same
+     * geometry as the non-volatile one.
+     */
+    public RealTransformedSource(
+            final Source<T> source,
+            final RealTransformedSource< ? > sharedSource ) {
+
+        this.source = source;
+        this.name = sharedSource.name;
+        this.realTransform = sharedSource.realTransform;
+        this.bakeTolerance = sharedSource.bakeTolerance;
+        this.boundingIntervalCache = sharedSource.boundingIntervalCache;
+        this.physicalBoundsCache = sharedSource.physicalBoundsCache;
+        this.bakedTransformCache = sharedSource.bakedTransformCache;
         sourceMipmapOrdering =
                 source instanceof MipmapOrdering ?
                         ( MipmapOrdering ) source : null;
@@ -101,9 +164,34 @@ public class RealTransformedSource<T> implements Source<T>, MipmapOrdering, Sour
 
     private Interval estimateBoundingInterval( final int t, final int level ) {
 
+        // the levels cover the same physical space, thus the (expensive)
+        // estimation of the bounds is only done once and then mapped
+        // into the voxel space of the requested level
+        final RealInterval physicalBounds = getPhysicalBounds( t );
+
         final AffineTransform3D sourceTransform = new AffineTransform3D();
         source.getSourceTransform( t, level, sourceTransform );
 
+        return Intervals.smallestContainingInterval( sourceTransform.inverse().estimateBounds( physicalBounds ) );
+    }
+
+    private RealInterval getPhysicalBounds( final int t )
+    {
+        final AffineTransform3D sourceTransform = new AffineTransform3D();
+        source.getSourceTransform( t, 0, sourceTransform );
+        final RandomAccessibleInterval< T > rai = source.getSource( t, 0 );
+
+        final String geometry = Arrays.toString( sourceTransform.getRowPackedCopy() )
+                + Arrays.toString( rai.minAsLongArray() )
+                + Arrays.toString( rai.maxAsLongArray() );
+
+        return physicalBoundsCache.computeIfAbsent(
+                geometry,
+                key -> sourceTransform.estimateBounds( estimatePixelInterval( sourceTransform, rai ) ) );
+    }
+
+    private Interval estimatePixelInterval( final AffineTransform3D sourceTransform, final RandomAccessibleInterval< T > rai )
+    {
         final InvertibleRealTransform invertible;
         if ( realTransform instanceof InvertibleRealTransform )
             invertible = ( ( InvertibleRealTransform ) realTransform ).copy();
@@ -124,7 +212,7 @@ public class RealTransformedSource<T> implements Source<T>, MipmapOrdering, Sour
         inverseChain.add( invertible.inverse() );
         inverseChain.add( sourceTransform.inverse() );
 
-        return boundingBoxEstimation.estimatePixelInterval( inverseChain, source.getSource( t, level ) );
+        return boundingBoxEstimation.estimatePixelInterval( inverseChain, rai );
     }
 
     @Override
@@ -147,12 +235,67 @@ public class RealTransformedSource<T> implements Source<T>, MipmapOrdering, Sour
 
         final RealTransformSequence totalTransform = new RealTransformSequence();
         totalTransform.add( sourceTransform ); // Negate the inverse sourceTransform that BDV will apply to stay in physical space because the realtransform is given in physical space
-        totalTransform.add( realTransform.copy() ); // Apply real transform in physical space
+        final BakedRealTransform bakedTransform = bakeTolerance == null ? null : getBakedTransform( t, level );
+        totalTransform.add( bakedTransform == null ?
+                realTransform.copy() :
+                bakedTransform.copy() ); // Apply real transform in physical space
         totalTransform.add( sourceTransform.inverse() ); // Go into voxel space to fetch the pixel
 
         return new RealTransformRealRandomAccessible<>( interpolatedSource, totalTransform );
     }
 
+    /**
+     * @return the baked transform, or null if the grid would be too large
+     *          or could not meet the tolerance
+     */
+    public BakedRealTransform getBakedTransform( final int t, final int level )
+    {
+        return bakedTransformCache.computeIfAbsent(
+                cacheKey( t, level ),
+                key -> Optional.ofNullable( bakeTransform( t, level ) ) ).orElse( null );
+    }
+
+    private BakedRealTransform bakeTransform( final int t, final int level )
+    {
+        final AffineTransform3D sourceTransform = new AffineTransform3D();
+        source.getSourceTransform( t, level, sourceTransform );
+
+        // the real transform is applied to the rendered positions, thus
+        // the grid needs to cover the bounds of the transformed source
+        final Interval interval = boundingIntervalCache.computeIfAbsent(
+                cacheKey( t, level ),
+                key -> estimateBoundingInterval( t, level ) );
+        final double[] voxelSize = new double[ 3 ];
+        for ( int d = 0; d < 3; d++ )
+            voxelSize[ d ] = Affine3DHelpers.extractScale( sourceTransform, d );
+        final RealInterval bounds = sourceTransform.estimateBounds( interval );
+        final RealInterval domain = Intervals.createMinMaxReal(
+                bounds.realMin( 0 ) - voxelSize[ 0 ], bounds.realMin( 1 ) - voxelSize[ 1 ], bounds.realMin( 2 ) - voxelSize[ 2 ],
+                bounds.realMax( 0 ) + voxelSize[ 0 ], bounds.realMax( 1 ) + voxelSize[ 1 ], bounds.realMax( 2 ) + voxelSize[ 2 ] );
+
+        final double minVoxelSize = Arrays.stream( voxelSize ).min().getAsDouble();
+        final double[] spacing = BakedRealTransform.estimateSpacing(
+                realTransform.copy(),
+                domain,
+                bakeTolerance * minVoxelSize,
+                voxelSize );
+
+        if ( spacing == null )
+            return null;
+
+        return new BakedRealTransform( realTransform.copy(), domain, spacing );
+    }
+
+    public static void setDefaultBakeTolerance( Double bakeTolerance )
+    {
+        defaultBakeTolerance = bakeTolerance;
+    }
+
+    public static Double getDefaultBakeTolerance()
+    {
+        return defaultBakeTolerance;
+    }
+
     @Override
     public void getSourceTransform(final int t, final int level, final AffineTransform3D transform)
     {
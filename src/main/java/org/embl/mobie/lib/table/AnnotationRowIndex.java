@@ -0,0 +1,78 @@
+/*-
+ * #%L
+ * Fiji viewer for MoBIE projects
+ * %%
+ * Copyright (C) 2018 - 2024 EMBL
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.embl.mobie.lib.table;
+
+import gnu.trove.map.hash.TObjectIntHashMap;
+import org.embl.mobie.lib.annotation.Annotation;
+
+import java.util.List;
+
+/**
+ * Reverse index from an annotation to its row in a table model.
+ *
+ * The index is only built on the first call to {@code rowIndexOf},
+ * because for millions of annotations, e.g. in the case of spatial-omics data,
+ * it costs a substantial amount of memory, which should not be spent
+ * if nobody needs it. Once built, appended annotations are added to it.
+ */
+public class AnnotationRowIndex< A extends Annotation >
+{
+	private final List< A > annotations;
+	private TObjectIntHashMap< A > annotationToRow;
+
+	// the same annotation may occur in several rows, e.g. of merged tables,
+	// thus the size of the map is not the number of indexed rows
+	private int numIndexedRows;
+
+	/**
+	 * @param annotations
+	 * 		the rows of the table model; new annotations must only be appended to this list.
+	 */
+	public AnnotationRowIndex( List< A > annotations )
+	{
+		this.annotations = annotations;
+	}
+
+	/**
+	 * @return the first row of the annotation, or -1 if it is not in the table
+	 */
+	public synchronized int rowIndexOf( A annotation )
+	{
+		if ( annotationToRow == null )
+			annotationToRow = new TObjectIntHashMap<>( Math.max( 10, 2 * annotations.size() ), 0.5F, -1 );
+
+		// index the annotations that have been appended since the last call
+		final int numAnnotations = annotations.size();
+		for ( int rowIndex = numIndexedRows; rowIndex < numAnnotations; rowIndex++ )
+			annotationToRow.putIfAbsent( annotations.get( rowIndex ), rowIndex );
+		numIndexedRows = numAnnotations;
+
+		return annotationToRow.get( annotation );
+	}
+}
@@ -0,0 +1,508 @@
+/*-
+ * #%L
+ * Fiji viewer for MoBIE projects
+ * %%
+ * Copyright (C) 2018 - 2024 EMBL
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.embl.mobie.lib.table;
+
+import org.embl.mobie.lib.annotation.Annotation;
+import org.embl.mobie.lib.table.saw.AbstractTableSawAnnotation;
+import org.embl.mobie.lib.table.saw.TableSawAnnotationTableModel;
+
+import javax.swing.RowSorter;
+import javax.swing.SortOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.DoublePredicate;
+
+/**
+ * Sorts and filters the rows of a {@link SwingTableModel}.
+ *
+ * In contrast to Swing's {@link javax.swing.DefaultRowSorter}, which compares
+ * the (boxed) values of the cells one by one, the values of the sorted and filtered
+ * columns are extracted once as primitive arrays, directly from the TableSaw columns,
+ * and the rows are sorted as a primitive permutation, in parallel.
+ * This keeps sorting tables with millions of rows interactive.
+ *
+ * As {@link javax.swing.DefaultRowSorter} with {@code sortsOnUpdates} being false,
+ * updated rows keep their position until the sorting or filtering changes.
+ */
+public class AnnotationRowSorter extends RowSorter< SwingTableModel >
+{
+	private static final int MAX_SORT_KEYS = 3;
+	private static final int SEQUENTIAL_SORT_THRESHOLD = 8192;
+
+	private final SwingTableModel model;
+	private final AnnotationTableModel< ? extends Annotation > tableModel;
+
+	private List< SortKey > sortKeys = Collections.emptyList();
+	private boolean sortable = true;
+
+	private String filterColumn;
+	private DoublePredicate filter;
+
+	// null: the rows are neither sorted nor filtered
+	private int[] viewToModel;
+	private int[] modelToView;
+
+	// the values of the sorted and filtered columns, by column name
+	private final Map< String, ColumnValues > columnValues = new HashMap<>();
+
+	// the models of the annotations, whose columns are sorted and filtered;
+	// null: not yet determined
+	private List< TableSawAnnotationTableModel< ? > > annotationModels;
+	private boolean hasOtherAnnotations;
+
+	private static class ColumnValues
+	{
+		final double[] values;
+		final long modificationCount;
+
+		ColumnValues( double[] values, long modificationCount )
+		{
+			this.values = values;
+			this.modificationCount = modificationCount;
+		}
+	}
+
+	public AnnotationRowSorter( SwingTableModel model )
+	{
+		this.model = model;
+		this.tableModel = model.getAnnotationTableModel();
+	}
+
+	@Override
+	public SwingTableModel getModel()
+	{
+		return model;
+	}
+
+	public void setSortable( boolean sortable )
+	{
+		this.sortable = sortable;
+	}
+
+	public boolean isSortable()
+	{
+		return sortable;
+	}
+
+	@Override
+	public void toggleSortOrder( int column )
+	{
+		if ( !sortable ) return;
+
+		final List< SortKey > keys = new ArrayList<>( sortKeys );
+		SortKey sortKey = null;
+		int index = 0;
+		for ( ; index < keys.size(); index++ )
+		{
+			if ( keys.get( index ).getColumn() == column )
+			{
+				sortKey = keys.get( index );
+				break;
+			}
+		}
+
+		if ( sortKey == null )
+		{
+			keys.add( 0, new SortKey( column, SortOrder.ASCENDING ) );
+		}
+		else if ( index == 0 )
+		{
+			keys.set( 0, new SortKey( column, sortKey.getSortOrder() == SortOrder.ASCENDING ? SortOrder.DESCENDING : SortOrder.ASCENDING ) );
+		}
+		else
+		{
+			keys.remove( index );
+			keys.add( 0, new SortKey( column, SortOrder.ASCENDING ) );
+		}
+
+		setSortKeys( keys.size() > MAX_SORT_KEYS ? keys.subList( 0, MAX_SORT_KEYS ) : keys );
+	}
+
+	@Override
+	public void setSortKeys( List< ? extends SortKey > keys )
+	{
+		final List< SortKey > newKeys = new ArrayList<>();
+		if ( keys != null )
+			for ( SortKey key : keys )
+				if ( key.getSortOrder() != SortOrder.UNSORTED )
+					newKeys.add( key );
+
+		if ( newKeys.equals( sortKeys ) ) return;
+
+		sortKeys = Collections.unmodifiableList( newKeys );
+		fireSortOrderChanged();
+		update();
+	}
+
+	@Override
+	public List< ? extends SortKey > getSortKeys()
+	{
+		return sortKeys;
+	}
+
+	/**
+	 * Only shows the rows whose value in the given column is accepted by the filter;
+	 * text columns are filtered by the rank of their values, see
+	 * {@link AnnotationTableModel#getColumnAsRanks(String, List)}.
+	 *
+	 * @param columnName the filtered column, or null to remove the filter
+	 * @param filter accepts the values of the rows that should be shown
+	 */
+	public void setFilter( String columnName, DoublePredicate filter )
+	{
+		this.filterColumn = columnName;
+		this.filter = columnName == null ? null : filter;
+		update();
+	}
+
+	public String getFilterColumn()
+	{
+		return filterColumn;
+	}
+
+	@Override
+	public int convertRowIndexToModel( int index )
+	{
+		if ( viewToModel == null )
+		{
+			if ( index < 0 || index >= getModelRowCount() )
+				throw new IndexOutOfBoundsException( "Invalid index" );
+			return index;
+		}
+
+		return viewToModel[ index ];
+	}
+
+	@Override
+	public int convertRowIndexToView( int index )
+	{
+		if ( modelToView == null )
+		{
+			if ( index < 0 || index >= getModelRowCount() )
+				throw new IndexOutOfBoundsException( "Invalid index" );
+			return index;
+		}
+
+		if ( index < 0 || index >= modelToView.length )
+			throw new IndexOutOfBoundsException( "Invalid index" );
+
+		return modelToView[ index ];
+	}
+
+	@Override
+	public int getViewRowCount()
+	{
+		return viewToModel == null ? getModelRowCount() : viewToModel.length;
+	}
+
+	@Override
+	public int getModelRowCount()
+	{
+		return model.getRowCount();
+	}
+
+	@Override
+	public void modelStructureChanged()
+	{
+		// columns are only ever appended, thus the sort keys remain valid
+		final int columnCount = model.getColumnCount();
+		final List< SortKey > validKeys = new ArrayList<>();
+		for ( SortKey key : sortKeys )
+			if ( key.getColumn() < columnCount )
+				validKeys.add( key );
+		sortKeys = Collections.unmodifiableList( validKeys );
+
+		allRowsChanged();
+	}
+
+	@Override
+	public void allRowsChanged()
+	{
+		columnValues.clear();
+		annotationModels = null;
+		update();
+	}
+
+	@Override
+	public void rowsInserted( int firstRow, int endRow )
+	{
+		allRowsChanged();
+	}
+
+	@Override
+	public void rowsDeleted( int firstRow, int endRow )
+	{
+		allRowsChanged();
+	}
+
+	@Override
+	public void rowsUpdated( int firstRow, int endRow )
+	{
+		// the rows are not sorted again; changed values are extracted
+		// again once needed, as their modification count changed
+		if ( modelToView != null && modelToView.length != getModelRowCount() )
+			allRowsChanged();
+	}
+
+	@Override
+	public void rowsUpdated( int firstRow, int endRow, int column )
+	{
+		rowsUpdated( firstRow, endRow );
+	}
+
+	private void update()
+	{
+		// the arrays are replaced rather than modified, thus need not be copied
+		final int[] lastViewToModel = viewToModel == null ? new int[ 0 ] : viewToModel;
+
+		if ( sortKeys.isEmpty() && filter == null )
+		{
+			viewToModel = null;
+			modelToView = null;
+		}
+		else
+		{
+			final List< ? extends Annotation > annotations = tableModel.annotations();
+			final int numRows = annotations.size();
+
+			int[] rows = new int[ numRows ];
+			int numViewRows = 0;
+			if ( filter != null )
+			{
+				final double[] values = getColumnValues( filterColumn, annotations );
+				for ( int row = 0; row < numRows; row++ )
+					if ( filter.test( values[ row ] ) )
+						rows[ numViewRows++ ] = row;
+				if ( numViewRows < numRows )
+				{
+					final int[] filteredRows = new int[ numViewRows ];
+					System.arraycopy( rows, 0, filteredRows, 0, numViewRows );
+					rows = filteredRows;
+				}
+			}
+			else
+			{
+				for ( int row = 0; row < numRows; row++ )
+					rows[ row ] = row;
+			}
+
+			if ( !sortKeys.isEmpty() )
+			{
+				final double[][] keys = new double[ sortKeys.size() ][];
+				final boolean[] descending = new boolean[ sortKeys.size() ];
+				for ( int k = 0; k < keys.length; k++ )
+				{
+					final SortKey sortKey = sortKeys.get( k );
+					keys[ k ] = getColumnValues( model.getColumnName( sortKey.getColumn() ), annotations );
+					descending[ k ] = sortKey.getSortOrder() == SortOrder.DESCENDING;
+				}
+
+				final int[] buffer = new int[ rows.length ];
+				ForkJoinPool.commonPool().invoke( new MergeSort( rows, buffer, 0, rows.length, new RowComparator( keys, descending ) ) );
+			}
+
+			final int[] inverse = new int[ numRows ];
+			Arrays.fill( inverse, -1 );
+			for ( int viewRow = 0; viewRow < rows.length; viewRow++ )
+				inverse[ rows[ viewRow ] ] = viewRow;
+
+			viewToModel = rows;
+			modelToView = inverse;
+		}
+
+		fireRowSorterChanged( lastViewToModel );
+	}
+
+	private double[] getColumnValues( String columnName, List< ? extends Annotation > annotations )
+	{
+		// values may have been edited, e.g. by annotating rows
+		final long modificationCount = getModificationCount( columnName, annotations );
+		final ColumnValues cached = columnValues.get( columnName );
+		if ( cached != null && cached.modificationCount == modificationCount )
+			return cached.values;
+
+		final Class< ? > columnClass = tableModel.columnClass( columnName );
+		final double[] values = extract( tableModel, columnName, annotations, columnClass != null && Number.class.isAssignableFrom( columnClass ) );
+		columnValues.put( columnName, new ColumnValues( values, modificationCount ) );
+		return values;
+	}
+
+	// the annotations are the ones of the table model
+	@SuppressWarnings( "unchecked" )
+	private static < A extends Annotation > double[] extract( AnnotationTableModel< A > tableModel, String columnName, List< ? extends Annotation > annotations, boolean isNumeric )
+	{
+		return isNumeric
+				? tableModel.getColumnAsDoubles( columnName, ( List< A > ) annotations )
+				: tableModel.getColumnAsRanks( columnName, ( List< A > ) annotations );
+	}
+
+	private long getModificationCount( String columnName, List< ? extends Annotation > annotations )
+	{
+		if ( annotationModels == null )
+		{
+			final Map< TableSawAnnotationTableModel< ? >, Boolean > models = new IdentityHashMap<>();
+			hasOtherAnnotations = false;
+			for ( Annotation annotation : annotations )
+			{
+				if ( annotation instanceof AbstractTableSawAnnotation )
+					models.put( ( ( AbstractTableSawAnnotation ) annotation ).model(), true );
+				else
+					hasOtherAnnotations = true;
+			}
+			annotationModels = new ArrayList<>( models.keySet() );
+		}
+
+		// e.g. transformed annotations, whose edits can only be tracked for all columns
+		long modificationCount = hasOtherAnnotations ? AbstractTableSawAnnotation.getValuesModificationCount() : 0;
+		for ( TableSawAnnotationTableModel< ? > model : annotationModels )
+			modificationCount = Math.max( modificationCount, model.getModificationCount( columnName ) );
+		return modificationCount;
+	}
+
+	/**
+	 * Compares rows by the values of the sort keys;
+	 * missing values (NaN) are sorted last.
+	 */
+	private static class RowComparator
+	{
+		private final double[][] keys;
+		private final boolean[] descending;
+
+		RowComparator( double[][] keys, boolean[] descending )
+		{
+			this.keys = keys;
+			this.descending = descending;
+		}
+
+		int compare( int row, int otherRow )
+		{
+			for ( int k = 0; k < keys.length; k++ )
+			{
+				final double value = keys[ k ][ row ];
+				final double otherValue = keys[ k ][ otherRow ];
+				final boolean isNaN = Double.isNaN( value );
+				final boolean otherIsNaN = Double.isNaN( otherValue );
+				if ( isNaN || otherIsNaN )
+				{
+					if ( isNaN && otherIsNaN ) continue;
+					return isNaN ? 1 : -1;
+				}
+
+				final int comparison = Double.compare( value, otherValue );
+				if ( comparison != 0 )
+					return descending[ k ] ? -comparison : comparison;
+			}
+
+			return Integer.compare( row, otherRow );
+		}
+	}
+
+	/**
+	 * Stable, parallel merge sort of the row indices.
+	 */
+	private static class MergeSort extends RecursiveAction
+	{
+		private final int[] rows;
+		private final int[] buffer;
+		private final int from;
+		private final int to;
+		private final RowComparator comparator;
+
+		MergeSort( int[] rows, int[] buffer, int from, int to, RowComparator comparator )
+		{
+			this.rows = rows;
+			this.buffer = buffer;
+			this.from = from;
+			this.to = to;
+			this.comparator = comparator;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if ( to - from <= SEQUENTIAL_SORT_THRESHOLD )
+			{
+				insertionOrMergeSort( from, to );
+				return;
+			}
+
+			final int mid = ( from + to ) >>> 1;
+			invokeAll(
+					new MergeSort( rows, buffer, from, mid, comparator ),
+					new MergeSort( rows, buffer, mid, to, comparator ) );
+			merge( from, mid, to );
+		}
+
+		private void insertionOrMergeSort( int from, int to )
+		{
+			if ( to - from <= 32 )
+			{
+				for ( int i = from + 1; i < to; i++ )
+				{
+					final int row = rows[ i ];
+					int j = i - 1;
+					while ( j >= from && comparator.compare( rows[ j ], row ) > 0 )
+					{
+						rows[ j + 1 ] = rows[ j ];
+						j--;
+					}
+					rows[ j + 1 ] = row;
+				}
+				return;
+			}
+
+			final int mid = ( from + to ) >>> 1;
+			insertionOrMergeSort( from, mid );
+			insertionOrMergeSort( mid, to );
+			merge( from, mid, to );
+		}
+
+		private void merge( int from, int mid, int to )
+		{
+			if ( comparator.compare( rows[ mid - 1 ], rows[ mid ] ) <= 0 )
+				return; // already in order
+
+			System.arraycopy( rows, from, buffer, from, to - from );
+			int i = from, j = mid, k = from;
+			while ( i < mid && j < to )
+				rows[ k++ ] = comparator.compare( buffer[ j ], buffer[ i ] ) < 0 ? buffer[ j++ ] : buffer[ i++ ];
+			while ( i < mid )
+				rows[ k++ ] = buffer[ i++ ];
+			while ( j < to )
+				rows[ k++ ] = buffer[ j++ ];
+		}
+	}
+}
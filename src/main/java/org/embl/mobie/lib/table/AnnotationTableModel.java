@@ -59,6 +59,36 @@ public interface AnnotationTableModel< A extends Annotation >
 		return new ValuePair<>( min, max );
 	}
 
+	/**
+	 * Get the values of a column for many annotations at once,
+	 * e.g., to plot them.
+	 *
+	 * Missing values are NaN. Values that are not numbers
+	 * are numbered in the order of their appearance,
+	 * such that categorical columns can be plotted.
+	 *
+	 * @param columnName the column
+	 * @param annotations the annotations whose values are requested
+	 * @return the values, in the order of the annotations
+	 */
+	default double[] getColumnAsDoubles( String columnName, List< A > annotations )
+	{
+		return ColumnAsDoubles.extract( columnName, annotations );
+	}
+
+	/**
+	 * Get the rank of the values of a column among its distinct values,
+	 * in case-insensitive alphabetical order, e.g. to sort by a text column.
+	 *
+	 * @param columnName the column
+	 * @param annotations the annotations whose values are ranked
+	 * @return the ranks, in the order of the annotations; NaN for missing values
+	 */
+	default double[] getColumnAsRanks( String columnName, List< A > annotations )
+	{
+		return ColumnAsDoubles.extractRanks( columnName, annotations );
+	}
+
 	List< String > columnNames();
 	List< String > numericColumnNames();
 	Class< ? > columnClass( String columnName );
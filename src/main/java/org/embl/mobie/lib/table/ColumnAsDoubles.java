@@ -0,0 +1,156 @@
+/*-
+ * #%L
+ * Fiji viewer for MoBIE projects
+ * %%
+ * Copyright (C) 2018 - 2024 EMBL
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.embl.mobie.lib.table;
+
+import org.embl.mobie.lib.annotation.Annotation;
+import org.embl.mobie.lib.util.MoBIEHelper;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Extracts the values of a column as primitive doubles,
+ * see {@link AnnotationTableModel#getColumnAsDoubles(String, List)}.
+ *
+ * The values are fetched via {@link Annotation#getValue(String)};
+ * table models that can read their columns directly override
+ * {@link #value} and {@link #string}.
+ */
+public class ColumnAsDoubles
+{
+	protected final String columnName;
+	private final Map< String, Double > stringToNumber = new HashMap<>();
+	private int numCategories = 0;
+
+	protected ColumnAsDoubles( String columnName )
+	{
+		this.columnName = columnName;
+	}
+
+	public static double[] extract( String columnName, List< ? extends Annotation > annotations )
+	{
+		return new ColumnAsDoubles( columnName ).values( annotations );
+	}
+
+	/**
+	 * Extracts the rank of each value among the distinct values of the column,
+	 * in case-insensitive alphabetical order, e.g. to sort by a text column.
+	 * Missing values are NaN.
+	 */
+	public static double[] extractRanks( String columnName, List< ? extends Annotation > annotations )
+	{
+		return new ColumnAsDoubles( columnName ).ranks( annotations );
+	}
+
+	public double[] values( List< ? extends Annotation > annotations )
+	{
+		final int numAnnotations = annotations.size();
+		final double[] values = new double[ numAnnotations ];
+		for ( int i = 0; i < numAnnotations; i++ )
+			values[ i ] = value( annotations.get( i ) );
+
+		return values;
+	}
+
+	public double[] ranks( List< ? extends Annotation > annotations )
+	{
+		final int numAnnotations = annotations.size();
+		final String[] strings = new String[ numAnnotations ];
+		for ( int i = 0; i < numAnnotations; i++ )
+			strings[ i ] = string( annotations.get( i ) );
+
+		final TreeSet< String > distinct = new TreeSet<>( String.CASE_INSENSITIVE_ORDER.thenComparing( Comparator.naturalOrder() ) );
+		for ( String string : strings )
+			if ( string != null )
+				distinct.add( string );
+
+		final Map< String, Double > stringToRank = new HashMap<>();
+		for ( String string : distinct )
+			stringToRank.put( string, ( double ) stringToRank.size() );
+
+		final double[] ranks = new double[ strings.length ];
+		for ( int i = 0; i < strings.length; i++ )
+			ranks[ i ] = strings[ i ] == null ? Double.NaN : stringToRank.get( strings[ i ] );
+
+		return ranks;
+	}
+
+	/**
+	 * @return the value of the annotation, or NaN if it is missing
+	 */
+	protected double value( Annotation annotation )
+	{
+		return toDouble( annotation.getValue( columnName ) );
+	}
+
+	/**
+	 * @return the value of the annotation as text, or null if it is missing
+	 */
+	protected String string( Annotation annotation )
+	{
+		final Object value = annotation.getValue( columnName );
+		return value == null ? null : value.toString();
+	}
+
+	protected double toDouble( Object value )
+	{
+		if ( value == null )
+		{
+			// This can happen when merging tables
+			// and not all rows have a match
+			return Double.NaN;
+		}
+
+		if ( value instanceof Number )
+			return ( ( Number ) value ).doubleValue();
+
+		// Non-numeric values are numbered in the order of their
+		// appearance, such that categorical columns can be plotted.
+		// The parsing is only attempted once per distinct value.
+		final String string = value.toString();
+		Double number = stringToNumber.get( string );
+		if ( number == null )
+		{
+			try
+			{
+				number = MoBIEHelper.parseDouble( string );
+			}
+			catch ( Exception e )
+			{
+				number = ( double ) numCategories++;
+			}
+			stringToNumber.put( string, number );
+		}
+
+		return number;
+	}
+}
@@ -43,7 +43,8 @@ public class ConcatenatedAnnotationTableModel< A extends Annotation > extends Ab
 {
 	private final Set< AnnotationTableModel< A > > tableModels;
 	private AnnotationTableModel< A > referenceTable;
-	private ArrayList< A > annotations = new ArrayList<>();
+	private final ArrayList< A > annotations = new ArrayList<>();
+	private final AnnotationRowIndex< A > rowIndex = new AnnotationRowIndex<>( annotations );
 	private boolean allTablesLoaded = false;
 
 
@@ -88,7 +89,7 @@ public class ConcatenatedAnnotationTableModel< A extends Annotation > extends Ab
 	@Override
 	public int rowIndexOf( A annotation )
 	{
-		return annotations.indexOf( annotation );
+		return rowIndex.rowIndexOf( annotation );
 	}
 
 	@Override
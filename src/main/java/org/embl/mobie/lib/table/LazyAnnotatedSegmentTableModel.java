@@ -48,6 +48,7 @@ public class LazyAnnotatedSegmentTableModel extends AbstractAnnotationTableModel
 	private final List< String > numericColumnNames;
 	private final LinkedHashSet< String > loadedColumnPaths;
 	private final ArrayList< AnnotatedSegment > annotations = new ArrayList<>();
+	private final AnnotationRowIndex< AnnotatedSegment > rowIndex = new AnnotationRowIndex<>( annotations );
 
 	public LazyAnnotatedSegmentTableModel( String dataSourceName )
 	{
@@ -87,7 +88,7 @@ public class LazyAnnotatedSegmentTableModel extends AbstractAnnotationTableModel
 	@Override
 	public synchronized int rowIndexOf( AnnotatedSegment annotation )
 	{
-		return annotations.indexOf( annotation );
+		return rowIndex.rowIndexOf( annotation );
 	}
 
 	@Override
@@ -30,24 +30,70 @@ package org.embl.mobie.lib.table;
 
 import net.imglib2.roi.RealMaskRealInterval;
 import org.embl.mobie.lib.annotation.Annotation;
+import org.embl.mobie.lib.table.saw.AbstractTableSawAnnotation;
+import org.embl.mobie.lib.table.saw.TableSawAnnotationTableModel;
 import org.jetbrains.annotations.Nls;
+import tech.tablesaw.api.Table;
+import tech.tablesaw.columns.Column;
 
 import javax.swing.event.TableModelEvent;
 import javax.swing.event.TableModelListener;
 import javax.swing.table.TableModel;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
+/**
+ * Presents an {@link AnnotationTableModel} to a {@link javax.swing.JTable}.
+ *
+ * The column names and classes are resolved once, when the table changes,
+ * rather than for every cell; for table based annotations the cell values
+ * are read directly from the TableSaw columns.
+ */
 public class SwingTableModel implements TableModel
 {
 	private final AnnotationTableModel< ? extends Annotation > tableModel;
 	private final List< TableModelListener > tableModelListeners = new ArrayList<>();
 
+	private volatile List< String > columnNames;
+	private volatile Class< ? >[] columnClasses;
+
+	// the TableSaw columns of the models of the annotations, by column index;
+	// annotations of concatenated tables stem from several models
+	private final Map< TableSawAnnotationTableModel< ? >, TableColumns > modelToColumns = new IdentityHashMap<>();
+
 	public < A extends Annotation > SwingTableModel( AnnotationTableModel< A > tableModel )
 	{
 		this.tableModel = tableModel;
 	}
 
+	public AnnotationTableModel< ? extends Annotation > getAnnotationTableModel()
+	{
+		return tableModel;
+	}
+
+	private List< String > columnNames()
+	{
+		if ( columnNames == null )
+			updateColumns();
+
+		return columnNames;
+	}
+
+	private synchronized void updateColumns()
+	{
+		final List< String > names = new ArrayList<>( tableModel.columnNames() );
+		final Class< ? >[] classes = new Class< ? >[ names.size() ];
+		for ( int columnIndex = 0; columnIndex < classes.length; columnIndex++ )
+			classes[ columnIndex ] = tableModel.columnClass( names.get( columnIndex ) );
+
+		modelToColumns.clear();
+		columnClasses = classes;
+		columnNames = Collections.unmodifiableList( names );
+	}
+
 	@Override
 	public int getRowCount()
 	{
@@ -57,23 +103,23 @@ public class SwingTableModel implements TableModel
 	@Override
 	public int getColumnCount()
 	{
-		return tableModel.columnNames().size();
+		return columnNames().size();
 	}
 
 	@Nls
 	@Override
 	public String getColumnName( int columnIndex )
 	{
-		return tableModel.columnNames().get( columnIndex );
+		return columnNames().get( columnIndex );
 	}
 
 	@Override
 	public Class< ? > getColumnClass( int columnIndex )
 	{
-		final String columnName = getColumnName( columnIndex );
-		final Class< ? > columnClass = tableModel.columnClass( columnName );
+		columnNames();
+		final Class< ? > columnClass = columnClasses[ columnIndex ];
 		if ( columnClass == null )
-			throw new RuntimeException("Could determine the class of column " + columnName );
+			throw new RuntimeException("Could determine the class of column " + getColumnName( columnIndex ) );
 		return columnClass;
 	}
 
@@ -86,15 +132,33 @@ public class SwingTableModel implements TableModel
 	@Override
 	public Object getValueAt( int rowIndex, int columnIndex )
 	{
-		try
+		final Annotation annotation = tableModel.annotation( rowIndex );
+
+		if ( annotation instanceof AbstractTableSawAnnotation )
 		{
-			final String columnName = getColumnName( columnIndex );
-			final Annotation annotation = tableModel.annotation( rowIndex );
-			return annotation.getValue( columnName );
+			final AbstractTableSawAnnotation tableSawAnnotation = ( AbstractTableSawAnnotation ) annotation;
+			final Column< ? > column = getColumn( tableSawAnnotation.model(), columnIndex );
+			return column == null ? null : column.get( tableSawAnnotation.rowIndex() );
 		}
-		catch ( Exception e )
+
+		return annotation.getValue( getColumnName( columnIndex ) );
+	}
+
+	private Column< ? > getColumn( TableSawAnnotationTableModel< ? > model, int columnIndex )
+	{
+		final List< String > names = columnNames();
+		final Table table = model.getTable();
+
+		synchronized ( modelToColumns )
 		{
-			throw( e );
+			TableColumns columns = modelToColumns.get( model );
+			// the table of a model is replaced when columns are merged into it
+			if ( columns == null || columns.table != table )
+			{
+				columns = new TableColumns( table, names );
+				modelToColumns.put( model, columns );
+			}
+			return columns.columns[ columnIndex ];
 		}
 	}
 
@@ -127,6 +191,8 @@ public class SwingTableModel implements TableModel
 
 	public void tableChanged()
 	{
+		updateColumns();
+
 		// https://github.com/mobie/mobie-viewer-fiji/issues/1146
 		for ( TableModelListener listener : tableModelListeners )
 		{
@@ -134,4 +200,23 @@ public class SwingTableModel implements TableModel
 			listener.tableChanged( tableModelEvent );
 		}
 	}
+
+	private static class TableColumns
+	{
+		private final Table table;
+		private final Column< ? >[] columns;
+
+		TableColumns( Table table, List< String > columnNames )
+		{
+			this.table = table;
+			this.columns = new Column< ? >[ columnNames.size() ];
+			for ( int columnIndex = 0; columnIndex < columns.length; columnIndex++ )
+			{
+				final String columnName = columnNames.get( columnIndex );
+				// the column can be missing, e.g., if a table chunk
+				// has only been loaded for some of the concatenated tables
+				columns[ columnIndex ] = table.containsColumn( columnName ) ? table.column( columnName ) : null;
+			}
+		}
+	}
 }
@@ -59,6 +59,7 @@ import org.embl.mobie.lib.serialize.display.RegionDisplay;
 import org.embl.mobie.lib.table.columns.ColumnNames;
 import org.embl.mobie.ui.*;
 import net.imglib2.type.numeric.ARGBType;
+import net.imglib2.util.Pair;
 
 import javax.swing.*;
 import javax.swing.table.DefaultTableCellRenderer;
@@ -95,6 +96,7 @@ public class TableView< A extends Annotation > implements SelectionListener< A >
 	private RowSelectionMode selectionMode = RowSelectionMode.FocusOnly;
 	private JFrame frame;
 	private SwingTableModel swingTableModel;
+	private AnnotationRowSorter rowSorter;
 	private boolean controlKeyPressed;
 	private boolean doubleClick;
 	private AnnotationOverlay annotationOverlay;
@@ -217,7 +219,9 @@ public class TableView< A extends Annotation > implements SelectionListener< A >
 		jTable.updateUI();
 		jTable.setPreferredScrollableViewportSize( new Dimension( 500, 200 ) );
 		jTable.setFillsViewportHeight( true );
-		jTable.setAutoCreateRowSorter( true );
+		// sorts and filters on the primitive column values, see AnnotationRowSorter
+		rowSorter = new AnnotationRowSorter( swingTableModel );
+		jTable.setRowSorter( rowSorter );
 		jTable.setRowSelectionAllowed( true );
 		jTable.setAutoResizeMode( JTable.AUTO_RESIZE_OFF );
 		jTable.setSelectionMode( ListSelectionModel.SINGLE_SELECTION );
@@ -356,16 +360,57 @@ public class TableView< A extends Annotation > implements SelectionListener< A >
 		menu.add( createSaveColumnsAsMenuItem() );
 		menu.add( createLoadColumnsMenuItem() );
 		menu.add( createAddStringColumnMenuItem() );
+		menu.add( createFilterRowsMenuItem() );
+		menu.add( createClearFilterMenuItem() );
 		return menu;
     }
 
 	public void enableRowSorting( boolean sortable )
 	{
-		final int columnCount = jTable.getColumnCount();
-		for ( int i = 0; i < columnCount; i++ )
+		rowSorter.setSortable( sortable );
+	}
+
+	private JMenuItem createFilterRowsMenuItem()
+	{
+		final JMenuItem menuItem = new JMenuItem( "Filter Rows..." );
+		menuItem.addActionListener( e ->
+				new Thread( this::showFilterRowsDialog ).start()
+		);
+		return menuItem;
+	}
+
+	private void showFilterRowsDialog()
+	{
+		final String[] columnNames = tableModel.numericColumnNames().toArray( new String[ 0 ] );
+		if ( columnNames.length == 0 )
 		{
-			((DefaultRowSorter) jTable.getRowSorter()).setSortable( i, sortable );
+			IJ.showMessage( "There are no numeric columns to filter by." );
+			return;
 		}
+
+		final GenericDialog gd = new GenericDialog( "Filter Rows" );
+		final String column = rowSorter.getFilterColumn() == null ? columnNames[ 0 ] : rowSorter.getFilterColumn();
+		final Pair< Double, Double > minMax = tableModel.getMinMax( column );
+		gd.addChoice( "Column", columnNames, column );
+		gd.addNumericField( "Minimum", minMax.getA() );
+		gd.addNumericField( "Maximum", minMax.getB() );
+		gd.showDialog();
+		if ( gd.wasCanceled() ) return;
+
+		final String columnName = gd.getNextChoice();
+		final double min = gd.getNextNumber();
+		final double max = gd.getNextNumber();
+		SwingUtilities.invokeLater( () ->
+				rowSorter.setFilter( columnName, value -> value >= min && value <= max ) );
+	}
+
+	private JMenuItem createClearFilterMenuItem()
+	{
+		final JMenuItem menuItem = new JMenuItem( "Show All Rows" );
+		menuItem.addActionListener( e ->
+				SwingUtilities.invokeLater( () -> rowSorter.setFilter( null, null ) )
+		);
+		return menuItem;
 	}
 
 	private JMenuItem createAddStringColumnMenuItem()
@@ -900,6 +945,9 @@ public class TableView< A extends Annotation > implements SelectionListener< A >
 	{
 		final int rowInView = jTable.convertRowIndexToView( tableModel.rowIndexOf( selection ) );
 
+		// filtered out
+		if ( rowInView < 0 ) return;
+
 		if ( rowInView == recentlySelectedRowInView ) return;
 
 		moveToRowInView( rowInView );
@@ -1152,6 +1200,9 @@ public class TableView< A extends Annotation > implements SelectionListener< A >
 	{
 		// https://github.com/mobie/mobie-viewer-fiji/issues/1146
 		updateTable();
+
+		if ( annotationOverlay instanceof AnnotationListener )
+			( ( AnnotationListener< A > ) annotationOverlay ).annotationsAdded( annotations );
 	}
 
 	@Override
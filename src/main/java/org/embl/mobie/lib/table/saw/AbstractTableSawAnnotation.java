@@ -28,9 +28,9 @@
  */
 package org.embl.mobie.lib.table.saw;
 
-import org.embl.mobie.lib.annotation.Annotation;
+import org.embl.mobie.lib.table.RowAnnotation;
 
-public abstract class AbstractTableSawAnnotation implements Annotation
+public abstract class AbstractTableSawAnnotation implements RowAnnotation
 {
 	protected final TableSawAnnotationTableModel< ? > model;
 	protected final int rowIndex;
@@ -46,6 +46,20 @@ public abstract class AbstractTableSawAnnotation implements Annotation
 		this.rowIndex = rowIndex;
 	}
 
+	// The model creates the annotations in the order of the table rows,
+	// thus this is also the index of this annotation in the model.
+	@Override
+	public int rowIndex()
+	{
+		return rowIndex;
+	}
+
+	@Override
+	public TableSawAnnotationTableModel< ? > model()
+	{
+		return model;
+	}
+
 	@Override
 	public Object getValue( String feature )
 	{
@@ -69,12 +83,14 @@ public abstract class AbstractTableSawAnnotation implements Annotation
 	public void setString( String columnName, String value )
 	{
 		model.getTable().stringColumn( columnName ).set( rowIndex, value );
+		model.columnModified( columnName );
 	}
 
 	@Override
 	public void setNumber( String columnName, double value )
 	{
 		model.getTable().doubleColumn( columnName ).set( rowIndex, value );
+		model.columnModified( columnName );
 	}
 
 }
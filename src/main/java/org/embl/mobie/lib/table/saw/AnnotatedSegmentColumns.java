@@ -0,0 +1,243 @@
+/*-
+ * #%L
+ * Fiji viewer for MoBIE projects
+ * %%
+ * Copyright (C) 2018 - 2024 EMBL
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.embl.mobie.lib.table.saw;
+
+import gnu.trove.map.hash.TIntObjectHashMap;
+import net.imglib2.FinalRealInterval;
+import net.imglib2.RealInterval;
+import net.imglib2.realtransform.AffineTransform3D;
+import org.embl.mobie.lib.volume.MeshTransformer;
+import tech.tablesaw.api.NumericColumn;
+import tech.tablesaw.api.StringColumn;
+import tech.tablesaw.api.Table;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Columnar storage of the segment label ids, time points,
+ * anchor positions, bounding boxes and meshes.
+ *
+ * The {@code TableSawAnnotatedSegment} objects only hold a row index into
+ * these primitive arrays, such that no per row arrays, intervals
+ * and strings have to be kept on the heap.
+ */
+class AnnotatedSegmentColumns
+{
+	static final int NUM_DIMENSIONS = 3;
+
+	private final int[] labels;
+	private final int[] timePoints;
+	private final double[] positions; // interleaved: x0,y0,z0,x1,y1,z1,...
+	private final int[] sourceIndices;
+	private final ArrayList< String > sources = new ArrayList<>();
+	private double[] bbMins; // NaN if the row has no bounding box
+	private double[] bbMaxs;
+	private final TIntObjectHashMap< float[] > meshes = new TIntObjectHashMap<>();
+
+	AnnotatedSegmentColumns(
+			Table table,
+			int labelImageColumnIndex,
+			int labelIdColumnIndex,
+			int timePointColumnIndex,
+			boolean timePointsAreOneBased,
+			int[] anchorColumnIndices,
+			int[] bbMinColumnIndices,
+			int[] bbMaxColumnIndices,
+			boolean is3D,
+			boolean hasBoundingBox )
+	{
+		final int numRows = table.rowCount();
+
+		labels = new int[ numRows ];
+		timePoints = new int[ numRows ];
+		positions = new double[ numRows * NUM_DIMENSIONS ];
+		sourceIndices = new int[ numRows ];
+
+		final NumericColumn< ? > labelIdColumn = table.numberColumn( labelIdColumnIndex );
+		final NumericColumn< ? > timePointColumn = timePointColumnIndex > -1 ? table.numberColumn( timePointColumnIndex ) : null;
+		final StringColumn labelImageColumn = labelImageColumnIndex > -1 ? table.stringColumn( labelImageColumnIndex ) : null;
+		final NumericColumn< ? >[] anchorColumns = numberColumns( table, anchorColumnIndices, is3D );
+
+		final HashMap< String, Integer > sourceToIndex = new HashMap<>();
+		for ( int rowIndex = 0; rowIndex < numRows; rowIndex++ )
+		{
+			labels[ rowIndex ] = ( int ) labelIdColumn.getDouble( rowIndex );
+
+			if ( timePointColumn != null )
+			{
+				timePoints[ rowIndex ] = ( int ) timePointColumn.getDouble( rowIndex );
+				if ( timePointsAreOneBased )
+					timePoints[ rowIndex ] -= 1;
+			}
+
+			final String source = labelImageColumn != null ? labelImageColumn.get( rowIndex ) : table.name();
+			Integer sourceIndex = sourceToIndex.get( source );
+			if ( sourceIndex == null )
+			{
+				sourceIndex = sources.size();
+				sources.add( source );
+				sourceToIndex.put( source, sourceIndex );
+			}
+			sourceIndices[ rowIndex ] = sourceIndex;
+
+			// TODO do we want to support missing anchor columns?
+			read( anchorColumns, rowIndex, positions );
+		}
+
+		if ( hasBoundingBox )
+		{
+			// TODO: if we want to support this for IJ ParticleAnalyzer ResultsTable
+			//  we need to do some math, because it is given as min and size.
+			bbMins = new double[ numRows * NUM_DIMENSIONS ];
+			bbMaxs = new double[ numRows * NUM_DIMENSIONS ];
+			final NumericColumn< ? >[] bbMinColumns = numberColumns( table, bbMinColumnIndices, is3D );
+			final NumericColumn< ? >[] bbMaxColumns = numberColumns( table, bbMaxColumnIndices, is3D );
+			for ( int rowIndex = 0; rowIndex < numRows; rowIndex++ )
+			{
+				read( bbMinColumns, rowIndex, bbMins );
+				read( bbMaxColumns, rowIndex, bbMaxs );
+			}
+		}
+	}
+
+	private static NumericColumn< ? >[] numberColumns( Table table, int[] columnIndices, boolean is3D )
+	{
+		final NumericColumn< ? >[] columns = new NumericColumn< ? >[ NUM_DIMENSIONS ];
+		columns[ 0 ] = table.numberColumn( columnIndices[ 0 ] );
+		columns[ 1 ] = table.numberColumn( columnIndices[ 1 ] );
+		columns[ 2 ] = is3D ? table.numberColumn( columnIndices[ 2 ] ) : null;
+		return columns;
+	}
+
+	private static void read( NumericColumn< ? >[] columns, int rowIndex, double[] values )
+	{
+		final int offset = rowIndex * NUM_DIMENSIONS;
+		for ( int d = 0; d < NUM_DIMENSIONS; d++ )
+			values[ offset + d ] = columns[ d ] == null ? 0 : columns[ d ].getDouble( rowIndex );
+	}
+
+	int size()
+	{
+		return labels.length;
+	}
+
+	int label( int rowIndex )
+	{
+		return labels[ rowIndex ];
+	}
+
+	int timePoint( int rowIndex )
+	{
+		return timePoints[ rowIndex ];
+	}
+
+	String source( int rowIndex )
+	{
+		return sources.get( sourceIndices[ rowIndex ] );
+	}
+
+	double position( int rowIndex, int d )
+	{
+		return positions[ rowIndex * NUM_DIMENSIONS + d ];
+	}
+
+	double[] position( int rowIndex )
+	{
+		return Arrays.copyOfRange( positions, rowIndex * NUM_DIMENSIONS, ( rowIndex + 1 ) * NUM_DIMENSIONS );
+	}
+
+	synchronized RealInterval boundingBox( int rowIndex )
+	{
+		if ( bbMins == null ) return null;
+
+		final int from = rowIndex * NUM_DIMENSIONS;
+		if ( Double.isNaN( bbMins[ from ] ) ) return null;
+
+		return new FinalRealInterval(
+				Arrays.copyOfRange( bbMins, from, from + NUM_DIMENSIONS ),
+				Arrays.copyOfRange( bbMaxs, from, from + NUM_DIMENSIONS ) );
+	}
+
+	synchronized void setBoundingBox( int rowIndex, RealInterval boundingBox )
+	{
+		if ( bbMins == null )
+		{
+			if ( boundingBox == null ) return;
+
+			bbMins = new double[ labels.length * NUM_DIMENSIONS ];
+			bbMaxs = new double[ labels.length * NUM_DIMENSIONS ];
+			Arrays.fill( bbMins, Double.NaN );
+			Arrays.fill( bbMaxs, Double.NaN );
+		}
+
+		final int offset = rowIndex * NUM_DIMENSIONS;
+		for ( int d = 0; d < NUM_DIMENSIONS; d++ )
+		{
+			final boolean hasDimension = boundingBox != null && d < boundingBox.numDimensions();
+			bbMins[ offset + d ] = boundingBox == null ? Double.NaN : hasDimension ? boundingBox.realMin( d ) : 0;
+			bbMaxs[ offset + d ] = boundingBox == null ? Double.NaN : hasDimension ? boundingBox.realMax( d ) : 0;
+		}
+	}
+
+	float[] mesh( int rowIndex )
+	{
+		synchronized ( meshes )
+		{
+			return meshes.get( rowIndex );
+		}
+	}
+
+	void setMesh( int rowIndex, float[] mesh )
+	{
+		synchronized ( meshes )
+		{
+			if ( mesh == null )
+				meshes.remove( rowIndex );
+			else
+				meshes.put( rowIndex, mesh );
+		}
+	}
+
+	void transform( int rowIndex, AffineTransform3D affineTransform3D )
+	{
+		final double[] position = position( rowIndex );
+		affineTransform3D.apply( position, position );
+		System.arraycopy( position, 0, positions, rowIndex * NUM_DIMENSIONS, NUM_DIMENSIONS );
+
+		final RealInterval boundingBox = boundingBox( rowIndex );
+		if ( boundingBox != null )
+			setBoundingBox( rowIndex, affineTransform3D.estimateBounds( boundingBox ) );
+
+		final float[] mesh = mesh( rowIndex );
+		if ( mesh != null )
+			setMesh( rowIndex, MeshTransformer.transform( mesh, affineTransform3D ) );
+	}
+}
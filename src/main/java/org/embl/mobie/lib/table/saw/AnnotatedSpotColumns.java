@@ -0,0 +1,120 @@
+/*-
+ * #%L
+ * Fiji viewer for MoBIE projects
+ * %%
+ * Copyright (C) 2018 - 2024 EMBL
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.embl.mobie.lib.table.saw;
+
+import net.imglib2.realtransform.AffineTransform3D;
+import tech.tablesaw.api.NumericColumn;
+import tech.tablesaw.api.Table;
+
+/**
+ * Columnar storage of the spot coordinates, labels and time points.
+ *
+ * The {@code TableSawAnnotatedSpot} objects only hold a row index into
+ * these primitive arrays, which saves a lot of memory for tables
+ * with tens of millions of spots.
+ */
+class AnnotatedSpotColumns
+{
+	static final int NUM_DIMENSIONS = 3; // otherwise transformations do not work because everything is AffineTransform3D
+
+	private final String source;
+	private final int[] labels;
+	private final int[] timePoints; // null if there is no time point column
+	private final float[] positions; // interleaved: x0,y0,z0,x1,y1,z1,...
+
+	AnnotatedSpotColumns( Table table, int labelColumnIndex, int xColumnIndex, int yColumnIndex, int zColumnIndex, int timePointColumnIndex )
+	{
+		final int numRows = table.rowCount();
+
+		source = table.name();
+		labels = new int[ numRows ];
+		positions = new float[ numRows * NUM_DIMENSIONS ];
+		timePoints = timePointColumnIndex > -1 ? new int[ numRows ] : null;
+
+		final NumericColumn< ? > labelColumn = table.numberColumn( labelColumnIndex );
+		final NumericColumn< ? > xColumn = table.numberColumn( xColumnIndex );
+		final NumericColumn< ? > yColumn = table.numberColumn( yColumnIndex );
+		final NumericColumn< ? > zColumn = zColumnIndex > -1 ? table.numberColumn( zColumnIndex ) : null;
+		final NumericColumn< ? > timePointColumn = timePointColumnIndex > -1 ? table.numberColumn( timePointColumnIndex ) : null;
+
+		for ( int rowIndex = 0; rowIndex < numRows; rowIndex++ )
+		{
+			try
+			{
+				labels[ rowIndex ] = ( int ) labelColumn.getDouble( rowIndex );
+				final int offset = rowIndex * NUM_DIMENSIONS;
+				positions[ offset ] = ( float ) xColumn.getDouble( rowIndex );
+				positions[ offset + 1 ] = ( float ) yColumn.getDouble( rowIndex );
+				if ( zColumn != null )
+					positions[ offset + 2 ] = ( float ) zColumn.getDouble( rowIndex );
+				if ( timePointColumn != null )
+					timePoints[ rowIndex ] = ( int ) timePointColumn.getDouble( rowIndex );
+			}
+			catch ( Exception e )
+			{
+				System.err.println("Error parsing row (zero-based) " + rowIndex + " of table " + table.name() );
+				throw new RuntimeException( e );
+			}
+		}
+	}
+
+	int size()
+	{
+		return labels.length;
+	}
+
+	String source()
+	{
+		return source;
+	}
+
+	int label( int rowIndex )
+	{
+		return labels[ rowIndex ];
+	}
+
+	int timePoint( int rowIndex )
+	{
+		return timePoints == null ? 0 : timePoints[ rowIndex ];
+	}
+
+	float position( int rowIndex, int d )
+	{
+		return positions[ rowIndex * NUM_DIMENSIONS + d ];
+	}
+
+	void transform( int rowIndex, AffineTransform3D affineTransform3D )
+	{
+		final float[] position = new float[ NUM_DIMENSIONS ];
+		final int offset = rowIndex * NUM_DIMENSIONS;
+		System.arraycopy( positions, offset, position, 0, NUM_DIMENSIONS );
+		affineTransform3D.apply( position, position );
+		System.arraycopy( position, 0, positions, offset, NUM_DIMENSIONS );
+	}
+}
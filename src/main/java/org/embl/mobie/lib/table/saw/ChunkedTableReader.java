@@ -0,0 +1,499 @@
+/*-
+ * #%L
+ * Fiji viewer for MoBIE projects
+ * %%
+ * Copyright (C) 2018 - 2024 EMBL
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.embl.mobie.lib.table.saw;
+
+import ij.IJ;
+import org.embl.mobie.lib.util.ThreadHelper;
+import tech.tablesaw.api.ColumnType;
+import tech.tablesaw.api.Table;
+import tech.tablesaw.io.csv.CsvReadOptions;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Pattern;
+
+/**
+ * Reads large local CSV/TSV files by splitting them at line breaks
+ * into byte ranges, which are parsed concurrently, using the threads
+ * of {@link ThreadHelper#executorService} and the calling thread.
+ *
+ * Each range is parsed together with the header line of the file.
+ * The column types are taken from the cached {@link TableSchema} of the file.
+ * If there is none, the types are inferred for each range and reconciled
+ * across the ranges; ranges whose types differ from the reconciled ones
+ * are parsed again. The reconciled types are then cached, such that
+ * the type inference runs only once per table file.
+ * The column types that are known from the column names are the same
+ * {@link TableOpener#nameToType} as for reading the file sequentially.
+ *
+ * As the ranges are split at line breaks, which may be inside of quoted values,
+ * files with quotes are not read here; neither are files that fail to parse.
+ * In both cases, {@link #read} returns null, such that the file can be read
+ * sequentially instead.
+ */
+public class ChunkedTableReader
+{
+	private static final byte[] UTF8_BOM = { ( byte ) 0xEF, ( byte ) 0xBB, ( byte ) 0xBF };
+	private static final int MAX_HEADER_SIZE = 16 * 1024 * 1024;
+	private static final long MAX_CHUNK_SIZE = 1024L * 1024 * 1024;
+
+	private static boolean enabled = true;
+	private static long minFileSize = 64L * 1024 * 1024;
+	private static long minChunkSize = 8L * 1024 * 1024;
+
+	public static void setEnabled( boolean enabled )
+	{
+		ChunkedTableReader.enabled = enabled;
+	}
+
+	public static boolean isEnabled()
+	{
+		return enabled;
+	}
+
+	/**
+	 * Smaller files are read sequentially.
+	 */
+	public static void setMinFileSize( long numBytes )
+	{
+		ChunkedTableReader.minFileSize = numBytes;
+	}
+
+	public static long getMinFileSize()
+	{
+		return minFileSize;
+	}
+
+	public static void setMinChunkSize( long numBytes )
+	{
+		ChunkedTableReader.minChunkSize = Math.max( 1, numBytes );
+	}
+
+	public static long getMinChunkSize()
+	{
+		return minChunkSize;
+	}
+
+	public static boolean isApplicable( String path )
+	{
+		if ( ! enabled ) return false;
+
+		if ( path.contains( "://" ) ) return false;
+
+		final File file = new File( path );
+		return file.isFile() && file.length() >= minFileSize;
+	}
+
+	/**
+	 * @param numSamples the number of rows from which the column types are inferred,
+	 * 					 if they are not cached; all rows are used if this is not positive
+	 * @return the table, or null if the file cannot be read in chunks
+	 */
+	public static Table read( File file, char separator, int numSamples ) throws IOException
+	{
+		try
+		{
+			return readChunks( file, separator, numSamples );
+		}
+		catch ( QuoteException e )
+		{
+			return null;
+		}
+		catch ( RuntimeException e )
+		{
+			IJ.log( "[WARNING] Could not read " + file + " in chunks; reading it sequentially: " + e.getMessage() );
+			return null;
+		}
+	}
+
+	private static Table readChunks( File file, char separator, int numSamples ) throws IOException
+	{
+		final byte[] rawHeader = readHeader( file );
+		if ( rawHeader == null ) return null;
+
+		// the byte order mark must only precede the first range
+		final byte[] header = startsWith( rawHeader, UTF8_BOM ) ?
+				Arrays.copyOfRange( rawHeader, UTF8_BOM.length, rawHeader.length ) : rawHeader;
+
+		if ( new String( header, StandardCharsets.UTF_8 ).indexOf( '"' ) >= 0 )
+			return null;
+
+		final long[] boundaries = chunkBoundaries( file, rawHeader.length );
+		if ( boundaries.length < 3 ) return null;
+
+		final List< String > columnNames = columnNames( header, separator );
+		final String path = file.getAbsolutePath();
+		final String validation = TableSchema.getModificationStamp( file );
+		final Chunks chunks = new Chunks( file, header, boundaries, separator );
+
+		final TableSchema schema = validation == null ? null : TableSchema.load( path, validation, columnNames );
+		if ( schema != null )
+		{
+			try
+			{
+				final ColumnType[] types = schema.getColumnTypes();
+				chunks.parse( allChunks( chunks.size() ), types, numSamples, null );
+				return chunks.concatenate();
+			}
+			catch ( QuoteException e )
+			{
+				throw e;
+			}
+			catch ( RuntimeException e )
+			{
+				IJ.log( "[WARNING] Could not read " + path + " with the cached column types; inferring them again: " + e.getMessage() );
+			}
+		}
+
+		chunks.parse( allChunks( chunks.size() ), null, numSamples, TableOpener.nameToType );
+
+		final ColumnType[] types = chunks.reconcileTypes();
+		if ( types == null || types.length != columnNames.size() )
+			return null;
+
+		chunks.parse( chunks.differingChunks( types ), types, numSamples, null );
+		if ( validation != null )
+			new TableSchema( path, validation, columnNames, types ).save();
+
+		return chunks.concatenate();
+	}
+
+	/**
+	 * The widest of the given column types,
+	 * or null if there are none.
+	 */
+	static ColumnType reconcileTypes( List< ColumnType > types )
+	{
+		if ( types.isEmpty() ) return null;
+
+		final ColumnType first = types.get( 0 );
+		boolean same = true, integers = true, numbers = true;
+		for ( ColumnType type : types )
+		{
+			same &= type.equals( first );
+			integers &= isInteger( type );
+			numbers &= isInteger( type ) || type.equals( ColumnType.FLOAT ) || type.equals( ColumnType.DOUBLE );
+		}
+
+		if ( same ) return first;
+		if ( integers ) return ColumnType.LONG;
+		if ( numbers ) return ColumnType.DOUBLE;
+		return ColumnType.STRING;
+	}
+
+	private static boolean isInteger( ColumnType type )
+	{
+		return type.equals( ColumnType.SHORT ) || type.equals( ColumnType.INTEGER ) || type.equals( ColumnType.LONG );
+	}
+
+	private static byte[] readHeader( File file ) throws IOException
+	{
+		try ( InputStream inputStream = new BufferedInputStream( new FileInputStream( file ) ) )
+		{
+			final ByteArrayOutputStream header = new ByteArrayOutputStream();
+			int b;
+			while ( ( b = inputStream.read() ) != -1 && header.size() < MAX_HEADER_SIZE )
+			{
+				header.write( b );
+				if ( b == '\n' )
+					return header.toByteArray();
+			}
+			return null;
+		}
+	}
+
+	private static List< String > columnNames( byte[] header, char separator )
+	{
+		final String line = new String( header, StandardCharsets.UTF_8 ).replaceAll( "\\r?\\n$", "" );
+		return Arrays.asList( line.split( Pattern.quote( String.valueOf( separator ) ), -1 ) );
+	}
+
+	/**
+	 * The start of each range, followed by the file length.
+	 */
+	private static long[] chunkBoundaries( File file, long dataStart ) throws IOException
+	{
+		final long length = file.length();
+		final long dataSize = length - dataStart;
+		final long maxNumChunks = 4L * ( ThreadHelper.getNumThreads() + 1 );
+		final long numChunks = Math.max( ( dataSize + MAX_CHUNK_SIZE - 1 ) / MAX_CHUNK_SIZE,
+				Math.min( maxNumChunks, dataSize / minChunkSize ) );
+
+		final List< Long > boundaries = new ArrayList<>();
+		boundaries.add( dataStart );
+		try ( RandomAccessFile raf = new RandomAccessFile( file, "r" ) )
+		{
+			for ( long i = 1; i < numChunks; i++ )
+			{
+				final long start = nextLineStart( raf, dataStart + dataSize * i / numChunks, length );
+				if ( start >= length ) break;
+				if ( start > boundaries.get( boundaries.size() - 1 ) )
+					boundaries.add( start );
+			}
+		}
+		boundaries.add( length );
+
+		// a line that is longer than the maximal range would not fit into one array
+		for ( int i = 1; i < boundaries.size(); i++ )
+			if ( boundaries.get( i ) - boundaries.get( i - 1 ) > Integer.MAX_VALUE - 8 - MAX_HEADER_SIZE )
+				return new long[ 0 ];
+
+		return boundaries.stream().mapToLong( Long::longValue ).toArray();
+	}
+
+	private static long nextLineStart( RandomAccessFile raf, long position, long length ) throws IOException
+	{
+		// start one byte earlier, such that a position
+		// that already starts a line is returned as is
+		long offset = position - 1;
+		raf.seek( offset );
+		final byte[] buffer = new byte[ 64 * 1024 ];
+		int numBytes;
+		while ( ( numBytes = raf.read( buffer ) ) > 0 )
+		{
+			for ( int i = 0; i < numBytes; i++ )
+				if ( buffer[ i ] == '\n' )
+					return offset + i + 1;
+			offset += numBytes;
+		}
+		return length;
+	}
+
+	private static boolean contains( byte[] bytes, byte b )
+	{
+		for ( byte value : bytes )
+			if ( value == b ) return true;
+		return false;
+	}
+
+	private static boolean startsWith( byte[] bytes, byte[] prefix )
+	{
+		if ( bytes.length < prefix.length ) return false;
+		for ( int i = 0; i < prefix.length; i++ )
+			if ( bytes[ i ] != prefix[ i ] ) return false;
+		return true;
+	}
+
+	private static List< Integer > allChunks( int numChunks )
+	{
+		final List< Integer > chunks = new ArrayList<>();
+		for ( int i = 0; i < numChunks; i++ )
+			chunks.add( i );
+		return chunks;
+	}
+
+	/**
+	 * Thrown if a range contains a quote; a quoted value
+	 * may contain a line break at which the file has been split.
+	 */
+	private static class QuoteException extends RuntimeException
+	{
+		QuoteException( File file )
+		{
+			super( file + " contains quoted values" );
+		}
+	}
+
+	private static class Chunks
+	{
+		private final File file;
+		private final byte[] header;
+		private final long[] boundaries;
+		private final char separator;
+		private final Table[] tables;
+
+		Chunks( File file, byte[] header, long[] boundaries, char separator )
+		{
+			this.file = file;
+			this.header = header;
+			this.boundaries = boundaries;
+			this.separator = separator;
+			this.tables = new Table[ boundaries.length - 1 ];
+		}
+
+		int size()
+		{
+			return tables.length;
+		}
+
+		/**
+		 * Parses the given chunks, either with the given column types
+		 * or, if these are null, inferring all but the known column types.
+		 */
+		void parse( List< Integer > chunks, ColumnType[] types, int numSamples, Map< String, ColumnType > knownTypes )
+		{
+			final AtomicInteger nextChunk = new AtomicInteger();
+			final AtomicReference< Exception > failure = new AtomicReference<>();
+
+			final Runnable worker = () ->
+			{
+				int i;
+				while ( failure.get() == null && ( i = nextChunk.getAndIncrement() ) < chunks.size() )
+				{
+					final int chunk = chunks.get( i );
+					try
+					{
+						tables[ chunk ] = parse( chunk, types, numSamples, knownTypes );
+					}
+					catch ( Exception e )
+					{
+						failure.compareAndSet( null, e );
+					}
+				}
+			};
+
+			final List< Future< ? > > futures = new ArrayList<>();
+			for ( int i = 0; i < Math.min( ThreadHelper.getNumThreads(), chunks.size() - 1 ); i++ )
+				futures.add( ThreadHelper.executorService.submit( worker ) );
+
+			worker.run();
+
+			for ( Future< ? > future : futures )
+			{
+				// workers that did not start yet would not find any chunks left
+				if ( future.cancel( false ) )
+					continue;
+
+				try
+				{
+					future.get();
+				}
+				catch ( InterruptedException | ExecutionException e )
+				{
+					throw new RuntimeException( e );
+				}
+			}
+
+			if ( failure.get() instanceof QuoteException )
+				throw ( QuoteException ) failure.get();
+
+			if ( failure.get() != null )
+				throw new RuntimeException( "Could not read " + file + ": " + failure.get().getMessage(), failure.get() );
+		}
+
+		private Table parse( int chunk, ColumnType[] types, int numSamples, Map< String, ColumnType > knownTypes ) throws IOException
+		{
+			final byte[] bytes = new byte[ ( int ) ( boundaries[ chunk + 1 ] - boundaries[ chunk ] ) ];
+			try ( RandomAccessFile raf = new RandomAccessFile( file, "r" ) )
+			{
+				raf.seek( boundaries[ chunk ] );
+				raf.readFully( bytes );
+			}
+
+			if ( contains( bytes, ( byte ) '"' ) )
+				throw new QuoteException( file );
+
+			final InputStream inputStream = new SequenceInputStream(
+					new ByteArrayInputStream( header ),
+					new ByteArrayInputStream( bytes ) );
+
+			final CsvReadOptions.Builder builder = CsvReadOptions.builder( inputStream )
+					.separator( separator )
+					.missingValueIndicator( TableOpener.MISSING_VALUE_INDICATORS )
+					.maxNumberOfColumns( 100000 );
+
+			if ( types != null )
+				builder.columnTypes( types );
+			else
+				builder.sample( numSamples > 0 )
+						.sampleSize( numSamples )
+						.columnTypesPartial( knownTypes );
+
+			return Table.read().usingOptions( builder );
+		}
+
+		/**
+		 * Chunks in which a column has only missing values
+		 * do not contribute to the type of that column.
+		 *
+		 * @return the reconciled column types, or null if
+		 * 		   the chunks do not have the same number of columns
+		 */
+		ColumnType[] reconcileTypes()
+		{
+			final int numColumns = tables[ 0 ].columnCount();
+			for ( Table table : tables )
+				if ( table.columnCount() != numColumns )
+					return null;
+
+			final ColumnType[] types = new ColumnType[ numColumns ];
+			for ( int c = 0; c < numColumns; c++ )
+			{
+				final List< ColumnType > columnTypes = new ArrayList<>();
+				for ( Table table : tables )
+					if ( table.column( c ).countMissing() < table.rowCount() )
+						columnTypes.add( table.column( c ).type() );
+
+				final ColumnType type = ChunkedTableReader.reconcileTypes( columnTypes );
+				types[ c ] = type != null ? type : tables[ 0 ].column( c ).type();
+			}
+			return types;
+		}
+
+		List< Integer > differingChunks( ColumnType[] types )
+		{
+			final List< Integer > chunks = new ArrayList<>();
+			for ( int i = 0; i < tables.length; i++ )
+				for ( int c = 0; c < types.length; c++ )
+					if ( ! tables[ i ].column( c ).type().equals( types[ c ] ) )
+					{
+						chunks.add( i );
+						break;
+					}
+			return chunks;
+		}
+
+		Table concatenate()
+		{
+			final Table table = tables[ 0 ];
+			for ( int i = 1; i < tables.length; i++ )
+			{
+				table.append( tables[ i ] );
+				tables[ i ] = null;
+			}
+			return table;
+		}
+	}
+}
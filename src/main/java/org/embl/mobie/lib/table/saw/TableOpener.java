@@ -60,6 +60,7 @@ import tech.tablesaw.io.xlsx.XlsxReadOptions;
 public class TableOpener
 {
 	private static final String UTF8_BOM = "\uFEFF";
+	static final String[] MISSING_VALUE_INDICATORS = { "na", "none", "nan", "inf" };
 
 	public static Map< String, ColumnType > nameToType;
 	static
@@ -182,12 +183,24 @@ public class TableOpener
 			// allocate twice the memory and the GC has some
 			// work to do, which can become a bottleneck.
 			final long start = System.currentTimeMillis();
+
+			// large local files are split and parsed concurrently
+			if ( ChunkedTableReader.isApplicable( path ) )
+			{
+				final Table table = ChunkedTableReader.read( new File( path ), separator, numSamples );
+				if ( table != null )
+				{
+					normalizeColumnNames( table );
+					return table;
+				}
+			}
+
 			final InputStream inputStream = IOHelper.getInputStream( path );
 			// final String string = IOHelper.read( path );
 			// https://jtablesaw.github.io/tablesaw/userguide/importing_data.html
 			CsvReadOptions.Builder builder = CsvReadOptions.builder( inputStream )
 					.separator( separator )
-					.missingValueIndicator( "na", "none", "nan", "inf" )
+					.missingValueIndicator( MISSING_VALUE_INDICATORS )
 					.sample( numSamples > 0 )
 					.sampleSize( numSamples )
 					.maxNumberOfColumns( 100000 )
@@ -30,39 +30,26 @@ package org.embl.mobie.lib.table.saw;
 
 import net.imglib2.realtransform.AffineTransform3D;
 import org.embl.mobie.lib.annotation.AnnotatedSegment;
-import net.imglib2.FinalRealInterval;
 import net.imglib2.RealInterval;
-import org.embl.mobie.lib.volume.MeshTransformer;
 
 public class TableSawAnnotatedSegment extends AbstractTableSawAnnotation implements AnnotatedSegment
 {
-	private final int timePoint;
-	private final int labelId;
-	private final double[] position;
-	private RealInterval boundingBox;
-	private float[] mesh;
-	private String source;
+	// label, time point, position, bounding box and mesh are stored
+	// in columns (shared among all segments of the table) to save memory
+	private final AnnotatedSegmentColumns columns;
+
+	// created on first use, as the coloring by category asks for it per voxel
 	private String uuid;
 
 	// TODO only the model is TableSaw specific
 	//   all the other code is generic and could be reused to open other tables
-	public TableSawAnnotatedSegment(
+	TableSawAnnotatedSegment(
 			TableSawAnnotationTableModel< TableSawAnnotatedSegment > model,
 			int rowIndex,
-			String source,
-			String uuid,
-			Integer labelId,
-			int timePoint,
-			double[] position,
-			FinalRealInterval boundingBox )
+			AnnotatedSegmentColumns columns )
 	{
 		super( model, rowIndex );
-		this.source = source;
-		this.uuid = uuid;
-		this.labelId = labelId;
-		this.timePoint = timePoint;
-		this.position = position;
-		this.boundingBox = boundingBox;
+		this.columns = columns;
 	}
 
 	@Override
@@ -74,79 +61,74 @@ public class TableSawAnnotatedSegment extends AbstractTableSawAnnotation impleme
 	@Override
 	public int label()
 	{
-		return labelId;
+		return columns.label( rowIndex );
 	}
 
 	@Override
 	public Integer timePoint()
 	{
-		return timePoint;
+		return columns.timePoint( rowIndex );
 	}
 
 	@Override
 	public double[] positionAsDoubleArray()
 	{
-		return position;
+		return columns.position( rowIndex );
 	}
 
 	@Override
 	public double getDoublePosition( int d )
 	{
-		return position[ d ];
+		return columns.position( rowIndex, d );
 	}
 
 	@Override
 	public RealInterval boundingBox()
 	{
-		return boundingBox;
+		return columns.boundingBox( rowIndex );
 	}
 
 	@Override
 	public void setBoundingBox( RealInterval boundingBox )
 	{
-		this.boundingBox = boundingBox;
+		columns.setBoundingBox( rowIndex, boundingBox );
 	}
 
 	@Override
 	public float[] mesh()
 	{
-		return mesh;
+		return columns.mesh( rowIndex );
 	}
 
 	@Override
 	public void setMesh( float[] mesh )
 	{
-		this.mesh = mesh;
+		columns.setMesh( rowIndex, mesh );
 	}
 
 	@Override
 	public String uuid()
 	{
+		if ( uuid == null )
+			uuid = source() + ";" + timePoint() + ";" + label();
 		return uuid;
 	}
 
 	@Override
 	public String source()
 	{
-		return source;
+		return columns.source( rowIndex );
 	}
 
 	@Override
 	public void transform( AffineTransform3D affineTransform3D )
 	{
-		if ( position != null )
-			affineTransform3D.apply( position, position );
-
-		if ( boundingBox != null )
-			boundingBox = affineTransform3D.estimateBounds( boundingBox );
-
-		if ( mesh != null )
-			mesh = MeshTransformer.transform( mesh, affineTransform3D );
+		columns.transform( rowIndex, affineTransform3D );
 	}
 
 	@Override
 	public int numDimensions()
 	{
-		return positionAsDoubleArray().length;
+		return AnnotatedSegmentColumns.NUM_DIMENSIONS;
 	}
 }
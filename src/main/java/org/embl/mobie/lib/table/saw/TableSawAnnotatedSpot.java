@@ -30,41 +30,35 @@ package org.embl.mobie.lib.table.saw;
 
 import net.imglib2.realtransform.AffineTransform3D;
 import org.embl.mobie.lib.annotation.AnnotatedSpot;
-import org.embl.mobie.lib.table.columns.ColumnNames;
 
 public class TableSawAnnotatedSpot extends AbstractTableSawAnnotation implements AnnotatedSpot
 {
-	private static final String[] idColumns = new String[]{ ColumnNames.SPOT_ID };
-	private final int labelId;
-	private final int timePoint;
-	private final String source;
-	private float[] position; // may change due to transformations
+	// label, time point and position are stored in columns
+	// (shared among all spots of the table) to save memory
+	private final AnnotatedSpotColumns columns;
 
-	public TableSawAnnotatedSpot(
+	// created on first use, as the coloring by category asks for it per voxel
+	private String uuid;
+
+	TableSawAnnotatedSpot(
 			final TableSawAnnotationTableModel< TableSawAnnotatedSpot > model,
 			final int rowIndex,
-			final int labelId,
-			final float[] position,
-			final int timePoint,
-			final String source )
+			final AnnotatedSpotColumns columns )
 	{
 		super( model, rowIndex );
-		this.labelId = labelId;
-		this.position = position;
-		this.timePoint = timePoint;
-		this.source = source;
+		this.columns = columns;
 	}
 
 	@Override
 	public int label()
 	{
-		return labelId;
+		return columns.label( rowIndex );
 	}
 
 	@Override
 	public Integer timePoint()
 	{
-		return timePoint;
+		return columns.timePoint( rowIndex );
 	}
 
 	@Override
@@ -72,45 +66,47 @@ public class TableSawAnnotatedSpot extends AbstractTableSawAnnotation implements
 	{
 		// Create new array (don't cache), because the {@code position}
 		// is subject to change by means of a transformation
-		final double[] doublePosition = new double[ position.length ];
-		for ( int d = 0; d < position.length; d++ )
-			doublePosition[ d ] = position[ d ];
+		final double[] doublePosition = new double[ AnnotatedSpotColumns.NUM_DIMENSIONS ];
+		for ( int d = 0; d < doublePosition.length; d++ )
+			doublePosition[ d ] = columns.position( rowIndex, d );
 		return doublePosition;
 	}
 
 	@Override
 	public double getDoublePosition( int d )
 	{
-		return position[ d ];
+		return columns.position( rowIndex, d );
 	}
 
 	@Override
 	public float getFloatPosition( int d )
 	{
-		return position[ d ];
+		return columns.position( rowIndex, d );
 	}
 
 	@Override
 	public String uuid()
 	{
-		return source + ";" + timePoint + ";" + labelId;
+		if ( uuid == null )
+			uuid = source() + ";" + timePoint() + ";" + label();
+		return uuid;
 	}
 
 	@Override
 	public String source()
 	{
-		return source;
+		return columns.source();
 	}
 
 	@Override
 	public void transform( AffineTransform3D affineTransform3D )
 	{
-		affineTransform3D.apply( position, position );
+		columns.transform( rowIndex, affineTransform3D );
 	}
 
 	@Override
 	public int numDimensions()
 	{
-		return position.length;
+		return AnnotatedSpotColumns.NUM_DIMENSIONS;
 	}
 }
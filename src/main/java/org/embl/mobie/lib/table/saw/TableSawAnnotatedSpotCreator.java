@@ -42,6 +42,7 @@ public class TableSawAnnotatedSpotCreator implements TableSawAnnotationCreator<
 	private final int zColumnIndex;
 	private int timePointColumnIndex;
 	private ArrayList< String > idColumns;
+	private AnnotatedSpotColumns columns;
 
 	public TableSawAnnotatedSpotCreator( Table table )
 	{
@@ -59,32 +60,17 @@ public class TableSawAnnotatedSpotCreator implements TableSawAnnotationCreator<
 	@Override
 	public TableSawAnnotatedSpot create( TableSawAnnotationTableModel< TableSawAnnotatedSpot > model, int rowIndex )
 	{
-		try
-		{
-			final Table table = model.getTable();
-			int numDimensions = 3; // zColumnIndex > -1 ? 3 : 2; otherwise transformations do not work because everything is AffineTransform3D
-			final float[] position = new float[ numDimensions ];
-
-			position[ 0 ] = ( ( Number ) table.get( rowIndex, xColumnIndex ) ).floatValue();
-			position[ 1 ] = ( ( Number ) table.get( rowIndex, yColumnIndex ) ).floatValue();
-			if ( zColumnIndex > -1 )
-				position[ 2 ] = ((Number) table.get( rowIndex, zColumnIndex )).floatValue();
-
-			int label = ((Number) table.get( rowIndex, spotIDColumnIndex )).intValue();
-
-			int timePoint = 0;
-			if ( timePointColumnIndex > -1 )
-				timePoint = ((Number) table.get( rowIndex, timePointColumnIndex )).intValue();
+		return new TableSawAnnotatedSpot( model, rowIndex, columns( model.getTable() ) );
+	}
 
-			String source = table.name();
+	private synchronized AnnotatedSpotColumns columns( Table table )
+	{
+		// the columns are read in one go, before
+		// the model removes the coordinate columns from the table
+		if ( columns == null )
+			columns = new AnnotatedSpotColumns( table, spotIDColumnIndex, xColumnIndex, yColumnIndex, zColumnIndex, timePointColumnIndex );
 
-			return new TableSawAnnotatedSpot( model, rowIndex, label, position, timePoint, source );
-		}
-		catch ( Exception e )
-		{
-			System.err.println("Error parsing row (zero-based) " + rowIndex + " of table " + model.getTable().name() );
-			throw new RuntimeException( e );
-		}
+		return columns;
 	}
 
 	@Override
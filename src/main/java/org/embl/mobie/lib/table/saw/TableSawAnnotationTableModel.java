@@ -37,8 +37,10 @@ import org.embl.mobie.lib.io.Status;
 import org.embl.mobie.lib.io.StorageLocation;
 import org.embl.mobie.lib.table.AbstractAnnotationTableModel;
 import org.embl.mobie.lib.table.AnnotationListener;
+import org.embl.mobie.lib.table.AnnotationRows;
 import org.embl.mobie.lib.table.DefaultValues;
 import org.embl.mobie.lib.table.TableDataFormat;
+import org.embl.mobie.lib.util.ModificationCounter;
 import tech.tablesaw.api.ColumnType;
 import tech.tablesaw.api.DoubleColumn;
 import tech.tablesaw.api.StringColumn;
@@ -52,10 +54,12 @@ import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
-public class TableSawAnnotationTableModel< A extends Annotation > extends AbstractAnnotationTableModel< A >
+public class TableSawAnnotationTableModel< A extends Annotation > extends AbstractAnnotationTableModel< A > implements AnnotationRows
 {
 	private final String dataSourceName;
 	private final TableSawAnnotationCreator< A > annotationCreator;
@@ -71,6 +75,14 @@ public class TableSawAnnotationTableModel< A extends Annotation > extends Abstra
 	private final StorageLocation storageLocation;
 	private final TableDataFormat tableDataFormat;
 
+	// changes when the table is replaced or transformed, i.e. for all columns
+	private volatile long modificationCount = ModificationCounter.next();
+	private final Map< String, Long > columnToModificationCount = new ConcurrentHashMap<>();
+
+	// changes whenever any value changes, e.g. to invalidate cached colors
+	private volatile long valuesModificationCount = ModificationCounter.next();
+	private volatile int numRows;
+
 	public TableSawAnnotationTableModel(
 			String name,
 			TableSawAnnotationCreator< A > annotationCreator,
@@ -143,6 +155,9 @@ public class TableSawAnnotationTableModel< A extends Annotation > extends Abstra
 				//System.out.println( "Table Model " + IOHelper.getFileName( dataStore ) + ": applying " + affineTransform3D );
 				for ( A annotation : annotations )
 					annotation.transform( affineTransform3D );
+				modificationCount = ModificationCounter.next();
+				valuesModificationCount = modificationCount;
+				ModificationCounter.publish();
 				updateTransforms = false;
 				// reset the transform as it has been applied
 				affineTransform3D = new AffineTransform3D();
@@ -194,6 +209,9 @@ public class TableSawAnnotationTableModel< A extends Annotation > extends Abstra
 				table.removeColumns( duplicateColumnsArray );
 			}
 			table = table.joinOn( mergeByColumnNames.toArray( new String[ 0 ] ) ).leftOuter( additionalTable  );
+			modificationCount = ModificationCounter.next();
+			valuesModificationCount = modificationCount;
+			ModificationCounter.publish();
 		}
 		catch ( Exception e )
 		{
@@ -218,6 +236,7 @@ public class TableSawAnnotationTableModel< A extends Annotation > extends Abstra
 		annotations = new ArrayList<>( rowCount );
 		for ( int rowIndex = 0; rowIndex < rowCount; rowIndex++ )
 			annotations.add( annotationCreator.create( this, rowIndex ) );
+		numRows = rowCount;
 
 		for ( AnnotationListener< A > listener : listeners.list )
 			listener.annotationsAdded( annotations );
@@ -235,6 +254,35 @@ public class TableSawAnnotationTableModel< A extends Annotation > extends Abstra
 		return table;
 	}
 
+	/**
+	 * @return a count that changes whenever values of the column may have changed,
+	 * 		   e.g. because an annotation has been edited or table chunks have been joined
+	 */
+	public long getModificationCount( String columnName )
+	{
+		return Math.max( modificationCount, columnToModificationCount.getOrDefault( columnName, modificationCount ) );
+	}
+
+	void columnModified( String columnName )
+	{
+		final long modificationCount = ModificationCounter.next();
+		columnToModificationCount.put( columnName, modificationCount );
+		valuesModificationCount = modificationCount;
+		ModificationCounter.publish();
+	}
+
+	@Override
+	public int numRows()
+	{
+		return numRows;
+	}
+
+	@Override
+	public long getValuesModificationCount()
+	{
+		return valuesModificationCount;
+	}
+
 	@Override
 	public List< String > columnNames()
 	{
@@ -265,6 +313,18 @@ public class TableSawAnnotationTableModel< A extends Annotation > extends Abstra
 		return columnClass;
 	}
 
+	@Override
+	public double[] getColumnAsDoubles( String columnName, List< A > annotations )
+	{
+		return new TableSawColumnAsDoubles( columnName ).values( annotations );
+	}
+
+	@Override
+	public double[] getColumnAsRanks( String columnName, List< A > annotations )
+	{
+		return new TableSawColumnAsDoubles( columnName ).ranks( annotations );
+	}
+
 	@Override
 	public int numAnnotations()
 	{
@@ -278,16 +338,13 @@ public class TableSawAnnotationTableModel< A extends Annotation > extends Abstra
 	{
 		update();
 
-		// TODO a Map may be more efficient, but
-		//   since this method is not called very frequently
-		//   the current implementation may do, and avoid building the map,
-		//   which can be substantial for millions of elements such as
-		//   in the case of spatial-omics data.
-		//   But I am not 100% sure here...
-		//   One may also consider out-sourcing the indexOf to the
-		//   classes that actually need this. Maybe they could maintain a
-		//   map, if needed. This would also avoid having this method here
-		//   at all.
+		// The annotations know their own row index,
+		// thus we neither need to search the list nor to
+		// build a map, which would be substantial for millions
+		// of elements such as in the case of spatial-omics data.
+		if ( annotation instanceof AbstractTableSawAnnotation
+				&& ( ( AbstractTableSawAnnotation ) annotation ).model() == this )
+			return ( ( AbstractTableSawAnnotation ) annotation ).rowIndex();
 
 		return annotations.indexOf( annotation );
 	}
@@ -0,0 +1,100 @@
+/*-
+ * #%L
+ * Fiji viewer for MoBIE projects
+ * %%
+ * Copyright (C) 2018 - 2024 EMBL
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.embl.mobie.lib.table.saw;
+
+import org.embl.mobie.lib.annotation.Annotation;
+import org.embl.mobie.lib.table.ColumnAsDoubles;
+import tech.tablesaw.api.NumericColumn;
+import tech.tablesaw.api.Table;
+import tech.tablesaw.columns.Column;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Reads the values of table based annotations directly from the
+ * TableSaw column of their model, which avoids boxing the values and,
+ * for numeric columns, formatting and parsing them.
+ */
+class TableSawColumnAsDoubles extends ColumnAsDoubles
+{
+	// annotations of concatenated tables stem from several models
+	private final Map< TableSawAnnotationTableModel< ? >, Column< ? > > modelToColumn = new IdentityHashMap<>();
+	private TableSawAnnotationTableModel< ? > model;
+	private Column< ? > column;
+
+	TableSawColumnAsDoubles( String columnName )
+	{
+		super( columnName );
+	}
+
+	@Override
+	protected double value( Annotation annotation )
+	{
+		if ( ! ( annotation instanceof AbstractTableSawAnnotation ) )
+			return super.value( annotation );
+
+		final AbstractTableSawAnnotation tableSawAnnotation = ( AbstractTableSawAnnotation ) annotation;
+		final Column< ? > column = column( tableSawAnnotation.model() );
+		final int rowIndex = tableSawAnnotation.rowIndex();
+		if ( column == null )
+			return Double.NaN;
+		else if ( column instanceof NumericColumn )
+			return ( ( NumericColumn< ? > ) column ).getDouble( rowIndex );
+		else
+			return toDouble( column.get( rowIndex ) );
+	}
+
+	@Override
+	protected String string( Annotation annotation )
+	{
+		if ( ! ( annotation instanceof AbstractTableSawAnnotation ) )
+			return super.string( annotation );
+
+		final AbstractTableSawAnnotation tableSawAnnotation = ( AbstractTableSawAnnotation ) annotation;
+		final Column< ? > column = column( tableSawAnnotation.model() );
+		return column == null ? null : column.getString( tableSawAnnotation.rowIndex() );
+	}
+
+	private Column< ? > column( TableSawAnnotationTableModel< ? > model )
+	{
+		if ( model != this.model )
+		{
+			this.model = model;
+			column = modelToColumn.computeIfAbsent( model, m -> {
+				final Table table = m.getTable();
+				// the column can be missing, e.g., if a table chunk
+				// has only been loaded for some of the concatenated tables
+				return table.containsColumn( columnName ) ? table.column( columnName ) : null;
+			} );
+		}
+
+		return column;
+	}
+}
@@ -0,0 +1,150 @@
+/*-
+ * #%L
+ * Fiji viewer for MoBIE projects
+ * %%
+ * Copyright (C) 2018 - 2024 EMBL
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.embl.mobie.lib.table.saw;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.embl.mobie.lib.io.DiskCache;
+import tech.tablesaw.api.ColumnType;
+
+import java.io.File;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Persists the column types of a table file, such that
+ * reopening the table does not need to infer the types again.
+ *
+ * The schema is only used if the size and modification time
+ * of the table file are the same as when the schema has been saved,
+ * and if the column names still match the header of the table.
+ */
+public class TableSchema
+{
+	private static final int VERSION = 1;
+	private static final Gson GSON = new GsonBuilder().create();
+
+	private static final DiskCache diskCache = new DiskCache( "tables", ".json", 100_000_000L );
+
+	// serialised fields
+	private int version = VERSION;
+	private String path;
+	private String validation;
+	private List< String > columnNames;
+	private List< String > columnTypes;
+
+	public TableSchema( String path, String validation, List< String > columnNames, ColumnType[] columnTypes )
+	{
+		this.path = path;
+		this.validation = validation;
+		this.columnNames = new ArrayList<>( columnNames );
+		this.columnTypes = new ArrayList<>();
+		for ( ColumnType columnType : columnTypes )
+			this.columnTypes.add( columnType.name() );
+	}
+
+	public static DiskCache diskCache()
+	{
+		return diskCache;
+	}
+
+	/**
+	 * @return the schema of the table, or null if there is none,
+	 * 		   if it has been written for a different state of the table file,
+	 * 		   or if its column names differ from the given ones
+	 */
+	public static TableSchema load( String path, String validation, List< String > columnNames )
+	{
+		final File file = diskCache.get( path );
+		if ( file == null ) return null;
+
+		try ( Reader reader = Files.newBufferedReader( file.toPath(), StandardCharsets.UTF_8 ) )
+		{
+			final TableSchema schema = GSON.fromJson( reader, TableSchema.class );
+			if ( schema == null
+					|| schema.version != VERSION
+					|| ! path.equals( schema.path )
+					|| ! validation.equals( schema.validation )
+					|| ! columnNames.equals( schema.columnNames )
+					|| schema.columnTypes == null
+					|| schema.columnTypes.size() != columnNames.size() )
+				return null;
+
+			// fails for unknown type names
+			schema.getColumnTypes();
+
+			return schema;
+		}
+		catch ( Exception e )
+		{
+			// e.g. a truncated file; the types will be inferred again
+			return null;
+		}
+	}
+
+	public void save()
+	{
+		diskCache.put( path, out ->
+		{
+			final Writer writer = new OutputStreamWriter( out, StandardCharsets.UTF_8 );
+			GSON.toJson( this, writer );
+			writer.flush();
+		} );
+	}
+
+	/**
+	 * The size and the modification time of the table file.
+	 */
+	public static String getModificationStamp( File file )
+	{
+		return DiskCache.getModificationStamp( file.getAbsolutePath() );
+	}
+
+	public List< String > getColumnNames()
+	{
+		return columnNames;
+	}
+
+	public ColumnType[] getColumnTypes()
+	{
+		final ColumnType[] types = new ColumnType[ columnTypes.size() ];
+		for ( int i = 0; i < types.length; i++ )
+		{
+			types[ i ] = ColumnType.valueOf( columnTypes.get( i ) );
+			if ( types[ i ] == null )
+				throw new IllegalStateException( "Unknown column type: " + columnTypes.get( i ) );
+		}
+		return types;
+	}
+}
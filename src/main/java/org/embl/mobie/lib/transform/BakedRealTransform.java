@@ -0,0 +1,328 @@
+package org.embl.mobie.lib.transform;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.RealInterval;
+import net.imglib2.RealLocalizable;
+import net.imglib2.RealPositionable;
+import net.imglib2.cache.img.CachedCellImg;
+import net.imglib2.cache.img.CellLoader;
+import net.imglib2.cache.img.ReadOnlyCachedCellImgFactory;
+import net.imglib2.cache.img.ReadOnlyCachedCellImgOptions;
+import net.imglib2.cache.img.SingleCellArrayImg;
+import net.imglib2.realtransform.DisplacementFieldTransform;
+import net.imglib2.realtransform.RealTransform;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.view.Views;
+
+/**
+ * A {@link RealTransform} that is sampled once onto a regular displacement grid
+ * and then evaluated by n-linear interpolation of that grid.
+ *
+ * The grid is computed lazily, cell by cell, when it is first accessed.
+ * Outside of the grid the wrapped transform is evaluated directly.
+ *
+ * Evaluating expensive transforms, such as B-splines or thin plate splines,
+ * for every rendered voxel is thus replaced by a cheap interpolation.
+ */
+public class BakedRealTransform implements RealTransform
+{
+	private static final int CELL_SIZE = 32;
+	private static final int MAX_NUM_PROBES_PER_DIMENSION = 16;
+	private static final int MAX_SPACING_EXPONENT = 6;
+	private static final long MAX_NUM_GRID_POINTS = 16_000_000L;
+
+	private final RealTransform transform;
+	private final CachedCellImg< FloatType, ? > field;
+	private final double[] spacing;
+	private final double[] origin;
+	private final double[] max;
+	private final DisplacementFieldTransform interpolatedField;
+	private final int numDimensions;
+
+	// copies are used per thread, thus the scratch arrays are per instance
+	private final double[] sourceArray;
+	private final double[] targetArray;
+
+	/**
+	 * @param transform
+	 * 			the transform to be baked
+	 * @param domain
+	 * 			the region of the source space of the transform that should be baked
+	 * @param spacing
+	 * 			the spacing of the displacement grid
+	 */
+	public BakedRealTransform( final RealTransform transform, final RealInterval domain, final double[] spacing )
+	{
+		this( transform, createField( transform, domain, spacing ), spacing, domain.minAsDoubleArray() );
+	}
+
+	private BakedRealTransform(
+			final RealTransform transform,
+			final CachedCellImg< FloatType, ? > field,
+			final double[] spacing,
+			final double[] origin )
+	{
+		this.transform = transform;
+		this.field = field;
+		this.spacing = spacing;
+		this.origin = origin;
+		this.numDimensions = transform.numSourceDimensions();
+		this.max = new double[ numDimensions ];
+		this.sourceArray = new double[ numDimensions ];
+		this.targetArray = new double[ numDimensions ];
+		for ( int d = 0; d < numDimensions; d++ )
+			max[ d ] = origin[ d ] + ( field.dimension( d + 1 ) - 1 ) * spacing[ d ];
+		this.interpolatedField = new DisplacementFieldTransform( field, spacing, origin );
+	}
+
+	/**
+	 * Finds the largest grid spacing, a power of two multiple of the {@code minSpacing},
+	 * for which the interpolated grid deviates less than the {@code tolerance}
+	 * from the transform, as estimated at the centers of a regular lattice of grid cells
+	 * that spans the {@code domain}.
+	 *
+	 * @param tolerance
+	 * 			the maximal acceptable deviation, in the units of the target space
+	 * @param minSpacing
+	 * 			the finest grid spacing that may be returned, e.g. the voxel size
+	 * @return the spacing, or null if the tolerance is not met with the {@code minSpacing}
+	 * 		   or if the grid would have more than 16 million points;
+	 * 		   in both cases the transform should be evaluated directly
+	 */
+	public static double[] estimateSpacing(
+			final RealTransform transform,
+			final RealInterval domain,
+			final double tolerance,
+			final double[] minSpacing )
+	{
+		final int n = transform.numSourceDimensions();
+		for ( int exponent = MAX_SPACING_EXPONENT; exponent >= 0; exponent-- )
+		{
+			final double[] spacing = new double[ n ];
+			for ( int d = 0; d < n; d++ )
+				spacing[ d ] = minSpacing[ d ] * ( 1 << exponent );
+
+			if ( estimateMaxError( transform, domain, spacing ) > tolerance )
+				continue;
+
+			return numGridPoints( domain, spacing ) <= MAX_NUM_GRID_POINTS ? spacing : null;
+		}
+
+		return null;
+	}
+
+	/**
+	 * Linear interpolation typically deviates most in the center of a cell, thus
+	 * the deviation is computed there, for a regular lattice of cells, at most
+	 * {@link #MAX_NUM_PROBES_PER_DIMENSION} per dimension, from the first to the last cell.
+	 */
+	private static double estimateMaxError( final RealTransform transform, final RealInterval domain, final double[] spacing )
+	{
+		final int n = transform.numSourceDimensions();
+		final long[] numCells = new long[ n ];
+		final int[] numProbes = new int[ n ];
+		for ( int d = 0; d < n; d++ )
+		{
+			numCells[ d ] = Math.max( 1, ( long ) Math.ceil( ( domain.realMax( d ) - domain.realMin( d ) ) / spacing[ d ] ) );
+			numProbes[ d ] = ( int ) Math.min( numCells[ d ], MAX_NUM_PROBES_PER_DIMENSION );
+		}
+
+		final int[] probe = new int[ n ];
+		final double[] position = new double[ n ];
+		final double[] corner = new double[ n ];
+		final double[] mapped = new double[ n ];
+		final double[] interpolated = new double[ n ];
+		final int numCorners = 1 << n;
+
+		double maxError = 0;
+		while ( true )
+		{
+			final long[] cell = new long[ n ];
+			for ( int d = 0; d < n; d++ )
+			{
+				cell[ d ] = numProbes[ d ] == 1 ? 0 : Math.round( ( double ) probe[ d ] * ( numCells[ d ] - 1 ) / ( numProbes[ d ] - 1 ) );
+				position[ d ] = domain.realMin( d ) + ( cell[ d ] + 0.5 ) * spacing[ d ];
+			}
+
+			// in the center of a cell all corners have the same weight
+			Arrays.fill( interpolated, 0 );
+			for ( int c = 0; c < numCorners; c++ )
+			{
+				for ( int d = 0; d < n; d++ )
+					corner[ d ] = domain.realMin( d ) + ( cell[ d ] + ( ( c & ( 1 << d ) ) != 0 ? 1 : 0 ) ) * spacing[ d ];
+				transform.apply( corner, mapped );
+				for ( int d = 0; d < n; d++ )
+					interpolated[ d ] += ( mapped[ d ] - corner[ d ] ) / numCorners;
+			}
+
+			transform.apply( position, mapped );
+			double sq = 0;
+			for ( int d = 0; d < n; d++ )
+			{
+				final double diff = position[ d ] + interpolated[ d ] - mapped[ d ];
+				sq += diff * diff;
+			}
+			maxError = Math.max( maxError, Double.isNaN( sq ) ? Double.POSITIVE_INFINITY : Math.sqrt( sq ) );
+
+			// next probe of the lattice
+			int d = 0;
+			while ( d < n && ++probe[ d ] == numProbes[ d ] )
+				probe[ d++ ] = 0;
+			if ( d == n )
+				return maxError;
+		}
+	}
+
+	private static long numGridPoints( final RealInterval domain, final double[] spacing )
+	{
+		long numGridPoints = 1;
+		for ( int d = 0; d < spacing.length; d++ )
+			numGridPoints *= gridSize( domain, spacing, d );
+		return numGridPoints;
+	}
+
+	private static long gridSize( final RealInterval domain, final double[] spacing, final int d )
+	{
+		return Math.max( 2, ( long ) Math.ceil( ( domain.realMax( d ) - domain.realMin( d ) ) / spacing[ d ] ) + 1 );
+	}
+
+	private static CachedCellImg< FloatType, ? > createField(
+			final RealTransform transform,
+			final RealInterval domain,
+			final double[] spacing )
+	{
+		final int n = transform.numSourceDimensions();
+		final long[] dimensions = new long[ n + 1 ];
+		final int[] cellDimensions = new int[ n + 1 ];
+		dimensions[ 0 ] = n;
+		cellDimensions[ 0 ] = n;
+		for ( int d = 0; d < n; d++ )
+		{
+			dimensions[ d + 1 ] = gridSize( domain, spacing, d );
+			cellDimensions[ d + 1 ] = CELL_SIZE;
+		}
+
+		return new ReadOnlyCachedCellImgFactory().create(
+				dimensions,
+				new FloatType(),
+				new DisplacementSampler( transform, domain.minAsDoubleArray(), spacing ),
+				ReadOnlyCachedCellImgOptions.options().cellDimensions( cellDimensions ) );
+	}
+
+	/**
+	 * Computes the displacements of the grid points of one cell;
+	 * the cells may be computed concurrently, thus every thread
+	 * uses its own copy of the transform.
+	 */
+	static class DisplacementSampler implements CellLoader< FloatType >
+	{
+		private final ThreadLocal< RealTransform > transforms;
+		private final double[] origin;
+		private final double[] spacing;
+
+		DisplacementSampler( final RealTransform transform, final double[] origin, final double[] spacing )
+		{
+			this.transforms = ThreadLocal.withInitial( transform::copy );
+			this.origin = origin;
+			this.spacing = spacing;
+		}
+
+		@Override
+		public void load( final SingleCellArrayImg< FloatType, ? > cell )
+		{
+			final RealTransform transform = transforms.get();
+			final int n = origin.length;
+			final double[] position = new double[ n ];
+			final double[] mapped = new double[ n ];
+			final Cursor< FloatType > cursor = Views.flatIterable( cell ).localizingCursor();
+			while ( cursor.hasNext() )
+			{
+				cursor.fwd();
+				// the displacement components of a grid point are adjacent
+				final int component = cursor.getIntPosition( 0 );
+				if ( component == 0 )
+				{
+					for ( int d = 0; d < n; d++ )
+						position[ d ] = origin[ d ] + cursor.getLongPosition( d + 1 ) * spacing[ d ];
+					transform.apply( position, mapped );
+				}
+				cursor.get().set( ( float ) ( mapped[ component ] - position[ component ] ) );
+			}
+		}
+	}
+
+	@Override
+	public int numSourceDimensions()
+	{
+		return numDimensions;
+	}
+
+	@Override
+	public int numTargetDimensions()
+	{
+		return numDimensions;
+	}
+
+	@Override
+	public void apply( final double[] source, final double[] target )
+	{
+		if ( isInside( source ) )
+			interpolatedField.apply( source, target );
+		else
+			transform.apply( source, target );
+	}
+
+	@Override
+	public void apply( final RealLocalizable source, final RealPositionable target )
+	{
+		source.localize( sourceArray );
+		apply( sourceArray, targetArray );
+		target.setPosition( targetArray );
+	}
+
+	private boolean isInside( final double[] position )
+	{
+		for ( int d = 0; d < numDimensions; d++ )
+			if ( position[ d ] < origin[ d ] || position[ d ] > max[ d ] )
+				return false;
+		return true;
+	}
+
+	/**
+	 * The copy shares the (lazily computed) displacement grid.
+	 */
+	@Override
+	public RealTransform copy()
+	{
+		return new BakedRealTransform( transform.copy(), field, spacing, origin );
+	}
+
+	public RandomAccessibleInterval< FloatType > getDisplacementField()
+	{
+		return field;
+	}
+
+	public double[] getSpacing()
+	{
+		return spacing.clone();
+	}
+
+	public double[] getOrigin()
+	{
+		return origin.clone();
+	}
+
+	/**
+	 * Saves the displacement grid, computing all of it,
+	 * such that it can be loaded with {@link DisplacementFieldTransformIO#load(String)}.
+	 */
+	public void save( final File jsonFile ) throws IOException
+	{
+		DisplacementFieldTransformIO.save( field, spacing, origin, jsonFile );
+	}
+}
@@ -40,6 +40,7 @@ import org.embl.mobie.lib.annotation.AnnotationAdapter;
 import org.embl.mobie.lib.annotation.DefaultAnnotationAdapter;
 import org.embl.mobie.lib.annotation.LazyAnnotatedSegmentAdapter;
 import org.embl.mobie.lib.data.DataStore;
+import org.embl.mobie.lib.data.ImageCache;
 import org.embl.mobie.lib.image.*;
 import org.embl.mobie.lib.serialize.transformation.*;
 import org.embl.mobie.lib.table.AnnData;
@@ -344,6 +345,7 @@ public class ImageTransformer
 			{
 				// in place transformation (only used for Stitched Images)
 				// TODO: Check whether this is needed or could be get rid off
+				ImageCache.invalidate( image );
 				image.transform( translationTransform );
 				translatedImages.add( image );
 			}
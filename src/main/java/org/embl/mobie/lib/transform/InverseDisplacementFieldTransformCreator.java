@@ -1,15 +1,26 @@
 package org.embl.mobie.lib.transform;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
-import net.imglib2.RandomAccess;
 import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.img.array.ArrayImgs;
-import net.imglib2.iterator.LocalizingIntervalIterator;
 import net.imglib2.realtransform.DisplacementFieldTransform;
 import net.imglib2.realtransform.RealTransform;
 import net.imglib2.realtransform.inverse.WrappedIterativeInvertibleRealTransform;
 import net.imglib2.type.numeric.real.DoubleType;
+import org.embl.mobie.lib.util.ThreadHelper;
 
 /**
  * Temporary local copy of ITC precomputed inverse displacement-field support.
@@ -20,6 +31,14 @@ public class InverseDisplacementFieldTransformCreator
   public interface ProgressListener
   {
     void onProgress( int percent );
+
+    /**
+     * Polled during sampling; return true to abort it.
+     */
+    default boolean isCancelled()
+    {
+      return false;
+    }
   }
 
   private static final double DEFAULT_OPTIMIZER_MAX_STEP = 500.0;
@@ -84,6 +103,15 @@ public class InverseDisplacementFieldTransformCreator
     return sampleInverseDisplacement( null );
   }
 
+  /**
+   * Samples the inverse displacement field in parallel.
+   * The grid is processed line by line (along the first dimension);
+   * each sample is solved by a Newton iteration that is seeded with the
+   * solution of the neighbouring sample, falling back to the iterative
+   * inverse of imglib2 for samples where this does not converge.
+   *
+   * @throws CancellationException if the {@code progressListener} requests cancellation
+   */
   public SampledInverseDisplacement sampleInverseDisplacement( final ProgressListener progressListener )
   {
     if ( sampled != null )
@@ -92,61 +120,33 @@ public class InverseDisplacementFieldTransformCreator
     final int n = forwardTransform.numSourceDimensions();
     final int[] sourceSamplingSize = samplingSize( sourceDomainMin, sourceDomainMax, inverseSamplingSpacing );
     final long totalSourceSamples = numberOfSamples( sourceSamplingSize );
-    final Domain inverseDomain = estimateInverseDomain( sourceSamplingSize );
+    // the total is only known once the inverse domain is estimated
+    final Progress progress = new Progress( progressListener, Long.MAX_VALUE );
+    progress.report();
+
+    final Domain inverseDomain = estimateInverseDomain( sourceSamplingSize, progress );
     final int[] inverseSamplingSize = samplingSize( inverseDomain.min, inverseDomain.max, inverseSamplingSpacing );
     final long totalInverseSamples = numberOfSamples( inverseSamplingSize );
-    final long totalSamples = Math.max( 1L, totalSourceSamples + totalInverseSamples );
-    final int[] lastReportedPercent = new int[] { -1 };
-    reportProgress( progressListener, lastReportedPercent, 0 );
+    if ( totalInverseSamples * n > Integer.MAX_VALUE )
+      throw new IllegalArgumentException( "Inverse displacement field too large: " + Arrays.toString( inverseSamplingSize ) );
+    progress.setTotal( totalSourceSamples + totalInverseSamples );
 
     final long[] fieldDimensions = new long[ n + 1 ];
     fieldDimensions[ 0 ] = n;
     for ( int d = 0; d < n; d++ )
       fieldDimensions[ d + 1 ] = inverseSamplingSize[ d ];
 
-    final RandomAccessibleInterval< DoubleType > interleaved = ArrayImgs.doubles( fieldDimensions );
-    final RandomAccess< DoubleType > access = interleaved.randomAccess();
-
-    final WrappedIterativeInvertibleRealTransform< RealTransform > invertible =
-        new WrappedIterativeInvertibleRealTransform<>( forwardTransform );
-    invertible.getOptimzer().setMaxStep( optimizerMaxStep );
-    invertible.getOptimzer().setTolerance( optimizerTolerance );
-    invertible.getOptimzer().setMaxIters( optimizerMaxIterations );
-    final RealTransform inverse = invertible.inverse();
-
-    final double[] inversePhysical = new double[ n ];
-    final double[] forwardPhysical = new double[ n ];
-    final long[] idx = new long[ n + 1 ];
-    final LocalizingIntervalIterator iterator = new LocalizingIntervalIterator( inverseSamplingSize );
-    long processedInverseSamples = 0L;
-    while ( iterator.hasNext() )
-    {
-      iterator.fwd();
-      for ( int d = 0; d < n; d++ )
-        inversePhysical[ d ] = inverseDomain.min[ d ] + iterator.getLongPosition( d ) * inverseSamplingSpacing[ d ];
-
-      inverse.apply( inversePhysical, forwardPhysical );
-      for ( int d = 0; d < n; d++ )
-      {
-        idx[ 0 ] = d;
-        for ( int e = 0; e < n; e++ )
-          idx[ e + 1 ] = iterator.getLongPosition( e );
-        access.setPosition( idx );
-        access.get().set( forwardPhysical[ d ] - inversePhysical[ d ] );
-      }
-
-      processedInverseSamples++;
-      final int percent = ( int ) Math.min( 99L, ( totalSourceSamples + processedInverseSamples ) * 100L / totalSamples );
-      reportProgress( progressListener, lastReportedPercent, percent );
-    }
+    // interleaved: the n displacement components of a sample are adjacent
+    final double[] field = new double[ ( int ) ( totalInverseSamples * n ) ];
+    processLines( inverseSamplingSize, () -> new InverseLineSampler( inverseDomain.min, inverseSamplingSize, field ), progress );
 
     sampled = new SampledInverseDisplacement(
-        interleaved,
+        ArrayImgs.doubles( field, fieldDimensions ),
         Arrays.copyOf( inverseDomain.min, inverseDomain.min.length ),
         Arrays.copyOf( inverseSamplingSpacing, inverseSamplingSpacing.length ),
         Arrays.copyOf( inverseSamplingSize, inverseSamplingSize.length )
     );
-    reportProgress( progressListener, lastReportedPercent, 100 );
+    progress.done();
     return sampled;
   }
 
@@ -177,7 +177,7 @@ public class InverseDisplacementFieldTransformCreator
     return size;
   }
 
-  private Domain estimateInverseDomain( final int[] sourceSamplingSize )
+  private Domain estimateInverseDomain( final int[] sourceSamplingSize, final Progress progress )
   {
     final int n = forwardTransform.numSourceDimensions();
     final double[] min = new double[ n ];
@@ -185,28 +185,119 @@ public class InverseDisplacementFieldTransformCreator
     Arrays.fill( min, Double.POSITIVE_INFINITY );
     Arrays.fill( max, Double.NEGATIVE_INFINITY );
 
-    final double[] sourcePosition = new double[ n ];
-    final double[] mappedPosition = new double[ n ];
-    final LocalizingIntervalIterator iterator = new LocalizingIntervalIterator( sourceSamplingSize );
-    while ( iterator.hasNext() )
+    final List< DomainLineSampler > samplers = processLines( sourceSamplingSize, () -> new DomainLineSampler( sourceSamplingSize ), progress );
+    for ( final DomainLineSampler sampler : samplers )
     {
-      iterator.fwd();
-      for ( int d = 0; d < n; d++ )
-        sourcePosition[ d ] = sourceDomainMin[ d ] + iterator.getLongPosition( d ) * inverseSamplingSpacing[ d ];
-
-      forwardTransform.apply( sourcePosition, mappedPosition );
       for ( int d = 0; d < n; d++ )
       {
-        if ( mappedPosition[ d ] < min[ d ] )
-          min[ d ] = mappedPosition[ d ];
-        if ( mappedPosition[ d ] > max[ d ] )
-          max[ d ] = mappedPosition[ d ];
+        min[ d ] = Math.min( min[ d ], sampler.min[ d ] );
+        max[ d ] = Math.max( max[ d ], sampler.max[ d ] );
       }
     }
 
     return new Domain( min, max );
   }
 
+  /**
+   * Processes all lines (along the first dimension) of a grid of the given size,
+   * using the threads of {@link ThreadHelper#executorService} and the calling thread.
+   * The lines are handed out in chunks of consecutive lines, such that a
+   * {@link LineProcessor} can reuse the results of the preceding line.
+   *
+   * @return the processors that have been created, one per participating thread
+   */
+  private < P extends LineProcessor > List< P > processLines(
+      final int[] size,
+      final Supplier< P > processorSupplier,
+      final Progress progress )
+  {
+    final long numLines = numberOfSamples( size ) / size[ 0 ];
+    final int numWorkers = ThreadHelper.getNumThreads();
+    final long linesPerChunk = Math.max( 1L, numLines / ( 16L * ( numWorkers + 1 ) ) );
+    final long numChunks = ( numLines + linesPerChunk - 1 ) / linesPerChunk;
+    final AtomicLong nextChunk = new AtomicLong();
+    final AtomicBoolean cancelled = new AtomicBoolean();
+    final List< P > processors = Collections.synchronizedList( new ArrayList<>() );
+
+    final Function< Boolean, Runnable > worker = isCaller -> () ->
+    {
+      final P processor = processorSupplier.get();
+      processors.add( processor );
+      final long[] position = new long[ size.length ];
+      long chunk;
+      while ( !cancelled.get() && ( chunk = nextChunk.getAndIncrement() ) < numChunks )
+      {
+        final long firstLine = chunk * linesPerChunk;
+        final long lastLine = Math.min( numLines, firstLine + linesPerChunk );
+        for ( long line = firstLine; line < lastLine && !cancelled.get(); line++ )
+        {
+          linePosition( line, size, position );
+          processor.process( position, line > firstLine );
+          progress.add( size[ 0 ] );
+        }
+
+        if ( isCaller )
+        {
+          progress.report();
+          if ( progress.isCancelled() )
+            cancelled.set( true );
+        }
+      }
+    };
+
+    final List< Future< ? > > futures = new ArrayList<>();
+    for ( int i = 0; i < Math.min( numWorkers, numChunks - 1 ); i++ )
+      futures.add( ThreadHelper.executorService.submit( worker.apply( false ) ) );
+
+    try
+    {
+      worker.apply( true ).run();
+
+      for ( final Future< ? > future : futures )
+      {
+        // workers that did not start yet would not find any work left
+        if ( future.cancel( false ) )
+          continue;
+
+        while ( true )
+        {
+          try
+          {
+            future.get( 200, TimeUnit.MILLISECONDS );
+            break;
+          }
+          catch ( TimeoutException e )
+          {
+            progress.report();
+            if ( progress.isCancelled() )
+              cancelled.set( true );
+          }
+        }
+      }
+    }
+    catch ( InterruptedException | ExecutionException | RuntimeException e )
+    {
+      cancelled.set( true );
+      throw new RuntimeException( "Sampling of the inverse displacement field failed.", e );
+    }
+
+    if ( cancelled.get() )
+      throw new CancellationException( "Sampling of the inverse displacement field has been cancelled." );
+
+    return processors;
+  }
+
+  private static void linePosition( final long line, final int[] size, final long[] position )
+  {
+    position[ 0 ] = 0;
+    long remainder = line;
+    for ( int d = 1; d < size.length; d++ )
+    {
+      position[ d ] = remainder % size[ d ];
+      remainder /= size[ d ];
+    }
+  }
+
   private static long numberOfSamples( final int[] size )
   {
     long samples = 1L;
@@ -215,17 +306,338 @@ public class InverseDisplacementFieldTransformCreator
     return samples;
   }
 
-  private static void reportProgress(
-      final ProgressListener listener,
-      final int[] lastReportedPercent,
-      final int percent )
+  private interface LineProcessor
+  {
+    /**
+     * @param position
+     *          the grid position of the first sample of the line
+     * @param continuesPreviousLine
+     *          whether this processor has processed the preceding line just before
+     */
+    void process( long[] position, boolean continuesPreviousLine );
+  }
+
+  private final class DomainLineSampler implements LineProcessor
+  {
+    private final RealTransform forward = forwardTransform.copy();
+    private final int[] size;
+    private final double[] min;
+    private final double[] max;
+    private final double[] sourcePosition;
+    private final double[] mappedPosition;
+
+    private DomainLineSampler( final int[] size )
+    {
+      final int n = size.length;
+      this.size = size;
+      min = new double[ n ];
+      max = new double[ n ];
+      Arrays.fill( min, Double.POSITIVE_INFINITY );
+      Arrays.fill( max, Double.NEGATIVE_INFINITY );
+      sourcePosition = new double[ n ];
+      mappedPosition = new double[ n ];
+    }
+
+    @Override
+    public void process( final long[] position, final boolean continuesPreviousLine )
+    {
+      final int n = size.length;
+      for ( int d = 1; d < n; d++ )
+        sourcePosition[ d ] = sourceDomainMin[ d ] + position[ d ] * inverseSamplingSpacing[ d ];
+
+      for ( int x = 0; x < size[ 0 ]; x++ )
+      {
+        sourcePosition[ 0 ] = sourceDomainMin[ 0 ] + x * inverseSamplingSpacing[ 0 ];
+        forward.apply( sourcePosition, mappedPosition );
+        for ( int d = 0; d < n; d++ )
+        {
+          if ( mappedPosition[ d ] < min[ d ] )
+            min[ d ] = mappedPosition[ d ];
+          if ( mappedPosition[ d ] > max[ d ] )
+            max[ d ] = mappedPosition[ d ];
+        }
+      }
+    }
+  }
+
+  /**
+   * Inverts the forward transform along a line of the inverse grid.
+   * Neighbouring samples have similar displacements, thus the displacement
+   * of the previous sample (or, at the start of a line, of the first sample
+   * of the previous line) is a good initial guess for the Newton iteration.
+   */
+  private final class InverseLineSampler implements LineProcessor
+  {
+    private static final double FINITE_DIFFERENCE_STEP = 1e-3;
+
+    private final RealTransform forward = forwardTransform.copy();
+    private final RealTransform fallbackInverse;
+    private final double[] inverseMin;
+    private final int[] size;
+    private final double[] field;
+    private final int n;
+
+    private final double[] target;
+    private final double[] x;
+    private final double[] fx;
+    private final double[] xStep;
+    private final double[] fxStep;
+    private final double[] residual;
+    private final double[] step;
+    private final double[][] jacobian;
+    private final double[] displacement;
+    private final double[] lineStartDisplacement;
+
+    private InverseLineSampler( final double[] inverseMin, final int[] size, final double[] field )
+    {
+      this.inverseMin = inverseMin;
+      this.size = size;
+      this.field = field;
+      n = size.length;
+
+      final WrappedIterativeInvertibleRealTransform< RealTransform > invertible =
+          new WrappedIterativeInvertibleRealTransform<>( forwardTransform.copy() );
+      invertible.getOptimzer().setMaxStep( optimizerMaxStep );
+      invertible.getOptimzer().setTolerance( optimizerTolerance );
+      invertible.getOptimzer().setMaxIters( optimizerMaxIterations );
+      fallbackInverse = invertible.inverse();
+
+      target = new double[ n ];
+      x = new double[ n ];
+      fx = new double[ n ];
+      xStep = new double[ n ];
+      fxStep = new double[ n ];
+      residual = new double[ n ];
+      step = new double[ n ];
+      jacobian = new double[ n ][ n ];
+      displacement = new double[ n ];
+      lineStartDisplacement = new double[ n ];
+    }
+
+    @Override
+    public void process( final long[] position, final boolean continuesPreviousLine )
+    {
+      long lineOffset = 0;
+      for ( int d = n - 1; d >= 1; d-- )
+        lineOffset = lineOffset * size[ d ] + position[ d ];
+      lineOffset *= size[ 0 ];
+
+      for ( int d = 1; d < n; d++ )
+        target[ d ] = inverseMin[ d ] + position[ d ] * inverseSamplingSpacing[ d ];
+
+      // at the start of a chunk there is no neighbouring solution yet;
+      // start from zero displacement
+      if ( continuesPreviousLine )
+        System.arraycopy( lineStartDisplacement, 0, displacement, 0, n );
+      else
+        Arrays.fill( displacement, 0.0 );
+
+      for ( int i = 0; i < size[ 0 ]; i++ )
+      {
+        target[ 0 ] = inverseMin[ 0 ] + i * inverseSamplingSpacing[ 0 ];
+
+        for ( int d = 0; d < n; d++ )
+          x[ d ] = target[ d ] + displacement[ d ];
+
+        if ( !solve() )
+          fallbackInverse.apply( target, x );
+
+        final int offset = ( int ) ( ( lineOffset + i ) * n );
+        for ( int d = 0; d < n; d++ )
+        {
+          displacement[ d ] = x[ d ] - target[ d ];
+          field[ offset + d ] = displacement[ d ];
+        }
+
+        if ( i == 0 )
+          System.arraycopy( displacement, 0, lineStartDisplacement, 0, n );
+      }
+    }
+
+    /**
+     * Newton iteration, with the Jacobian estimated by finite differences,
+     * for finding {@code x} such that {@code forward( x ) = target}.
+     *
+     * @return false if it did not converge
+     */
+    private boolean solve()
+    {
+      double error = evaluate( x, fx );
+      for ( int iteration = 0; iteration < optimizerMaxIterations; iteration++ )
+      {
+        if ( error <= optimizerTolerance )
+          return true;
+
+        for ( int d = 0; d < n; d++ )
+          residual[ d ] = target[ d ] - fx[ d ];
+
+        for ( int e = 0; e < n; e++ )
+        {
+          final double h = FINITE_DIFFERENCE_STEP * inverseSamplingSpacing[ e ];
+          System.arraycopy( x, 0, xStep, 0, n );
+          xStep[ e ] += h;
+          forward.apply( xStep, fxStep );
+          for ( int d = 0; d < n; d++ )
+            jacobian[ d ][ e ] = ( fxStep[ d ] - fx[ d ] ) / h;
+        }
+
+        if ( !solveLinear( jacobian, residual, step ) )
+          return false;
+
+        final double stepLength = norm( step );
+        if ( stepLength > optimizerMaxStep )
+          for ( int d = 0; d < n; d++ )
+            step[ d ] *= optimizerMaxStep / stepLength;
+
+        // backtracking, in case the full step overshoots
+        boolean improved = false;
+        for ( int halving = 0; halving < 8 && !improved; halving++ )
+        {
+          for ( int d = 0; d < n; d++ )
+            xStep[ d ] = x[ d ] + step[ d ];
+          final double stepError = evaluate( xStep, fxStep );
+          if ( stepError < error )
+          {
+            System.arraycopy( xStep, 0, x, 0, n );
+            System.arraycopy( fxStep, 0, fx, 0, n );
+            error = stepError;
+            improved = true;
+          }
+          else
+          {
+            for ( int d = 0; d < n; d++ )
+              step[ d ] *= 0.5;
+          }
+        }
+
+        if ( !improved )
+          return false;
+      }
+
+      return error <= optimizerTolerance;
+    }
+
+    private double evaluate( final double[] position, final double[] mapped )
+    {
+      forward.apply( position, mapped );
+      double sq = 0.0;
+      for ( int d = 0; d < n; d++ )
+      {
+        final double diff = mapped[ d ] - target[ d ];
+        sq += diff * diff;
+      }
+      return Double.isNaN( sq ) ? Double.POSITIVE_INFINITY : Math.sqrt( sq );
+    }
+  }
+
+  private static double norm( final double[] vector )
+  {
+    double sq = 0.0;
+    for ( final double v : vector )
+      sq += v * v;
+    return Math.sqrt( sq );
+  }
+
+  /**
+   * Solves {@code a * x = b} by Gaussian elimination with partial pivoting;
+   * {@code a} is overwritten.
+   *
+   * @return false if {@code a} is singular
+   */
+  private static boolean solveLinear( final double[][] a, final double[] b, final double[] x )
+  {
+    final int n = b.length;
+    System.arraycopy( b, 0, x, 0, n );
+    for ( int col = 0; col < n; col++ )
+    {
+      int pivot = col;
+      for ( int row = col + 1; row < n; row++ )
+        if ( Math.abs( a[ row ][ col ] ) > Math.abs( a[ pivot ][ col ] ) )
+          pivot = row;
+
+      if ( !( Math.abs( a[ pivot ][ col ] ) > 1e-12 ) )
+        return false;
+
+      if ( pivot != col )
+      {
+        final double[] tmpRow = a[ pivot ];
+        a[ pivot ] = a[ col ];
+        a[ col ] = tmpRow;
+        final double tmp = x[ pivot ];
+        x[ pivot ] = x[ col ];
+        x[ col ] = tmp;
+      }
+
+      for ( int row = col + 1; row < n; row++ )
+      {
+        final double factor = a[ row ][ col ] / a[ col ][ col ];
+        for ( int c = col; c < n; c++ )
+          a[ row ][ c ] -= factor * a[ col ][ c ];
+        x[ row ] -= factor * x[ col ];
+      }
+    }
+
+    for ( int row = n - 1; row >= 0; row-- )
+    {
+      double sum = x[ row ];
+      for ( int c = row + 1; c < n; c++ )
+        sum -= a[ row ][ c ] * x[ c ];
+      x[ row ] = sum / a[ row ][ row ];
+    }
+    return true;
+  }
+
+  /**
+   * Thread safe counting of the processed samples; the
+   * {@link ProgressListener} is only notified from the calling thread.
+   */
+  private static final class Progress
   {
-    if ( listener == null )
-      return;
-    if ( percent <= lastReportedPercent[ 0 ] )
-      return;
-    lastReportedPercent[ 0 ] = percent;
-    listener.onProgress( percent );
+    private final ProgressListener listener;
+    private final AtomicLong processed = new AtomicLong();
+    private volatile long total;
+    private int lastReportedPercent = -1;
+
+    private Progress( final ProgressListener listener, final long total )
+    {
+      this.listener = listener;
+      this.total = Math.max( 1L, total );
+    }
+
+    private void setTotal( final long total )
+    {
+      this.total = Math.max( 1L, total );
+    }
+
+    private void add( final long numSamples )
+    {
+      processed.addAndGet( numSamples );
+    }
+
+    private boolean isCancelled()
+    {
+      return listener != null && listener.isCancelled();
+    }
+
+    private void report()
+    {
+      report( ( int ) Math.min( 99L, processed.get() * 100L / total ) );
+    }
+
+    private void done()
+    {
+      report( 100 );
+    }
+
+    private void report( final int percent )
+    {
+      if ( listener == null )
+        return;
+      if ( percent <= lastReportedPercent )
+        return;
+      lastReportedPercent = percent;
+      listener.onProgress( percent );
+    }
   }
 
   public static final class SampledInverseDisplacement
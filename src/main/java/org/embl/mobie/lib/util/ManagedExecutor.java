@@ -0,0 +1,198 @@
+/*-
+ * #%L
+ * Fiji viewer for MoBIE projects
+ * %%
+ * Copyright (C) 2018 - 2024 EMBL
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.embl.mobie.lib.util;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A named thread pool that can be resized while in use
+ * and that counts the tasks that it rejected or discarded.
+ *
+ * The threads are daemon threads and time out when idle,
+ * such that large pools do not hold on to threads.
+ */
+public class ManagedExecutor extends ThreadPoolExecutor
+{
+	private static final long KEEP_ALIVE_SECONDS = 10L;
+
+	private final String name;
+	private final AtomicLong numRejected;
+
+	private ManagedExecutor( String name, int numThreads, BlockingQueue< Runnable > workQueue, AtomicLong numRejected, RejectedExecutionHandler handler )
+	{
+		super( Math.max( 1, numThreads ), Math.max( 1, numThreads ), KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, workQueue, new NamedThreadFactory( name ), handler );
+		this.name = name;
+		this.numRejected = numRejected;
+		allowCoreThreadTimeOut( true );
+	}
+
+	/**
+	 * A pool that queues all submitted tasks.
+	 */
+	public static ManagedExecutor create( String name, int numThreads )
+	{
+		final AtomicLong numRejected = new AtomicLong();
+		final RejectedExecutionHandler abort = new AbortPolicy();
+		return new ManagedExecutor( name, numThreads, new LinkedBlockingQueue<>(), numRejected, ( runnable, executor ) -> {
+			numRejected.incrementAndGet(); // only happens after shutdown
+			abort.rejectedExecution( runnable, executor );
+		} );
+	}
+
+	/**
+	 * A pool that only keeps the latest {@code queueCapacityPerThread}
+	 * tasks per thread; if the queue is full, the oldest queued task is
+	 * discarded. The capacity follows the number of threads on {@link #resize}.
+	 */
+	public static ManagedExecutor createDiscardingOldest( String name, int numThreads, int queueCapacityPerThread )
+	{
+		final AtomicLong numRejected = new AtomicLong();
+		final RejectedExecutionHandler discardOldest = new DiscardOldestPolicy();
+		final CapacityQueue queue = new CapacityQueue( queueCapacityPerThread, Math.max( 1, numThreads ) );
+		return new ManagedExecutor( name, numThreads, queue, numRejected, ( runnable, executor ) -> {
+			numRejected.incrementAndGet();
+			discardOldest.rejectedExecution( runnable, executor );
+		} );
+	}
+
+	public String getName()
+	{
+		return name;
+	}
+
+	public synchronized void resize( int numThreads )
+	{
+		numThreads = Math.max( 1, numThreads );
+
+		// the core pool size must not exceed the maximum pool size
+		if ( numThreads > getMaximumPoolSize() )
+		{
+			setMaximumPoolSize( numThreads );
+			setCorePoolSize( numThreads );
+		}
+		else
+		{
+			setCorePoolSize( numThreads );
+			setMaximumPoolSize( numThreads );
+		}
+
+		if ( getQueue() instanceof CapacityQueue )
+			( ( CapacityQueue ) getQueue() ).setNumThreads( numThreads );
+	}
+
+	public int getNumThreads()
+	{
+		return getMaximumPoolSize();
+	}
+
+	public int getQueueDepth()
+	{
+		return getQueue().size();
+	}
+
+	/**
+	 * @return the number of tasks that were rejected or discarded
+	 */
+	public long getNumRejected()
+	{
+		return numRejected.get();
+	}
+
+	public String getMetrics()
+	{
+		return name + ": "
+				+ getNumThreads() + " thread(s), "
+				+ getActiveCount() + " active, "
+				+ getQueueDepth() + " queued, "
+				+ getCompletedTaskCount() + " completed, "
+				+ getNumRejected() + " rejected or discarded";
+	}
+
+	/**
+	 * A queue whose capacity is proportional to the number of threads
+	 * of its pool. {@link LinkedBlockingQueue} fixes its capacity on
+	 * construction, thus the capacity is checked here; the pool only
+	 * adds tasks via {@link #offer}.
+	 */
+	private static class CapacityQueue extends LinkedBlockingQueue< Runnable >
+	{
+		private final int capacityPerThread;
+		private volatile int capacity;
+
+		public CapacityQueue( int capacityPerThread, int numThreads )
+		{
+			this.capacityPerThread = Math.max( 1, capacityPerThread );
+			setNumThreads( numThreads );
+		}
+
+		public void setNumThreads( int numThreads )
+		{
+			capacity = capacityPerThread * numThreads;
+		}
+
+		@Override
+		public boolean offer( Runnable runnable )
+		{
+			if ( size() >= capacity ) return false;
+			return super.offer( runnable );
+		}
+
+		@Override
+		public int remainingCapacity()
+		{
+			return Math.max( 0, capacity - size() );
+		}
+	}
+
+	private static class NamedThreadFactory implements ThreadFactory
+	{
+		private final String name;
+		private final AtomicInteger threadCount = new AtomicInteger();
+
+		public NamedThreadFactory( String name )
+		{
+			this.name = name;
+		}
+
+		@Override
+		public Thread newThread( Runnable runnable )
+		{
+			final Thread thread = new Thread( runnable, "MoBIE " + name + " " + threadCount.incrementAndGet() );
+			thread.setDaemon( true );
+			return thread;
+		}
+	}
+}
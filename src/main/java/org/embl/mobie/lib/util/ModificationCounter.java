@@ -0,0 +1,68 @@
+/*-
+ * #%L
+ * Fiji viewer for MoBIE projects
+ * %%
+ * Copyright (C) 2018 - 2024 EMBL
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.embl.mobie.lib.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands out globally increasing modification stamps.
+ *
+ * Because the stamps are shared among all models, the maximum of the
+ * stamps of several models increases whenever any of them changes,
+ * which makes it a cheap way to detect changes of composite models.
+ */
+public class ModificationCounter
+{
+	private static final AtomicLong counter = new AtomicLong();
+	private static final AtomicLong numPublished = new AtomicLong();
+
+	public static long next()
+	{
+		return counter.incrementAndGet();
+	}
+
+	/**
+	 * Announces a modification; to be called after its stamp has been stored,
+	 * such that whoever sees the change of {@link #getNumPublished()}
+	 * also sees the new stamp.
+	 */
+	public static void publish()
+	{
+		numPublished.incrementAndGet();
+	}
+
+	/**
+	 * @return a number that changes with every {@link #publish()};
+	 * 		   as long as it does not change, no model has been modified
+	 */
+	public static long getNumPublished()
+	{
+		return numPublished.get();
+	}
+}
@@ -0,0 +1,71 @@
+/*-
+ * #%L
+ * Fiji viewer for MoBIE projects
+ * %%
+ * Copyright (C) 2018 - 2024 EMBL
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.embl.mobie.lib.util;
+
+import bdv.cache.SharedQueue;
+import net.imglib2.cache.queue.FetcherThreads;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * A {@link SharedQueue} whose number of fetcher threads can be changed
+ * while images are using it, by adding or shutting down fetcher threads
+ * that take their tasks from the same queue.
+ *
+ * The queue starts with a single fetcher thread and adds the others,
+ * thus it can shrink down to one thread.
+ */
+public class ResizableSharedQueue extends SharedQueue
+{
+	private final Deque< FetcherThreads > additionalThreads = new ArrayDeque<>();
+
+	public ResizableSharedQueue( int numFetcherThreads, int numPriorities )
+	{
+		super( 1, numPriorities );
+		resize( numFetcherThreads );
+	}
+
+	public synchronized void resize( int numFetcherThreads )
+	{
+		while ( getNumFetcherThreads() < numFetcherThreads )
+		{
+			final int index = getNumFetcherThreads();
+			additionalThreads.push( new FetcherThreads( queue, 1, i -> String.format( "mobie-fetcher-%d", index ) ) );
+		}
+
+		while ( getNumFetcherThreads() > numFetcherThreads && ! additionalThreads.isEmpty() )
+			additionalThreads.pop().shutdown();
+	}
+
+	public synchronized int getNumFetcherThreads()
+	{
+		return 1 + additionalThreads.size();
+	}
+}
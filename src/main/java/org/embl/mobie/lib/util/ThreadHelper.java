@@ -28,61 +28,78 @@
  */
 package org.embl.mobie.lib.util;
 
-import bdv.cache.SharedQueue;
+import ij.IJ;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.RejectedExecutionHandler;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
 
 public class ThreadHelper
 {
 	static { net.imagej.patcher.LegacyInjector.preinit(); }
 
-	private static int N_IO_THREADS = Runtime.getRuntime().availableProcessors() - 1;
+	private static final int N_DEFAULT_THREADS = Math.max( 1, Runtime.getRuntime().availableProcessors() - 1 );
 
-	private static final int N_THREADS = Runtime.getRuntime().availableProcessors() - 1;
+	private static int N_IO_THREADS = N_DEFAULT_THREADS;
 
-	public static ExecutorService ioExecutorService = Executors.newFixedThreadPool( N_IO_THREADS );
+	private static final int N_LISTENER_THREADS = 4;
 
 	public static final int NUM_PRIORITIES = 6; // https://imagesc.zulipchat.com/#narrow/stream/327326-BigDataViewer/topic/SharedQueue
 
-	public static final SharedQueue sharedQueue = new SharedQueue( N_IO_THREADS, NUM_PRIORITIES );
-
-	public static ExecutorService executorService = Executors.newFixedThreadPool( N_THREADS );
-
-	public static ExecutorService stitchedImageExecutorService;
-	static {
-		// queue that only keep the latest requests.
-		// use case: if a user zooms into a stitched image or adds a new channel
-		// we don't want to wait until all the "old" cells are loaded that
-		// have been requested already, but rather present the user with
-		// the newly requested data.
-		// idea taken from: https://stackoverflow.com/questions/53236911/executor-thread-pool-limit-queue-size-and-dequeue-oldest
-		// fixes: https://github.com/mobie/mobie-viewer-fiji/issues/901
-		RejectedExecutionHandler handler = new ThreadPoolExecutor.DiscardOldestPolicy();
-		final int poolSize = ThreadHelper.getNumIoThreads();
-		final LinkedBlockingQueue< Runnable > workQueue = new LinkedBlockingQueue<>( 2 * poolSize );
-		stitchedImageExecutorService = new ThreadPoolExecutor(poolSize, poolSize,
-				0L, TimeUnit.MILLISECONDS, workQueue, handler );
-	}
-
-	public static void resetIOThreads()
+	// for loading the cells of (volatile) images;
+	// resized in place, such that images that are already open use the new number of threads
+	public static final ResizableSharedQueue sharedQueue = new ResizableSharedQueue( N_IO_THREADS, NUM_PRIORITIES );
+
+	// for opening images and other I/O bound tasks
+	public static ManagedExecutor ioExecutorService = ManagedExecutor.create( "I/O", N_IO_THREADS );
+
+	// for CPU bound tasks
+	public static final ManagedExecutor executorService = ManagedExecutor.create( "compute", N_DEFAULT_THREADS );
+
+	// for notifying listeners, e.g. about selection changes
+	public static final ManagedExecutor listenerExecutorService = ManagedExecutor.create( "listener", N_LISTENER_THREADS );
+
+	// for laying out the text of annotation overlays, off the Swing thread
+	public static final ManagedExecutor overlayExecutorService = ManagedExecutor.create( "overlay", 1 );
+
+	// for computing the meshes of segments in the 3D viewer
+	public static final ManagedExecutor meshExecutorService = ManagedExecutor.create( "mesh", N_DEFAULT_THREADS );
+
+	// for fetching the tiles of stitched images;
+	// the queue only keeps the latest requests.
+	// use case: if a user zooms into a stitched image or adds a new channel
+	// we don't want to wait until all the "old" cells are loaded that
+	// have been requested already, but rather present the user with
+	// the newly requested data.
+	// idea taken from: https://stackoverflow.com/questions/53236911/executor-thread-pool-limit-queue-size-and-dequeue-oldest
+	// fixes: https://github.com/mobie/mobie-viewer-fiji/issues/901
+	// the queue keeps two requests per thread, also after resizing.
+	public static final ManagedExecutor stitchedImageExecutorService = ManagedExecutor.createDiscardingOldest( "tile fetch", N_IO_THREADS, 2 );
+
+	/**
+	 * Shuts down the I/O threads, interrupting running tasks,
+	 * and creates new ones for subsequent tasks.
+	 */
+	public static synchronized void resetIOThreads()
 	{
 		ioExecutorService.shutdownNow();
-		ioExecutorService = Executors.newFixedThreadPool( N_IO_THREADS );
+		ioExecutorService = ManagedExecutor.create( "I/O", N_IO_THREADS );
 	}
 
-	public static void setNumIoThreads( int numIoThreads )
+	/**
+	 * Resizes the I/O and tile fetch pools and the shared loading queue.
+	 */
+	public static synchronized void setNumIoThreads( int numIoThreads )
 	{
+		numIoThreads = Math.max( 1, numIoThreads );
+		if ( numIoThreads == N_IO_THREADS ) return;
+
 		N_IO_THREADS = numIoThreads;
-		ioExecutorService = Executors.newFixedThreadPool( N_IO_THREADS );
+		ioExecutorService.resize( N_IO_THREADS );
+		stitchedImageExecutorService.resize( N_IO_THREADS );
+		sharedQueue.resize( N_IO_THREADS );
 	}
 
 	public static int getNumIoThreads()
@@ -90,9 +107,54 @@ public class ThreadHelper
 		return N_IO_THREADS;
 	}
 
+	public static void setNumThreads( int numThreads )
+	{
+		executorService.resize( numThreads );
+	}
+
 	public static int getNumThreads()
 	{
-		return N_THREADS;
+		return executorService.getNumThreads();
+	}
+
+	public static void setNumTileFetchThreads( int numThreads )
+	{
+		stitchedImageExecutorService.resize( numThreads );
+	}
+
+	public static void setNumMeshThreads( int numThreads )
+	{
+		meshExecutorService.resize( numThreads );
+	}
+
+	/**
+	 * Applies the thread settings;
+	 * {@code null} values leave the respective pool unchanged.
+	 */
+	public static void configure( Integer numIoThreads, Integer numThreads, Integer numTileFetchThreads, Integer numMeshThreads )
+	{
+		if ( numIoThreads != null ) setNumIoThreads( numIoThreads );
+		if ( numThreads != null ) setNumThreads( numThreads );
+		if ( numTileFetchThreads != null ) setNumTileFetchThreads( numTileFetchThreads );
+		if ( numMeshThreads != null ) setNumMeshThreads( numMeshThreads );
+	}
+
+	public static List< ManagedExecutor > getExecutors()
+	{
+		return Arrays.asList(
+				ioExecutorService,
+				executorService,
+				stitchedImageExecutorService,
+				meshExecutorService,
+				listenerExecutorService,
+				overlayExecutorService );
+	}
+
+	public static void logMetrics()
+	{
+		for ( ManagedExecutor executor : getExecutors() )
+			IJ.log( executor.getMetrics() );
+		IJ.log( "image loading: " + sharedQueue.getNumFetcherThreads() + " thread(s)" );
 	}
 
 	public static void waitUntilFinished( List< Future< ? > > futures )
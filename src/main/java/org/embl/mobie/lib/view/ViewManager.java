@@ -38,6 +38,7 @@ import net.imglib2.type.numeric.ARGBType;
 import org.apache.commons.lang.ArrayUtils;
 import org.embl.mobie.MoBIE;
 import org.embl.mobie.lib.data.DataStore;
+import org.embl.mobie.lib.data.ImageCache;
 import org.embl.mobie.lib.annotation.AnnotatedRegion;
 import org.embl.mobie.lib.annotation.AnnotatedSegment;
 import org.embl.mobie.lib.annotation.Annotation;
@@ -303,10 +304,8 @@ public class ViewManager
 		final boolean viewerWasEmpty = currentDisplays.isEmpty();
 
 		// Init and transform the data of this view.
-		// Currently, data is reloaded every time a view is shown.
-		// This is a bit expensive, but simpler and has the
-		// advantage that one could change the data on disk
-		// and use MoBIE to interactively view changes
+		// Images that have been shown in previous views
+		// are reused from the {@code ImageCache}.
 		initData( view );
 
 		// set the viewer transform *after* initialising the data
@@ -428,7 +427,23 @@ public class ViewManager
 				{
 					final List< ? extends Image< ? > > images = DataStore.getImageList( transformation.getSources() );
 
+					final ImageCache.Key key = ImageCache.getKey( transformation, images );
+					final List< Image< ? > > cachedImages = ImageCache.acquire( key );
+					if ( cachedImages != null )
+					{
+						DataStore.putImages( cachedImages );
+						continue;
+					}
+
 					ImageTransformer.transformImages( transformation, images );
+
+					final List< Image< ? > > transformedImages = new ArrayList<>();
+					for ( Image< ? > image : images )
+					{
+						final String transformedName = ( ( ImageTransformation ) transformation ).getTransformedImageName( image.getName() );
+						transformedImages.add( DataStore.getImage( transformedName == null ? image.getName() : transformedName ) );
+					}
+					ImageCache.put( key, transformedImages );
 				}
 				else // not an ImageTransformation
 				{
@@ -439,6 +454,14 @@ public class ViewManager
 
 						List< ? extends Image< ? > > images = DataStore.getImageList( mergedGridTransformation.getSources() );
 
+						final ImageCache.Key key = ImageCache.getKey( transformation, images );
+						final List< Image< ? > > cachedImages = ImageCache.acquire( key );
+						if ( cachedImages != null )
+						{
+							DataStore.putImages( cachedImages );
+							continue;
+						}
+
 						// Fetch grid metadata image
 						Image< ? > metadataImage = ( mergedGridTransformation.metadataSource == null ) ? images.get( 0 ) : DataStore.getImage( mergedGridTransformation.metadataSource );
 
@@ -464,24 +487,37 @@ public class ViewManager
 							}
 
 							DataStore.addImage( annotatedStitchedImage );
+							ImageCache.put( key, Collections.singletonList( annotatedStitchedImage ) );
 						}
 						else
 						{
-							DataStore.addImage( new StitchedImage<>(
+							final StitchedImage< ?, ? > stitchedImage = new StitchedImage<>(
 									( List ) images,
 									( Image ) metadataImage,
 									mergedGridTransformation.positions,
 									mergedGridTransformation.getName(),
-									mergedGridTransformation.margin )
-							 );
+									mergedGridTransformation.margin );
+							DataStore.addImage( stitchedImage );
+							ImageCache.put( key, Collections.singletonList( stitchedImage ) );
 						}
 					}
 					else if ( transformation instanceof GridTransformation )
 					{
+						final List< ? extends Image< ? > > images = DataStore.getImageList( transformation.getSources() );
+
+						final ImageCache.Key key = ImageCache.getKey( transformation, images );
+						final List< Image< ? > > cachedImages = ImageCache.acquire( key );
+						if ( cachedImages != null )
+						{
+							DataStore.putImages( cachedImages );
+							continue;
+						}
+
 						final List< ? extends Image< ? > > translatedImages =
 								GridTransformation.translateImages( ( GridTransformation ) transformation );
 
 						DataStore.putImages( translatedImages );
+						ImageCache.put( key, translatedImages );
 					}
 					else
 					{
@@ -568,6 +604,7 @@ public class ViewManager
 		{
 			for ( String name : display.getSources() )
 				display.images().add( ( Image ) DataStore.getImage( name ) );
+			ImageCache.retain( display.images() );
 			showImageDisplay( ( ImageDisplay ) display );
 		}
 		else if ( display instanceof AbstractAnnotationDisplay )
@@ -580,6 +617,7 @@ public class ViewManager
 				final Image< ? > image = DataStore.getImage( name );
 				annotationDisplay.images().add( ( Image< AnnotationType< A > > ) image );
 			}
+			ImageCache.retain( annotationDisplay.images() );
 
 			// This needs to happen before(!) any of the label images is accessed,
 			// because otherwise the tables are loaded before the listening
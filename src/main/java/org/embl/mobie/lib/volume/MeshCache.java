@@ -0,0 +1,100 @@
+/*-
+ * #%L
+ * Fiji viewer for MoBIE projects
+ * %%
+ * Copyright (C) 2018 - 2024 EMBL
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.embl.mobie.lib.volume;
+
+import org.embl.mobie.lib.io.DiskCache;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * Persists segment meshes on disk, such that they do not have to
+ * be recomputed from the label image in the next session.
+ *
+ * The meshes are stored as one small binary file per mesh,
+ * named by a hash of the key. The key should contain everything
+ * the mesh depends on, e.g. the label image and its modification stamp,
+ * time point, label, resolution level and smoothing.
+ */
+public class MeshCache
+{
+	private static final int MAGIC = 0x4d455348; // "MESH"
+	private static final int VERSION = 1;
+
+	private static final DiskCache diskCache = new DiskCache( "meshes", ".mesh", 2L * 1024 * 1024 * 1024 );
+
+	public static DiskCache diskCache()
+	{
+		return diskCache;
+	}
+
+	/**
+	 * @return the mesh vertices (x,y,z of each vertex of each triangle),
+	 * 		   or null if the mesh is not cached
+	 */
+	public static float[] get( String key )
+	{
+		final File file = diskCache.get( key );
+		if ( file == null ) return null;
+
+		try ( DataInputStream in = new DataInputStream( new BufferedInputStream( Files.newInputStream( file.toPath() ) ) ) )
+		{
+			if ( in.readInt() != MAGIC || in.readInt() != VERSION )
+				return null;
+
+			final float[] mesh = new float[ in.readInt() ];
+			for ( int i = 0; i < mesh.length; i++ )
+				mesh[ i ] = in.readFloat();
+			return mesh;
+		}
+		catch ( IOException e )
+		{
+			// e.g. a truncated file; the mesh will be recomputed
+			return null;
+		}
+	}
+
+	public static void put( String key, float[] mesh )
+	{
+		diskCache.put( key, outputStream ->
+		{
+			final DataOutputStream out = new DataOutputStream( outputStream );
+			out.writeInt( MAGIC );
+			out.writeInt( VERSION );
+			out.writeInt( mesh.length );
+			for ( float value : mesh )
+				out.writeFloat( value );
+			out.flush();
+		} );
+	}
+}
@@ -45,6 +45,9 @@ import net.imglib2.algorithm.neighborhood.DiamondShape;
 import net.imglib2.realtransform.AffineTransform3D;
 import net.imglib2.util.Intervals;
 import net.imglib2.view.Views;
+import org.embl.mobie.lib.image.Image;
+import org.embl.mobie.lib.io.DiskCache;
+import org.embl.mobie.lib.io.ImageDataInfo;
 import org.embl.mobie.lib.util.MoBIEHelper;
 import org.jogamp.vecmath.Point3f;
 import sc.fiji.bdvpg.sourceandconverter.SourceAndConverterHelper;
@@ -52,6 +55,9 @@ import sc.fiji.bdvpg.sourceandconverter.SourceAndConverterHelper;
 import javax.annotation.Nullable;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
 
 public class MeshCreator< S extends Segment >
 {
@@ -64,10 +70,8 @@ public class MeshCreator< S extends Segment >
 		this.maxNumSegmentVoxels = maxNumSegmentVoxels;
 	}
 
-	private float[] createMesh( S segment, @Nullable double[] targetVoxelSpacing, Source< AnnotationType< S > > source )
+	private float[] createMesh( S segment, int renderingLevel, Source< AnnotationType< S > > source, BooleanSupplier isCanceled )
 	{
-		int renderingLevel = getLevel( segment, source, targetVoxelSpacing );
-
 		final AffineTransform3D sourceTransform = new AffineTransform3D();
 		final int timePoint = segment.timePoint() == null ? 0 : segment.timePoint();
 		source.getSourceTransform( timePoint, renderingLevel, sourceTransform );
@@ -126,10 +130,15 @@ public class MeshCreator< S extends Segment >
 				voxelBounds,
 				new AffineTransform3D(),
 				new int[]{ 1, 1, 1 },
-				() -> false );
+				isCanceled );
 
 		final float[] mesh = meshExtractor.extractMesh( new AnnotationType( segment ) );
 
+		// the mesh extraction stops early if canceled,
+		// thus the mesh may be incomplete
+		if ( isCanceled.getAsBoolean() )
+			throw new CancellationException();
+
 		if ( mesh.length == 0 )
 			throw new RuntimeException("The mesh has zero vertices.");
 
@@ -146,18 +155,98 @@ public class MeshCreator< S extends Segment >
 
 	public CustomTriangleMesh createSmoothCustomTriangleMesh( S segment, @Nullable double[] voxelSpacing, boolean recomputeMesh, Source< AnnotationType< S > > source )
 	{
-		CustomTriangleMesh triangleMesh = createCustomTriangleMesh( segment, voxelSpacing, recomputeMesh, source );
+		return createSmoothCustomTriangleMesh( segment, voxelSpacing, recomputeMesh, source, null, () -> false );
+	}
+
+	/**
+	 * The smoothed meshes are cached on disk, if the location of
+	 * the label image data can be determined.
+	 *
+	 * @param isCanceled
+	 * 			is polled during the mesh creation; if it returns true,
+	 * 			a {@code CancellationException} is thrown
+	 * 			and the segment's mesh is not modified
+	 */
+	public CustomTriangleMesh createSmoothCustomTriangleMesh( S segment, @Nullable double[] voxelSpacing, boolean recomputeMesh, Image< AnnotationType< S > > image, BooleanSupplier isCanceled )
+	{
+		return createSmoothCustomTriangleMesh( segment, voxelSpacing, recomputeMesh, image.getSourcePair().getSource(), image, isCanceled );
+	}
+
+	private CustomTriangleMesh createSmoothCustomTriangleMesh( S segment, @Nullable double[] voxelSpacing, boolean recomputeMesh, Source< AnnotationType< S > > source, @Nullable Image< ? > image, BooleanSupplier isCanceled )
+	{
+		final int level;
+		try
+		{
+			level = getLevel( segment, source, voxelSpacing );
+		}
+		catch ( Exception e )
+		{
+			throw new RuntimeException( "Could not create mesh for segment " + segment.label() + " at time point " + segment.timePoint() );
+		}
+
+		final String cacheKey = getCacheKey( segment, level, source, image );
+		if ( cacheKey != null && ! recomputeMesh )
+		{
+			final float[] cachedMesh = MeshCache.get( cacheKey );
+			if ( cachedMesh != null )
+				return asCustomTriangleMesh( cachedMesh );
+		}
+
+		CustomTriangleMesh triangleMesh = createCustomTriangleMesh( segment, level, recomputeMesh, source, isCanceled );
+		if ( isCanceled.getAsBoolean() )
+			throw new CancellationException();
 		MeshEditor.smooth2( triangleMesh, meshSmoothingIterations );
+
+		if ( cacheKey != null )
+			MeshCache.put( cacheKey, asFloats( triangleMesh.getMesh() ) );
+
 		return triangleMesh;
 	}
 
-	private CustomTriangleMesh createCustomTriangleMesh( S segment, @Nullable double[] voxelSpacing, boolean recomputeMesh, Source< AnnotationType< S > >  source )
+	/**
+	 * @return a key that identifies the smoothed mesh of the segment,
+	 * 		   or null if the mesh should not be cached, e.g. because
+	 * 		   the label image data is not a local file
+	 */
+	@Nullable
+	private String getCacheKey( S segment, int level, Source< AnnotationType< S > > source, @Nullable Image< ? > image )
+	{
+		if ( image == null || ! MeshCache.diskCache().isEnabled() )
+			return null;
+
+		final ImageDataInfo imageDataInfo = MoBIEHelper.fetchImageDataInfo( image );
+		final String uri = imageDataInfo.uri;
+		final String modificationStamp = DiskCache.getModificationStamp( uri );
+		if ( modificationStamp == null )
+			return null;
+
+		final int timePoint = segment.timePoint() == null ? 0 : segment.timePoint();
+		final AffineTransform3D sourceTransform = new AffineTransform3D();
+		source.getSourceTransform( timePoint, level, sourceTransform );
+
+		// the mesh is in real space, thus it depends on the source transform
+		return String.join( ";",
+				uri,
+				String.valueOf( imageDataInfo.datasetId ),
+				modificationStamp,
+				String.valueOf( timePoint ),
+				String.valueOf( segment.label() ),
+				String.valueOf( level ),
+				String.valueOf( meshSmoothingIterations ),
+				Arrays.toString( sourceTransform.getRowPackedCopy() ) );
+	}
+
+	private CustomTriangleMesh createCustomTriangleMesh( S segment, int level, boolean recomputeMesh, Source< AnnotationType< S > >  source, BooleanSupplier isCanceled )
 	{
 		if ( segment.mesh() == null || recomputeMesh )
 		{
 			try
 			{
-				segment.setMesh( createMesh( segment, voxelSpacing, source ) );
+				segment.setMesh( createMesh( segment, level, source, isCanceled ) );
+			}
+			catch ( CancellationException e )
+			{
+				throw e;
 			}
 			catch ( Exception e )
 			{
@@ -174,7 +263,7 @@ public class MeshCreator< S extends Segment >
 
 	private static CustomTriangleMesh asCustomTriangleMesh( final float[] meshCoordinates )
 	{
-		final ArrayList< Point3f > points = new ArrayList<>();
+		final ArrayList< Point3f > points = new ArrayList<>( meshCoordinates.length / 3 );
 
 		for ( int i = 0; i < meshCoordinates.length; )
 		{
@@ -189,6 +278,19 @@ public class MeshCreator< S extends Segment >
 		return mesh;
 	}
 
+	private static float[] asFloats( final List< Point3f > points )
+	{
+		final float[] meshCoordinates = new float[ 3 * points.size() ];
+		int i = 0;
+		for ( Point3f point : points )
+		{
+			meshCoordinates[ i++ ] = point.x;
+			meshCoordinates[ i++ ] = point.y;
+			meshCoordinates[ i++ ] = point.z;
+		}
+		return meshCoordinates;
+	}
+
 	private Integer getLevel( S segment, Source< ? > labelSource, @Nullable double[] voxelSpacing )
 	{
 		if ( voxelSpacing != null ) // user determined resolution
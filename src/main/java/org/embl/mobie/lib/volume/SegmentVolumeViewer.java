@@ -28,8 +28,8 @@
  */
 package org.embl.mobie.lib.volume;
 
-import bdv.viewer.Source;
 import customnode.CustomTriangleMesh;
+import ij.IJ;
 import ij3d.Content;
 import ij3d.Image3DUniverse;
 import ij3d.ImageWindow3D;
@@ -44,6 +44,7 @@ import org.embl.mobie.lib.image.Image;
 import org.embl.mobie.lib.select.SelectionListener;
 import org.embl.mobie.lib.select.SelectionModel;
 import org.embl.mobie.lib.source.AnnotationType;
+import org.embl.mobie.lib.util.ThreadHelper;
 import net.imglib2.type.numeric.ARGBType;
 import org.jogamp.java3d.Bounds;
 import org.jogamp.java3d.View;
@@ -57,7 +58,10 @@ import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class SegmentVolumeViewer< S extends Segment > implements ColoringListener, SelectionListener< S >
 {
@@ -69,6 +73,8 @@ public class SegmentVolumeViewer< S extends Segment > implements ColoringListene
 	private final UniverseManager universeManager;
 	private ConcurrentHashMap< S, Content > segmentToContent;
 	private ConcurrentHashMap< Content, S > contentToSegment;
+	private final ConcurrentHashMap< S, MeshTask > pendingMeshes = new ConcurrentHashMap<>(); // meshes that are being computed
+	private final AtomicInteger numRequestedMeshes = new AtomicInteger(); // since there were no pending meshes
 	private double transparency;
 	private int meshSmoothingIterations;
 	private int segmentFocusAnimationDurationMillis;
@@ -166,12 +172,19 @@ public class SegmentVolumeViewer< S extends Segment > implements ColoringListene
 		}).start();
 	}
 
-	private void removeUnselectedSegments( )
+	// Synchronized like addSegmentMeshToUniverse, such that a mesh
+	// task either is canceled before it adds its mesh or has added it
+	// already, in which case the mesh is removed here.
+	private synchronized void removeUnselectedSegments( )
 	{
 		final Set< S > selectedSegments = selectionModel.getSelected();
 		final Set< S > currentSegments = segmentToContent.keySet();
 		final Set< S > remove = new HashSet<>();
 
+		for ( S segment : pendingMeshes.keySet() )
+			if ( ! selectedSegments.contains( segment ) )
+				cancelMesh( segment );
+
 		for ( S segment : currentSegments )
 			if ( ! selectedSegments.contains( segment ) )
 				remove.add( segment );
@@ -188,28 +201,128 @@ public class SegmentVolumeViewer< S extends Segment > implements ColoringListene
 		{
 			if ( segment.timePoint() == null || segment.timePoint() == currentTimePoint )
 			{
-				if ( recomputeMeshes ) removeSegment( segment );
+				if ( recomputeMeshes )
+				{
+					cancelMesh( segment );
+					removeSegment( segment );
+				}
 
-				if ( ! segmentToContent.containsKey( segment ) )
+				if ( ! segmentToContent.containsKey( segment ) && ! pendingMeshes.containsKey( segment ) )
 				{
-					final Source< AnnotationType< S > > source = getSource( segment );
-					final CustomTriangleMesh mesh = meshCreator.createSmoothCustomTriangleMesh( segment, voxelSpacing, recomputeMeshes, source );
-					mesh.setColor( getColor3f( segment ) );
-					addSegmentMeshToUniverse( segment, mesh );
+					submitMesh( segment, recomputeMeshes );
 				}
 			}
 			else // segment is of another time point
 			{
+				cancelMesh( segment );
 				removeSegment( segment );
 			}
 		}
 	}
 
-	private Source< AnnotationType< S > > getSource( S segment )
+	private void submitMesh( S segment, boolean recomputeMesh )
+	{
+		final MeshTask meshTask = new MeshTask( segment, recomputeMesh );
+		pendingMeshes.put( segment, meshTask );
+		numRequestedMeshes.incrementAndGet();
+		meshTask.future = ThreadHelper.meshExecutorService.submit( meshTask );
+		reportProgress();
+	}
+
+	private void cancelMesh( S segment )
+	{
+		final MeshTask meshTask = pendingMeshes.remove( segment );
+		if ( meshTask == null ) return;
+		meshTask.cancel();
+		reportProgress();
+	}
+
+	private synchronized void cancelMeshes()
+	{
+		for ( S segment : pendingMeshes.keySet() )
+			cancelMesh( segment );
+	}
+
+	private void reportProgress()
+	{
+		final int numPending = pendingMeshes.size();
+		if ( numPending == 0 )
+		{
+			numRequestedMeshes.set( 0 );
+			IJ.showStatus( "" );
+			IJ.showProgress( 1.0 );
+			return;
+		}
+
+		final int numRequested = numRequestedMeshes.get();
+		final int numDone = Math.max( 0, numRequested - numPending );
+		IJ.showStatus( "3D View: Computed " + numDone + "/" + numRequested + " meshes..." );
+		IJ.showProgress( numDone, numRequested );
+	}
+
+	/**
+	 * Computes the mesh of one segment and adds it to the universe,
+	 * unless it has been canceled in the meantime, e.g. because
+	 * the segment is not selected anymore.
+	 */
+	private class MeshTask implements Runnable
+	{
+		private final S segment;
+		private final boolean recomputeMesh;
+		private volatile boolean canceled;
+		private volatile Future< ? > future;
+
+		public MeshTask( S segment, boolean recomputeMesh )
+		{
+			this.segment = segment;
+			this.recomputeMesh = recomputeMesh;
+		}
+
+		public void cancel()
+		{
+			canceled = true;
+			if ( future != null )
+				future.cancel( false ); // the mesh creation polls canceled
+		}
+
+		@Override
+		public void run()
+		{
+			try
+			{
+				if ( canceled ) return;
+
+				final Image< AnnotationType< S > > image = getImage( segment );
+				final CustomTriangleMesh mesh = meshCreator.createSmoothCustomTriangleMesh( segment, voxelSpacing, recomputeMesh, image, () -> canceled );
+				mesh.setColor( getColor3f( segment ) );
+
+				synchronized ( SegmentVolumeViewer.this )
+				{
+					if ( canceled || universe == null ) return;
+					addSegmentMeshToUniverse( segment, mesh );
+				}
+			}
+			catch ( CancellationException e )
+			{
+				// the segment is not needed anymore
+			}
+			catch ( Exception e )
+			{
+				IJ.log( "[ERROR] 3D View: " + e.getMessage() );
+			}
+			finally
+			{
+				pendingMeshes.remove( segment, this );
+				reportProgress();
+			}
+		}
+	}
+
+	private Image< AnnotationType< S > > getImage( S segment )
 	{
 		for ( Image< AnnotationType< S > > image : images )
 			if ( image.getName().equals( segment.imageId() ) )
-				return image.getSourcePair().getSource();
+				return image;
 
 		throw new UnsupportedOperationException( "An image segment from " + segment.imageId() + " did not have a corresponding image source."  );
 	}
@@ -217,7 +330,8 @@ public class SegmentVolumeViewer< S extends Segment > implements ColoringListene
 	private synchronized void removeSegment( S segment )
 	{
 		final Content content = segmentToContent.get( segment );
-		universe.removeContent( content.getName() );
+		if ( content == null ) return; // not shown (yet)
+		if ( universe != null ) universe.removeContent( content.getName() );
 		segmentToContent.remove( segment );
 		contentToSegment.remove( content );
 	}
@@ -234,6 +348,7 @@ public class SegmentVolumeViewer< S extends Segment > implements ColoringListene
 				{
 					public void windowClosing( WindowEvent ev )
 					{
+						cancelMeshes();
 						window = null;
 						universe = null;
 						segmentToContent.clear();
@@ -270,8 +385,10 @@ public class SegmentVolumeViewer< S extends Segment > implements ColoringListene
 		this.showSegments = b;
 	}
 
-	private void removeSegments()
+	private synchronized void removeSegments()
 	{
+		cancelMeshes();
+
 		final Set< S > segments = selectionModel.getSelected();
 
 		for ( S segment : segments )
@@ -400,6 +517,8 @@ public class SegmentVolumeViewer< S extends Segment > implements ColoringListene
 			@Override
 			public void universeClosed()
 			{
+				cancelMeshes();
+
 				for ( VisibilityListener listener : listeners )
 					listener.visibility( false );
 
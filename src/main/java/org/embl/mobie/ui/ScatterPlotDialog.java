@@ -16,6 +16,7 @@ public class ScatterPlotDialog
     private JTextField aspectRatio;
     private JTextField dotSize;
     private JCheckBox allTimePoints;
+    private JCheckBox colorByDensity;
     private boolean isOkPressed;
 
     public ScatterPlotDialog( List< String > columnNames, ScatterPlotSettings settings )
@@ -41,6 +42,8 @@ public class ScatterPlotDialog
 
         addDotSizeField( dialog, settings.dotSize );
 
+        addColorByDensityCheckbox( dialog, settings.colorByDensity );
+
         addOKCancelButton( dialog );
 
         //dialog.setPreferredSize( new Dimension( 250, 200 ) );
@@ -58,6 +61,7 @@ public class ScatterPlotDialog
             settings.selectedColumns[ 0 ] = (String) xColumnComboBox.getSelectedItem();
             settings.selectedColumns[ 1 ] = (String) yColumnComboBox.getSelectedItem();
             settings.showAllTimepoints = allTimePoints.isSelected();
+            settings.colorByDensity = colorByDensity.isSelected();
         }
 
         return isOkPressed;
@@ -135,6 +139,16 @@ public class ScatterPlotDialog
         dialog.add( panel );
     }
 
+    private void addColorByDensityCheckbox( JDialog dialog, boolean colorByDensity )
+    {
+        JPanel panel = SwingHelper.horizontalFlowLayoutPanel();
+        this.colorByDensity = new JCheckBox();
+        this.colorByDensity.setSelected( colorByDensity );
+        panel.add( new JLabel("Color by Density:  ") );
+        panel.add( this.colorByDensity );
+        dialog.add( panel );
+    }
+
     public ScatterPlotSettings getSettings()
     {
         return settings;
@@ -0,0 +1,135 @@
+/*-
+ * #%L
+ * Fiji viewer for MoBIE projects
+ * %%
+ * Copyright (C) 2018 - 2024 EMBL
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package develop;
+
+import org.embl.mobie.lib.table.columns.ColumnNames;
+import org.embl.mobie.lib.table.saw.TableSawAnnotatedSpot;
+import org.embl.mobie.lib.table.saw.TableSawAnnotatedSpotCreator;
+import org.embl.mobie.lib.table.saw.TableSawAnnotationTableModel;
+import tech.tablesaw.api.FloatColumn;
+import tech.tablesaw.api.IntColumn;
+import tech.tablesaw.api.Table;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+public class BenchmarkAnnotatedSpotMemory
+{
+	// per row objects, as the spots were stored before
+	// the introduction of the AnnotatedSpotColumns
+	static class RowSpot
+	{
+		final Object model;
+		final int rowIndex;
+		final int label;
+		final int timePoint;
+		final String source;
+		final float[] position;
+
+		RowSpot( Object model, int rowIndex, int label, int timePoint, String source, float[] position )
+		{
+			this.model = model;
+			this.rowIndex = rowIndex;
+			this.label = label;
+			this.timePoint = timePoint;
+			this.source = source;
+			this.position = position;
+		}
+	}
+
+	public static void main( String[] args )
+	{
+		final int numSpots = args.length > 0 ? Integer.parseInt( args[ 0 ] ) : 10_000_000;
+
+		final Random random = new Random( 42 );
+		final int[] ids = new int[ numSpots ];
+		final float[] xs = new float[ numSpots ];
+		final float[] ys = new float[ numSpots ];
+		final float[] zs = new float[ numSpots ];
+		for ( int i = 0; i < numSpots; i++ )
+		{
+			ids[ i ] = i + 1;
+			xs[ i ] = 1000 * random.nextFloat();
+			ys[ i ] = 1000 * random.nextFloat();
+			zs[ i ] = 100 * random.nextFloat();
+		}
+
+		// per row objects
+		long memory = usedMemory();
+		long start = System.currentTimeMillis();
+		Table table = createTable( ids, xs, ys, zs );
+		final ArrayList< RowSpot > rowSpots = new ArrayList<>( numSpots );
+		for ( int rowIndex = 0; rowIndex < numSpots; rowIndex++ )
+		{
+			final float[] position = new float[]{
+					( ( Number ) table.get( rowIndex, 1 ) ).floatValue(),
+					( ( Number ) table.get( rowIndex, 2 ) ).floatValue(),
+					( ( Number ) table.get( rowIndex, 3 ) ).floatValue() };
+			final int label = ( ( Number ) table.get( rowIndex, 0 ) ).intValue();
+			rowSpots.add( new RowSpot( table, rowIndex, label, 0, table.name(), position ) );
+		}
+		table.removeColumns( 1, 2, 3 );
+		System.out.println( "Per row objects: build [ms]: " + ( System.currentTimeMillis() - start ) + ", memory [MB]: " + ( usedMemory() - memory ) / 1_000_000 );
+		System.out.println( "Spots: " + rowSpots.size() + ", columns: " + table.columnCount() );
+		rowSpots.clear();
+		table = null;
+
+		// columnar model
+		memory = usedMemory();
+		start = System.currentTimeMillis();
+		table = createTable( ids, xs, ys, zs );
+		final TableSawAnnotationTableModel< TableSawAnnotatedSpot > tableModel =
+				new TableSawAnnotationTableModel<>( "spots", new TableSawAnnotatedSpotCreator( table ), null, null, table );
+		System.out.println( "Columnar model: build [ms]: " + ( System.currentTimeMillis() - start ) + ", memory [MB]: " + ( usedMemory() - memory ) / 1_000_000 );
+
+		// throughput of position access
+		start = System.currentTimeMillis();
+		double sum = 0;
+		for ( TableSawAnnotatedSpot spot : tableModel.annotations() )
+			sum += spot.getDoublePosition( 0 ) + spot.getDoublePosition( 1 ) + spot.getDoublePosition( 2 );
+		System.out.println( "Columnar model: position access [ms]: " + ( System.currentTimeMillis() - start ) + " (" + sum + ")" );
+	}
+
+	private static Table createTable( int[] ids, float[] xs, float[] ys, float[] zs )
+	{
+		return Table.create( "spots" ).addColumns(
+				IntColumn.create( ColumnNames.SPOT_ID, ids.clone() ),
+				FloatColumn.create( ColumnNames.SPOT_X, xs.clone() ),
+				FloatColumn.create( ColumnNames.SPOT_Y, ys.clone() ),
+				FloatColumn.create( ColumnNames.SPOT_Z, zs.clone() ) );
+	}
+
+	private static long usedMemory()
+	{
+		for ( int i = 0; i < 3; i++ )
+			System.gc();
+		final Runtime runtime = Runtime.getRuntime();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
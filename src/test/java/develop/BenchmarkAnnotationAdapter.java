@@ -0,0 +1,95 @@
+/*-
+ * #%L
+ * Fiji viewer for MoBIE projects
+ * %%
+ * Copyright (C) 2018 - 2024 EMBL
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package develop;
+
+import org.embl.mobie.lib.annotation.AnnotatedSegment;
+import org.embl.mobie.lib.annotation.DefaultAnnotationAdapter;
+import org.embl.mobie.lib.table.DefaultAnnData;
+import org.embl.mobie.lib.table.LazyAnnotatedSegmentTableModel;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+public class BenchmarkAnnotationAdapter
+{
+	public static void main( String[] args )
+	{
+		final String source = "labels";
+		final int numLabels = 1_000_000;
+		final int numVoxels = 10_000_000;
+		final int numIterations = 10;
+
+		final LazyAnnotatedSegmentTableModel tableModel = new LazyAnnotatedSegmentTableModel( source );
+		for ( int label = 1; label <= numLabels; label++ )
+			tableModel.createAnnotation( source, 0, label );
+
+		// one 2D slice of a label image
+		final Random random = new Random( 42 );
+		final int[] voxels = new int[ numVoxels ];
+		for ( int i = 0; i < numVoxels; i++ )
+			voxels[ i ] = random.nextInt( numLabels + 1 );
+
+		// previous implementation: string keys
+		final Map< String, AnnotatedSegment > stlToAnnotation = new HashMap<>();
+		for ( AnnotatedSegment annotation : tableModel.annotations() )
+			stlToAnnotation.put( annotation.source() + ";" + annotation.timePoint() + ";" + annotation.label(), annotation );
+
+		// current implementation: primitive keys
+		final DefaultAnnotationAdapter< AnnotatedSegment > adapter = new DefaultAnnotationAdapter<>( new DefaultAnnData<>( tableModel ) );
+		long start = System.currentTimeMillis();
+		adapter.init();
+		System.out.println( "Init primitive index [ms]: " + ( System.currentTimeMillis() - start ) );
+
+		for ( int iteration = 0; iteration < numIterations; iteration++ )
+		{
+			start = System.currentTimeMillis();
+			int found = 0;
+			for ( int i = 0; i < numVoxels; i++ )
+			{
+				final int label = voxels[ i ];
+				if ( label == 0 ) continue;
+				if ( stlToAnnotation.get( source + ";" + 0 + ";" + label ) != null )
+					found++;
+			}
+			final long stringKeys = System.currentTimeMillis() - start;
+
+			start = System.currentTimeMillis();
+			int found2 = 0;
+			for ( int i = 0; i < numVoxels; i++ )
+			{
+				if ( adapter.getAnnotation( source, 0, voxels[ i ], true ) != null )
+					found2++;
+			}
+			final long primitiveKeys = System.currentTimeMillis() - start;
+
+			System.out.println( "Iteration #" + iteration + ": string keys [ms]: " + stringKeys + ", primitive keys [ms]: " + primitiveKeys + " (" + found + ", " + found2 + ")" );
+		}
+	}
+}
@@ -28,40 +28,112 @@
  */
 package develop;
 
+import org.embl.mobie.lib.table.saw.ChunkedTableReader;
+import org.embl.mobie.lib.table.saw.TableOpener;
+import org.embl.mobie.lib.table.saw.TableSchema;
 import org.embl.mobie.lib.util.ThreadHelper;
 import tech.tablesaw.api.Table;
-import tech.tablesaw.io.csv.CsvReadOptions;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
 import java.util.ArrayList;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.Random;
 
+/**
+ * Compares reading a large segment table sequentially
+ * with reading it in concurrently parsed chunks,
+ * without and with a cached table schema.
+ *
+ * Pass the path of a table to benchmark it;
+ * otherwise, a synthetic segment table is written to a temporary file.
+ */
 public class BenchmarkMultithreadedTableSawTableLoading
 {
 	public static void main( String[] args ) throws IOException
 	{
-		long start;
+		final File file = args.length > 0 ? new File( args[ 0 ] ) : createSegmentTable( 2_000_000 );
+		final int numRepetitions = 5;
+
+		// do not touch the schemas of the user
+		TableSchema.diskCache().setDirectory( Files.createTempDirectory( "table-schemas" ).toFile() );
+
+		System.out.println( "Table: " + file + " (" + file.length() / ( 1024 * 1024 ) + " MB)" );
+		System.out.println( "Threads: " + ThreadHelper.getNumThreads() );
+
+		// warm up
+		open( file, false );
+		open( file, true );
+
+		final ArrayList< Long > sequential = new ArrayList<>();
+		final ArrayList< Long > inferred = new ArrayList<>();
+		final ArrayList< Long > cached = new ArrayList<>();
+		Table reference = null;
+		Table table = null;
+		for ( int i = 0; i < numRepetitions; i++ )
+		{
+			long start = System.currentTimeMillis();
+			reference = open( file, false );
+			sequential.add( System.currentTimeMillis() - start );
+
+			TableSchema.diskCache().clear();
+			start = System.currentTimeMillis();
+			open( file, true );
+			inferred.add( System.currentTimeMillis() - start );
+
+			start = System.currentTimeMillis();
+			table = open( file, true );
+			cached.add( System.currentTimeMillis() - start );
+		}
+
+		System.out.println( "Sequential [ms]: " + average( sequential ) );
+		System.out.println( "Chunks, inferring the types [ms]: " + average( inferred ) );
+		System.out.println( "Chunks, cached types [ms]: " + average( cached ) );
+		System.out.println( "Rows: " + reference.rowCount() + " vs. " + table.rowCount() );
+		System.out.println( "Columns: " + reference.columnNames().equals( table.columnNames() ) );
+		for ( int c = 0; c < reference.columnCount(); c++ )
+			if ( ! reference.column( c ).type().equals( table.column( c ).type() ) )
+				System.out.println( "Column " + reference.column( c ).name() + ": " + reference.column( c ).type() + " vs. " + table.column( c ).type() );
 
-		Table.read().usingOptions( CsvReadOptions.builderFromString( "aaa\tbbb" ).separator( '\t' ).missingValueIndicator( "na", "none", "nan" ) );
+		ThreadHelper.executorService.shutdown();
+	}
+
+	private static Table open( File file, boolean chunked )
+	{
+		ChunkedTableReader.setEnabled( chunked );
+		ChunkedTableReader.setMinFileSize( 0 );
+		return TableOpener.open( file.getAbsolutePath() );
+	}
+
+	private static double average( ArrayList< Long > durations )
+	{
+		return durations.stream().mapToLong( x -> x ).summaryStatistics().getAverage();
+	}
+
+	private static File createSegmentTable( int numRows ) throws IOException
+	{
+		final File file = File.createTempFile( "segments", ".tsv" );
+		file.deleteOnExit();
 
-		final ArrayList< Future< ? > > futures = ThreadHelper.getFutures();
-		final ExecutorService ioExecutorService = Executors.newFixedThreadPool( 2 );
-		start = System.currentTimeMillis();
-		int n = 2;
-		for ( int i = 0; i < n; i++ )
+		final Random random = new Random( 42 );
+		try ( PrintWriter writer = new PrintWriter( file ) )
 		{
-			futures.add(
-				ioExecutorService.submit( () ->
-					{
-						CsvReadOptions.Builder builder = CsvReadOptions.builder( new File( "/Users/tischer/Desktop/default_regions.tsv" ) ).separator( '\t' ).missingValueIndicator( "na", "none", "nan" );
-						Table.read().usingOptions( builder );
-					}
-			) );
+			writer.println( "label_id\ttimepoint\tanchor_x\tanchor_y\tanchor_z\tbb_min_x\tbb_min_y\tbb_min_z\tbb_max_x\tbb_max_y\tbb_max_z\tarea\tmean_intensity\tclass" );
+			for ( int row = 0; row < numRows; row++ )
+			{
+				final double x = 1000 * random.nextDouble();
+				final double y = 1000 * random.nextDouble();
+				final double z = 100 * random.nextDouble();
+				writer.println( ( row + 1 ) + "\t0\t"
+						+ x + "\t" + y + "\t" + z + "\t"
+						+ ( x - 5 ) + "\t" + ( y - 5 ) + "\t" + ( z - 2 ) + "\t"
+						+ ( x + 5 ) + "\t" + ( y + 5 ) + "\t" + ( z + 2 ) + "\t"
+						+ random.nextInt( 1000 ) + "\t"
+						+ ( random.nextInt( 100 ) == 0 ? "nan" : String.valueOf( 255 * random.nextDouble() ) ) + "\t"
+						+ ( random.nextBoolean() ? "nucleus" : "cell" ) );
+			}
 		}
-		ThreadHelper.waitUntilFinished( futures );
-		System.out.println("Build " + n + " tables [ms]: " + ( System.currentTimeMillis() - start ) );
+		return file;
 	}
 }
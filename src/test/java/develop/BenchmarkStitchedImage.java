@@ -0,0 +1,120 @@
+/*-
+ * #%L
+ * Fiji viewer for MoBIE projects
+ * %%
+ * Copyright (C) 2018 - 2024 EMBL
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package develop;
+
+import bdv.viewer.Source;
+import mpicbg.spim.data.sequence.FinalVoxelDimensions;
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.converter.Converters;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypes.ByteArray;
+import net.imglib2.realtransform.AffineTransform3D;
+import net.imglib2.roi.geom.GeomMasks;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.volatiles.VolatileUnsignedByteType;
+import net.imglib2.view.Views;
+import org.embl.mobie.lib.image.DefaultImage;
+import org.embl.mobie.lib.image.DefaultSourcePair;
+import org.embl.mobie.lib.image.Image;
+import org.embl.mobie.lib.image.StitchedImage;
+import org.embl.mobie.lib.source.RandomAccessibleIntervalMipmapSource;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class BenchmarkStitchedImage
+{
+	public static void main( String[] args )
+	{
+		final int numColumns = 100;
+		final int numRows = 100;
+		final int tileSize = 64;
+		final int numIterations = 10;
+
+		final List< Image< UnsignedByteType > > tiles = new ArrayList<>();
+		for ( int i = 0; i < numColumns * numRows; i++ )
+			tiles.add( createTile( "tile" + i, tileSize, i ) );
+
+		long start = System.currentTimeMillis();
+		final StitchedImage< UnsignedByteType, VolatileUnsignedByteType > stitchedImage =
+				new StitchedImage<>( tiles, tiles.get( 0 ), null, "stitched", 0.0 );
+		System.out.println( "Stitch " + tiles.size() + " tiles [ms]: " + ( System.currentTimeMillis() - start ) );
+
+		// the non-volatile source opens the tiles synchronously
+		final RandomAccessibleInterval< UnsignedByteType > stitched = stitchedImage.getSourcePair().getSource().getSource( 0, 0 );
+		start = System.currentTimeMillis();
+		long sum = 0;
+		for ( UnsignedByteType value : Views.flatIterable( Views.hyperSlice( stitched, 2, 0 ) ) )
+			sum += value.get();
+		System.out.println( "Open tiles and sum " + stitched.dimension( 0 ) + " x " + stitched.dimension( 1 ) + " pixels [ms]: " + ( System.currentTimeMillis() - start ) + "; sum = " + sum );
+
+		// render the volatile source, as BDV does
+		final Source< ? extends VolatileUnsignedByteType > volatileSource = ( Source ) stitchedImage.getSourcePair().getVolatileSource();
+		final RandomAccessibleInterval< ? extends VolatileUnsignedByteType > volatileStitched = volatileSource.getSource( 0, 0 );
+		final long numPixels = volatileStitched.dimension( 0 ) * volatileStitched.dimension( 1 );
+		for ( int iteration = 0; iteration < numIterations; iteration++ )
+		{
+			start = System.nanoTime();
+			long numValid = 0;
+			final Cursor< ? extends VolatileUnsignedByteType > cursor = Views.flatIterable( Views.hyperSlice( volatileStitched, 2, 0 ) ).cursor();
+			while ( cursor.hasNext() )
+				if ( cursor.next().isValid() )
+					numValid++;
+			final long nanos = System.nanoTime() - start;
+			System.out.println( "Render volatile [ms]: " + nanos / 1_000_000 + "; [ns / pixel]: " + ( 1.0 * nanos / numPixels ) + "; valid pixels: " + numValid + " / " + numPixels );
+		}
+	}
+
+	private static Image< UnsignedByteType > createTile( String name, int tileSize, int value )
+	{
+		final ArrayImg< UnsignedByteType, ByteArray > img = ArrayImgs.unsignedBytes( tileSize, tileSize, 1 );
+		for ( UnsignedByteType pixel : img )
+			pixel.set( value % 256 );
+
+		final RandomAccessibleInterval< VolatileUnsignedByteType > volatileImg = Converters.convert(
+				( RandomAccessibleInterval< UnsignedByteType > ) img,
+				( input, output ) -> {
+					output.get().set( input.get() );
+					output.setValid( true );
+				},
+				new VolatileUnsignedByteType() );
+
+		final AffineTransform3D[] mipmapTransforms = { new AffineTransform3D() };
+		final FinalVoxelDimensions voxelDimensions = new FinalVoxelDimensions( "pixel", 1, 1, 1 );
+		final RandomAccessibleIntervalMipmapSource< UnsignedByteType > source = new RandomAccessibleIntervalMipmapSource<>(
+				Collections.< RandomAccessibleInterval< UnsignedByteType > >singletonList( img ), new UnsignedByteType(), voxelDimensions, name, mipmapTransforms );
+		final RandomAccessibleIntervalMipmapSource< VolatileUnsignedByteType > volatileSource = new RandomAccessibleIntervalMipmapSource<>(
+				Collections.< RandomAccessibleInterval< VolatileUnsignedByteType > >singletonList( volatileImg ), new VolatileUnsignedByteType(), voxelDimensions, name, mipmapTransforms );
+
+		return new DefaultImage<>( name, new DefaultSourcePair<>( source, volatileSource ), GeomMasks.closedBox( new double[]{ -0.5, -0.5, -0.5 }, new double[]{ tileSize - 0.5, tileSize - 0.5, 0.5 } ) );
+	}
+}
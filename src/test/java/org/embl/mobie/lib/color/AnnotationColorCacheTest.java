@@ -0,0 +1,91 @@
+/*-
+ * #%L
+ * Fiji viewer for MoBIE projects
+ * %%
+ * Copyright (C) 2018 - 2024 EMBL
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.embl.mobie.lib.color;
+
+import org.embl.mobie.lib.table.saw.TableSawAnnotatedSegment;
+import org.embl.mobie.lib.table.saw.TableSawAnnotatedSegmentCreator;
+import org.embl.mobie.lib.table.saw.TableSawAnnotationTableModel;
+import org.junit.jupiter.api.Test;
+import tech.tablesaw.api.DoubleColumn;
+import tech.tablesaw.api.IntColumn;
+import tech.tablesaw.api.Table;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AnnotationColorCacheTest
+{
+	@Test
+	void editingOneTableKeepsTheColorsOfOthers()
+	{
+		final TableSawAnnotationTableModel< TableSawAnnotatedSegment > a = tableModel( "a" );
+		final TableSawAnnotationTableModel< TableSawAnnotatedSegment > b = tableModel( "b" );
+		final TableSawAnnotatedSegment segmentA = a.annotation( 1 );
+		final TableSawAnnotatedSegment segmentB = b.annotation( 1 );
+
+		final AnnotationColorCache< TableSawAnnotatedSegment > cache = new AnnotationColorCache<>();
+		cache.put( segmentA, 0xFF00FF00, cache.generation( segmentA ) );
+		cache.put( segmentB, 0xFFFF0000, cache.generation( segmentB ) );
+		assertEquals( 0xFF00FF00, cache.get( segmentA, cache.generation( segmentA ) ) );
+		assertEquals( 0xFFFF0000, cache.get( segmentB, cache.generation( segmentB ) ) );
+
+		segmentA.setNumber( "size", 10 );
+		cache.invalidateModifiedValues();
+		assertEquals( AnnotationColorCache.NOT_CACHED, cache.get( segmentA, cache.generation( segmentA ) ) );
+		assertEquals( 0xFFFF0000, cache.get( segmentB, cache.generation( segmentB ) ) );
+
+		cache.invalidate();
+		assertEquals( AnnotationColorCache.NOT_CACHED, cache.get( segmentB, cache.generation( segmentB ) ) );
+	}
+
+	@Test
+	void colorsOfOutdatedGenerationsAreIgnored()
+	{
+		final TableSawAnnotatedSegment segment = tableModel( "a" ).annotation( 0 );
+		final AnnotationColorCache< TableSawAnnotatedSegment > cache = new AnnotationColorCache<>();
+
+		// the coloring changes while the color is computed
+		final int generation = cache.generation( segment );
+		cache.invalidate();
+		cache.put( segment, 0xFF0000FF, generation );
+
+		assertEquals( AnnotationColorCache.NOT_CACHED, cache.get( segment, cache.generation( segment ) ) );
+	}
+
+	private static TableSawAnnotationTableModel< TableSawAnnotatedSegment > tableModel( String name )
+	{
+		final Table table = Table.create( name,
+				IntColumn.create( "label_id", 1, 2, 3 ),
+				DoubleColumn.create( "anchor_x", 0, 1, 2 ),
+				DoubleColumn.create( "anchor_y", 0, 1, 2 ),
+				DoubleColumn.create( "anchor_z", 0, 0, 0 ),
+				DoubleColumn.create( "size", 1, 2, 3 ) );
+
+		return new TableSawAnnotationTableModel<>( name, new TableSawAnnotatedSegmentCreator( table ), null, null, table );
+	}
+}
@@ -0,0 +1,259 @@
+/*-
+ * #%L
+ * Fiji viewer for MoBIE projects
+ * %%
+ * Copyright (C) 2018 - 2024 EMBL
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.embl.mobie.lib.data;
+
+import bdv.util.RandomAccessibleIntervalSource;
+import bdv.viewer.Source;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.realtransform.AffineTransform3D;
+import net.imglib2.roi.RealMaskRealInterval;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import org.embl.mobie.lib.image.DefaultSourcePair;
+import org.embl.mobie.lib.image.Image;
+import org.embl.mobie.lib.image.SourcePair;
+import org.embl.mobie.lib.serialize.ImageDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImageCacheTest
+{
+	@BeforeEach
+	void setUp()
+	{
+		ImageCache.setEnabled( true );
+		ImageCache.clear();
+	}
+
+	@AfterEach
+	void tearDown()
+	{
+		ImageCache.setMaxNumBytes( Runtime.getRuntime().maxMemory() / 4 );
+		ImageCache.clear();
+	}
+
+	@Test
+	void keyDataSourcesByIdentity()
+	{
+		final ImageDataSource dataSource = createDataSource( "image" );
+		final ImageDataSource otherDataSource = createDataSource( "image" ); // e.g. of another dataset
+
+		final Image< ? > image = new TestImage( "image" );
+		ImageCache.put( ImageCache.getKey( dataSource ), Collections.singletonList( image ) );
+
+		assertEquals( ImageCache.getKey( dataSource ), ImageCache.getKey( dataSource ) );
+		assertNotEquals( ImageCache.getKey( dataSource ), ImageCache.getKey( otherDataSource ) );
+		assertNull( ImageCache.acquire( ImageCache.getKey( otherDataSource ) ) );
+		assertSame( image, ImageCache.acquire( ImageCache.getKey( dataSource ) ).get( 0 ) );
+	}
+
+	@Test
+	void keyTransformedImagesByTransformationAndImages()
+	{
+		final Image< ? > image = new TestImage( "image" );
+		final Image< ? > otherImage = new TestImage( "other image" );
+		ImageCache.put( ImageCache.getKey( createDataSource( "image" ) ), Collections.singletonList( image ) );
+		ImageCache.put( ImageCache.getKey( createDataSource( "other image" ) ), Collections.singletonList( otherImage ) );
+
+		final Object transformation = new AffineTransform3D();
+		final ImageCache.Key key = ImageCache.getKey( transformation, Collections.singletonList( image ) );
+		assertEquals( key, ImageCache.getKey( transformation, Collections.singletonList( image ) ) );
+		assertNotEquals( key, ImageCache.getKey( transformation, Collections.singletonList( otherImage ) ) );
+		assertNotEquals( key, ImageCache.getKey( new AffineTransform3D(), Collections.singletonList( image ) ) );
+
+		// not cached
+		assertNull( ImageCache.getKey( transformation, Collections.singletonList( new TestImage( "image" ) ) ) );
+
+		final Image< ? > transformedImage = new TestImage( "transformed image" );
+		ImageCache.put( key, Collections.singletonList( transformedImage ) );
+		assertSame( transformedImage, ImageCache.acquire( ImageCache.getKey( transformation, Collections.singletonList( image ) ) ).get( 0 ) );
+		assertNotNull( ImageCache.getKey( new AffineTransform3D(), Collections.singletonList( transformedImage ) ) );
+	}
+
+	@Test
+	void invalidateImagesThatAreChangedInPlace()
+	{
+		final ImageDataSource dataSource = createDataSource( "image" );
+		final Image< ? > image = new TestImage( "image" );
+		ImageCache.put( ImageCache.getKey( dataSource ), Collections.singletonList( image ) );
+
+		ImageCache.invalidate( image );
+
+		assertNull( ImageCache.acquire( ImageCache.getKey( dataSource ) ) );
+		assertNull( ImageCache.getKey( new Object(), Collections.singletonList( image ) ) );
+	}
+
+	@Test
+	void evictLeastRecentlyUsedUnusedImagesByMemory()
+	{
+		ImageCache.setMaxNumBytes( 2_500_000 );
+
+		final ImageDataSource a = createDataSource( "a" );
+		final ImageDataSource b = createDataSource( "b" );
+		final ImageDataSource c = createDataSource( "c" );
+		final List< Image< ? > > imagesA = Collections.singletonList( new TestImage( "a", 1000 ) ); // 1 MB
+		final List< Image< ? > > imagesB = Collections.singletonList( new TestImage( "b", 1000 ) );
+		final List< Image< ? > > imagesC = Collections.singletonList( new TestImage( "c", 1000 ) );
+		ImageCache.put( ImageCache.getKey( a ), imagesA );
+		ImageCache.put( ImageCache.getKey( b ), imagesB );
+		ImageCache.put( ImageCache.getKey( c ), imagesC );
+		ImageCache.retain( imagesA );
+		ImageCache.retain( imagesB );
+		ImageCache.retain( imagesC );
+
+		ImageCache.release( imagesA );
+		ImageCache.release( imagesB );
+		assertEquals( 3, ImageCache.size() ); // 2 MB unused
+
+		ImageCache.release( imagesC );
+		assertEquals( 2, ImageCache.size() ); // 3 MB unused
+		assertNull( ImageCache.acquire( ImageCache.getKey( a ) ) );
+		assertNotNull( ImageCache.acquire( ImageCache.getKey( b ) ) );
+		assertNotNull( ImageCache.acquire( ImageCache.getKey( c ) ) );
+	}
+
+	@Test
+	void countUsesPerDisplay()
+	{
+		ImageCache.setMaxNumBytes( 0 );
+
+		final ImageDataSource dataSource = createDataSource( "image" );
+		final List< Image< ? > > images = Collections.singletonList( new TestImage( "image", 100 ) );
+		ImageCache.put( ImageCache.getKey( dataSource ), images );
+		ImageCache.retain( images ); // e.g. shown by two displays
+		ImageCache.retain( images );
+
+		ImageCache.release( images );
+		assertNotNull( ImageCache.acquire( ImageCache.getKey( dataSource ) ) );
+
+		ImageCache.release( images );
+		assertNull( ImageCache.acquire( ImageCache.getKey( dataSource ) ) );
+	}
+
+	@Test
+	void keepImagesOfUsedTransformedImages()
+	{
+		ImageCache.setMaxNumBytes( 0 );
+
+		final ImageDataSource dataSource = createDataSource( "image" );
+		final Image< ? > image = new TestImage( "image", 100 );
+		ImageCache.put( ImageCache.getKey( dataSource ), Collections.singletonList( image ) );
+
+		final Object transformation = new AffineTransform3D();
+		final List< Image< ? > > transformedImages = Collections.singletonList( new TestImage( "transformed image", 100 ) );
+		ImageCache.put( ImageCache.getKey( transformation, Collections.singletonList( image ) ), transformedImages );
+		ImageCache.retain( transformedImages );
+		ImageCache.release( Collections.emptyList() ); // evicts
+		assertEquals( 2, ImageCache.size() );
+
+		ImageCache.release( transformedImages );
+		assertEquals( 0, ImageCache.size() );
+	}
+
+	@Test
+	void doNotCacheIfDisabled()
+	{
+		final ImageDataSource dataSource = createDataSource( "image" );
+		ImageCache.put( ImageCache.getKey( dataSource ), Collections.singletonList( new TestImage( "image" ) ) );
+
+		ImageCache.setEnabled( false );
+		assertEquals( 0, ImageCache.size() );
+
+		ImageCache.put( ImageCache.getKey( dataSource ), Collections.singletonList( new TestImage( "image" ) ) );
+		assertNull( ImageCache.acquire( ImageCache.getKey( dataSource ) ) );
+	}
+
+	private static ImageDataSource createDataSource( String name )
+	{
+		final ImageDataSource dataSource = new ImageDataSource();
+		dataSource.setName( name );
+		return dataSource;
+	}
+
+	private static class TestImage implements Image< Object >
+	{
+		private final String name;
+		private final int size;
+		private RealMaskRealInterval mask;
+
+		TestImage( String name )
+		{
+			this( name, 0 );
+		}
+
+		/**
+		 * @param size
+		 * 			the width and height of the 8-bit voxel data, or 0 for none
+		 */
+		TestImage( String name, int size )
+		{
+			this.name = name;
+			this.size = size;
+		}
+
+		@Override
+		public SourcePair< Object > getSourcePair()
+		{
+			if ( size == 0 )
+				throw new UnsupportedOperationException();
+
+			final Source source = new RandomAccessibleIntervalSource<>( ArrayImgs.unsignedBytes( size, size, 1 ), new UnsignedByteType(), name );
+			return new DefaultSourcePair<>( source, source );
+		}
+
+		@Override
+		public String getName()
+		{
+			return name;
+		}
+
+		@Override
+		public void transform( AffineTransform3D affineTransform3D )
+		{
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public RealMaskRealInterval getMask()
+		{
+			return mask;
+		}
+
+		@Override
+		public void setMask( RealMaskRealInterval mask )
+		{
+			this.mask = mask;
+		}
+	}
+}
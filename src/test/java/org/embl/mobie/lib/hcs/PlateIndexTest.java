@@ -0,0 +1,133 @@
+/*-
+ * #%L
+ * Fiji viewer for MoBIE projects
+ * %%
+ * Copyright (C) 2018 - 2024 EMBL
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.embl.mobie.lib.hcs;
+
+import mpicbg.spim.data.sequence.FinalVoxelDimensions;
+import org.embl.mobie.io.ImageDataFormat;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PlateIndexTest
+{
+	private static final String HCS_DIRECTORY = "/data/plate";
+
+	@TempDir
+	Path tempDir;
+
+	private File previousDirectory;
+
+	@BeforeEach
+	void setUp()
+	{
+		previousDirectory = PlateIndex.diskCache().getDirectory();
+		PlateIndex.diskCache().setDirectory( tempDir.resolve( "plates" ).toFile() );
+	}
+
+	@AfterEach
+	void tearDown()
+	{
+		PlateIndex.diskCache().setDirectory( previousDirectory );
+		PlateIndex.diskCache().setEnabled( true );
+	}
+
+	@Test
+	void roundTrip()
+	{
+		final PlateIndex index = new PlateIndex( HCS_DIRECTORY, "stamp" );
+		index.setHcsPattern( HCSPattern.Operetta );
+		index.setImageDataFormat( ImageDataFormat.BioFormats );
+		index.setImagePaths( Arrays.asList( "r01c01f01p01-ch1sk1fk1fl1.tiff", "r01c01f01p01-ch2sk1fk1fl1.tiff" ) );
+		index.addChannel( new PlateIndex.ChannelMetadata( "ch1", 0, "Green", new double[]{ 10, 200 } ) );
+		index.setNumSlices( 3 );
+		index.setVoxelDimensions( new FinalVoxelDimensions( "micrometer", 0.5, 0.5, 2.0 ) );
+		index.setSiteDimensions( new int[]{ 1080, 1080 } );
+		index.save();
+
+		final PlateIndex loaded = PlateIndex.load( HCS_DIRECTORY, "stamp" );
+		assertNotNull( loaded );
+		assertEquals( HCSPattern.Operetta, loaded.getHcsPattern() );
+		assertEquals( ImageDataFormat.BioFormats, loaded.getImageDataFormat() );
+		assertEquals( index.getImagePaths(), loaded.getImagePaths() );
+		assertEquals( 3, loaded.getNumSlices() );
+		assertArrayEquals( new int[]{ 1080, 1080 }, loaded.getSiteDimensions() );
+		assertEquals( "micrometer", loaded.getVoxelDimensions().unit() );
+		assertEquals( 2.0, loaded.getVoxelDimensions().dimension( 2 ) );
+
+		final PlateIndex.ChannelMetadata channel = loaded.getChannel( "ch1" );
+		assertNotNull( channel );
+		assertEquals( "Green", channel.color );
+		assertArrayEquals( new double[]{ 10, 200 }, channel.contrastLimits );
+	}
+
+	@Test
+	void rejectOutdatedIndex()
+	{
+		new PlateIndex( HCS_DIRECTORY, "stamp" ).save();
+
+		assertNull( PlateIndex.load( HCS_DIRECTORY, "other stamp" ) );
+		assertNull( PlateIndex.load( "/data/other-plate", "stamp" ) );
+		assertNotNull( PlateIndex.load( HCS_DIRECTORY, "stamp" ) );
+
+		PlateIndex.diskCache().setEnabled( false );
+		assertNull( PlateIndex.load( HCS_DIRECTORY, "stamp" ) );
+	}
+
+	@Test
+	void rejectTruncatedIndex() throws IOException
+	{
+		new PlateIndex( HCS_DIRECTORY, "stamp" ).save();
+
+		final File file = PlateIndex.diskCache().getFile( HCS_DIRECTORY );
+		Files.write( file.toPath(), "{\"version\":1,\"hcsDire".getBytes() );
+
+		assertNull( PlateIndex.load( HCS_DIRECTORY, "stamp" ) );
+	}
+
+	@Test
+	void modificationStampDetectsNewWell() throws IOException
+	{
+		final Path plate = Files.createDirectories( tempDir.resolve( "plate" ) );
+		Files.createDirectories( plate.resolve( "A01" ) );
+		final String stamp = PlateIndex.getModificationStamp( plate.toString() );
+		assertEquals( stamp, PlateIndex.getModificationStamp( plate.toString() ) );
+
+		Files.createDirectories( plate.resolve( "A02" ) );
+		assertNotEquals( stamp, PlateIndex.getModificationStamp( plate.toString() ) );
+	}
+}
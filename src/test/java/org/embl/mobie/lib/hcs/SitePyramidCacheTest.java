@@ -0,0 +1,196 @@
+/*-
+ * #%L
+ * Fiji viewer for MoBIE projects
+ * %%
+ * Copyright (C) 2018 - 2024 EMBL
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.embl.mobie.lib.hcs;
+
+import bdv.util.RandomAccessibleIntervalSource;
+import bdv.viewer.Source;
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.Volatile;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.ShortArray;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.util.Pair;
+import org.embl.mobie.io.ImageDataFormat;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SitePyramidCacheTest
+{
+	@TempDir
+	Path tempDir;
+
+	private File previousDirectory;
+	private boolean previousBuildEnabled;
+
+	@BeforeEach
+	void setUp()
+	{
+		previousDirectory = SitePyramidCache.diskCache().getDirectory();
+		previousBuildEnabled = SitePyramidCache.isBuildEnabled();
+		SitePyramidCache.diskCache().setDirectory( tempDir.resolve( "pyramids" ).toFile() );
+	}
+
+	@AfterEach
+	void tearDown()
+	{
+		SitePyramidCache.diskCache().setDirectory( previousDirectory );
+		SitePyramidCache.diskCache().setMaxNumBytes( SitePyramidCache.MAX_NUM_BYTES );
+		SitePyramidCache.setBuildEnabled( previousBuildEnabled );
+	}
+
+	@Test
+	void buildAndReadLevels() throws Exception
+	{
+		final Site site = createSite( "A01-1" );
+		final Source< UnsignedShortType > source = createRamp();
+
+		final Source< UnsignedShortType > mipmapSource = buildAndAddMipmaps( site, source );
+		assertEquals( 3, mipmapSource.getNumMipmapLevels() ); // 256, 128, 64
+
+		final RandomAccessibleInterval< UnsignedShortType > level1 = mipmapSource.getSource( 0, 1 );
+		assertEquals( 128, level1.dimension( 0 ) );
+		assertEquals( 128, level1.dimension( 1 ) );
+
+		// the mean of the 2x2 voxels of level 0, i.e. 2x + 512y + 128.5, rounded
+		final RandomAccess< UnsignedShortType > access = level1.randomAccess();
+		for ( int[] xy : new int[][]{ { 0, 0 }, { 5, 7 }, { 127, 127 } } )
+		{
+			access.setPosition( new long[]{ xy[ 0 ], xy[ 1 ], 0 } );
+			assertEquals( 2 * xy[ 0 ] + 512 * xy[ 1 ] + 129, access.get().get() );
+		}
+	}
+
+	@Test
+	void keepFilesThatAreRead() throws Exception
+	{
+		final Site site = createSite( "A01-5" );
+		final Source< UnsignedShortType > mipmapSource = buildAndAddMipmaps( site, createRamp() );
+
+		// evict all entries that are not read
+		SitePyramidCache.diskCache().setMaxNumBytes( 1 );
+		assertTrue( SitePyramidCache.diskCache().getFile( SitePyramidCache.getKey( site, 0 ) ).exists() );
+
+		final RandomAccess< UnsignedShortType > access = mipmapSource.getSource( 0, 2 ).randomAccess();
+		access.setPosition( new long[]{ 0, 0, 0 } );
+		assertTrue( access.get().get() > 0 );
+	}
+
+	@Test
+	void doNotBuildIfDisabled() throws Exception
+	{
+		final Site site = createSite( "A01-2" );
+		final Source< UnsignedShortType > source = createRamp();
+
+		SitePyramidCache.setBuildEnabled( false );
+		assertSame( source, addMipmaps( site, source ).getA() );
+		Thread.sleep( 100 );
+		assertFalse( SitePyramidCache.diskCache().getFile( SitePyramidCache.getKey( site, 0 ) ).exists() );
+	}
+
+	@Test
+	void keyChangesWithFiles() throws IOException
+	{
+		final Site site = createSite( "A01-3" );
+		final String key = SitePyramidCache.getKey( site, 0 );
+		assertEquals( key, SitePyramidCache.getKey( site, 0 ) );
+		assertNotEquals( key, SitePyramidCache.getKey( site, 1 ) );
+
+		Files.write( tempDir.resolve( "A01-3.tif" ), new byte[ 10 ] );
+		assertNotEquals( key, SitePyramidCache.getKey( site, 0 ) );
+	}
+
+	@Test
+	void doNotCacheRemoteSites()
+	{
+		final Site site = new Site( "A01-4", ImageDataFormat.BioFormatsS3 );
+		site.addPath( "0", "0", "https://s3.embl.de/bucket/plate/A01-4.tif" );
+
+		assertNull( SitePyramidCache.getKey( site, 0 ) );
+	}
+
+	/**
+	 * Builds the levels in the background and opens the site again once they are there.
+	 */
+	private static Source< UnsignedShortType > buildAndAddMipmaps( Site site, Source< UnsignedShortType > source ) throws InterruptedException
+	{
+		final String key = SitePyramidCache.getKey( site, 0 );
+		assertNotNull( key );
+
+		SitePyramidCache.setBuildEnabled( true );
+		assertSame( source, addMipmaps( site, source ).getA() ); // not cached yet
+
+		final File file = SitePyramidCache.diskCache().getFile( key );
+		final long timeout = System.currentTimeMillis() + 10_000;
+		while ( ! file.exists() && System.currentTimeMillis() < timeout )
+			Thread.sleep( 10 );
+		assertTrue( file.exists() );
+
+		return addMipmaps( site, source ).getA();
+	}
+
+	private Site createSite( String name ) throws IOException
+	{
+		final Path path = tempDir.resolve( name + ".tif" );
+		Files.write( path, new byte[ 1 ] );
+
+		final Site site = new Site( name, ImageDataFormat.Tiff );
+		site.addPath( "0", "0", path.toString() );
+		return site;
+	}
+
+	private static Source< UnsignedShortType > createRamp()
+	{
+		final ArrayImg< UnsignedShortType, ShortArray > img = ArrayImgs.unsignedShorts( 256, 256, 1 );
+		final Cursor< UnsignedShortType > cursor = img.localizingCursor();
+		while ( cursor.hasNext() )
+		{
+			cursor.fwd();
+			cursor.get().set( cursor.getIntPosition( 0 ) + 256 * cursor.getIntPosition( 1 ) );
+		}
+		return new RandomAccessibleIntervalSource<>( img, new UnsignedShortType(), "ramp" );
+	}
+
+	@SuppressWarnings( { "unchecked", "rawtypes" } )
+	private static Pair< Source< UnsignedShortType >, Source< ? extends Volatile< UnsignedShortType > > > addMipmaps( Site site, Source< UnsignedShortType > source )
+	{
+		return SitePyramidCache.addMipmaps( site, 0, source, ( Source ) source );
+	}
+}
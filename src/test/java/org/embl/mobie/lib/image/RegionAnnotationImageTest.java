@@ -0,0 +1,159 @@
+/*-
+ * #%L
+ * Fiji viewer for MoBIE projects
+ * %%
+ * Copyright (C) 2018 - 2024 EMBL
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.embl.mobie.lib.image;
+
+import bdv.util.RandomAccessibleIntervalSource;
+import bdv.viewer.Interpolation;
+import bdv.viewer.Source;
+import net.imglib2.RandomAccess;
+import net.imglib2.RealRandomAccess;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.realtransform.AffineTransform3D;
+import net.imglib2.roi.geom.GeomMasks;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import org.embl.mobie.lib.data.DataStore;
+import org.embl.mobie.lib.serialize.display.RegionDisplay;
+import org.embl.mobie.lib.source.AnnotationType;
+import org.embl.mobie.lib.table.DefaultAnnData;
+import org.embl.mobie.lib.table.columns.ColumnNames;
+import org.embl.mobie.lib.table.saw.TableSawAnnotatedRegion;
+import org.embl.mobie.lib.table.saw.TableSawAnnotatedRegionCreator;
+import org.embl.mobie.lib.table.saw.TableSawAnnotationTableModel;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import tech.tablesaw.api.StringColumn;
+import tech.tablesaw.api.Table;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RegionAnnotationImageTest
+{
+	private DefaultImage< UnsignedByteType > imageA;
+	private DefaultImage< UnsignedByteType > imageB;
+	private RegionAnnotationImage< TableSawAnnotatedRegion > regionImage;
+	private TableSawAnnotationTableModel< TableSawAnnotatedRegion > tableModel;
+
+	@AfterEach
+	void tearDown()
+	{
+		// the image listeners are shared by all images
+		Image.listeners.remove( regionImage );
+		for ( TableSawAnnotatedRegion region : tableModel.annotations() )
+			Image.listeners.remove( region );
+
+		DataStore.clearImages();
+	}
+
+	@Test
+	void movedRegionIsRenderedAtItsNewPosition()
+	{
+		imageA = createImage( "a", 0 );
+		imageB = createImage( "b", 2000 );
+		regionImage = createRegionImage();
+
+		final Source< AnnotationType< TableSawAnnotatedRegion > > source = regionImage.getSourcePair().getSource();
+		final int coarsestLevel = source.getNumMipmapLevels() - 1;
+		assertTrue( coarsestLevel > 0 );
+
+		for ( int level : new int[]{ 0, coarsestLevel } )
+		{
+			assertEquals( "a", regionAt( source, level, 500, 500 ) );
+			assertEquals( "b", regionAt( source, level, 2500, 500 ) );
+			assertNull( regionAt( source, level, 4500, 500 ) );
+		}
+
+		// move region a to the right of region b
+		final AffineTransform3D translation = new AffineTransform3D();
+		translation.translate( 4000, 0, 0 );
+		imageA.transform( translation );
+
+		for ( int level : new int[]{ 0, source.getNumMipmapLevels() - 1 } )
+		{
+			assertNull( regionAt( source, level, 500, 500 ) );
+			assertEquals( "b", regionAt( source, level, 2500, 500 ) );
+			assertEquals( "a", regionAt( source, level, 4500, 500 ) );
+		}
+	}
+
+	private static DefaultImage< UnsignedByteType > createImage( String name, double offset )
+	{
+		final RandomAccessibleIntervalSource< UnsignedByteType > source = new RandomAccessibleIntervalSource<>( ArrayImgs.unsignedBytes( 1, 1, 1 ), new UnsignedByteType(), name );
+		final DefaultImage< UnsignedByteType > image = new DefaultImage<>(
+				name,
+				new DefaultSourcePair( source, ( Source ) source ),
+				GeomMasks.closedBox( new double[]{ offset, 0, 0 }, new double[]{ offset + 1000, 1000, 0 } ) );
+		DataStore.addImage( image );
+		return image;
+	}
+
+	private RegionAnnotationImage< TableSawAnnotatedRegion > createRegionImage()
+	{
+		final Table table = Table.create( "regions", StringColumn.create( ColumnNames.REGION_ID, "a", "b" ) );
+		final Map< String, List< String > > regionIdToImageNames = new HashMap<>();
+		regionIdToImageNames.put( "a", Collections.singletonList( "a" ) );
+		regionIdToImageNames.put( "b", Collections.singletonList( "b" ) );
+
+		tableModel = new TableSawAnnotationTableModel<>( "regions", new TableSawAnnotatedRegionCreator( table, regionIdToImageNames, 0 ), null, null, table );
+		return new RegionAnnotationImage<>( new RegionDisplay<>( "regions" ), new DefaultAnnData<>( tableModel ) );
+	}
+
+	/**
+	 * @return the id of the region that is rendered at the
+	 * 		   given global position, or null for the background
+	 */
+	private static String regionAt( Source< AnnotationType< TableSawAnnotatedRegion > > source, int level, double x, double y )
+	{
+		final AffineTransform3D sourceTransform = new AffineTransform3D();
+		source.getSourceTransform( 0, level, sourceTransform );
+		final double[] position = { x, y, 0 };
+		sourceTransform.applyInverse( position, position );
+
+		final TableSawAnnotatedRegion region;
+		if ( level == 0 )
+		{
+			final RealRandomAccess< AnnotationType< TableSawAnnotatedRegion > > access = source.getInterpolatedSource( 0, level, Interpolation.NEARESTNEIGHBOR ).realRandomAccess();
+			access.setPosition( position );
+			region = access.get().getAnnotation();
+		}
+		else
+		{
+			final RandomAccess< AnnotationType< TableSawAnnotatedRegion > > access = source.getSource( 0, level ).randomAccess();
+			access.setPosition( Arrays.stream( position ).mapToLong( Math::round ).toArray() );
+			region = access.get().getAnnotation();
+		}
+
+		return region == null ? null : region.regionId();
+	}
+}
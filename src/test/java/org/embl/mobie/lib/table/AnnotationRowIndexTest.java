@@ -0,0 +1,65 @@
+/*-
+ * #%L
+ * Fiji viewer for MoBIE projects
+ * %%
+ * Copyright (C) 2018 - 2024 EMBL
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.embl.mobie.lib.table;
+
+import org.embl.mobie.lib.annotation.AnnotatedSegment;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AnnotationRowIndexTest
+{
+	@Test
+	void appendedRowsAfterDuplicates()
+	{
+		final AnnotatedSegment a = new DefaultAnnotatedSegment( "image", 0, 1 );
+		final AnnotatedSegment b = new DefaultAnnotatedSegment( "image", 0, 2 );
+		final AnnotatedSegment c = new DefaultAnnotatedSegment( "image", 0, 3 );
+		final AnnotatedSegment d = new DefaultAnnotatedSegment( "image", 0, 4 );
+
+		final List< AnnotatedSegment > annotations = new ArrayList<>();
+		annotations.add( a );
+		annotations.add( b );
+		annotations.add( a );
+
+		final AnnotationRowIndex< AnnotatedSegment > rowIndex = new AnnotationRowIndex<>( annotations );
+		assertEquals( 0, rowIndex.rowIndexOf( a ) );
+		assertEquals( 1, rowIndex.rowIndexOf( b ) );
+		assertEquals( -1, rowIndex.rowIndexOf( c ) );
+
+		annotations.add( c );
+		annotations.add( d );
+		assertEquals( 3, rowIndex.rowIndexOf( c ) );
+		assertEquals( 4, rowIndex.rowIndexOf( d ) );
+		assertEquals( 0, rowIndex.rowIndexOf( a ) );
+	}
+}
@@ -0,0 +1,140 @@
+/*-
+ * #%L
+ * Fiji viewer for MoBIE projects
+ * %%
+ * Copyright (C) 2018 - 2024 EMBL
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.embl.mobie.lib.table;
+
+import org.embl.mobie.lib.table.saw.TableSawAnnotatedSegment;
+import org.embl.mobie.lib.table.saw.TableSawAnnotatedSegmentCreator;
+import org.embl.mobie.lib.table.saw.TableSawAnnotationTableModel;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import tech.tablesaw.api.DoubleColumn;
+import tech.tablesaw.api.IntColumn;
+import tech.tablesaw.api.StringColumn;
+import tech.tablesaw.api.Table;
+
+import javax.swing.RowSorter;
+import javax.swing.SortOrder;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AnnotationRowSorterTest
+{
+	private TableSawAnnotationTableModel< TableSawAnnotatedSegment > tableModel;
+	private SwingTableModel swingTableModel;
+	private AnnotationRowSorter sorter;
+
+	@BeforeEach
+	void setUp()
+	{
+		final Table table = Table.create( "segments",
+				IntColumn.create( "label_id", 1, 2, 3, 4, 5 ),
+				DoubleColumn.create( "anchor_x", 0, 1, 2, 3, 4 ),
+				DoubleColumn.create( "anchor_y", 0, 1, 2, 3, 4 ),
+				DoubleColumn.create( "anchor_z", 0, 0, 0, 0, 0 ),
+				DoubleColumn.create( "size", 3, Double.NaN, 1, 2, 1 ),
+				StringColumn.create( "class", "b", "a", "c", "a", "b" ) );
+
+		tableModel = new TableSawAnnotationTableModel<>( "segments", new TableSawAnnotatedSegmentCreator( table ), null, null, table );
+		swingTableModel = new SwingTableModel( tableModel );
+		sorter = new AnnotationRowSorter( swingTableModel );
+	}
+
+	@Test
+	void sortNumbersWithMissingValuesLast()
+	{
+		sorter.toggleSortOrder( column( "size" ) );
+		assertArrayEquals( new int[]{ 2, 4, 3, 0, 1 }, viewToModel() );
+
+		sorter.toggleSortOrder( column( "size" ) );
+		assertArrayEquals( new int[]{ 0, 3, 2, 4, 1 }, viewToModel() );
+
+		sorter.setSortKeys( null );
+		assertArrayEquals( new int[]{ 0, 1, 2, 3, 4 }, viewToModel() );
+	}
+
+	@Test
+	void sortTextByMultipleKeys()
+	{
+		sorter.toggleSortOrder( column( "size" ) );
+		sorter.toggleSortOrder( column( "class" ) );
+
+		// by class, then by size
+		assertArrayEquals( new int[]{ 3, 1, 4, 0, 2 }, viewToModel() );
+	}
+
+	@Test
+	void filterAndSort()
+	{
+		sorter.setFilter( "size", size -> size >= 2 );
+		assertEquals( 2, sorter.getViewRowCount() );
+		assertArrayEquals( new int[]{ 0, 3 }, viewToModel() );
+		assertEquals( -1, sorter.convertRowIndexToView( 2 ) );
+
+		sorter.setSortKeys( Collections.singletonList( new RowSorter.SortKey( column( "size" ), SortOrder.ASCENDING ) ) );
+		assertArrayEquals( new int[]{ 3, 0 }, viewToModel() );
+		assertEquals( 1, sorter.convertRowIndexToView( 0 ) );
+
+		sorter.setFilter( null, null );
+		assertEquals( 5, sorter.getViewRowCount() );
+	}
+
+	@Test
+	void keepOrderOfUpdatedRowsUntilSortedAgain()
+	{
+		sorter.toggleSortOrder( column( "size" ) );
+		assertArrayEquals( new int[]{ 2, 4, 3, 0, 1 }, viewToModel() );
+
+		tableModel.annotations().get( 0 ).setNumber( "size", 0.5 );
+		sorter.rowsUpdated( 0, 0, column( "size" ) );
+		assertArrayEquals( new int[]{ 2, 4, 3, 0, 1 }, viewToModel() );
+
+		// sorting again uses the edited value
+		sorter.toggleSortOrder( column( "size" ) );
+		assertArrayEquals( new int[]{ 3, 2, 4, 0, 1 }, viewToModel() );
+		sorter.toggleSortOrder( column( "size" ) );
+		assertArrayEquals( new int[]{ 0, 2, 4, 3, 1 }, viewToModel() );
+	}
+
+	private int column( String name )
+	{
+		for ( int column = 0; column < swingTableModel.getColumnCount(); column++ )
+			if ( swingTableModel.getColumnName( column ).equals( name ) )
+				return column;
+		throw new IllegalArgumentException( name );
+	}
+
+	private int[] viewToModel()
+	{
+		final int[] rows = new int[ sorter.getViewRowCount() ];
+		for ( int viewRow = 0; viewRow < rows.length; viewRow++ )
+			rows[ viewRow ] = sorter.convertRowIndexToModel( viewRow );
+		return rows;
+	}
+}
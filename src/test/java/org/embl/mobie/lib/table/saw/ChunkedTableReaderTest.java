@@ -0,0 +1,159 @@
+/*-
+ * #%L
+ * Fiji viewer for MoBIE projects
+ * %%
+ * Copyright (C) 2018 - 2024 EMBL
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.embl.mobie.lib.table.saw;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import tech.tablesaw.api.ColumnType;
+import tech.tablesaw.api.Table;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChunkedTableReaderTest
+{
+	@TempDir
+	Path tempDir;
+
+	private boolean enabled;
+	private long minFileSize;
+	private long minChunkSize;
+	private File schemaDirectory;
+
+	@BeforeEach
+	void setUp()
+	{
+		enabled = ChunkedTableReader.isEnabled();
+		minFileSize = ChunkedTableReader.getMinFileSize();
+		minChunkSize = ChunkedTableReader.getMinChunkSize();
+		schemaDirectory = TableSchema.diskCache().getDirectory();
+
+		ChunkedTableReader.setMinFileSize( 0 );
+		ChunkedTableReader.setMinChunkSize( 256 );
+		TableSchema.diskCache().setDirectory( tempDir.resolve( "schemas" ).toFile() );
+	}
+
+	@AfterEach
+	void tearDown()
+	{
+		ChunkedTableReader.setEnabled( enabled );
+		ChunkedTableReader.setMinFileSize( minFileSize );
+		ChunkedTableReader.setMinChunkSize( minChunkSize );
+		TableSchema.diskCache().setDirectory( schemaDirectory );
+	}
+
+	@Test
+	void reconcileTypes()
+	{
+		assertNull( ChunkedTableReader.reconcileTypes( Collections.emptyList() ) );
+		assertEquals( ColumnType.INTEGER, ChunkedTableReader.reconcileTypes( Arrays.asList( ColumnType.INTEGER, ColumnType.INTEGER ) ) );
+		assertEquals( ColumnType.LONG, ChunkedTableReader.reconcileTypes( Arrays.asList( ColumnType.SHORT, ColumnType.INTEGER ) ) );
+		assertEquals( ColumnType.DOUBLE, ChunkedTableReader.reconcileTypes( Arrays.asList( ColumnType.INTEGER, ColumnType.FLOAT ) ) );
+		assertEquals( ColumnType.DOUBLE, ChunkedTableReader.reconcileTypes( Arrays.asList( ColumnType.LONG, ColumnType.DOUBLE ) ) );
+		assertEquals( ColumnType.STRING, ChunkedTableReader.reconcileTypes( Arrays.asList( ColumnType.INTEGER, ColumnType.STRING ) ) );
+		assertEquals( ColumnType.STRING, ChunkedTableReader.reconcileTypes( Arrays.asList( ColumnType.BOOLEAN, ColumnType.DOUBLE ) ) );
+	}
+
+	@Test
+	void chunkedEqualsSequential() throws IOException
+	{
+		final StringBuilder tsv = new StringBuilder( "label_id\tanchor_x\tsize\tname\n" );
+		for ( int i = 0; i < 500; i++ )
+		{
+			// the sizes are integers in the first chunks and decimals in the last ones
+			final String size = i < 400 ? String.valueOf( i ) : i + ".5";
+			final String name = i % 7 == 0 ? "nan" : "cell" + i;
+			tsv.append( i + 1 ).append( '\t' ).append( i * 0.25 ).append( '\t' ).append( size ).append( '\t' ).append( name ).append( '\n' );
+		}
+		final File file = write( "segments.tsv", tsv.toString() );
+
+		final Table sequential = open( file, false );
+
+		// infers and caches the column types
+		assertNotNull( ChunkedTableReader.read( file, '\t', -1 ) );
+		assertEquals( 1, TableSchema.diskCache().getDirectory().listFiles( ( dir, name ) -> name.endsWith( ".json" ) ).length );
+		assertSameTable( sequential, open( file, true ) );
+
+		// uses the cached column types
+		assertNotNull( TableSchema.load( file.getAbsolutePath(), TableSchema.getModificationStamp( file ), sequential.columnNames() ) );
+		assertSameTable( sequential, open( file, true ) );
+	}
+
+	@Test
+	void quotedLineBreaksAreReadSequentially() throws IOException
+	{
+		final StringBuilder csv = new StringBuilder( "label_id,comment\n" );
+		for ( int i = 0; i < 200; i++ )
+		{
+			final String comment = i % 50 == 0 ? "\"first line\nsecond line\"" : "comment" + i;
+			csv.append( i + 1 ).append( ',' ).append( comment ).append( '\n' );
+		}
+		final File file = write( "comments.csv", csv.toString() );
+
+		assertNull( ChunkedTableReader.read( file, ',', -1 ) );
+
+		final Table sequential = open( file, false );
+		assertEquals( 200, sequential.rowCount() );
+		assertSameTable( sequential, open( file, true ) );
+	}
+
+	private File write( String name, String content ) throws IOException
+	{
+		final Path path = tempDir.resolve( name );
+		Files.write( path, content.getBytes( StandardCharsets.UTF_8 ) );
+		return path.toFile();
+	}
+
+	private static Table open( File file, boolean chunked )
+	{
+		ChunkedTableReader.setEnabled( chunked );
+		return TableOpener.open( file.getAbsolutePath() );
+	}
+
+	private static void assertSameTable( Table expected, Table actual )
+	{
+		assertEquals( expected.columnNames(), actual.columnNames() );
+		assertEquals( expected.rowCount(), actual.rowCount() );
+		for ( int c = 0; c < expected.columnCount(); c++ )
+		{
+			assertEquals( expected.column( c ).type(), actual.column( c ).type(), expected.column( c ).name() );
+			for ( int r = 0; r < expected.rowCount(); r++ )
+				assertEquals( expected.column( c ).getString( r ), actual.column( c ).getString( r ), expected.column( c ).name() + ", row " + r );
+		}
+	}
+}
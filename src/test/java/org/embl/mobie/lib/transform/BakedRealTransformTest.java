@@ -0,0 +1,114 @@
+package org.embl.mobie.lib.transform;
+
+import net.imglib2.FinalRealInterval;
+import net.imglib2.RealInterval;
+import net.imglib2.RealLocalizable;
+import net.imglib2.RealPositionable;
+import net.imglib2.realtransform.RealTransform;
+import net.imglib2.realtransform.Translation3D;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class BakedRealTransformTest
+{
+	private static final double[] VOXEL_SIZE = { 1, 1, 1 };
+
+	@Test
+	void useCoarsestSpacingForAffineTransforms()
+	{
+		final RealInterval domain = new FinalRealInterval( new double[]{ 0, 0, 0 }, new double[]{ 1000, 1000, 100 } );
+		final double[] spacing = BakedRealTransform.estimateSpacing( new Translation3D( 10, 20, 30 ), domain, 0.1, VOXEL_SIZE );
+
+		Assertions.assertArrayEquals( new double[]{ 64, 64, 64 }, spacing );
+	}
+
+	@Test
+	void refineSpacingForCurvedTransforms()
+	{
+		final RealInterval domain = new FinalRealInterval( new double[]{ 0, 0, 0 }, new double[]{ 1000, 1000, 100 } );
+		final double[] spacing = BakedRealTransform.estimateSpacing( new SineWarp( 50 ), domain, 0.1, VOXEL_SIZE );
+
+		Assertions.assertNotNull( spacing );
+		Assertions.assertTrue( spacing[ 0 ] < 64 && spacing[ 0 ] >= 1 );
+
+		// the deviation is within the tolerance between the probes as well
+		final BakedRealTransform baked = new BakedRealTransform( new SineWarp( 50 ), domain, spacing );
+		final double[] position = new double[ 3 ];
+		final double[] exact = new double[ 3 ];
+		final double[] interpolated = new double[ 3 ];
+		for ( double x = 0; x < 1000; x += 7.3 )
+		{
+			position[ 0 ] = x;
+			position[ 1 ] = 500.5;
+			position[ 2 ] = 50.5;
+			new SineWarp( 50 ).apply( position, exact );
+			baked.apply( position, interpolated );
+			Assertions.assertEquals( exact[ 0 ], interpolated[ 0 ], 0.1 );
+			Assertions.assertEquals( exact[ 1 ], interpolated[ 1 ], 0.1 );
+		}
+	}
+
+	@Test
+	void doNotBakeIfToleranceCannotBeMet()
+	{
+		final RealInterval domain = new FinalRealInterval( new double[]{ 0, 0, 0 }, new double[]{ 100, 100, 100 } );
+
+		// oscillates faster than the voxel size
+		Assertions.assertNull( BakedRealTransform.estimateSpacing( new SineWarp( 0.3 ), domain, 0.1, VOXEL_SIZE ) );
+	}
+
+	@Test
+	void doNotBakeTooLargeGrids()
+	{
+		final RealInterval domain = new FinalRealInterval( new double[]{ 0, 0, 0 }, new double[]{ 100_000, 100_000, 10_000 } );
+
+		// even the coarsest spacing yields more than 16 million grid points
+		Assertions.assertNull( BakedRealTransform.estimateSpacing( new Translation3D( 10, 20, 30 ), domain, 0.1, VOXEL_SIZE ) );
+	}
+
+	private static class SineWarp implements RealTransform
+	{
+		private final double wavelength;
+
+		SineWarp( double wavelength )
+		{
+			this.wavelength = wavelength;
+		}
+
+		@Override
+		public int numSourceDimensions()
+		{
+			return 3;
+		}
+
+		@Override
+		public int numTargetDimensions()
+		{
+			return 3;
+		}
+
+		@Override
+		public void apply( double[] source, double[] target )
+		{
+			target[ 0 ] = source[ 0 ] + 5 * Math.sin( source[ 1 ] / wavelength );
+			target[ 1 ] = source[ 1 ] + 5 * Math.sin( source[ 0 ] / wavelength );
+			target[ 2 ] = source[ 2 ];
+		}
+
+		@Override
+		public void apply( RealLocalizable source, RealPositionable target )
+		{
+			final double[] position = new double[ 3 ];
+			source.localize( position );
+			final double[] transformed = new double[ 3 ];
+			apply( position, transformed );
+			target.setPosition( transformed );
+		}
+
+		@Override
+		public RealTransform copy()
+		{
+			return new SineWarp( wavelength );
+		}
+	}
+}
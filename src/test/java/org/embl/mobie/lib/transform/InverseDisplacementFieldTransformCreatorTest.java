@@ -0,0 +1,111 @@
+package org.embl.mobie.lib.transform;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.RealLocalizable;
+import net.imglib2.RealPositionable;
+import net.imglib2.realtransform.RealTransform;
+import net.imglib2.realtransform.inverse.WrappedIterativeInvertibleRealTransform;
+import net.imglib2.type.numeric.real.DoubleType;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class InverseDisplacementFieldTransformCreatorTest
+{
+	private static final double TOLERANCE = 1e-3;
+
+	@Test
+	void warmStartedInverseEqualsColdStartedInverse()
+	{
+		final RealTransform forward = new SineWarp();
+		final InverseDisplacementFieldTransformCreator creator = new InverseDisplacementFieldTransformCreator(
+				forward,
+				new double[]{ 0, 0, 0 },
+				new double[]{ 100, 100, 10 },
+				new double[]{ 2, 2, 2 },
+				500.0,
+				TOLERANCE,
+				200 );
+
+		final InverseDisplacementFieldTransformCreator.SampledInverseDisplacement sampled = creator.sampleInverseDisplacement();
+
+		// the iterative inverse of imglib2, starting from scratch for every sample
+		final WrappedIterativeInvertibleRealTransform< RealTransform > invertible = new WrappedIterativeInvertibleRealTransform<>( forward.copy() );
+		invertible.getOptimzer().setMaxStep( 500.0 );
+		invertible.getOptimzer().setTolerance( TOLERANCE );
+		invertible.getOptimzer().setMaxIters( 200 );
+		final RealTransform coldInverse = invertible.inverse();
+
+		final RandomAccess< DoubleType > access = sampled.interleavedField.randomAccess();
+		final double[] target = new double[ 3 ];
+		final double[] warm = new double[ 3 ];
+		final double[] cold = new double[ 3 ];
+		final double[] mapped = new double[ 3 ];
+		double maxDifference = 0;
+		for ( int z = 0; z < sampled.size[ 2 ]; z++ )
+			for ( int y = 0; y < sampled.size[ 1 ]; y++ )
+				for ( int x = 0; x < sampled.size[ 0 ]; x++ )
+				{
+					final int[] position = { x, y, z };
+					for ( int d = 0; d < 3; d++ )
+					{
+						target[ d ] = sampled.min[ d ] + position[ d ] * sampled.spacing[ d ];
+						access.setPosition( new long[]{ d, x, y, z } );
+						warm[ d ] = target[ d ] + access.get().get();
+					}
+
+					forward.apply( warm, mapped );
+					for ( int d = 0; d < 3; d++ )
+						Assertions.assertEquals( target[ d ], mapped[ d ], 2 * TOLERANCE, "Warm started inverse does not map back at " + x + ", " + y + ", " + z );
+
+					coldInverse.apply( target, cold );
+					for ( int d = 0; d < 3; d++ )
+						maxDifference = Math.max( maxDifference, Math.abs( warm[ d ] - cold[ d ] ) );
+				}
+
+		Assertions.assertTrue( maxDifference < 10 * TOLERANCE, "Warm and cold started inverses differ by " + maxDifference );
+	}
+
+	/**
+	 * A smooth, invertible warp with a known, well conditioned Jacobian.
+	 */
+	private static class SineWarp implements RealTransform
+	{
+		@Override
+		public int numSourceDimensions()
+		{
+			return 3;
+		}
+
+		@Override
+		public int numTargetDimensions()
+		{
+			return 3;
+		}
+
+		@Override
+		public void apply( double[] source, double[] target )
+		{
+			final double x = source[ 0 ];
+			final double y = source[ 1 ];
+			target[ 0 ] = x + 3.0 * Math.sin( y / 20.0 );
+			target[ 1 ] = y + 2.0 * Math.cos( x / 25.0 );
+			target[ 2 ] = source[ 2 ] + 0.5 * Math.sin( ( x + y ) / 30.0 );
+		}
+
+		@Override
+		public void apply( RealLocalizable source, RealPositionable target )
+		{
+			final double[] position = new double[ 3 ];
+			source.localize( position );
+			final double[] transformed = new double[ 3 ];
+			apply( position, transformed );
+			target.setPosition( transformed );
+		}
+
+		@Override
+		public RealTransform copy()
+		{
+			return new SineWarp();
+		}
+	}
+}
@@ -0,0 +1,85 @@
+/*-
+ * #%L
+ * Fiji viewer for MoBIE projects
+ * %%
+ * Copyright (C) 2018 - 2024 EMBL
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.embl.mobie.lib.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ManagedExecutorTest
+{
+	@Test
+	void discardingQueueCapacityFollowsNumThreads()
+	{
+		final ManagedExecutor executor = ManagedExecutor.createDiscardingOldest( "test", 1, 2 );
+		try
+		{
+			assertEquals( 2, executor.getQueue().remainingCapacity() );
+
+			executor.resize( 3 );
+			assertEquals( 6, executor.getQueue().remainingCapacity() );
+
+			executor.resize( 1 );
+			assertEquals( 2, executor.getQueue().remainingCapacity() );
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	void discardingQueueDiscardsOldestTasks() throws InterruptedException
+	{
+		final ManagedExecutor executor = ManagedExecutor.createDiscardingOldest( "test", 1, 2 );
+		final CountDownLatch running = new CountDownLatch( 1 );
+		final CountDownLatch release = new CountDownLatch( 1 );
+		try
+		{
+			executor.execute( () -> {
+				running.countDown();
+				try { release.await(); } catch ( InterruptedException e ) { Thread.currentThread().interrupt(); }
+			} );
+			running.await();
+
+			for ( int i = 0; i < 5; i++ )
+				executor.execute( () -> {} );
+
+			assertEquals( 2, executor.getQueueDepth() );
+			assertEquals( 3, executor.getNumRejected() );
+		}
+		finally
+		{
+			release.countDown();
+			executor.shutdownNow();
+		}
+	}
+}